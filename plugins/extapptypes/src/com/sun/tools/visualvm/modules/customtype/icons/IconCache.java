@@ -27,17 +27,64 @@ package com.sun.tools.visualvm.modules.customtype.icons;
 
 import com.sun.tools.visualvm.api.caching.Cache;
 import com.sun.tools.visualvm.api.caching.CacheFactory;
+import com.sun.tools.visualvm.api.caching.CacheStatistics;
 import com.sun.tools.visualvm.api.caching.Entry;
 import com.sun.tools.visualvm.api.caching.EntryFactory;
+import com.sun.tools.visualvm.api.caching.EvictionPolicy;
+import com.sun.tools.visualvm.api.caching.MappedLogPersistor;
 import com.sun.tools.visualvm.api.caching.Persistor;
+import com.sun.tools.visualvm.core.datasource.Storage;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
 import java.net.URL;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.imageio.ImageIO;
 
 /**
  *
  * @author Jaroslav Bachorik
  */
 public class IconCache extends Cache<URL, BufferedImage> {
+    private static final Logger LOGGER = Logger.getLogger(IconCache.class.getName());
+    private static final int MAX_ICONS = 256;
+    final private static String APPTYPE_ICON_CACHE = "apptype-icon-cache"; // NOI18N
+
+    final private static MappedLogPersistor.Codec<URL> URL_CODEC = new MappedLogPersistor.Codec<URL>() {
+        @Override
+        public void write(URL value, DataOutput out) throws IOException {
+            out.writeUTF(value.toString());
+        }
+
+        @Override
+        public URL read(DataInput in) throws IOException {
+            return new URL(in.readUTF());
+        }
+    };
+
+    final private static MappedLogPersistor.Codec<BufferedImage> PNG_CODEC = new MappedLogPersistor.Codec<BufferedImage>() {
+        @Override
+        public void write(BufferedImage value, DataOutput out) throws IOException {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            ImageIO.write(value, "png", bos); // NOI18N
+            out.writeInt(bos.size());
+            out.write(bos.toByteArray());
+        }
+
+        @Override
+        public BufferedImage read(DataInput in) throws IOException {
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            return ImageIO.read(new ByteArrayInputStream(data));
+        }
+    };
+
+
     final private IconResolver resolver = new IconResolver();
     final private Cache<URL, BufferedImage> delegate;
 
@@ -51,14 +98,17 @@ public class IconCache extends Cache<URL, BufferedImage> {
     }
 
     private IconCache() {
+        removeLegacyStorage();
         Persistor<URL, BufferedImage> persistor;
         try {
-            persistor = new FileImagePersistor();
-            
-        } catch (InstantiationException e) {
+            persistor = new MappedLogPersistor<URL, BufferedImage>(Storage.getPersistentStorageDirectory(),
+                                                                   APPTYPE_ICON_CACHE, URL_CODEC, PNG_CODEC);
+        } catch (IOException e) {
+            LOGGER.log(Level.INFO, "Icon cache will not be persisted", e); // NOI18N
             persistor = Persistor.DEFAULT;
         }
-        delegate = CacheFactory.getInstance().softMapCache(new EntryFactory<URL, BufferedImage>() {
+        // resolving a remote icon can take long; don't let it block lookups of other icons
+        delegate = CacheFactory.getInstance().concurrentCache(new EntryFactory<URL, BufferedImage>() {
             @Override
             public Entry<BufferedImage> createEntry(URL key) {
                 BufferedImage img = resolver.resolveIcon(key);
@@ -67,10 +117,27 @@ public class IconCache extends Cache<URL, BufferedImage> {
                 }
                 return new Entry<BufferedImage>(resolver.resolveIcon(key));
             }
-        }, persistor);
+        }, persistor, MAX_ICONS, EvictionPolicy.LRU);
 
     }
 
+    /**
+     * Removes the folder with one PNG file per icon used by the previous versions
+     */
+    private static void removeLegacyStorage() {
+        File legacyStorage = new File(Storage.getPersistentStorageDirectory(), APPTYPE_ICON_CACHE);
+        if (!legacyStorage.isDirectory()) return;
+        File[] files = legacyStorage.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        if (!legacyStorage.delete()) {
+            LOGGER.log(Level.FINE, "Unable to remove {0}", legacyStorage); // NOI18N
+        }
+    }
+
     @Override
     public long getTTL() {
         return delegate.getTTL();
@@ -90,4 +157,9 @@ public class IconCache extends Cache<URL, BufferedImage> {
     public void setTTL(long ttl) {
         delegate.setTTL(ttl);
     }
+
+    @Override
+    public CacheStatistics getStatistics() {
+        return delegate.getStatistics();
+    }
 }
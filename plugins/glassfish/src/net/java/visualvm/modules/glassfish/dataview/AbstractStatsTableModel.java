@@ -26,79 +26,147 @@
 package net.java.visualvm.modules.glassfish.dataview;
 
 import com.sun.appserv.management.monitor.MonitoringStats;
-import com.sun.tools.visualvm.core.scheduler.Quantum;
-import com.sun.tools.visualvm.core.scheduler.ScheduledTask;
-import com.sun.tools.visualvm.core.scheduler.Scheduler;
-import com.sun.tools.visualvm.core.scheduler.SchedulerTask;
-import java.lang.reflect.UndeclaredThrowableException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.concurrent.Callable;
 import javax.management.j2ee.statistics.CountStatistic;
 import javax.management.j2ee.statistics.Statistic;
 import javax.management.j2ee.statistics.Stats;
 import javax.management.j2ee.statistics.TimeStatistic;
+import javax.swing.SwingUtilities;
 import javax.swing.table.AbstractTableModel;
+import net.java.visualvm.modules.glassfish.datasource.GlassFishModel;
 import net.java.visualvm.modules.glassfish.util.Touple;
 
 /**
+ * Table of the stats of the monitors provided by a parent monitor, one row
+ * per monitor. The stats are refreshed by the {@link StatsCoordinator} of
+ * the GlassFish instance, only the rows whose values changed are updated.
  *
  * @author Jaroslav Bachorik
  */
 public abstract class AbstractStatsTableModel<PM, M extends MonitoringStats, S extends Stats> extends AbstractTableModel {
 
     final protected PM monitor;
-    private ScheduledTask refresh;
-    private final AtomicBoolean columnsInitialized = new AtomicBoolean(false);
-    private final List<Touple<String, S>> statsList = new ArrayList<Touple<String, S>>();
-    private String[] columnNames;
+    private final StatsCoordinator coordinator;
+    // accessed in EDT only
+    private List<Touple<String, S>> statsList = Collections.emptyList();
+    private volatile String[] columnNames;
 
-    public AbstractStatsTableModel(PM aMonitor, Quantum refreshInterval) {
+    public AbstractStatsTableModel(GlassFishModel model, PM aMonitor) {
         super();
         monitor = aMonitor;
-        refresh = Scheduler.sharedInstance().schedule(new SchedulerTask() {
-
-            public void onSchedule(long timeStamp) {
-                try {
-                synchronized (statsList) {
-                    statsList.clear();
-                    for (Map.Entry<String, M> monitor : getMonitorMap().entrySet()) {
-                        setColumnModel(monitor.getValue());
-                        S stats = getStats(monitor.getValue());
-                        if (!isDisplayable(stats)) {
-                            continue;
-                        }
-                        statsList.add(new Touple(monitor.getKey(), stats));
-                    }
-                    fireTableDataChanged();
-                }
-                } catch (Exception e) {
-                    if (!(e instanceof UndeclaredThrowableException)) {
-                        Logger.getLogger(AbstractStatsTableModel.class.getName()).log(Level.INFO,"onSchedule",e);
-                    } else {
-                        Scheduler.sharedInstance().unschedule(refresh);
-                        refresh = null;
-                    }
-                }
-            }
-        }, refreshInterval, true);
+        coordinator = StatsCoordinator.forModel(model);
+        coordinator.register(this);
+    }
+
+    /**
+     * Stops refreshing the table.
+     */
+    public void dispose() {
+        coordinator.unregister(this);
     }
 
     abstract protected Map<String, M> getMonitorMap();
     abstract protected S getStats(M monitor);
     abstract protected boolean isDisplayable(S stats);
-    
-    private void setColumnModel(M monitor) {
-        if (columnsInitialized.compareAndSet(false, true)) {
-            columnNames = monitor.getStatisticNames();
+
+    /**
+     * Name of the monitor map fetched by {@link #getMonitorMap()}, tables
+     * fetching the same map of the same monitor share the fetched value.
+     */
+    abstract protected String getMonitorMapName();
+
+    /**
+     * Name of the stats fetched by {@link #getStats(MonitoringStats)}, tables
+     * fetching the same stats of the same monitor share the fetched value.
+     */
+    abstract protected String getStatsName();
+
+    // Called by the coordinator in the scheduler thread
+    void refresh(StatsCoordinator pass) throws Exception {
+        Map<String, M> monitors = pass.fetch(monitor, getMonitorMapName(), new Callable<Map<String, M>>() {
+            public Map<String, M> call() {
+                return getMonitorMap();
+            }
+        });
+        final List<Touple<String, S>> newStats = new ArrayList<Touple<String, S>>(monitors.size());
+        String[] names = null;
+        for (Map.Entry<String, M> entry : monitors.entrySet()) {
+            final M m = entry.getValue();
+            if (names == null && columnNames == null) {
+                names = m.getStatisticNames();
+            }
+            S stats = pass.fetch(m, getStatsName(), new Callable<S>() {
+                public S call() {
+                    return getStats(m);
+                }
+            });
+            if (!isDisplayable(stats)) {
+                continue;
+            }
+            newStats.add(new Touple<String, S>(entry.getKey(), stats));
+        }
+        final String[] newColumnNames = names;
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                update(newColumnNames, newStats);
+            }
+        });
+    }
+
+    private void update(String[] newColumnNames, List<Touple<String, S>> newStats) {
+        List<Touple<String, S>> oldStats = statsList;
+        statsList = newStats;
+        if (columnNames == null && newColumnNames != null) {
+            columnNames = newColumnNames;
+            fireTableStructureChanged();
+            return;
+        }
+        if (!sameRows(oldStats, newStats)) {
+            fireTableDataChanged();
+            return;
+        }
+        // fire one event for each range of changed rows
+        int firstChanged = -1;
+        for (int row = 0; row <= newStats.size(); row++) {
+            boolean changed = row < newStats.size() && rowChanged(oldStats.get(row), newStats.get(row));
+            if (changed && firstChanged == -1) {
+                firstChanged = row;
+            } else if (!changed && firstChanged != -1) {
+                fireTableRowsUpdated(firstChanged, row - 1);
+                firstChanged = -1;
+            }
+        }
+    }
+
+    private static boolean sameRows(List<? extends Touple<String, ?>> oldStats, List<? extends Touple<String, ?>> newStats) {
+        if (oldStats.size() != newStats.size()) {
+            return false;
+        }
+        for (int row = 0; row < newStats.size(); row++) {
+            if (!oldStats.get(row).getX().equals(newStats.get(row).getX())) {
+                return false;
+            }
         }
+        return true;
+    }
+
+    private boolean rowChanged(Touple<String, S> oldEntry, Touple<String, S> newEntry) {
+        for (int column = 1; column < getColumnCount(); column++) {
+            Object oldValue = getValue(oldEntry, column);
+            Object newValue = getValue(newEntry, column);
+            if (oldValue == null ? newValue != null : !oldValue.equals(newValue)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public int getColumnCount() {
-        if (columnsInitialized.get()) {
+        if (columnNames != null) {
             return columnNames.length;
         } else {
             return 0;
@@ -106,16 +174,14 @@ public abstract class AbstractStatsTableModel<PM, M extends MonitoringStats, S e
     }
 
     public int getRowCount() {
-        synchronized (statsList) {
-            return statsList.size();
-        }
+        return statsList.size();
     }
 
     public Object getValueAt(int rowIndex, int columnIndex) {
-        Touple<String, S> entry;
-        synchronized (statsList) {
-            entry = statsList.get(rowIndex);
-        }
+        return getValue(statsList.get(rowIndex), columnIndex);
+    }
+
+    private Object getValue(Touple<String, S> entry, int columnIndex) {
         switch (columnIndex) {
             case 0:
                 {
@@ -138,7 +204,7 @@ public abstract class AbstractStatsTableModel<PM, M extends MonitoringStats, S e
 
     @Override
     public String getColumnName(int column) {
-        if (columnsInitialized.get()) {
+        if (columnNames != null) {
             switch (column) {
                 case 0:
                     {
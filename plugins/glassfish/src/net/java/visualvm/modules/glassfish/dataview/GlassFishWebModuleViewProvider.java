@@ -93,8 +93,8 @@ public class GlassFishWebModuleViewProvider extends DataSourceViewProvider<Glass
         private SimpleXYChartSupport jspChart;
         private SimpleXYChartSupport totalSessionsChart;
         private DataViewComponent dvc;
-        private TableModel servletsModel;
-        private TableModel wsModel;
+        private AbstractStatsTableModel<?, ?, ?> servletsModel;
+        private AbstractStatsTableModel<?, ?, ?> wsModel;
         private GlassFishWebModule module;
         private ScheduledTask refreshTask;
 
@@ -140,7 +140,7 @@ public class GlassFishWebModuleViewProvider extends DataSourceViewProvider<Glass
 
             JPanel servletsPanel = new JPanel(new BorderLayout());
             servletsPanel.setOpaque(false);
-            servletsModel = new ServletTableModel(webModule.getMonitor(), Quantum.seconds(5));
+            servletsModel = new ServletTableModel(webModule.getGlassFishRoot(), webModule.getMonitor());
 
             RowSorter<TableModel> servletsRowSorter = new TableRowSorter<TableModel>(servletsModel);
 
@@ -153,7 +153,7 @@ public class GlassFishWebModuleViewProvider extends DataSourceViewProvider<Glass
 
             JPanel wsPanel = new JPanel(new BorderLayout());
             wsPanel.setOpaque(false);
-            wsModel = new WSTableModel(webModule.getMonitor(), Quantum.seconds(5));
+            wsModel = new WSTableModel(webModule.getGlassFishRoot(), webModule.getMonitor());
 
             RowSorter<TableModel> wsRowSorter = new TableRowSorter<TableModel>(wsModel);
 
@@ -204,6 +204,12 @@ public class GlassFishWebModuleViewProvider extends DataSourceViewProvider<Glass
             return dvc;
         }
 
+        @Override
+        protected void removed() {
+            servletsModel.dispose();
+            wsModel.dispose();
+        }
+
         //~ Methods --------------------------------------------------------------------------------------------------------------
 
         private String buildInfo() {
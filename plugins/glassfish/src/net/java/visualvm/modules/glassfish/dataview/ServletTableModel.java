@@ -3,12 +3,12 @@ package net.java.visualvm.modules.glassfish.dataview;
 import com.sun.appserv.management.monitor.ServletMonitor;
 import com.sun.appserv.management.monitor.WebModuleVirtualServerMonitor;
 import com.sun.appserv.management.monitor.statistics.AltServletStats;
-import com.sun.tools.visualvm.core.scheduler.Quantum;
 import java.util.Map;
+import net.java.visualvm.modules.glassfish.datasource.GlassFishModel;
 
 class ServletTableModel extends AbstractStatsTableModel<WebModuleVirtualServerMonitor, ServletMonitor, AltServletStats> {
-    public ServletTableModel(WebModuleVirtualServerMonitor aMonitor, Quantum refreshInterval) {
-        super(aMonitor, refreshInterval);
+    public ServletTableModel(GlassFishModel model, WebModuleVirtualServerMonitor aMonitor) {
+        super(model, aMonitor);
     }
     
     @Override
@@ -21,6 +21,16 @@ class ServletTableModel extends AbstractStatsTableModel<WebModuleVirtualServerMo
         return monitor.getAltServletStats();
     }
 
+    @Override
+    protected String getMonitorMapName() {
+        return "ServletMonitorMap"; // NOI18N
+    }
+
+    @Override
+    protected String getStatsName() {
+        return "AltServletStats"; // NOI18N
+    }
+
     @Override
     protected boolean isDisplayable(AltServletStats stats) {
         return true;
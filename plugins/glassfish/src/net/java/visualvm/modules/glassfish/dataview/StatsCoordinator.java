@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * 
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ * 
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ * 
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package net.java.visualvm.modules.glassfish.dataview;
+
+import com.sun.tools.visualvm.core.scheduler.Quantum;
+import com.sun.tools.visualvm.core.scheduler.ScheduledTask;
+import com.sun.tools.visualvm.core.scheduler.Scheduler;
+import com.sun.tools.visualvm.core.scheduler.SchedulerTask;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.java.visualvm.modules.glassfish.datasource.GlassFishModel;
+
+/**
+ * Refreshes all the stats tables of one GlassFish instance in a single pass
+ * of one scheduled task. Monitor maps and stats requested by several tables
+ * during the same pass are fetched from the server only once.
+ *
+ * @author Jaroslav Bachorik
+ */
+final class StatsCoordinator {
+    private static final Logger LOGGER = Logger.getLogger(StatsCoordinator.class.getName());
+    private static final Quantum REFRESH_INTERVAL = Quantum.seconds(5);
+    private static final Map<GlassFishModel, StatsCoordinator> coordinators = new WeakHashMap<GlassFishModel, StatsCoordinator>();
+
+    private final List<AbstractStatsTableModel> models = new CopyOnWriteArrayList<AbstractStatsTableModel>();
+    // values fetched during the current pass, accessed by the refresh task only
+    private final Map<List<Object>, Object> fetched = new HashMap<List<Object>, Object>();
+    private ScheduledTask refreshTask;
+
+    private StatsCoordinator() {
+    }
+
+    static synchronized StatsCoordinator forModel(GlassFishModel model) {
+        StatsCoordinator coordinator = coordinators.get(model);
+        if (coordinator == null) {
+            coordinator = new StatsCoordinator();
+            coordinators.put(model, coordinator);
+        }
+        return coordinator;
+    }
+
+    synchronized void register(AbstractStatsTableModel model) {
+        models.add(model);
+        if (refreshTask == null) {
+            refreshTask = Scheduler.sharedInstance().schedule(new SchedulerTask() {
+                public void onSchedule(long timeStamp) {
+                    refresh();
+                }
+            }, REFRESH_INTERVAL, true);
+        }
+    }
+
+    synchronized void unregister(AbstractStatsTableModel model) {
+        models.remove(model);
+        if (models.isEmpty()) stop();
+    }
+
+    /**
+     * Returns the value already fetched by another table during the current
+     * pass, calls the fetcher if the value hasn't been fetched yet.
+     *
+     * @param source the monitor providing the value
+     * @param property name of the value provided by the monitor, the same
+     *        name must always be used for the same monitor call
+     */
+    // values of one property always come from the same call and type
+    @SuppressWarnings("unchecked")
+    <T> T fetch(Object source, String property, Callable<T> fetcher) throws Exception {
+        List<Object> key = Arrays.<Object>asList(source, property);
+        Object value = fetched.get(key);
+        if (value == null) {
+            T fetchedValue = fetcher.call();
+            fetched.put(key, fetchedValue);
+            return fetchedValue;
+        }
+        return (T) value;
+    }
+
+    private void refresh() {
+        try {
+            for (AbstractStatsTableModel model : models) {
+                try {
+                    model.refresh(this);
+                } catch (UndeclaredThrowableException e) {
+                    // the connection to the server is broken
+                    synchronized (this) {
+                        models.clear();
+                        stop();
+                    }
+                    return;
+                } catch (Exception e) {
+                    LOGGER.log(Level.INFO, "onSchedule", e); // NOI18N
+                }
+            }
+        } finally {
+            fetched.clear();
+        }
+    }
+
+    private void stop() {
+        if (refreshTask != null) {
+            Scheduler.sharedInstance().unschedule(refreshTask);
+            refreshTask = null;
+        }
+    }
+}
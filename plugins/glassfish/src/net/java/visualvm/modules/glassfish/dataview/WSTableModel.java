@@ -3,12 +3,12 @@ package net.java.visualvm.modules.glassfish.dataview;
 import com.sun.appserv.management.monitor.WebModuleVirtualServerMonitor;
 import com.sun.appserv.management.monitor.WebServiceEndpointMonitor;
 import com.sun.appserv.management.monitor.statistics.WebServiceEndpointAggregateStats;
-import com.sun.tools.visualvm.core.scheduler.Quantum;
 import java.util.Map;
+import net.java.visualvm.modules.glassfish.datasource.GlassFishModel;
 
 class WSTableModel extends AbstractStatsTableModel<WebModuleVirtualServerMonitor, WebServiceEndpointMonitor, WebServiceEndpointAggregateStats> {
-    public WSTableModel(WebModuleVirtualServerMonitor aMonitor, Quantum refreshInterval) {
-        super(aMonitor, refreshInterval);
+    public WSTableModel(GlassFishModel model, WebModuleVirtualServerMonitor aMonitor) {
+        super(model, aMonitor);
     }
     
     @Override
@@ -21,6 +21,16 @@ class WSTableModel extends AbstractStatsTableModel<WebModuleVirtualServerMonitor
         return monitor.getWebServiceEndpointAggregateStats();
     }
 
+    @Override
+    protected String getMonitorMapName() {
+        return "WebServiceEndpointMonitorMap"; // NOI18N
+    }
+
+    @Override
+    protected String getStatsName() {
+        return "WebServiceEndpointAggregateStats"; // NOI18N
+    }
+
     @Override
     protected boolean isDisplayable(WebServiceEndpointAggregateStats stats) {
         return true;
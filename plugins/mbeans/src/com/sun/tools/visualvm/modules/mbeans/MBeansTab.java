@@ -37,6 +37,9 @@ import java.awt.BorderLayout;
 import java.awt.EventQueue;
 import java.beans.*;
 import java.io.*;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -58,6 +61,11 @@ class MBeansTab extends JPanel implements
     private XSheet sheet;
     private XDataViewer viewer;
     private CachedMBeanServerConnection cachedMBSC;
+    // Class names of the MBeans, kept until the MBean is unregistered
+    private final Map<ObjectName, String> mbeanClassNames = new HashMap<ObjectName, String>();
+    // Immutable MBeanInfo of the MBean classes, guarded by itself together
+    // with mbeanClassNames
+    private final Map<String, MBeanInfo> mbeanInfoCache = new HashMap<String, MBeanInfo>();
     
     public static String getTabName() {
         return Resources.getText("LBL_MBeans"); // NOI18N
@@ -69,6 +77,10 @@ class MBeansTab extends JPanel implements
         setupTab();
     }
     
+    public Application getApplication() {
+        return application;
+    }
+    
     public RequestProcessor getRequestProcessor() {
         return worker;
     }
@@ -134,9 +146,13 @@ class MBeansTab extends JPanel implements
     }
     
     public void buildMBeanServerView() {
-        SwingWorker<Set<ObjectName>, Void> sw = new SwingWorker<Set<ObjectName>, Void>() {
+        synchronized (mbeanInfoCache) {
+            mbeanClassNames.clear();
+            mbeanInfoCache.clear();
+        }
+        SwingWorker<String[], Void> sw = new SwingWorker<String[], Void>() {
             @Override
-            public Set<ObjectName> doInBackground() {
+            public String[] doInBackground() {
                 // Register listener for MBean registration/unregistration
                 //
                 try {
@@ -154,31 +170,32 @@ class MBeansTab extends JPanel implements
                     LOGGER.throwing(MBeansTab.class.getName(), "buildMBeanServerView", e); // NOI18N
                     return null;
                 }
-                // Retrieve MBeans from MBeanServer
+                // Retrieve domains from MBeanServer, MBeans of a domain
+                // are queried when the domain node is expanded
                 //
-                Set<ObjectName> mbeans = null;
+                String[] domains = null;
                 try {
-                    mbeans = getMBeanServerConnection().queryNames(null,null);
+                    domains = getMBeanServerConnection().getDomains();
                 } catch (IOException e) {
                     LOGGER.throwing(MBeansTab.class.getName(), "buildMBeanServerView", e); // NOI18N
                     return null;
                 }
-                return mbeans;
+                return domains;
             }
             @Override
             protected void done() {
                 try {
-                    // Wait for mbsc.queryNames() result
-                    Set<ObjectName> mbeans = get();
+                    // Wait for mbsc.getDomains() result
+                    String[] domains = get();
                     // Do not display anything until the new tree has been built
                     //
                     tree.setVisible(false);
                     // Cleanup current tree
                     //
                     tree.removeAll();
-                    // Add MBeans to tree
+                    // Add domains to tree
                     //
-                    tree.addMBeansToView(mbeans);
+                    tree.addDomainsToView(domains);
                     // Display the new tree
                     //
                     tree.setVisible(true);
@@ -190,7 +207,81 @@ class MBeansTab extends JPanel implements
         };
         worker.post(sw);
     }
-    
+
+    private void loadDomain(final String domain) {
+        SwingWorker<Set<ObjectName>, Void> sw = new SwingWorker<Set<ObjectName>, Void>() {
+            @Override
+            public Set<ObjectName> doInBackground() throws Exception {
+                // The class names come with the query, the cached MBeanInfo
+                // is found without another round trip
+                Set<ObjectInstance> instances = getMBeanServerConnection().queryMBeans(
+                        new ObjectName(domain + ":*"), null); // NOI18N
+                Set<ObjectName> mbeans = new HashSet<ObjectName>();
+                synchronized (mbeanInfoCache) {
+                    for (ObjectInstance instance : instances) {
+                        mbeans.add(instance.getObjectName());
+                        mbeanClassNames.put(instance.getObjectName(),
+                                            instance.getClassName());
+                    }
+                }
+                return mbeans;
+            }
+            @Override
+            protected void done() {
+                Set<ObjectName> mbeans = null;
+                try {
+                    mbeans = get();
+                } catch (Exception e) {
+                    Throwable t = Utils.getActualException(e);
+                    LOGGER.log(Level.INFO, "Problem querying MBeans of domain " + domain, t); // NOI18N
+                }
+                tree.addDomainMBeansToView(domain, mbeans);
+            }
+        };
+        worker.post(sw);
+    }
+
+    /**
+     * Returns the MBeanInfo cached for the class of the MBean or null.
+     */
+    MBeanInfo getCachedMBeanInfo(ObjectName name) {
+        synchronized (mbeanInfoCache) {
+            String className = mbeanClassNames.get(name);
+            return className == null ? null : mbeanInfoCache.get(className);
+        }
+    }
+
+    /**
+     * Caches the MBeanInfo for the class of the MBean if its descriptor
+     * declares it immutable, like for Standard MBeans and MXBeans. Other
+     * infos may change during the lifetime of the MBean and aren't cached.
+     * The StandardMBean and StandardEmitterMBean wrappers are excluded,
+     * their class name doesn't determine the management interface.
+     */
+    void cacheMBeanInfo(ObjectName name, MBeanInfo info) {
+        Descriptor descriptor = info.getDescriptor();
+        Object immutable = descriptor == null ? null :
+                descriptor.getFieldValue("immutableInfo"); // NOI18N
+        if (!Boolean.valueOf(String.valueOf(immutable))) {
+            return;
+        }
+        synchronized (mbeanInfoCache) {
+            String className = mbeanClassNames.get(name);
+            if (className == null) {
+                // MBean registered after its domain has been queried
+                className = info.getClassName();
+                if (className == null) {
+                    return;
+                }
+                mbeanClassNames.put(name, className);
+            }
+            if (!StandardMBean.class.getName().equals(className) &&
+                !StandardEmitterMBean.class.getName().equals(className)) {
+                mbeanInfoCache.put(className, info);
+            }
+        }
+    }
+
     public MBeanServerConnection getMBeanServerConnection() {
         JmxModel jmx = JmxModelFactory.getJmxModelFor(application);
         return jmx == null ? null : jmx.getMBeanServerConnection();
@@ -248,6 +339,9 @@ class MBeansTab extends JPanel implements
                         tree.addMBeanToView(mbean);
                     } else if (notification.getType().equals(
                             MBeanServerNotification.UNREGISTRATION_NOTIFICATION)) {
+                        synchronized (mbeanInfoCache) {
+                            mbeanClassNames.remove(mbean);
+                        }
                         tree.removeMBeanFromView(mbean);
                     }
                 }
@@ -280,16 +374,17 @@ class MBeansTab extends JPanel implements
     /* tree will expand listener: treeWillExpand */
     public void treeWillExpand(TreeExpansionEvent e)
     throws ExpandVetoException {
-//        TreePath path = e.getPath();
-//        // if first path component has already been expanded do nothing
-//        // else build the tree branch for the given domain
-//        if (!tree.hasBeenExpanded(path)) {
-//            DefaultMutableTreeNode node =
-//                    (DefaultMutableTreeNode) path.getLastPathComponent();
-//            // TODO: build branch for given domain - queryNames("d:*", null);
-//            // - if not already expanded, create from scracth
-//            // - if already expanded, update
-//        }
+        // Build the tree branch for the given node: query the MBeans
+        // of a domain expanded for the first time, create the children
+        // of other nodes from the MBeans already queried
+        DefaultMutableTreeNode node =
+                (DefaultMutableTreeNode) e.getPath().getLastPathComponent();
+        String domain = tree.getDomainToLoad(node);
+        if (domain != null) {
+            loadDomain(domain);
+        } else {
+            tree.expandPendingNode(node);
+        }
     }
     
     /* tree will expand listener: treeWillCollapse */
@@ -30,6 +30,7 @@ import com.sun.tools.visualvm.core.ui.DataSourceView;
 import com.sun.tools.visualvm.core.ui.components.DataViewComponent;
 import com.sun.tools.visualvm.tools.jmx.JmxModel;
 import com.sun.tools.visualvm.tools.jmx.JmxModelFactory;
+import java.io.File;
 import javax.swing.BorderFactory;
 import javax.swing.ImageIcon;
 import javax.swing.JLabel;
@@ -64,6 +65,12 @@ class MBeansView extends DataSourceView {
         }
     }
 
+    void saveValues(File directory) {
+        if (mbeansTab != null) {
+            XPlottingViewer.saveValues(mbeansTab, directory);
+        }
+    }
+
     protected DataViewComponent createComponent() {
         DataViewComponent dvc = null;
         JmxModel jmx = JmxModelFactory.getJmxModelFor(application);
@@ -26,6 +26,8 @@
 package com.sun.tools.visualvm.modules.mbeans;
 
 import com.sun.tools.visualvm.application.Application;
+import com.sun.tools.visualvm.application.snapshot.ApplicationSnapshot;
+import com.sun.tools.visualvm.core.snapshot.Snapshot;
 import com.sun.tools.visualvm.core.ui.DataSourceView;
 import com.sun.tools.visualvm.core.ui.DataSourceViewProvider;
 import com.sun.tools.visualvm.core.ui.DataSourceViewsManager;
@@ -45,6 +47,17 @@ public class MBeansViewProvider extends DataSourceViewProvider<Application> {
         return new MBeansView(application);
     }
 
+    protected boolean supportsSaveViewFor(Application application, Class<? extends Snapshot> snapshotClass) {
+        return ApplicationSnapshot.class.isAssignableFrom(snapshotClass);
+    }
+
+    protected void saveView(Application application, Snapshot snapshot) {
+        MBeansView view = (MBeansView)getCachedView(application);
+        if (view != null) {
+            view.saveValues(snapshot.getStorage().getDirectory());
+        }
+    }
+
     public void initialize() {
         DataSourceViewsManager.sharedInstance().addViewProvider(this, Application.class);
     }
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.tools.visualvm.modules.mbeans;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.management.Notification;
+
+/**
+ * Bounded ring of notifications filled by the JMX listener threads without
+ * locking. Draining and clearing is synchronized, the producers never wait
+ * for the consumer. When the consumer falls behind, the oldest notifications
+ * are overwritten and counted as lost.
+ */
+class NotificationRing {
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<Entry> slots;
+    // Sequence number of the next notification to be added
+    private final AtomicLong head = new AtomicLong();
+    // Sequence number of the next notification to be drained, guarded by this
+    private long tail;
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    NotificationRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.capacity = size;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<Entry>(size);
+    }
+
+    // Called on any thread
+    void add(Notification notification) {
+        long sequence = head.getAndIncrement();
+        slots.set((int) (sequence & mask), new Entry(sequence, notification));
+    }
+
+    /**
+     * Moves the notifications added so far to the list in order of arrival,
+     * stops at a notification being added concurrently.
+     *
+     * @return number of notifications overwritten since the last drain
+     */
+    synchronized long drain(List<Notification> notifications) {
+        long lost = 0;
+        long last = head.get();
+        if (last - tail > capacity) {
+            lost = last - capacity - tail;
+            tail = last - capacity;
+        }
+        while (tail < last) {
+            Entry entry = slots.get((int) (tail & mask));
+            if (entry == null || entry.sequence < tail) {
+                // claimed but not stored yet
+                break;
+            }
+            if (entry.sequence > tail) {
+                // overwritten, skip to the oldest notification not overwritten
+                last = head.get();
+                lost += last - capacity - tail;
+                tail = last - capacity;
+                continue;
+            }
+            notifications.add(entry.notification);
+            slots.compareAndSet((int) (tail & mask), entry, null);
+            tail++;
+        }
+        return lost;
+    }
+
+    /**
+     * Drops the notifications not drained yet.
+     */
+    synchronized void clear() {
+        tail = head.get();
+    }
+
+
+    private static final class Entry {
+        final long sequence;
+        final Notification notification;
+
+        Entry(long sequence, Notification notification) {
+            this.sequence = sequence;
+            this.notification = notification;
+        }
+    }
+}
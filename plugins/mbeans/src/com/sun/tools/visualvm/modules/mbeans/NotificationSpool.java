@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.tools.visualvm.modules.mbeans;
+
+import com.sun.tools.visualvm.application.Application;
+import com.sun.tools.visualvm.core.datasource.Storage;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.Notification;
+import org.openide.util.RequestProcessor;
+
+/**
+ * Writes the received notifications to a rolling set of text files, one line
+ * per notification. The current file is rolled over when it exceeds the size
+ * limit, the oldest file is deleted. The files are kept in the persistent
+ * storage, the storage of an application is deleted on the next start.
+ */
+class NotificationSpool {
+
+    private final static Logger LOGGER = Logger.getLogger(NotificationSpool.class.getName());
+
+    private static final String SPOOL_DIRNAME = "mbeans_notifications"; // NOI18N
+    private static final String FILE_PREFIX = "mbeans_notifications"; // NOI18N
+    private static final String FILE_EXT = ".log"; // NOI18N
+    private static final long MAX_FILE_SIZE = 4 * 1024 * 1024;
+    private static final int MAX_FILES = 5;
+    private static final int RING_CAPACITY = 65536;
+    private static final int SPOOL_DELAY = 100;
+
+    private static final RequestProcessor PROCESSOR =
+            new RequestProcessor("MBeans Notifications Spool"); // NOI18N
+
+    private final File directory;
+    private final NotificationRing ring = new NotificationRing(RING_CAPACITY);
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final RequestProcessor.Task writeTask;
+    private final SimpleDateFormat dateFormat =
+            new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS"); // NOI18N
+    private volatile boolean closed;
+
+    // Accessed by the write task only
+    private Writer writer;
+    private long fileSize;
+
+
+    NotificationSpool(File directory) {
+        this.directory = directory;
+        writeTask = PROCESSOR.create(new Runnable() {
+            public void run() { write(); }
+        });
+    }
+
+
+    /**
+     * Directory for the notifications of the application in the persistent
+     * storage.
+     */
+    static File getDirectory(Application application) {
+        String name = application.getId().replaceAll("[^\\w.@-]", "_"); // NOI18N
+        return new File(new File(Storage.getPersistentStorageDirectory(), SPOOL_DIRNAME), name);
+    }
+
+
+    // Called on the JMX listener threads
+    void add(Notification notification) {
+        if (closed) return;
+        ring.add(notification);
+        if (scheduled.compareAndSet(false, true)) writeTask.schedule(SPOOL_DELAY);
+    }
+
+    /**
+     * Writes the pending notifications and closes the current file.
+     */
+    void close() {
+        closed = true;
+        writeTask.schedule(0);
+    }
+
+
+    private void write() {
+        scheduled.set(false);
+        List<Notification> notifications = new ArrayList<Notification>();
+        try {
+            // Keep draining while the notifications are coming
+            do {
+                notifications.clear();
+                long lost = ring.drain(notifications);
+                if (lost > 0) writeLine("# " + lost + " notifications lost"); // NOI18N
+                for (Notification notification : notifications) writeLine(format(notification));
+            } while (!notifications.isEmpty());
+            if (writer != null) writer.flush();
+        } catch (IOException e) {
+            LOGGER.log(Level.INFO, "Failed to spool notifications to " + directory, e); // NOI18N
+            closeWriter();
+        }
+        if (closed) closeWriter();
+    }
+
+    private void writeLine(String line) throws IOException {
+        if (writer == null || fileSize > MAX_FILE_SIZE) openWriter();
+        writer.write(line);
+        writer.write('\n');
+        fileSize += line.length() + 1;
+    }
+
+    private void openWriter() throws IOException {
+        closeWriter();
+        File file = getFile(0);
+        if (file.isFile() && file.length() > MAX_FILE_SIZE) {
+            // Roll over: current -> 1 -> 2 ... the last one is deleted
+            getFile(MAX_FILES - 1).delete();
+            for (int i = MAX_FILES - 2; i >= 0; i--) {
+                File older = getFile(i);
+                if (older.isFile()) older.renameTo(getFile(i + 1));
+            }
+        }
+        fileSize = file.length();
+        writer = new BufferedWriter(new OutputStreamWriter(
+                 new FileOutputStream(file, true), "UTF-8")); // NOI18N
+    }
+
+    private void closeWriter() {
+        if (writer == null) return;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.INFO, "Failed to close notifications spool", e); // NOI18N
+        }
+        writer = null;
+        // Roll over on next open if the file is full
+        fileSize = 0;
+    }
+
+    private File getFile(int index) {
+        return new File(directory, index == 0 ? FILE_PREFIX + FILE_EXT :
+                                   FILE_PREFIX + "." + index + FILE_EXT); // NOI18N
+    }
+
+    private String format(Notification notification) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(dateFormat.format(new Date(notification.getTimeStamp())));
+        sb.append('\t').append(notification.getSource());
+        sb.append('\t').append(notification.getType());
+        sb.append('\t').append(notification.getSequenceNumber());
+        sb.append('\t').append(escape(notification.getMessage()));
+        sb.append('\t').append(escape(notification.getUserData()));
+        return sb.toString();
+    }
+
+    private static String escape(Object value) {
+        if (value == null) return ""; // NOI18N
+        String string = value.toString();
+        if (string.indexOf('\\') == -1 && string.indexOf('\n') == -1 &&
+            string.indexOf('\t') == -1 && string.indexOf('\r') == -1) return string;
+        // backslash first, the escape sequences must stay unambiguous
+        return string.replace("\\", "\\\\").replace("\t", "\\t"). // NOI18N
+                      replace("\r", "\\r").replace("\n", "\\n"); // NOI18N
+    }
+}
@@ -30,9 +30,9 @@ import com.sun.tools.visualvm.tools.jmx.JmxModel.ConnectionState;
 
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferedImage;
 import java.beans.*;
 import java.io.*;
-import java.lang.reflect.Array;
 import java.util.*;
 
 import javax.accessibility.*;
@@ -100,7 +100,12 @@ class Plotter extends JComponent
     final static Color bgColor = new Color(250, 250, 250);
     final static Color defaultColor = Color.blue.darker();
 
-    final static int ARRAY_SIZE_INCREMENT = 4000;
+    // Number of the newest samples kept with full resolution
+    final static int RAW_CAPACITY = 4096;
+    // Number of samples rolled up into one bucket when the raw samples are full
+    final static int ROLLUP_FACTOR = 16;
+    // Number of the rolled up buckets kept, the oldest ones are dropped
+    final static int ROLLUP_CAPACITY = 4096;
 
     private static Stroke dashedStroke;
 
@@ -112,6 +117,16 @@ class Plotter extends JComponent
     private JMenuItem saveAsMI;
     private JFileChooser saveFC;
 
+    // Cached image of the plot area, shifted and repainted only for the new
+    // samples while the scale and the layout don't change
+    private BufferedImage plotImage;
+    private int plotX, plotY, plotW, plotH;
+    private long plotT1, plotRange, plotVMin, plotVMax, plotTickInterval, plotTz;
+    private int plotSettings = -1;
+    private int settings = 0;
+    // The newest time of samples rolled up or dropped since the last paint
+    private long changedTime = Long.MIN_VALUE;
+
     private int viewRange = -1; // Minutes (value <= 0 means full range)
     private Unit unit;
     private int decimals;
@@ -170,22 +185,24 @@ class Plotter extends JComponent
         this.decimalsMultiplier = Math.pow(10.0, decimals);
     }
 
-    public void createSequence(String key, String name, Color color, boolean isPlotted) {
+    public synchronized void createSequence(String key, String name, Color color, boolean isPlotted) {
         Sequence seq = getSequence(key);
         if (seq == null) {
-            seq = new Sequence(key);
+            seq = new Sequence(key, times);
         }
         seq.name = name;
         seq.color = (color != null) ? color : defaultColor;
         seq.isPlotted = isPlotted;
 
         seqs.add(seq);
+        settings++;
     }
 
     public void setUseDashedTransitions(String key, boolean b) {
         Sequence seq = getSequence(key);
         if (seq != null) {
             seq.transitionStroke = b ? getDashedStroke() : null;
+            settings++;
         }
     }
 
@@ -193,6 +210,7 @@ class Plotter extends JComponent
         Sequence seq = getSequence(key);
         if (seq != null) {
             seq.isPlotted = isPlotted;
+            settings++;
         }
     }
 
@@ -200,13 +218,34 @@ class Plotter extends JComponent
     // that many places, i.e. multiplied by Math.pow(10.0, decimals).
     public synchronized void addValues(long time, long... values) {
         assert (values.length == seqs.size());
-        times.add(time);
-        for (int i = 0; i < values.length; i++) {
-            seqs.get(i).add(values[i]);
-        }
+        addSample(time, values);
         repaint();
     }
 
+    // Missing values are stored as Long.MIN_VALUE
+    private void addSample(long time, long[] values) {
+        if (times.rawSize == RAW_CAPACITY) {
+            rollup();
+        }
+        int slot = times.add(time);
+        for (int i = 0; i < seqs.size(); i++) {
+            seqs.get(i).values[slot] =
+                (values != null && i < values.length) ? values[i] : Long.MIN_VALUE;
+        }
+    }
+
+    private void rollup() {
+        if (times.rolledSize == ROLLUP_CAPACITY) {
+            changedTime = Math.max(changedTime, times.time(0));
+        }
+        int from = times.rawStart;
+        int bucket = times.rollup();
+        for (Sequence seq : seqs) {
+            seq.rollup(from, bucket);
+        }
+        changedTime = Math.max(changedTime, times.rolledTimes[bucket]);
+    }
+
     private Sequence getSequence(String key) {
         for (Sequence seq : seqs) {
             if (seq.key.equals(key)) {
@@ -297,22 +336,35 @@ class Plotter extends JComponent
         try {
             PrintStream out = new PrintStream(new FileOutputStream(file));
 
-            // Print header line
-            out.print("Time"); // NOI18N
-            for (Sequence seq : seqs) {
-                out.print(","+seq.name); // NOI18N
-            }
-            out.println();
-
-            // Print data lines
-            if (seqs.size() > 0 && seqs.get(0).size > 0) {
-                for (int i = 0; i < seqs.get(0).size; i++) {
-                    double excelTime = toExcelTime(times.time(i));
-                    out.print(String.format(Locale.ENGLISH, "%.6f", excelTime)); // NOI18N
-                    for (Sequence seq : seqs) {
-                        out.print("," + getFormattedValue(seq.value(i), false)); // NOI18N
+            synchronized (this) {
+                // Rolled up buckets are saved with their minimal and maximal
+                // values, raw samples repeat the value in these columns
+                boolean rolled = times.rolledSize > 0;
+
+                // Print header line
+                out.print("Time"); // NOI18N
+                for (Sequence seq : seqs) {
+                    out.print(","+seq.name); // NOI18N
+                    if (rolled) {
+                        out.print(","+seq.name+" (min),"+seq.name+" (max)"); // NOI18N
+                    }
+                }
+                out.println();
+
+                // Print data lines
+                if (seqs.size() > 0) {
+                    for (int i = 0; i < times.size; i++) {
+                        double excelTime = toExcelTime(times.time(i));
+                        out.print(String.format(Locale.ENGLISH, "%.6f", excelTime)); // NOI18N
+                        for (Sequence seq : seqs) {
+                            out.print("," + getFormattedValue(seq.value(i), false)); // NOI18N
+                            if (rolled) {
+                                out.print("," + getFormattedValue(seq.min(i), false)); // NOI18N
+                                out.print("," + getFormattedValue(seq.max(i), false)); // NOI18N
+                            }
+                        }
+                        out.println();
                     }
-                    out.println();
                 }
             }
 
@@ -335,8 +387,36 @@ class Plotter extends JComponent
         }
     }
 
+    /**
+     * Writes the names of the sequences and all the stored samples, the
+     * rolled up buckets are written with the minimal and maximal values.
+     */
+    synchronized void saveValues(DataOutputStream out) throws IOException {
+        out.writeInt(decimals);
+        out.writeInt(seqs.size());
+        for (Sequence seq : seqs) {
+            out.writeUTF(seq.key);
+        }
+        out.writeInt(times.rolledSize);
+        for (int i = 0; i < times.rolledSize; i++) {
+            out.writeLong(times.time(i));
+            for (Sequence seq : seqs) {
+                out.writeLong(seq.value(i));
+                out.writeLong(seq.min(i));
+                out.writeLong(seq.max(i));
+            }
+        }
+        out.writeInt(times.rawSize);
+        for (int i = times.rolledSize; i < times.size; i++) {
+            out.writeLong(times.time(i));
+            for (Sequence seq : seqs) {
+                out.writeLong(seq.value(i));
+            }
+        }
+    }
+
     @Override
-    public void paintComponent(Graphics g) {
+    public synchronized void paintComponent(Graphics g) {
         super.paintComponent(g);
 
         Color oldColor = g.getColor();
@@ -372,11 +452,6 @@ class Plotter extends JComponent
 
         border.paintBorder(this, g, r.x, r.y, r.width, r.height);
 
-        // Fill background color
-        g.setColor(bgColor);
-        g.fillRect(r.x+2, r.y+2, r.width-4, r.height-4);
-        g.setColor(oldColor);
-
         long tMin = Long.MAX_VALUE;
         long tMax = Long.MIN_VALUE;
         long vMin = Long.MAX_VALUE;
@@ -397,16 +472,20 @@ class Plotter extends JComponent
             viewRangeMS = Math.max(tMax - tMin, 1 * MINUTE);
         }
 
+        // Find starting point
+        int start = 0;
+        if (times.size > 1) {
+            start = times.indexOf(tMax - viewRangeMS);
+        }
+
         // Calculate min/max values
         for (Sequence seq : seqs) {
-            if (seq.size > 0) {
-                for (int i = 0; i < seq.size; i++) {
-                    if (seq.size == 1 || times.time(i) >= tMax - viewRangeMS) {
-                        long val = seq.value(i);
-                        if (val > Long.MIN_VALUE) {
-                            vMax = Math.max(vMax, val);
-                            vMin = Math.min(vMin, val);
-                        }
+            if (times.size > 0) {
+                for (int i = start; i < times.size; i++) {
+                    long min = seq.min(i);
+                    if (min > Long.MIN_VALUE) {
+                        vMax = Math.max(vMax, seq.max(i));
+                        vMin = Math.min(vMin, min);
                     }
                 }
             } else {
@@ -469,6 +548,20 @@ class Plotter extends JComponent
         tickValues.add(vMax);
         n = tickValues.size();
 
+        long t1 = tMax;
+        if (t1 <= 0L) {
+            // No data yet, so draw current time
+            t1 = System.currentTimeMillis();
+        }
+        long tz = timeDF.getTimeZone().getOffset(t1);
+        long tickInterval = calculateTickInterval(w, 40, viewRangeMS);
+        if (tickInterval > 3 * HOUR) {
+            tickInterval = calculateTickInterval(w, 80, viewRangeMS);
+        }
+
+        paintPlotArea(g, w, h, start, t1, viewRangeMS, vMin, vMax,
+                      tickValues, tickInterval, tz);
+
         String[] tickStrings = new String[n];
         for (int i = 0; i < n; i++) {
             long v = tickValues.get(i);
@@ -516,10 +609,6 @@ class Plotter extends JComponent
                 }
                 g.drawString(s, sx, y+4);
             }
-            // Draw horizontal grid line
-            g.setColor(Color.lightGray);
-            g.drawLine(r.x + 4, y, r.x + r.width - 4, y);
-            g.setColor(fg);
             lastY = y;
         }
 
@@ -528,22 +617,12 @@ class Plotter extends JComponent
         y = topMargin + h + 15;
         g.drawLine(x,   y,   x+w, y);
 
-        long t1 = tMax;
-        if (t1 <= 0L) {
-            // No data yet, so draw current time
-            t1 = System.currentTimeMillis();
-        }
-        long tz = timeDF.getTimeZone().getOffset(t1);
-        long tickInterval = calculateTickInterval(w, 40, viewRangeMS);
-        if (tickInterval > 3 * HOUR) {
-            tickInterval = calculateTickInterval(w, 80, viewRangeMS);
-        }
         long t0 = tickInterval - (t1 - viewRangeMS + tz) % tickInterval;
         while (t0 < viewRangeMS) {
-            x = leftMargin + (int)(w * t0 / viewRangeMS);
+            long t = t1 - viewRangeMS + t0;
+            x = leftMargin + getX(t, t1, w, viewRangeMS);
             g.drawLine(x, y-2, x, y+2);
 
-            long t = t1 - viewRangeMS + t0;
             String str = formatClockTime(t);
             g.drawString(str, x, y+16);
             //if (tickInterval > (1 * HOUR) && t % (1 * DAY) == 0) {
@@ -551,89 +630,21 @@ class Plotter extends JComponent
                 str = formatDate(t);
                 g.drawString(str, x, y+27);
             }
-            // Draw vertical grid line
-            g.setColor(Color.lightGray);
-            g.drawLine(x, topMargin, x, topMargin + h);
-            g.setColor(fg);
             t0 += tickInterval;
         }
 
-        // Plot values
-        int start = 0;
-        int nValues = 0;
         int nLists = seqs.size();
-        if (nLists > 0) {
-            nValues = seqs.get(0).size;
-        }
-        if (nValues == 0) {
+        if (times.size == 0) {
             g.setColor(oldColor);
             return;
-        } else {
-            Sequence seq = seqs.get(0);
-            // Find starting point
-            for (int p = 0; p < seq.size; p++) {
-                if (times.time(p) >= tMax - viewRangeMS) {
-                    start = p;
-                    break;
-                }
-            }
         }
 
-        //Optimization: collapse plot of more than four values per pixel
-        int pointsPerPixel = (nValues - start) / w;
-        if (pointsPerPixel < 4) {
-            pointsPerPixel = 1;
-        }
-
-        // Draw graphs
+        // Current values
         // Loop backwards over sequences because the first needs to be painted on top
         for (int i = nLists-1; i >= 0; i--) {
-            int x0 = leftMargin;
-            int y0 = topMargin + h + 1;
-
             Sequence seq = seqs.get(i);
-            if (seq.isPlotted && seq.size > 0) {
-                // Paint twice, with white and with color
-                for (int pass = 0; pass < 2; pass++) {
-                    g.setColor((pass == 0) ? Color.white : seq.color);
-                    int x1 = -1;
-                    long v1 = -1;
-                    for (int p = start; p < nValues; p += pointsPerPixel) {
-                        // Make sure we get the last value
-                        if (pointsPerPixel > 1 && p >= nValues - pointsPerPixel) {
-                            p = nValues - 1;
-                        }
-                        int x2 = (int)(w * (times.time(p)-(t1-viewRangeMS)) / viewRangeMS);
-                        long v2 = seq.value(p);
-                        if (v2 >= vMin && v2 <= vMax) {
-                            int y2  = (int)(h * (v2 -vMin) / (vMax-vMin));
-                            if (x1 >= 0 && v1 >= vMin && v1 <= vMax) {
-                                int y1 = (int)(h * (v1-vMin) / (vMax-vMin));
-
-                                if (y1 == y2) {
-                                    // fillrect is much faster
-                                    g.fillRect(x0+x1, y0-y1-pass, x2-x1, 1);
-                                } else {
-                                    Graphics2D g2d = (Graphics2D)g;
-                                    Stroke oldStroke = null;
-                                    if (seq.transitionStroke != null) {
-                                        oldStroke = g2d.getStroke();
-                                        g2d.setStroke(seq.transitionStroke);
-                                    }
-                                    g.drawLine(x0+x1, y0-y1-pass, x0+x2, y0-y2-pass);
-                                    if (oldStroke != null) {
-                                        g2d.setStroke(oldStroke);
-                                    }
-                                }
-                            }
-                        }
-                        x1 = x2;
-                        v1 = v2;
-                    }
-                }
-
-                // Current value
-                long v = seq.value(seq.size - 1);
+            if (seq.isPlotted) {
+                long v = seq.value(times.size - 1);
                 if (v >= vMin && v <= vMax) {
                     if (bgIsLight) {
                         g.setColor(seq.color);
@@ -655,12 +666,9 @@ class Plotter extends JComponent
         for (int i = 0; i < nLists; i++) valueStringSlots[i] = -1;
         for (int i = 0; i < nLists; i++) {
             Sequence seq = seqs.get(i);
-            if (seq.isPlotted && seq.size > 0) {
+            if (seq.isPlotted) {
                 // Draw current value
-
-                // TODO: collapse values if pointsPerPixel >= 4
-
-                long v = seq.value(seq.size - 1);
+                long v = seq.value(times.size - 1);
                 if (v >= vMin && v <= vMax) {
                     x = r.x + r.width + 2;
                     y = topMargin+h-(int)(h * (v-vMin) / (vMax-vMin));
@@ -700,6 +708,194 @@ class Plotter extends JComponent
         g.setColor(oldColor);
     }
 
+    // Paints the background, grid and values into the cached image of the
+    // plot area. If only new samples were added since the last paint the
+    // image is shifted and just the new columns are painted.
+    private void paintPlotArea(Graphics g, int w, int h, int start, long t1,
+                               long viewRangeMS, long vMin, long vMax,
+                               ArrayList<Long> tickValues, long tickInterval, long tz) {
+        int ix = r.x + 2;
+        int iy = r.y + 2;
+        int iw = r.width - 4;
+        int ih = r.height - 4;
+        if (iw <= 0 || ih <= 0) {
+            return;
+        }
+
+        boolean valid = plotImage != null &&
+                        plotImage.getWidth() == iw && plotImage.getHeight() == ih &&
+                        plotX == ix && plotY == iy && plotW == w && plotH == h &&
+                        plotRange == viewRangeMS && plotVMin == vMin && plotVMax == vMax &&
+                        plotTickInterval == tickInterval && plotTz == tz &&
+                        plotSettings == settings && plotT1 <= t1 &&
+                        changedTime < t1 - viewRangeMS;
+
+        // Plot origin in the image
+        int x0 = leftMargin - ix;
+        int y0 = topMargin + h + 1 - iy;
+        // First column of the image to be repainted
+        int from = 0;
+        if (valid) {
+            int dx = w - getX(plotT1, t1, w, viewRangeMS);
+            from = Math.max(x0 + w - dx - 1, 0);
+            if (dx > 0 && dx < iw) {
+                Graphics ig = plotImage.getGraphics();
+                ig.copyArea(dx, 0, iw - dx, ih, -dx, 0);
+                ig.dispose();
+            }
+        } else if (plotImage == null ||
+                   plotImage.getWidth() != iw || plotImage.getHeight() != ih) {
+            plotImage = new BufferedImage(iw, ih, BufferedImage.TYPE_INT_RGB);
+        }
+
+        // The columns left of the plot origin are repainted as well, the
+        // shifted image may contain values older than the time range there
+        int[] columns = valid ? new int[] { 0, Math.min(x0 + 1, from), from, iw } :
+                                new int[] { 0, iw };
+        Graphics2D ig = plotImage.createGraphics();
+        ig.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                            RenderingHints.VALUE_ANTIALIAS_ON);
+        for (int c = 0; c < columns.length; c += 2) {
+            int c1 = columns[c];
+            int c2 = columns[c + 1];
+            if (c1 >= c2) {
+                continue;
+            }
+            ig.setClip(c1, 0, c2 - c1, ih);
+
+            // Fill background color
+            ig.setColor(bgColor);
+            ig.fillRect(c1, 0, c2 - c1, ih);
+
+            // Draw horizontal grid lines
+            ig.setColor(Color.lightGray);
+            for (long v : tickValues) {
+                int y = topMargin + h - getY(v, h, vMin, vMax) - iy;
+                ig.drawLine(2, y, iw - 2, y);
+            }
+
+            // Draw vertical grid lines
+            long t = t1 - viewRangeMS + tickInterval - (t1 - viewRangeMS + tz) % tickInterval;
+            while (t < t1) {
+                int x = x0 + getX(t, t1, w, viewRangeMS);
+                ig.drawLine(x, topMargin - iy, x, topMargin + h - iy);
+                t += tickInterval;
+            }
+
+            // Start with the last sample left of the repainted columns
+            int p0 = start;
+            if (c1 > x0) {
+                long tFrom = t1 - (x0 + w - c1 + 1) * viewRangeMS / w;
+                p0 = Math.max(start, times.indexOf(tFrom) - 1);
+            }
+
+            // Draw graphs
+            // Loop backwards over sequences because the first needs to be painted on top
+            for (int i = seqs.size() - 1; i >= 0; i--) {
+                Sequence seq = seqs.get(i);
+                if (seq.isPlotted && times.size > 0) {
+                    // Paint twice, with white and with color
+                    for (int pass = 0; pass < 2; pass++) {
+                        ig.setColor((pass == 0) ? Color.white : seq.color);
+                        paintSequence(ig, seq, p0, x0, y0 - pass, w, h,
+                                      t1, viewRangeMS, vMin, vMax);
+                    }
+                }
+            }
+        }
+        ig.dispose();
+
+        plotX = ix;
+        plotY = iy;
+        plotW = w;
+        plotH = h;
+        plotT1 = t1;
+        plotRange = viewRangeMS;
+        plotVMin = vMin;
+        plotVMax = vMax;
+        plotTickInterval = tickInterval;
+        plotTz = tz;
+        plotSettings = settings;
+        changedTime = Long.MIN_VALUE;
+
+        g.drawImage(plotImage, ix, iy, null);
+    }
+
+    // Samples falling into the same column are painted as a vertical line
+    // from their minimal to maximal value, including the rolled up ranges.
+    private void paintSequence(Graphics g, Sequence seq, int start, int x0, int y0,
+                               int w, int h, long t1, long viewRangeMS,
+                               long vMin, long vMax) {
+        int x1 = -1;
+        int y1 = 0;
+        int yMin = 0;
+        int yMax = 0;
+        for (int p = start; p < times.size; p++) {
+            long v2 = seq.value(p);
+            if (v2 < vMin || v2 > vMax) {
+                if (x1 >= 0) {
+                    paintColumn(g, x0 + x1, y0, yMin, yMax);
+                }
+                x1 = -1;
+                continue;
+            }
+            int x2 = getX(times.time(p), t1, w, viewRangeMS);
+            int y2 = getY(v2, h, vMin, vMax);
+            int lo = y2;
+            int hi = y2;
+            if (times.isRolled(p)) {
+                lo = Math.min(lo, getY(Math.max(seq.min(p), vMin), h, vMin, vMax));
+                hi = Math.max(hi, getY(Math.min(seq.max(p), vMax), h, vMin, vMax));
+            }
+            if (x1 >= 0 && x2 == x1) {
+                yMin = Math.min(yMin, lo);
+                yMax = Math.max(yMax, hi);
+            } else {
+                if (x1 >= 0) {
+                    paintColumn(g, x0 + x1, y0, yMin, yMax);
+                    if (y1 == y2) {
+                        // fillrect is much faster
+                        g.fillRect(x0+x1, y0-y1, x2-x1, 1);
+                    } else {
+                        Graphics2D g2d = (Graphics2D)g;
+                        Stroke oldStroke = null;
+                        if (seq.transitionStroke != null) {
+                            oldStroke = g2d.getStroke();
+                            g2d.setStroke(seq.transitionStroke);
+                        }
+                        g.drawLine(x0+x1, y0-y1, x0+x2, y0-y2);
+                        if (oldStroke != null) {
+                            g2d.setStroke(oldStroke);
+                        }
+                    }
+                }
+                yMin = lo;
+                yMax = hi;
+            }
+            x1 = x2;
+            y1 = y2;
+        }
+        if (x1 >= 0) {
+            paintColumn(g, x0 + x1, y0, yMin, yMax);
+        }
+    }
+
+    private static void paintColumn(Graphics g, int x, int y0, int yMin, int yMax) {
+        if (yMax > yMin) {
+            g.fillRect(x, y0 - yMax, 1, yMax - yMin + 1);
+        }
+    }
+
+    // Columns are aligned to multiples of the time per pixel, so the same
+    // time is painted into the same column while the view scrolls.
+    private static int getX(long t, long t1, int w, long viewRangeMS) {
+        return (int)(t * w / viewRangeMS - t1 * w / viewRangeMS) + w;
+    }
+
+    private static int getY(long v, int h, long vMin, long vMax) {
+        return (int)(h * (v - vMin) / (vMax - vMin));
+    }
+
     private boolean checkLeftMargin(int x) {
         // Make sure leftMargin has at least 2 pixels over
         if (x < 2) {
@@ -820,63 +1016,89 @@ class Plotter extends JComponent
         return dashedStroke;
     }
 
-    private static Object extendArray(Object a1) {
-        int n = Array.getLength(a1);
-        Object a2 =
-            Array.newInstance(a1.getClass().getComponentType(),
-                              n + ARRAY_SIZE_INCREMENT);
-        System.arraycopy(a1, 0, a2, 0, n);
-        return a2;
-    }
-
 
     private static class TimeStamps {
-        // Time stamps (long) are split into offsets (long) and a
-        // series of times from the offsets (int). A new offset is
-        // stored when the the time value doesn't fit in an int
-        // (approx every 24 days).  An array of indices is used to
-        // define the starting point for each offset in the times
-        // array.
-        long[] offsets = new long[0];
-        int[] indices = new int[0];
-        int[] rtimes = new int[ARRAY_SIZE_INCREMENT];
+        // The newest time stamps are kept in a ring of RAW_CAPACITY samples.
+        // When it's full, the oldest ROLLUP_FACTOR samples are rolled up
+        // into one bucket stamped with the time of the last of them. The
+        // buckets are kept in a ring of ROLLUP_CAPACITY, the oldest bucket
+        // is dropped when it's full. Index i goes over the buckets first
+        // and then over the raw samples.
+        final long[] rawTimes = new long[RAW_CAPACITY];
+        final long[] rolledTimes = new long[ROLLUP_CAPACITY];
+        int rawStart = 0;
+        int rawSize = 0;
+        int rolledStart = 0;
+        int rolledSize = 0;
 
         // Number of stored timestamps
         int size = 0;
 
+        boolean isRolled(int i) {
+            return i < rolledSize;
+        }
+
+        /**
+         * Returns the position of index i in the raw or rolled up ring
+         */
+        int slot(int i) {
+            return i < rolledSize ? (rolledStart + i) % ROLLUP_CAPACITY :
+                                    (rawStart + i - rolledSize) % RAW_CAPACITY;
+        }
+
         /**
          * Returns the time stamp for index i
          */
         public long time(int i) {
-            long offset = 0;
-            for (int j = indices.length - 1; j >= 0; j--) {
-                if (i >= indices[j]) {
-                    offset = offsets[j];
-                    break;
-                }
-            }
-            return offset + rtimes[i];
-        }
-
-        public void add(long time) {
-            // May need to store a new time offset
-            int n = offsets.length;
-            if (n == 0 || time - offsets[n - 1] > Integer.MAX_VALUE) {
-                // Grow offset and indices arrays and store new offset
-                offsets = Arrays.copyOf(offsets, n + 1);
-                offsets[n] = time;
-                indices = Arrays.copyOf(indices, n + 1);
-                indices[n] = size;
-            }
+            return i < rolledSize ? rolledTimes[slot(i)] : rawTimes[slot(i)];
+        }
 
-            // May need to extend the array size
-            if (rtimes.length == size) {
-                rtimes = (int[])extendArray(rtimes);
+        /**
+         * Returns the first index with time stamp not older than time
+         */
+        int indexOf(long time) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (time(mid) < time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
             }
+            return low;
+        }
 
-            // Store the time
-            rtimes[size]  = (int)(time - offsets[offsets.length - 1]);
+        /**
+         * Stores the time and returns its position in the raw ring,
+         * the raw ring must not be full
+         */
+        int add(long time) {
+            int slot = (rawStart + rawSize) % RAW_CAPACITY;
+            rawTimes[slot] = time;
+            rawSize++;
             size++;
+            return slot;
+        }
+
+        /**
+         * Rolls up the oldest raw samples and returns the position of
+         * the new bucket in the rolled up ring
+         */
+        int rollup() {
+            if (rolledSize == ROLLUP_CAPACITY) {
+                rolledStart = (rolledStart + 1) % ROLLUP_CAPACITY;
+                rolledSize--;
+                size--;
+            }
+            int bucket = (rolledStart + rolledSize) % ROLLUP_CAPACITY;
+            rolledTimes[bucket] = rawTimes[(rawStart + ROLLUP_FACTOR - 1) % RAW_CAPACITY];
+            rolledSize++;
+            rawStart = (rawStart + ROLLUP_FACTOR) % RAW_CAPACITY;
+            rawSize -= ROLLUP_FACTOR;
+            size -= ROLLUP_FACTOR - 1;
+            return bucket;
         }
     }
 
@@ -887,71 +1109,78 @@ class Plotter extends JComponent
         boolean isPlotted;
         Stroke transitionStroke = null;
 
-        // Values are stored in an int[] if all values will fit,
-        // otherwise in a long[]. An int can represent up to 2 GB.
-        // Use a random start size, so all arrays won't need to
-        // be grown during the same update interval
-        Object values =
-            new byte[ARRAY_SIZE_INCREMENT + (int)(Math.random() * 100)];
+        private final TimeStamps times;
 
-        // Number of stored values
-        int size = 0;
+        // Values at the positions of the raw time stamps
+        final long[] values = new long[RAW_CAPACITY];
+
+        // Last, minimal and maximal values of the rolled up buckets,
+        // created by the first rollup
+        long[] rolledValues;
+        long[] rolledMins;
+        long[] rolledMaxs;
 
-        public Sequence(String key) {
+        public Sequence(String key, TimeStamps times) {
             this.key = key;
+            this.times = times;
+            // No values for the samples stored before the sequence was created
+            Arrays.fill(values, Long.MIN_VALUE);
         }
 
         /**
          * Returns the value at index i
          */
         public long value(int i) {
-            return Array.getLong(values, i);
-        }
-
-        public void add(long value) {
-            // May need to switch to a larger array type
-            if ((values instanceof byte[] ||
-                 values instanceof short[] ||
-                 values instanceof int[]) &&
-                       value > Integer.MAX_VALUE) {
-                long[] la = new long[Array.getLength(values)];
-                for (int i = 0; i < size; i++) {
-                    la[i] = Array.getLong(values, i);
-                }
-                values = la;
-            } else if ((values instanceof byte[] ||
-                        values instanceof short[]) &&
-                       value > Short.MAX_VALUE) {
-                int[] ia = new int[Array.getLength(values)];
-                for (int i = 0; i < size; i++) {
-                    ia[i] = Array.getInt(values, i);
-                }
-                values = ia;
-            } else if (values instanceof byte[] &&
-                       value > Byte.MAX_VALUE) {
-                short[] sa = new short[Array.getLength(values)];
-                for (int i = 0; i < size; i++) {
-                    sa[i] = Array.getShort(values, i);
-                }
-                values = sa;
+            if (!times.isRolled(i)) {
+                return values[times.slot(i)];
+            }
+            return rolledValues == null ? Long.MIN_VALUE : rolledValues[times.slot(i)];
+        }
+
+        /**
+         * Returns the minimal value of the bucket or the value at index i
+         */
+        long min(int i) {
+            if (!times.isRolled(i)) {
+                return values[times.slot(i)];
             }
+            return rolledMins == null ? Long.MIN_VALUE : rolledMins[times.slot(i)];
+        }
 
-            // May need to extend the array size
-            if (Array.getLength(values) == size) {
-                values = extendArray(values);
+        /**
+         * Returns the maximal value of the bucket or the value at index i
+         */
+        long max(int i) {
+            if (!times.isRolled(i)) {
+                return values[times.slot(i)];
             }
+            return rolledMaxs == null ? Long.MIN_VALUE : rolledMaxs[times.slot(i)];
+        }
 
-            // Store the value
-            if (values instanceof long[]) {
-                ((long[])values)[size] = value;
-            } else if (values instanceof int[]) {
-                ((int[])values)[size] = (int)value;
-            } else if (values instanceof short[]) {
-                ((short[])values)[size] = (short)value;
-            } else {
-                ((byte[])values)[size] = (byte)value;
+        void rollup(int from, int bucket) {
+            if (rolledValues == null) {
+                rolledValues = new long[ROLLUP_CAPACITY];
+                rolledMins = new long[ROLLUP_CAPACITY];
+                rolledMaxs = new long[ROLLUP_CAPACITY];
+                Arrays.fill(rolledValues, Long.MIN_VALUE);
+                Arrays.fill(rolledMins, Long.MIN_VALUE);
+                Arrays.fill(rolledMaxs, Long.MIN_VALUE);
             }
-            size++;
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            long last = Long.MIN_VALUE;
+            for (int i = 0; i < ROLLUP_FACTOR; i++) {
+                int slot = (from + i) % RAW_CAPACITY;
+                last = values[slot];
+                if (last > Long.MIN_VALUE) {
+                    min = Math.min(min, last);
+                    max = Math.max(max, last);
+                }
+                values[slot] = Long.MIN_VALUE;
+            }
+            rolledValues[bucket] = last;
+            rolledMins[bucket] = min == Long.MAX_VALUE ? Long.MIN_VALUE : min;
+            rolledMaxs[bucket] = max;
         }
     }
 
@@ -960,13 +1189,13 @@ class Plotter extends JComponent
         return 0;
     }
 
-    long getLastTimeStamp() {
+    synchronized long getLastTimeStamp() {
         return times.time(times.size - 1);
     }
 
-    long getLastValue(String key) {
+    synchronized long getLastValue(String key) {
         Sequence seq = getSequence(key);
-        return (seq != null && seq.size > 0) ? seq.value(seq.size - 1) : 0L;
+        return (seq != null && times.size > 0) ? seq.value(times.size - 1) : 0L;
     }
 
 
@@ -977,11 +1206,7 @@ class Plotter extends JComponent
             switch (newState) {
               case DISCONNECTED:
                 synchronized (this) {
-                    long time = System.currentTimeMillis();
-                    times.add(time);
-                    for (Sequence seq : seqs) {
-                        seq.add(Long.MIN_VALUE);
-                    }
+                    addSample(System.currentTimeMillis(), null);
                 }
                 break;
             }
@@ -1055,17 +1280,17 @@ class Plotter extends JComponent
         public String getAccessibleName() {
             String name = super.getAccessibleName();
 
-            if (seqs.size() > 0 && seqs.get(0).size > 0) {
+            if (seqs.size() > 0 && times.size > 0) {
                 String keyValueList = ""; // NOI18N
                 for (Sequence seq : seqs) {
                     if (seq.isPlotted) {
                         String value = "null"; // NOI18N
-                        if (seq.size > 0) {
+                        if (times.size > 0) {
                             if (unit == Unit.BYTES) {
-                                value = getText("LBL_SizeBytes", seq.value(seq.size - 1)); // NOI18N
+                                value = getText("LBL_SizeBytes", seq.value(times.size - 1)); // NOI18N
                             } else {
                                 value =
-                                    getFormattedValue(seq.value(seq.size - 1), false) +
+                                    getFormattedValue(seq.value(times.size - 1), false) +
                                     ((unit == Unit.PERCENT) ? "%" : ""); // NOI18N
                             }
                         }
@@ -133,7 +133,12 @@ class XMBean {
             IntrospectionException, ReflectionException, IOException {
         synchronized (mbeanInfoLock) {
             if (mbeanInfo == null) {
-                mbeanInfo = getMBeanServerConnection().getMBeanInfo(objectName);
+                // Immutable MBeanInfo survives recreating the tree nodes
+                mbeanInfo = mbeansTab.getCachedMBeanInfo(objectName);
+                if (mbeanInfo == null) {
+                    mbeanInfo = getMBeanServerConnection().getMBeanInfo(objectName);
+                    mbeansTab.cacheMBeanInfo(objectName, mbeanInfo);
+                }
             }
             return mbeanInfo;
         }
@@ -41,11 +41,14 @@ import java.util.*;
 import java.io.*;
 import java.lang.reflect.Array;
 
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.management.*;
 import javax.management.openmbean.CompositeData;
 import javax.management.openmbean.TabularData;
+import javax.swing.Timer;
+import com.sun.tools.visualvm.modules.mbeans.options.GlobalPreferences;
 
 class XMBeanNotifications extends JTable implements NotificationListener {
     
@@ -60,6 +63,11 @@ class XMBeanNotifications extends JTable implements NotificationListener {
     
     private final static Logger LOGGER = Logger.getLogger(XMBeanNotifications.class.getName());
     
+    // Notifications buffered per MBean between table updates
+    private static final int RING_CAPACITY = 8192;
+    // Maximum table update rate
+    private static final int UI_REFRESH_INTERVAL = 250;
+    
     private HashMap<ObjectName, XMBeanNotificationsListener> listeners =
             new HashMap<ObjectName, XMBeanNotificationsListener>();
     private volatile boolean subscribed;
@@ -75,9 +83,23 @@ class XMBeanNotifications extends JTable implements NotificationListener {
     private SimpleDateFormat timeFormater = new SimpleDateFormat("HH:mm:ss:SSS"); // NOI18N
     private static TableCellEditor editor =
             new Utils.ReadOnlyTableCellEditor(new JTextField());
-    
-    public XMBeanNotifications() {
+    private MBeansTab mbeansTab;
+    private volatile NotificationSpool spool;
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final Timer drainTimer;
+    private final Runnable drainStarter = new Runnable() {
+        public void run() { drainTimer.start(); }
+    };
+    
+    public XMBeanNotifications(MBeansTab mbeansTab) {
         super(new TableSorter(columnNames,0));
+        this.mbeansTab = mbeansTab;
+        drainTimer = new Timer(UI_REFRESH_INTERVAL, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                drainNotifications();
+            }
+        });
+        drainTimer.setRepeats(false);
         setColumnSelectionAllowed(false);
         setRowSelectionAllowed(false);
         getTableHeader().setReorderingAllowed(false);
@@ -203,6 +225,11 @@ class XMBeanNotifications extends JTable implements NotificationListener {
     
     synchronized void dispose() {
         listeners.clear();
+        drainTimer.stop();
+        if (spool != null) {
+            spool.close();
+            spool = null;
+        }
     }
     
     public long getReceivedNotifications(XMBean mbean) {
@@ -240,6 +267,13 @@ class XMBeanNotifications extends JTable implements NotificationListener {
                 LOGGER.log(Level.SEVERE, "Error adding listener for delegate", e); // NOI18N
             }
         }
+        if (spool == null && GlobalPreferences.sharedInstance().isNotificationsSpool()) {
+            File directory = NotificationSpool.getDirectory(mbeansTab.getApplication());
+            if (directory.isDirectory() || directory.mkdirs()) {
+                spool = new NotificationSpool(directory);
+                LOGGER.log(Level.INFO, "Spooling notifications to " + directory); // NOI18N
+            }
+        }
         XMBeanNotificationsListener listener =
                 listeners.get(mbean.getObjectName());
         if (listener == null) {
@@ -294,30 +328,71 @@ class XMBeanNotifications extends JTable implements NotificationListener {
         notificationListenersList.remove(nl);
     }
     
+    // Called on the JMX listener threads
+    void notificationAdded(Notification notif) {
+        NotificationSpool s = spool;
+        if (s != null) s.add(notif);
+        if (drainScheduled.compareAndSet(false, true))
+            EventQueue.invokeLater(drainStarter);
+    }
+    
     // Call on EDT
-    void fireNotificationReceived(
-            XMBeanNotificationsListener listener, XMBean mbean,
-            DefaultMutableTreeNode node, Object[] rowData, long received) {
-        if (enabled) {
-            DefaultTableModel tableModel = (DefaultTableModel) getModel();
-            if (listener == currentListener) {
-                tableModel.insertRow(0, rowData);
-                repaint();
+    private void drainNotifications() {
+        drainScheduled.set(false);
+        List<XMBeanNotificationsListener> toDrain;
+        synchronized (this) {
+            toDrain = new ArrayList<XMBeanNotificationsListener>(listeners.values());
+        }
+        for (XMBeanNotificationsListener listener : toDrain) {
+            try {
+                List<Object[]> rows = listener.drain();
+                if (rows != null) fireNotificationsReceived(listener, rows);
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "Error handling notification", e); // NOI18N
             }
         }
+    }
+    
+    // Call on EDT
+    private void fireNotificationsReceived(
+            XMBeanNotificationsListener listener, List<Object[]> rows) {
+        if (enabled && listener == currentListener && !rows.isEmpty()) {
+            insertRows(rows);
+            trimRows(listener.getRetained());
+            repaint();
+        }
         Notification notif =
                 new Notification(NOTIFICATION_RECEIVED_EVENT, this, 0);
-        notif.setUserData(received);
+        notif.setUserData(listener.getReceivedNotifications());
         for (NotificationListener nl : notificationListenersList)
-            nl.handleNotification(notif, node);
+            nl.handleNotification(notif, listener.getNode());
+    }
+    
+    // Call on EDT
+    // DefaultTableModel exposes its rows as a raw Vector
+    @SuppressWarnings("unchecked")
+    private void insertRows(List<Object[]> rows) {
+        DefaultTableModel tableModel = (DefaultTableModel) getModel();
+        Vector<Vector<Object>> rowVectors = new Vector<Vector<Object>>(rows.size());
+        for (Object[] rowData : rows)
+            rowVectors.add(new Vector<Object>(Arrays.asList(rowData)));
+        tableModel.getDataVector().addAll(0, rowVectors);
+        tableModel.fireTableRowsInserted(0, rows.size() - 1);
+    }
+    
+    // Call on EDT
+    private void trimRows(int retained) {
+        DefaultTableModel tableModel = (DefaultTableModel) getModel();
+        int rowCount = tableModel.getRowCount();
+        if (rowCount <= retained) return;
+        tableModel.getDataVector().setSize(retained);
+        tableModel.fireTableRowsDeleted(retained, rowCount - 1);
     }
     
     // Call on EDT
     private void updateModel(List<Object[]> data) {
         emptyTable();
-        DefaultTableModel tableModel = (DefaultTableModel) getModel();
-        for (Object[] rowData : data)
-            tableModel.addRow(rowData);
+        if (!data.isEmpty()) insertRows(data);
     }
     
     public synchronized boolean isListenerRegistered(XMBean mbean) {
@@ -365,8 +440,7 @@ class XMBeanNotifications extends JTable implements NotificationListener {
     public synchronized void emptyTable() {
         DefaultTableModel model = (DefaultTableModel) getModel();
         //invalidate();
-        while (model.getRowCount() > 0)
-            model.removeRow(0);
+        model.setRowCount(0);
         validate();
     }
     
@@ -566,6 +640,9 @@ class XMBeanNotifications extends JTable implements NotificationListener {
         private XMBeanNotifications notifications;
         private volatile boolean unregistered;
         private ArrayList<Object[]> data = new ArrayList<Object[]>();
+        private final NotificationRing ring = new NotificationRing(RING_CAPACITY);
+        // Number of newest notifications kept for the table
+        private final int retained;
         
         public XMBeanNotificationsListener(
                 XMBeanNotifications notifications,
@@ -576,6 +653,7 @@ class XMBeanNotifications extends JTable implements NotificationListener {
             this.mbean = mbean;
             this.node = node;
             this.columnNames = columnNames;
+            this.retained = Math.max(1, GlobalPreferences.sharedInstance().getNotificationsRetained());
             register(node);
         }
         
@@ -584,10 +662,19 @@ class XMBeanNotifications extends JTable implements NotificationListener {
         }
         
         public synchronized void clear() {
+            ring.clear();
             data.clear();
             received = 0;
         }
         
+        public int getRetained() {
+            return retained;
+        }
+        
+        public synchronized DefaultMutableTreeNode getNode() {
+            return node;
+        }
+        
         public synchronized boolean isRegistered() {
             return !unregistered;
         }
@@ -618,45 +705,60 @@ class XMBeanNotifications extends JTable implements NotificationListener {
             }
         }
         
-        public synchronized void handleNotification(
-                final Notification n, Object hb) {
-            EventQueue.invokeLater(new Runnable() {
-                public void run() {
-                    synchronized (XMBeanNotificationsListener.this) {
-                        try {
-                            if (unregistered) return;
-                            Date receivedDate = new Date(n.getTimeStamp());
-                            String time = timeFormater.format(receivedDate);
-                            
-                            Object userData = n.getUserData();
-                            Component comp = null;
-                            UserDataCell cell = null;
-                            if ((comp = XDataViewer.createNotificationViewer(userData)) != null) {
-                                XDataViewer.registerForMouseEvent(comp, mouseListener);
-                                cell = new UserDataCell(userData, comp);
-                            }
-                            
-                            Object[] rowData = {
-                                time,
-                                n.getType(),
-                                (cell == null ? userData : cell),
-                                n.getSequenceNumber(),
-                                n.getMessage(),
-                                n,
-                                n.getSource()
-                            };
-                            received++;
-                            data.add(0, rowData);
-                            
-                            notifications.fireNotificationReceived(
-                                    XMBeanNotificationsListener.this,
-                                    mbean, node, rowData, received);
-                        } catch (Exception e) {
-                            LOGGER.log(Level.SEVERE, "Error handling notification", e); // NOI18N
-                        }
-                    }
-                }
-            });
+        // Called on the JMX listener threads, doesn't block
+        public void handleNotification(Notification n, Object hb) {
+            if (unregistered) return;
+            ring.add(n);
+            notifications.notificationAdded(n);
+        }
+        
+        /**
+         * Moves the notifications received since the last call to the data,
+         * only the newest retained notifications are kept.
+         *
+         * @return rows created for the notifications, newest first, or null
+         *         if no notifications were received
+         */
+        // Call on EDT
+        synchronized List<Object[]> drain() {
+            List<Notification> batch = new ArrayList<Notification>();
+            long lost = ring.drain(batch);
+            if (unregistered || (batch.isEmpty() && lost == 0)) return null;
+            received += batch.size() + lost;
+            
+            int first = Math.max(0, batch.size() - retained);
+            List<Object[]> rows = new ArrayList<Object[]>(batch.size() - first);
+            for (int i = batch.size() - 1; i >= first; i--)
+                rows.add(createRow(batch.get(i)));
+            
+            data.addAll(0, rows);
+            if (data.size() > retained)
+                data.subList(retained, data.size()).clear();
+            return rows;
+        }
+        
+        private Object[] createRow(Notification n) {
+            Date receivedDate = new Date(n.getTimeStamp());
+            String time = timeFormater.format(receivedDate);
+            
+            Object userData = n.getUserData();
+            Component comp = null;
+            UserDataCell cell = null;
+            if ((comp = XDataViewer.createNotificationViewer(userData)) != null) {
+                XDataViewer.registerForMouseEvent(comp, mouseListener);
+                cell = new UserDataCell(userData, comp);
+            }
+            
+            Object[] rowData = {
+                time,
+                n.getType(),
+                (cell == null ? userData : cell),
+                n.getSequenceNumber(),
+                n.getMessage(),
+                n,
+                n.getSource()
+            };
+            return rowData;
         }
     }
 }
@@ -32,8 +32,17 @@ import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.JButton;
 import javax.swing.JLabel;
@@ -50,6 +59,11 @@ class XPlottingViewer extends PlotterPanel implements ActionListener {
     // TODO: Make number of decimal places customizable
     private static final int PLOTTER_DECIMALS = 4;
 
+    private static final String PLOTTER_FILE_PREFIX = "mbeans_plotter_"; // NOI18N
+    private static final String PLOTTER_FILE_EXT = ".dat"; // NOI18N
+    private static final int PLOTTER_FILE_MAGIC = 0x56564d43; // VVMC
+    private static final int PLOTTER_FILE_VERSION = 1;
+
     private JButton plotButton;
     // The plotter cache holds Plotter instances for the various attributes
     private static HashMap<String, XPlottingViewer> plotterCache =
@@ -78,17 +92,20 @@ class XPlottingViewer extends PlotterPanel implements ActionListener {
     }
 
     static void dispose(MBeansTab tab) {
-        Iterator it = plotterCache.keySet().iterator();
-        while(it.hasNext()) {
-            String key = (String) it.next();
-            if(key.startsWith(String.valueOf(tab.hashCode()))) {
-                it.remove();
+        Iterator<String> it;
+        synchronized (plotterCache) {
+            it = plotterCache.keySet().iterator();
+            while(it.hasNext()) {
+                String key = it.next();
+                if(key.startsWith(String.valueOf(tab.hashCode()))) {
+                    it.remove();
+                }
             }
         }
         //plotterCache.clear();
         it = timerCache.keySet().iterator();
         while(it.hasNext()) {
-            String key = (String) it.next();
+            String key = it.next();
             if(key.startsWith(String.valueOf(tab.hashCode()))) {
                 Timer t = timerCache.get(key);
                 t.stop();
@@ -97,6 +114,46 @@ class XPlottingViewer extends PlotterPanel implements ActionListener {
         }
     }
 
+    /**
+     * Saves the values collected by the plotters of the tab into the
+     * directory, one file per plotted attribute.
+     */
+    static void saveValues(MBeansTab tab, File directory) {
+        String prefix = String.valueOf(tab.hashCode()) + " "; // NOI18N
+        List<XPlottingViewer> viewers = new ArrayList<XPlottingViewer>();
+        synchronized (plotterCache) {
+            for (Map.Entry<String, XPlottingViewer> entry : plotterCache.entrySet()) {
+                if (entry.getKey().startsWith(prefix)) {
+                    viewers.add(entry.getValue());
+                }
+            }
+        }
+
+        int index = 0;
+        for (XPlottingViewer viewer : viewers) {
+            Plotter plotter = viewer.getPlotter();
+            if (plotter == null) {
+                continue;
+            }
+            File file = new File(directory, PLOTTER_FILE_PREFIX + index++ + PLOTTER_FILE_EXT);
+            try {
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(file)));
+                try {
+                    out.writeInt(PLOTTER_FILE_MAGIC);
+                    out.writeInt(PLOTTER_FILE_VERSION);
+                    out.writeUTF(viewer.mbean.getObjectName().getCanonicalName());
+                    out.writeUTF(viewer.attributeName);
+                    plotter.saveValues(out);
+                } finally {
+                    out.close();
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.INFO, "Failed to save plotter values to " + file, e); // NOI18N
+            }
+        }
+    }
+
     public static boolean isViewableValue(Object value) {
         return (value instanceof Number);
     }
@@ -110,20 +167,24 @@ class XPlottingViewer extends PlotterPanel implements ActionListener {
             String key = String.valueOf(tab.hashCode()) + " " + // NOI18N
                     String.valueOf(mbean.hashCode()) + " " + // NOI18N
                     mbean.getObjectName().getCanonicalName() + attributeName;
-            XPlottingViewer p = plotterCache.get(key);
-            if (p == null) {
-                p = new XPlottingViewer(key, mbean, attributeName, value,
-                        table, tab);
-                plotterCache.put(key, p);
+            synchronized (plotterCache) {
+                XPlottingViewer p = plotterCache.get(key);
+                if (p == null) {
+                    p = new XPlottingViewer(key, mbean, attributeName, value,
+                            table, tab);
+                    plotterCache.put(key, p);
+                }
+                comp = p;
             }
-            comp = p;
         }
         return comp;
     }
 
     @Override
     public void actionPerformed(ActionEvent evt) {
-        plotterCache.remove(key);
+        synchronized (plotterCache) {
+            plotterCache.remove(key);
+        }
         Timer t = timerCache.remove(key);
         t.stop();
         ((XMBeanAttributes) table).collapse(attributeName, this);
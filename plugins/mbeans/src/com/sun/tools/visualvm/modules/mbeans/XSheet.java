@@ -148,7 +148,7 @@ class XSheet extends JPanel
         mbeanOperations = new XMBeanOperations(mbeansTab);
         mbeanOperations.addOperationsListener(this);
         // create XMBeanNotifications container
-        mbeanNotifications = new XMBeanNotifications();
+        mbeanNotifications = new XMBeanNotifications(mbeansTab);
         mbeanNotifications.addNotificationsListener(this);
         // create XMBeanInfo container
         mbeanInfo = new XMBeanInfo();
@@ -39,6 +39,16 @@ class XTree extends JTree {
     private MBeansTab mbeansTab;
     private Map<String, DefaultMutableTreeNode> nodes =
             new HashMap<String, DefaultMutableTreeNode>();
+    // Domain nodes whose MBeans haven't been queried yet
+    private Map<DefaultMutableTreeNode, String> unloadedDomains =
+            new HashMap<DefaultMutableTreeNode, String>();
+    // Registrations (true) and unregistrations (false) received while the
+    // MBeans of the domain are being queried
+    private Map<String, Map<ObjectName, Boolean>> loadingDomains =
+            new HashMap<String, Map<ObjectName, Boolean>>();
+    // MBeans below the nodes whose children haven't been created yet
+    private Map<DefaultMutableTreeNode, Map<ObjectName, Dn>> pendingNodes =
+            new HashMap<DefaultMutableTreeNode, Map<ObjectName, Dn>>();
 
     public XTree(MBeansTab mbeansTab) {
         super(new DefaultMutableTreeNode("MBeanTreeRootNode")); // NOI18N
@@ -124,6 +134,152 @@ class XTree extends JTree {
         root.removeAllChildren();
         model.nodeStructureChanged(root);
         nodes.clear();
+        unloadedDomains.clear();
+        loadingDomains.clear();
+        pendingNodes.clear();
+    }
+
+    /**
+     * Adds the domains as collapsed nodes, the MBeans of a domain are
+     * queried when its node is expanded for the first time.
+     */
+    // Call on EDT
+    public synchronized void addDomainsToView(String[] domains) {
+        DefaultMutableTreeNode root =
+                (DefaultMutableTreeNode) getModel().getRoot();
+        String[] sortedDomains = domains.clone();
+        Arrays.sort(sortedDomains);
+        for (String domain : sortedDomains) {
+            String hashKey = getDomainHashKey(domain);
+            if (!nodes.containsKey(hashKey)) {
+                ComparableDefaultMutableTreeNode node = createDomainNode(domain);
+                node.lazy = true;
+                nodes.put(hashKey, node);
+                unloadedDomains.put(node, domain);
+                addChildNode(root, node);
+            }
+        }
+    }
+
+    /**
+     * Returns the domain of the node if its MBeans haven't been queried yet
+     * and marks the domain as being loaded, returns null otherwise.
+     */
+    // Call on EDT
+    public synchronized String getDomainToLoad(DefaultMutableTreeNode node) {
+        String domain = unloadedDomains.remove(node);
+        if (domain != null) {
+            loadingDomains.put(domain, new LinkedHashMap<ObjectName, Boolean>());
+        }
+        return domain;
+    }
+
+    /**
+     * Adds the queried MBeans of the domain. Only the children of the domain
+     * node are created, deeper levels are created when expanded.
+     *
+     * @param mbeans MBeans of the domain or null if the query failed
+     */
+    // Call on EDT
+    public synchronized void addDomainMBeansToView(String domain, Set<ObjectName> mbeans) {
+        Map<ObjectName, Boolean> changes = loadingDomains.remove(domain);
+        DefaultMutableTreeNode node = nodes.get(getDomainHashKey(domain));
+        if (changes == null || node == null) {
+            // The tree has been rebuilt meanwhile
+            return;
+        }
+        if (mbeans == null) {
+            // Query again on next expansion
+            unloadedDomains.put(node, domain);
+            return;
+        }
+
+        Map<ObjectName, Dn> dns = new LinkedHashMap<ObjectName, Dn>();
+        for (ObjectName mbean : mbeans) {
+            dns.put(mbean, new Dn(mbean, orderedKeyPropertyList));
+        }
+        pendingNodes.put(node, dns);
+        expandPendingNode(node);
+
+        for (Map.Entry<ObjectName, Boolean> change : changes.entrySet()) {
+            if (change.getValue()) {
+                addMBeanToView(change.getKey());
+            } else {
+                removeMBeanFromView(change.getKey());
+            }
+        }
+        if (node.getParent() != null && node.isLeaf()) {
+            // No MBeans left in the domain
+            removeChildNode(node);
+            nodes.remove(getDomainHashKey(domain));
+        }
+    }
+
+    /**
+     * Creates the children of a node from the MBeans kept for it, the MBeans
+     * of the deeper levels are kept in the children until they're expanded.
+     */
+    // Call on EDT
+    public synchronized void expandPendingNode(DefaultMutableTreeNode node) {
+        Map<ObjectName, Dn> dns = pendingNodes.remove(node);
+        if (dns == null) {
+            return;
+        }
+        ((ComparableDefaultMutableTreeNode) node).lazy = false;
+
+        int level = node.getLevel();
+        List<ComparableDefaultMutableTreeNode> children =
+                new ArrayList<ComparableDefaultMutableTreeNode>();
+        for (Dn dn : dns.values()) {
+            int index = dn.getTokenCount() - 1 - level;
+            if (index < 0) {
+                continue;
+            }
+            Token token = dn.getToken(index);
+            String hashKey = dn.getHashKey(token);
+            ComparableDefaultMutableTreeNode child =
+                    (ComparableDefaultMutableTreeNode) nodes.get(hashKey);
+            if (index == 0) {
+                XMBean xmbean = new XMBean(dn.getObjectName(), mbeansTab);
+                if (child == null) {
+                    child = (ComparableDefaultMutableTreeNode) createDnNode(dn, token, xmbean);
+                    nodes.put(hashKey, child);
+                    children.add(child);
+                } else {
+                    // Intermediate node of deeper MBeans is an MBean as well
+                    Object data = createNodeValue(xmbean, token);
+                    child.setUserObject(new XNodeInfo(Type.MBEAN, data,
+                            data.toString(), dn.getObjectName().toString()));
+                }
+            } else {
+                if (child == null) {
+                    child = (ComparableDefaultMutableTreeNode) createSubDnNode(dn, token);
+                    nodes.put(hashKey, child);
+                    children.add(child);
+                }
+                child.lazy = true;
+                Map<ObjectName, Dn> childDns = pendingNodes.get(child);
+                if (childDns == null) {
+                    childDns = new LinkedHashMap<ObjectName, Dn>();
+                    pendingNodes.put(child, childDns);
+                }
+                childDns.put(dn.getObjectName(), dn);
+            }
+        }
+
+        // The node had no children, add them all at once
+        Collections.sort(children);
+        int[] indices = new int[children.size()];
+        for (int i = 0; i < indices.length; i++) {
+            node.add(children.get(i));
+            indices[i] = i;
+        }
+        DefaultTreeModel model = (DefaultTreeModel) getModel();
+        if (indices.length > 0) {
+            model.nodesWereInserted(node, indices);
+        } else {
+            model.nodeChanged(node);
+        }
     }
 
     // Call on EDT
@@ -136,12 +292,19 @@ class XTree extends JTree {
         DefaultMutableTreeNode node = null;
         Dn dn = new Dn(mbean, orderedKeyPropertyList);
         if (dn.getTokenCount() > 0) {
+            Map<ObjectName, Boolean> changes = loadingDomains.get(dn.getDomain());
+            if (changes != null) {
+                changes.put(mbean, Boolean.FALSE);
+                return;
+            }
             DefaultTreeModel model = (DefaultTreeModel) getModel();
             Token token = dn.getToken(0);
             String hashKey = dn.getHashKey(token);
             node = nodes.get(hashKey);
-            if ((node != null) && (!node.isRoot())) {
-                if (node.getChildCount() > 0) {
+            if (node == null) {
+                removePendingMBean(dn);
+            } else if (!node.isRoot()) {
+                if (node.getChildCount() > 0 || pendingNodes.containsKey(node)) {
                     String label = token.getValue();
                     XNodeInfo userObject = new XNodeInfo(
                             Type.NONMBEAN, label,
@@ -158,6 +321,25 @@ class XTree extends JTree {
         }
     }
 
+    /**
+     * Removes the MBean kept for the nearest created ancestor node.
+     */
+    // Call on EDT
+    private void removePendingMBean(Dn dn) {
+        for (int i = 1; i < dn.getTokenCount(); i++) {
+            DefaultMutableTreeNode ancestor = nodes.get(dn.getHashKey(dn.getToken(i)));
+            if (ancestor != null) {
+                Map<ObjectName, Dn> dns = pendingNodes.get(ancestor);
+                if (dns != null && dns.remove(dn.getObjectName()) != null && dns.isEmpty()) {
+                    pendingNodes.remove(ancestor);
+                    ((ComparableDefaultMutableTreeNode) ancestor).lazy = false;
+                    removeParentFromView(dn, i, ancestor);
+                }
+                return;
+            }
+        }
+    }
+
     /**
      * Removes only the parent nodes which are non MBean and leaf.
      * This method assumes the child nodes have been removed before.
@@ -211,6 +393,14 @@ class XTree extends JTree {
         DefaultMutableTreeNode childNode = null;
         DefaultMutableTreeNode parentNode = null;
 
+        // MBeans of the domain being queried are added after the query
+        //
+        Map<ObjectName, Boolean> changes = loadingDomains.get(dn.getDomain());
+        if (changes != null) {
+            changes.put(mbean, Boolean.TRUE);
+            return;
+        }
+
         // Add the node or replace its user object if already added
         //
         Token token = dn.getToken(0);
@@ -229,6 +419,24 @@ class XTree extends JTree {
             return;
         }
 
+        // Keep the MBean for the nearest ancestor if its children haven't
+        // been created yet, MBeans of unloaded domains are queried later
+        //
+        for (int i = 1; i < dn.getTokenCount(); i++) {
+            DefaultMutableTreeNode ancestor = nodes.get(dn.getHashKey(dn.getToken(i)));
+            if (ancestor != null) {
+                if (unloadedDomains.containsKey(ancestor)) {
+                    return;
+                }
+                Map<ObjectName, Dn> dns = pendingNodes.get(ancestor);
+                if (dns != null) {
+                    dns.put(mbean, dn);
+                    return;
+                }
+                break;
+            }
+        }
+
         // Create new leaf node
         //
         childNode = createDnNode(dn, token, xmbean);
@@ -304,14 +512,22 @@ class XTree extends JTree {
      * Creates the domain node.
      */
     private DefaultMutableTreeNode createDomainNode(Dn dn, Token token) {
-        DefaultMutableTreeNode node = new ComparableDefaultMutableTreeNode();
-        String label = dn.getDomain();
+        return createDomainNode(dn.getDomain());
+    }
+
+    private ComparableDefaultMutableTreeNode createDomainNode(String domain) {
+        ComparableDefaultMutableTreeNode node = new ComparableDefaultMutableTreeNode();
+        String label = domain;
         XNodeInfo userObject =
                 new XNodeInfo(Type.NONMBEAN, label, label, label);
         node.setUserObject(userObject);
         return node;
     }
 
+    private static String getDomainHashKey(String domain) {
+        return "domain=" + domain; // NOI18N
+    }
+
     /**
      * Creates the node corresponding to the whole Dn, i.e. an MBean.
      */
@@ -452,6 +668,14 @@ class XTree extends JTree {
             extends DefaultMutableTreeNode
             implements Comparable<DefaultMutableTreeNode> {
 
+        // The children haven't been created yet, the node can be expanded
+        boolean lazy;
+
+        @Override
+        public boolean isLeaf() {
+            return !lazy && super.isLeaf();
+        }
+
         public int compareTo(DefaultMutableTreeNode node) {
             return (this.toString().compareTo(node.toString()));
         }
@@ -463,6 +687,7 @@ class XTree extends JTree {
         private String domain;
         private String keyPropertyList;
         private String hashDn;
+        private int[] hashKeyOffsets;
         private List<Token> tokens = new ArrayList<Token>();
 
         public Dn(ObjectName mbean, List<String> orderedKeyPropertyList) {
@@ -517,7 +742,8 @@ class XTree extends JTree {
         }
 
         public String getHashKey(Token token) {
-            final int begin = hashDn.indexOf(token.getTokenValue());
+            // The token value may occur in the preceding tokens as well
+            final int begin = hashKeyOffsets[tokens.indexOf(token)];
             return hashDn.substring(begin, hashDn.length());
         }
 
@@ -525,8 +751,10 @@ class XTree extends JTree {
             if (tokens.isEmpty()) {
                 return;
             }
+            hashKeyOffsets = new int[tokens.size()];
             final StringBuilder hdn = new StringBuilder();
             for (int i = 0; i < tokens.size(); i++) {
+                hashKeyOffsets[i] = hdn.length();
                 hdn.append(tokens.get(i).getTokenValue());
                 hdn.append(","); // NOI18N
             }
@@ -55,6 +55,12 @@ public class GlobalPreferences implements PreferenceChangeListener {
     private static final String STRING_KEY_ORDERED_KEY_PROPERTY_LIST = "OrderedKeyPropertyList"; // NOI18N
     private static final String ORDERED_KEY_PROPERTY_LIST_DEFAULT = ""; // NOI18N
 
+    private static final String INT_KEY_NOTIFICATIONS_RETAINED = "NotificationsRetained"; // NOI18N
+    private static final int NOTIFICATIONS_RETAINED_DEFAULT = 1000;
+
+    private static final String BOOLEAN_KEY_NOTIFICATIONS_SPOOL = "NotificationsSpool"; // NOI18N
+    private static final boolean NOTIFICATIONS_SPOOL_DEFAULT = false;
+
     private final static GlobalPreferences INSTANCE = new GlobalPreferences();
     private final Preferences prefs;
     private final Map<String, Set<ComparableWeakReference<PreferenceChangeListener>>> listenerMap = new HashMap<String, Set<ComparableWeakReference<PreferenceChangeListener>>>();
@@ -123,6 +129,26 @@ public class GlobalPreferences implements PreferenceChangeListener {
         addListener(STRING_KEY_ORDERED_KEY_PROPERTY_LIST, pcl);
     }
 
+    public int getNotificationsRetained() {
+        return getInt(INT_KEY_NOTIFICATIONS_RETAINED, NOTIFICATIONS_RETAINED_DEFAULT);
+    }
+    
+    public void setNotificationsRetained(int value) {
+        setInt(INT_KEY_NOTIFICATIONS_RETAINED, value);
+    }
+    
+    public boolean isNotificationsSpool() {
+        synchronized(prefs) {
+            return prefs.getBoolean(BOOLEAN_KEY_NOTIFICATIONS_SPOOL, NOTIFICATIONS_SPOOL_DEFAULT);
+        }
+    }
+    
+    public void setNotificationsSpool(boolean value) {
+        synchronized(prefs) {
+            prefs.putBoolean(BOOLEAN_KEY_NOTIFICATIONS_SPOOL, value);
+        }
+    }
+
     public boolean store() {
         try {
             prefs.sync();
@@ -163,4 +189,16 @@ public class GlobalPreferences implements PreferenceChangeListener {
             prefs.putInt(property, value);
         }
     }
+    
+    private int getInt(String property, int deflt) {
+        synchronized (prefs) {
+            return prefs.getInt(property, deflt);
+        }
+    }
+    
+    private void setInt(String property, int value) {
+        synchronized(prefs) {
+            prefs.putInt(property, value);
+        }
+    }
 }
@@ -31,6 +31,7 @@ import com.sun.tools.visualvm.core.ui.components.Spacer;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
+import javax.swing.JCheckBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JSpinner;
@@ -72,11 +73,15 @@ public class MBeansOptionsPanel extends JPanel {
         // someTextField.setText(SomeSystemOption.getDefault().getSomeStringProperty());
         plottersSpinner.setValue(GlobalPreferences.sharedInstance().getPlottersPoll());
         propertyListField.setText(GlobalPreferences.sharedInstance().getOrderedKeyPropertyList());
+        notificationsSpinner.setValue(GlobalPreferences.sharedInstance().getNotificationsRetained());
+        spoolCheckBox.setSelected(GlobalPreferences.sharedInstance().isNotificationsSpool());
     }
 
     void store() {
         GlobalPreferences.sharedInstance().setPlottersPoll((Integer) plottersSpinner.getValue());
         GlobalPreferences.sharedInstance().setOrderedKeyPropertyList(propertyListField.getText());
+        GlobalPreferences.sharedInstance().setNotificationsRetained((Integer) notificationsSpinner.getValue());
+        GlobalPreferences.sharedInstance().setNotificationsSpool(spoolCheckBox.isSelected());
         // TODO store modified settings
         // Example:
         // Preferences.userNodeForPackage(CorePanel.class).putBoolean("someFlag", someCheckBox.isSelected());
@@ -89,7 +94,8 @@ public class MBeansOptionsPanel extends JPanel {
 
     boolean valid() {
         try {
-            return (Integer)plottersSpinner.getValue() > 0;
+            return (Integer)plottersSpinner.getValue() > 0 &&
+                   (Integer)notificationsSpinner.getValue() > 0;
         } catch (Exception e) {}
         return false;
     }
@@ -169,10 +175,46 @@ public class MBeansOptionsPanel extends JPanel {
         c.insets = new Insets(3, 5, 3, 0);
         add(propertyListField, c);
 
-        // filler
+        // notificationsLabel
+        JLabel notificationsLabel = new JLabel();
+        Mnemonics.setLocalizedText(notificationsLabel, NbBundle.getMessage(
+                MBeansOptionsPanel.class, "LBL_Notifications_Retained")); // NOI18N
         c = new GridBagConstraints();
         c.gridx = 0;
         c.gridy = 3;
+        c.anchor = GridBagConstraints.WEST;
+        c.insets = new Insets(3, 15, 3, 0);
+        add(notificationsLabel, c);
+
+        // notificationsSpinner
+        notificationsSpinner = new JSpinner();
+        notificationsLabel.setLabelFor(notificationsSpinner);
+        notificationsSpinner.setModel(new SpinnerNumberModel(1000, 1, 99999, 100));
+        c = new GridBagConstraints();
+        c.gridx = 1;
+        c.gridy = 3;
+        c.anchor = GridBagConstraints.WEST;
+        c.insets = new Insets(3, 5, 3, 4);
+        add(notificationsSpinner, c);
+
+        // spoolCheckBox
+        spoolCheckBox = new JCheckBox();
+        Mnemonics.setLocalizedText(spoolCheckBox, NbBundle.getMessage(
+                MBeansOptionsPanel.class, "LBL_Notifications_Spool")); // NOI18N
+        spoolCheckBox.setToolTipText(NbBundle.getMessage(
+                MBeansOptionsPanel.class, "MSG_NotificationsSpool")); // NOI18N
+        c = new GridBagConstraints();
+        c.gridx = 0;
+        c.gridy = 4;
+        c.anchor = GridBagConstraints.WEST;
+        c.gridwidth = GridBagConstraints.REMAINDER;
+        c.insets = new Insets(3, 15, 3, 0);
+        add(spoolCheckBox, c);
+
+        // filler
+        c = new GridBagConstraints();
+        c.gridx = 0;
+        c.gridy = 5;
         c.weightx = 1;
         c.weighty = 1;
         c.anchor = GridBagConstraints.NORTHWEST;
@@ -183,10 +225,14 @@ public class MBeansOptionsPanel extends JPanel {
 
     private void startTrackingChanges() {
         plottersSpinner.getModel().addChangeListener(changeListener);
+        notificationsSpinner.getModel().addChangeListener(changeListener);
+        spoolCheckBox.getModel().addChangeListener(changeListener);
     }
 
     
     private JSpinner plottersSpinner;
     private JTextField propertyListField;
+    private JSpinner notificationsSpinner;
+    private JCheckBox spoolCheckBox;
 
 }
@@ -36,6 +36,7 @@ import com.sun.tools.visualvm.modules.tracer.TracerPackage;
 import com.sun.tools.visualvm.modules.tracer.TracerProbe;
 import com.sun.tools.visualvm.modules.tracer.TracerProgressObject;
 import com.sun.tools.visualvm.modules.tracer.impl.options.TracerOptions;
+import com.sun.tools.visualvm.modules.tracer.impl.probes.ProbeStatistics;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.beans.PropertyChangeEvent;
@@ -43,6 +44,7 @@ import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -66,6 +68,16 @@ final class TracerController implements DataRemovedListener<DataSource>,
 
     private static final Logger LOGGER = Logger.getLogger(TracerController.class.getName());
 
+    // maximum number of probes polled concurrently
+    private static final int POLL_THREADS =
+            Integer.getInteger("visualvm.tracer.pollThreads", 8); // NOI18N
+    // part of the refresh interval (in percents) the probes have to provide their values in
+    private static final int POLL_DEADLINE =
+            Integer.getInteger("visualvm.tracer.pollDeadline", 90); // NOI18N
+    // shared by all Tracer sessions, a probe is never polled again before its previous poll finishes
+    private static final RequestProcessor POLL_PROCESSOR =
+            new RequestProcessor("Tracer Probes Processor", POLL_THREADS); // NOI18N
+
     private static final String PROPERTY_STATE = "state"; // NOI18N
     static final int STATE_SESSION_INACTIVE = 0;
     static final int STATE_SESSION_RUNNING = 1;
@@ -86,6 +98,8 @@ final class TracerController implements DataRemovedListener<DataSource>,
     private boolean running;
     private final Timer timer;
     private RequestProcessor processor;
+    private final Map<TracerProbe, ProbePoll> probePolls =
+            Collections.synchronizedMap(new HashMap<TracerProbe, ProbePoll>());
 
 
     // --- Constructor ---------------------------------------------------------
@@ -181,6 +195,7 @@ final class TracerController implements DataRemovedListener<DataSource>,
 
     private boolean doStartSession() {
         wasNegativeValue = false;
+        probePolls.clear();
         SwingUtilities.invokeLater(new Runnable() {
             public void run() { model.getTimelineSupport().resetValues(); }
         });
@@ -442,30 +457,50 @@ final class TracerController implements DataRemovedListener<DataSource>,
 
         final List<TracerProbe> probes = model.getDefinedProbes();
         final int itemsCount = model.getTimelineSupport().getItemsCount();
+        final int refreshRate = getRefreshRate();
         processor.post(new Runnable() {
-            public void run() { fetchDataImpl(probes, itemsCount); }
+            public void run() { fetchDataImpl(probes, itemsCount, refreshRate); }
         });
     }
 
-    private void fetchDataImpl(List<TracerProbe> probes, int itemsCount) {
+    private void fetchDataImpl(List<TracerProbe> probes, int itemsCount, int refreshRate) {
         if (!running) return;
 
         final long[] values = new long[itemsCount];
         int currentIndex = 0;
 
         final long timestamp = System.currentTimeMillis();
+        final long deadline = System.nanoTime() + refreshRate * POLL_DEADLINE * 10000L;
+
+        // Poll all the probes concurrently
+        int probesCount = probes.size();
+        ProbePoll[] polls = new ProbePoll[probesCount];
+        boolean[] started = new boolean[probesCount];
+        for (int i = 0; i < probesCount; i++) {
+            polls[i] = getProbePoll(probes.get(i));
+            started[i] = polls[i].start(POLL_PROCESSOR, timestamp);
+        }
 
-        for (TracerProbe probe : probes) {
+        for (int i = 0; i < probesCount; i++) {
+            TracerProbe probe = probes.get(i);
             long[] itemValues;
             try {
-                itemValues = probe.getItemValues(timestamp);
+                // Probe still busy with one of the previous ticks is skipped
+                itemValues = started[i] ? polls[i].getValues(deadline) : null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
             } catch (Throwable t) {
+                itemValues = null;
+                LOGGER.log(Level.INFO, "Probe exception in getItemValues", t); // NOI18N
+            }
+            if (itemValues == null) {
+                if (!started[i]) polls[i].getStatistics().missed();
                 itemValues = new long[probe.getItemsCount()];
                 Arrays.fill(itemValues, ProbeItemDescriptor.VALUE_UNDEFINED);
-                LOGGER.log(Level.INFO, "Probe exception in getItemValues", t); // NOI18N
             }
-            for (int i = 0; i < itemValues.length; i++) {
-                long value = itemValues[i];
+            for (int j = 0; j < itemValues.length; j++) {
+                long value = itemValues[j];
                 if (value < 0) {
                     if (!wasNegativeValue) {
                         DialogDisplayer.getDefault().notifyLater(
@@ -495,6 +530,72 @@ final class TracerController implements DataRemovedListener<DataSource>,
     }
 
 
+    private ProbePoll getProbePoll(TracerProbe probe) {
+        ProbePoll poll = probePolls.get(probe);
+        if (poll == null) {
+            poll = new ProbePoll(probe);
+            probePolls.put(probe, poll);
+            model.getTimelineSupport().setProbeStatistics(probe, poll.getStatistics());
+        }
+        return poll;
+    }
+
+
+    private static final class ProbePoll implements Runnable {
+
+        private final TracerProbe probe;
+        private final ProbeStatistics statistics = new ProbeStatistics();
+
+        private RequestProcessor.Task task;
+        private volatile long timestamp;
+        private volatile long[] values;
+        private volatile Throwable exception;
+
+
+        ProbePoll(TracerProbe probe) {
+            this.probe = probe;
+        }
+
+
+        ProbeStatistics getStatistics() {
+            return statistics;
+        }
+
+        boolean start(RequestProcessor processor, long timestamp) {
+            if (task == null) task = processor.create(this);
+            else if (!task.isFinished()) return false;
+
+            this.timestamp = timestamp;
+            values = null;
+            exception = null;
+            task.schedule(0);
+            return true;
+        }
+
+        long[] getValues(long deadline) throws Throwable {
+            long remaining = (deadline - System.nanoTime()) / 1000000;
+            if (remaining > 0) task.waitFinished(remaining);
+            if (!task.isFinished()) {
+                statistics.missed();
+                return null;
+            }
+            if (exception != null) throw exception;
+            return values;
+        }
+
+        public void run() {
+            long start = System.nanoTime();
+            try {
+                values = probe.getItemValues(timestamp);
+            } catch (Throwable t) {
+                exception = t;
+            }
+            statistics.polled(System.nanoTime() - start);
+        }
+
+    }
+
+
     // --- DataSource & DataSourceView lifecycle -------------------------------
 
     void viewRemoved() {
@@ -32,7 +32,9 @@ import com.sun.tools.visualvm.modules.tracer.ProbeStateHandler;
 import com.sun.tools.visualvm.modules.tracer.TracerPackage;
 import com.sun.tools.visualvm.modules.tracer.TracerProbe;
 import com.sun.tools.visualvm.modules.tracer.TracerProbeDescriptor;
+import com.sun.tools.visualvm.modules.tracer.impl.options.TracerOptions;
 import com.sun.tools.visualvm.modules.tracer.impl.timeline.TimelineSupport;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -56,6 +58,8 @@ final class TracerModel {
 
     private static final Logger LOGGER = Logger.getLogger(TracerController.class.getName());
 
+    private static final String ARCHIVE_DIRECTORY = "tracer"; // NOI18N
+
     private final DataSource dataSource;
 
     private final Map<TracerPackage, List<TracerProbe>> probesCache = new HashMap();
@@ -70,6 +74,8 @@ final class TracerModel {
 
     TracerModel(DataSource dataSource) {
         this.dataSource = dataSource;
+        final File archiveDirectory = TracerOptions.getInstance().isTimelineArchive() ?
+                new File(dataSource.getStorage().getDirectory(), ARCHIVE_DIRECTORY) : null;
         final TimelineSupport[] timelineSupportArr = new TimelineSupport[1];
         try {
             SwingUtilities.invokeAndWait(new Runnable() {
@@ -78,7 +84,7 @@ final class TracerModel {
                     public TracerProbeDescriptor getDescriptor(TracerProbe p) {
                         return TracerModel.this.getDescriptor(p);
                     }
-                });
+                }, archiveDirectory);
                 }
             });
         } catch (Exception e) {
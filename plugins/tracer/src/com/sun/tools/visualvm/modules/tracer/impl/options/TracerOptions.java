@@ -94,6 +94,17 @@ public final class TracerOptions {
     private static final int SELECTION_TOOLBAR_DEFAULT = SHOW_AS_NEEDED;
     private static final int EXTRA_TOOLBAR_DEFAULT = SHOW_AS_NEEDED;
 
+    private static final String PROP_TIMELINE_MEMORY_CAP = "TracerOptions.timelineMemoryCap"; // NOI18N
+    private static final String PROP_TIMELINE_RECENT_VALUES = "TracerOptions.timelineRecentValues"; // NOI18N
+    public static final int TIMELINE_UNBOUNDED = 0;
+    private static final int TIMELINE_MEMORY_CAP_DEFAULT =
+            Integer.getInteger("visualvm.tracer.timelineMemoryCap", 64); // NOI18N
+    private static final String PROP_TIMELINE_ARCHIVE = "TracerOptions.timelineArchive"; // NOI18N
+    private static final boolean TIMELINE_ARCHIVE_DEFAULT =
+            Boolean.getBoolean("visualvm.tracer.timelineArchive"); // NOI18N
+    private static final int TIMELINE_RECENT_VALUES_DEFAULT =
+            Integer.getInteger("visualvm.tracer.timelineRecentValues", 3600); // NOI18N
+
 
 
     private static TracerOptions INSTANCE;
@@ -280,6 +291,41 @@ public final class TracerOptions {
         return prefs.getBoolean(PROP_CLEAR_SELECTION, true);
     }
 
+    void setTimelineMemoryCap(int megabytes) {
+        prefs.putInt(PROP_TIMELINE_MEMORY_CAP, megabytes);
+    }
+
+    /**
+     * Returns the maximum size of the timeline data in megabytes or
+     * TIMELINE_UNBOUNDED if the data are never rolled up.
+     */
+    public int getTimelineMemoryCap() {
+        return prefs.getInt(PROP_TIMELINE_MEMORY_CAP, TIMELINE_MEMORY_CAP_DEFAULT);
+    }
+
+    void setTimelineRecentValues(int recentValues) {
+        prefs.putInt(PROP_TIMELINE_RECENT_VALUES, recentValues);
+    }
+
+    /**
+     * Returns the number of most recent values kept in full resolution.
+     */
+    public int getTimelineRecentValues() {
+        return prefs.getInt(PROP_TIMELINE_RECENT_VALUES, TIMELINE_RECENT_VALUES_DEFAULT);
+    }
+
+    void setTimelineArchive(boolean archive) {
+        prefs.putBoolean(PROP_TIMELINE_ARCHIVE, archive);
+    }
+
+    /**
+     * Returns true if all the timeline values should be archived in full
+     * resolution to memory-mapped files in the storage directory.
+     */
+    public boolean isTimelineArchive() {
+        return prefs.getBoolean(PROP_TIMELINE_ARCHIVE, TIMELINE_ARCHIVE_DEFAULT);
+    }
+
 
     private TracerOptions() {
         prefs = NbPreferences.forModule(TracerOptions.class);
@@ -39,10 +39,13 @@ import java.awt.GridBagLayout;
 import java.awt.GridLayout;
 import java.awt.Insets;
 import java.awt.event.ActionEvent;
+import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.List;
 import javax.swing.AbstractButton;
 import javax.swing.BorderFactory;
+import javax.swing.DefaultComboBoxModel;
+import javax.swing.DefaultListCellRenderer;
 import javax.swing.DefaultListModel;
 import javax.swing.DefaultListSelectionModel;
 import javax.swing.JCheckBox;
@@ -371,6 +374,34 @@ final class TracerOptionsPanel extends JPanel {
         return mouseWheelCombo.getSelectedItem().toString();
     }
     
+    void setTimelineMemoryCap(int megabytes) {
+        internalChange = true;
+        selectItem(memoryCapCombo, megabytes);
+        internalChange = false;
+    }
+
+    int getTimelineMemoryCap() {
+        return (Integer)memoryCapCombo.getSelectedItem();
+    }
+
+    void setTimelineRecentValues(int recentValues) {
+        internalChange = true;
+        selectItem(recentValuesCombo, recentValues);
+        internalChange = false;
+    }
+
+    int getTimelineRecentValues() {
+        return (Integer)recentValuesCombo.getSelectedItem();
+    }
+
+    void setTimelineArchive(boolean archive) {
+        archiveCheckBox.setSelected(archive);
+    }
+
+    boolean isTimelineArchive() {
+        return archiveCheckBox.isSelected();
+    }
+
     void setClearSelection(boolean clear) {
         clearSelectionsCheckBox.setSelected(clear);
     }
@@ -380,6 +411,13 @@ final class TracerOptionsPanel extends JPanel {
     }
 
 
+    private static void selectItem(JComboBox combo, Integer item) {
+        // value customized using a system property, not offered by default
+        if (((DefaultComboBoxModel)combo.getModel()).getIndexOf(item) == -1)
+            combo.addItem(item);
+        combo.setSelectedItem(item);
+    }
+
     private String append(String result, String item, boolean append) {
         if (!append) return result;
         if (result.length() == 0) return result += item;
@@ -397,6 +435,9 @@ final class TracerOptionsPanel extends JPanel {
             refreshCheckBox.setEnabled(true);
         }
 
+        // --- timelineData ----------------------------------------------------
+        recentValuesCombo.setEnabled(getTimelineMemoryCap() != TracerOptions.TIMELINE_UNBOUNDED);
+
         // --- rowsDecoration --------------------------------------------------
         if (Utils.forceSpeed()) {
             rowsDecorationCombo.setSelectedItem(Boolean.FALSE);
@@ -1372,6 +1413,101 @@ final class TracerOptionsPanel extends JPanel {
         add(clearSelectionsCheckBox, c);
 
 
+        // timelineDataSeparator
+        SectionSeparator timelineDataSeparator =
+                UISupport.createSectionSeparator("Timeline Data"); // NOI18N
+        c = new GridBagConstraints();
+        c.gridy = 18;
+        c.gridwidth = GridBagConstraints.REMAINDER;
+        c.anchor = GridBagConstraints.WEST;
+        c.fill = GridBagConstraints.HORIZONTAL;
+        c.insets = new Insets(15, 0, 5, 0);
+        add(timelineDataSeparator, c);
+
+        // memoryCapLabel
+        JLabel memoryCapLabel = new JLabel("Memory limit per session:");
+        c = new GridBagConstraints();
+        c.gridx = 0;
+        c.gridy = 19;
+        c.gridwidth = 1;
+        c.fill = GridBagConstraints.NONE;
+        c.anchor = GridBagConstraints.WEST;
+        c.insets = new Insets(3, 15, 3, 5);
+        add(memoryCapLabel, c);
+
+        // memoryCapCombo
+        memoryCapCombo = new JComboBox(new Integer[] { TracerOptions.TIMELINE_UNBOUNDED,
+                                                       16, 32, 64, 128, 256, 512 }) {
+            public Dimension getMinimumSize() {
+                return getPreferredSize();
+            }
+            protected void selectedItemChanged() {
+                TracerOptionsPanel.this.update();
+                super.selectedItemChanged();
+            }
+        };
+        memoryCapLabel.setLabelFor(memoryCapCombo);
+        memoryCapCombo.setRenderer(new DefaultListCellRenderer() {
+            public Component getListCellRendererComponent(JList list, Object value,
+                    int index, boolean isSelected, boolean cellHasFocus) {
+                Object text = Integer.valueOf(TracerOptions.TIMELINE_UNBOUNDED).equals(value) ?
+                              "unlimited" : NumberFormat.getInstance().format(value) + " MB";
+                return super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+            }
+        });
+        c = new GridBagConstraints();
+        c.gridx = 1;
+        c.gridy = 19;
+        c.gridwidth = 1;
+        c.fill = GridBagConstraints.HORIZONTAL;
+        c.anchor = GridBagConstraints.WEST;
+        c.insets = new Insets(3, 5, 3, 0);
+        add(memoryCapCombo, c);
+
+        // recentValuesLabel
+        JLabel recentValuesLabel = new JLabel("Values in full resolution:");
+        c = new GridBagConstraints();
+        c.gridx = 0;
+        c.gridy = 20;
+        c.gridwidth = 1;
+        c.fill = GridBagConstraints.NONE;
+        c.anchor = GridBagConstraints.WEST;
+        c.insets = new Insets(3, 15, 3, 5);
+        add(recentValuesLabel, c);
+
+        // recentValuesCombo
+        recentValuesCombo = new JComboBox(new Integer[] { 600, 1800, 3600, 7200, 18000 }) {
+            public Dimension getMinimumSize() {
+                return getPreferredSize();
+            }
+        };
+        recentValuesLabel.setLabelFor(recentValuesCombo);
+        recentValuesCombo.setRenderer(new CustomComboRenderer.Number(recentValuesCombo, "most recent", true));
+        c = new GridBagConstraints();
+        c.gridx = 1;
+        c.gridy = 20;
+        c.gridwidth = 1;
+        c.fill = GridBagConstraints.HORIZONTAL;
+        c.anchor = GridBagConstraints.WEST;
+        c.insets = new Insets(3, 5, 3, 0);
+        add(recentValuesCombo, c);
+
+        // archiveCheckBox
+        archiveCheckBox = new JCheckBox("Archive all values in full resolution to disk") {
+            public Dimension getMinimumSize() {
+                return getPreferredSize();
+            }
+        };
+        c = new GridBagConstraints();
+        c.gridx = 0;
+        c.gridy = 21;
+        c.anchor = GridBagConstraints.WEST;
+        c.fill = GridBagConstraints.NONE;
+        c.gridwidth = GridBagConstraints.REMAINDER;
+        c.insets = new Insets(8, 15, 0, 0);
+        add(archiveCheckBox, c);
+
+
         // bottomFiller
         c = new GridBagConstraints();
         c.gridx = 0;
@@ -1425,6 +1561,9 @@ final class TracerOptionsPanel extends JPanel {
     private JCheckBox onRowSelectedDetailsCheckBox2;
     private JCheckBox onRowSelectedNothingCheckBox2;
     private JCheckBox clearSelectionsCheckBox;
+    private JComboBox memoryCapCombo;
+    private JComboBox recentValuesCombo;
+    private JCheckBox archiveCheckBox;
 
     private JComboBox zoomModeCombo;
     private JComboBox mouseWheelCombo;
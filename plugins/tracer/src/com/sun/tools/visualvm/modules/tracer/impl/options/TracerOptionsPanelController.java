@@ -75,6 +75,10 @@ final class TracerOptionsPanelController extends OptionsPanelController {
 
         p.setClearSelection(options.isClearSelection());
 
+        p.setTimelineMemoryCap(options.getTimelineMemoryCap());
+        p.setTimelineRecentValues(options.getTimelineRecentValues());
+        p.setTimelineArchive(options.isTimelineArchive());
+
         p.update();
     }
 
@@ -106,6 +110,10 @@ final class TracerOptionsPanelController extends OptionsPanelController {
         options.setExtraToolbar(p.getExtraToolbar());
 
         options.setClearSelection(p.isClearSelection());
+
+        options.setTimelineMemoryCap(p.getTimelineMemoryCap());
+        options.setTimelineRecentValues(p.getTimelineRecentValues());
+        options.setTimelineArchive(p.isTimelineArchive());
     }
 
     public void cancel() {}
@@ -143,6 +151,10 @@ final class TracerOptionsPanelController extends OptionsPanelController {
 
         if (options.isClearSelection() != p.isClearSelection()) return true;
 
+        if (options.getTimelineMemoryCap() != p.getTimelineMemoryCap()) return true;
+        if (options.getTimelineRecentValues() != p.getTimelineRecentValues()) return true;
+        if (options.isTimelineArchive() != p.isTimelineArchive()) return true;
+
         return false;
     }
 
@@ -0,0 +1,118 @@
+/*
+ *  Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * 
+ *  This code is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License version 2 only, as
+ *  published by the Free Software Foundation.  Oracle designates this
+ *  particular file as subject to the "Classpath" exception as provided
+ *  by Oracle in the LICENSE file that accompanied this code.
+ * 
+ *  This code is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ *  version 2 for more details (a copy is included in the LICENSE file that
+ *  accompanied this code).
+ * 
+ *  You should have received a copy of the GNU General Public License version
+ *  2 along with this work; if not, write to the Free Software Foundation,
+ *  Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ *  Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ *  or visit www.oracle.com if you need additional information or have any
+ *  questions.
+ */
+
+package com.sun.tools.visualvm.modules.tracer.impl.probes;
+
+import org.openide.util.NbBundle;
+
+/**
+ * Polling statistics of a single probe during a Tracer session.
+ *
+ * @author Jiri Sedlacek
+ */
+public final class ProbeStatistics {
+
+    private long polls;
+    private long missed;
+    private long totalLatency;
+    private long lastLatency;
+    private long maxLatency;
+
+
+    /**
+     * Records a finished getItemValues() call.
+     *
+     * @param latency call latency in nanoseconds
+     */
+    public synchronized void polled(long latency) {
+        polls++;
+        totalLatency += latency;
+        lastLatency = latency;
+        maxLatency = Math.max(maxLatency, latency);
+    }
+
+    /**
+     * Records a tick for which the probe didn't provide the values in time.
+     */
+    public synchronized void missed() {
+        missed++;
+    }
+
+    public synchronized void reset() {
+        polls = 0;
+        missed = 0;
+        totalLatency = 0;
+        lastLatency = 0;
+        maxLatency = 0;
+    }
+
+
+    public synchronized long getPollsCount() {
+        return polls;
+    }
+
+    public synchronized long getMissedCount() {
+        return missed;
+    }
+
+    /**
+     * Returns average latency in nanoseconds.
+     */
+    public synchronized long getAverageLatency() {
+        return polls == 0 ? 0 : totalLatency / polls;
+    }
+
+    /**
+     * Returns latency of the last finished poll in nanoseconds.
+     */
+    public synchronized long getLastLatency() {
+        return lastLatency;
+    }
+
+    /**
+     * Returns maximum latency in nanoseconds.
+     */
+    public synchronized long getMaxLatency() {
+        return maxLatency;
+    }
+
+
+    /**
+     * Returns the statistics formatted for a tooltip.
+     */
+    public synchronized String toHtml() {
+        return NbBundle.getMessage(ProbeStatistics.class, "TOOLTIP_ProbeStatistics", // NOI18N
+                                   formatLatency(getAverageLatency()),
+                                   formatLatency(lastLatency),
+                                   formatLatency(maxLatency),
+                                   missed);
+    }
+
+    private static String formatLatency(long latency) {
+        return NbBundle.getMessage(ProbeStatistics.class, "FORMAT_Latency", // NOI18N
+                                   (latency / 100000) / 10d);
+    }
+
+}
@@ -41,7 +41,7 @@ final class PointsComputer {
     private int[] arr1;
     private int[] arr2;
     private final int[] count = new int[1];
-    private final int[][] ret = new int[2][];
+    private final int[][] ret = new int[3][];
 
 
     PointsComputer() {}
@@ -126,6 +126,74 @@ final class PointsComputer {
         return ret;
     }
 
+    /**
+     * Computes envelope of the values visible in the dirty area, minimum and
+     * maximum for each pixel column. Returns null if there are not enough
+     * values per pixel, getVisible and createPoints should be used instead.
+     * The first array contains x coordinates, the second array y coordinates
+     * and count[0] the number of points including extraTrailing points.
+     */
+    int[][] getMinMaxPoints(Rectangle dirtyArea, TimelineXYItem item,
+                            double dataFactor, SynchronousXYChartContext context,
+                            int extraTrailing) {
+
+        if (context.getViewWidth() == 0) return null;
+
+        int valuesCount = item.getValuesCount();
+        int[][] visibleBounds = context.getVisibleBounds(dirtyArea);
+
+        int firstIndex = visibleBounds[0][0];
+        if (firstIndex == -1) firstIndex = visibleBounds[0][1];
+        if (firstIndex == -1) return null;
+        // firstIndex - 2: workaround for polyline joins
+        firstIndex = Math.max(firstIndex - 2, 0);
+
+        int lastIndex = visibleBounds[1][0];
+        if (lastIndex == -1) lastIndex = visibleBounds[1][1];
+        if (lastIndex == -1) lastIndex = valuesCount - 1;
+        // lastIndex + 2: workaround for polyline joins
+        lastIndex = Math.min(lastIndex + 2, valuesCount - 1);
+
+        if (lastIndex - firstIndex < dirtyArea.width * 2) return null;
+
+        int columns = getViewX(context, item, lastIndex) -
+                      getViewX(context, item, firstIndex) + 1;
+        int maxPoints = columns * 3 + extraTrailing;
+        int[] xPoints = arr1(maxPoints);
+        int[] yPoints = arr2(maxPoints);
+        long[] minMax = new long[2];
+
+        int nPoints = 0;
+        int index = firstIndex;
+        while (index <= lastIndex) {
+            int x = getViewX(context, item, index);
+            int columnEnd = getLastIndex(context, item, index, lastIndex, x);
+
+            minMax[0] = Long.MAX_VALUE;
+            minMax[1] = Long.MIN_VALUE;
+            item.getMinMaxValues(index, columnEnd, minMax);
+
+            int y1 = Utils.checkedInt(Math.ceil(context.getViewY(minMax[0] * dataFactor)));
+            xPoints[nPoints] = x;
+            yPoints[nPoints++] = y1;
+
+            if (minMax[0] != minMax[1]) {
+                int y2 = Utils.checkedInt(Math.ceil(context.getViewY(minMax[1] * dataFactor)));
+                xPoints[nPoints] = x;
+                yPoints[nPoints++] = y2;
+                xPoints[nPoints] = x;
+                yPoints[nPoints++] = y1;
+            }
+
+            index = columnEnd + 1;
+        }
+
+        count[0] = nPoints + extraTrailing;
+        ret[1] = yPoints;
+        ret[2] = count;
+        return ret;
+    }
+
     int getZeroY(SynchronousXYChartContext context) {
         int zeroY = Utils.checkedInt(context.getViewY(context.getDataOffsetY()));
         zeroY = Math.max(Utils.checkedInt(context.getViewportOffsetY()), zeroY);
@@ -155,4 +223,22 @@ final class PointsComputer {
         return ret;
     }
 
+
+    private static int getViewX(SynchronousXYChartContext context, XYItem item, int index) {
+        return Utils.checkedInt(Math.ceil(context.getViewX(item.getXValue(index))));
+    }
+
+    // Returns the last index in [fromIndex, toIndex] displayed at or before viewX
+    private static int getLastIndex(SynchronousXYChartContext context, XYItem item,
+                                    int fromIndex, int toIndex, int viewX) {
+        int low = fromIndex;
+        int high = toIndex;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (getViewX(context, item, mid) <= viewX) low = mid + 1;
+            else high = mid - 1;
+        }
+        return high;
+    }
+
 }
@@ -27,6 +27,7 @@ package com.sun.tools.visualvm.modules.tracer.impl.timeline;
 
 import com.sun.tools.visualvm.modules.tracer.TracerProbe;
 import com.sun.tools.visualvm.modules.tracer.impl.probes.ProbePresenter;
+import com.sun.tools.visualvm.modules.tracer.impl.probes.ProbeStatistics;
 import com.sun.tools.visualvm.modules.tracer.impl.swing.HeaderButton;
 import com.sun.tools.visualvm.modules.tracer.impl.swing.HeaderLabel;
 import com.sun.tools.visualvm.modules.tracer.impl.swing.ScrollBar;
@@ -87,6 +88,17 @@ final class ProbesPanel extends JPanel {
                     ((ProbePresenter)getComponent(i)).setSelected(
                             chart.isRowSelected(chart.getRow(i)));
             }
+            String getToolTipText(Point p) {
+                String tooltip = super.getToolTipText(p);
+                Component c = getComponentAt(p);
+                int index = c == null ? -1 : getComponentZOrder(c);
+                if (index == -1 || index >= chart.getRowsCount()) return tooltip;
+                ProbeStatistics statistics = support.getProbeStatistics(
+                        support.getProbe(chart.getRow(index)));
+                if (statistics == null || statistics.getPollsCount() == 0) return tooltip;
+                return "<html>" + (tooltip == null ? "" : tooltip + "<br><br>") + // NOI18N
+                       statistics.toHtml() + "</html>"; // NOI18N
+            }
         };
 
         viewport = new JViewport() {
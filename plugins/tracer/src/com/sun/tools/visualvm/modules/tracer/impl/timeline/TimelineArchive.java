@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * 
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ * 
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ * 
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.tools.visualvm.modules.tracer.impl.timeline;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Full resolution copy of the timeline values stored in memory-mapped segment
+ * files. Values are appended from the EDT, already appended values can be read
+ * from any thread.
+ *
+ * Each segment holds up to SEGMENT_VALUES rows of a timestamp followed by the
+ * values of all items, all stored as longs. For wide rows the segment holds
+ * fewer rows so that it still fits into one mapped buffer.
+ *
+ * @author Jiri Sedlacek
+ */
+final class TimelineArchive {
+
+    private static final Logger LOGGER = Logger.getLogger(TimelineArchive.class.getName());
+
+    private static final int SEGMENT_VALUES = 65536;
+    private static final String SEGMENT_PREFIX = "timeline-"; // NOI18N
+    private static final String SEGMENT_EXT = ".dat"; // NOI18N
+
+    private final File directory;
+
+    private final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+    private final List<File> segmentFiles = new ArrayList<File>();
+    private int itemsCount;
+    private int rowSize;
+    private int segmentRows;
+    private volatile int valuesCount;
+    private boolean failed;
+
+
+    TimelineArchive(File directory) {
+        this.directory = directory;
+    }
+
+
+    synchronized void reset(int itemsCount) {
+        this.itemsCount = itemsCount;
+        rowSize = (itemsCount + 1) * 8;
+        segmentRows = (int)Math.min(SEGMENT_VALUES, Integer.MAX_VALUE / rowSize);
+        valuesCount = 0;
+        failed = false;
+
+        segments.clear();
+        for (File file : segmentFiles)
+            if (!file.delete()) file.deleteOnExit();
+        segmentFiles.clear();
+    }
+
+    /**
+     * Appends the values, returns false if the archive is not available.
+     */
+    boolean addValues(long timestamp, long[] values) {
+        MappedByteBuffer segment;
+        int row = valuesCount % segmentRows;
+        synchronized (this) {
+            if (failed) return false;
+            if (row == 0 && !createSegment()) return false;
+            segment = segments.get(segments.size() - 1);
+        }
+
+        int offset = rowOffset(row);
+        segment.putLong(offset, timestamp);
+        for (int i = 0; i < itemsCount; i++)
+            segment.putLong(offset + (i + 1) * 8, values[i]);
+
+        valuesCount++;
+        return true;
+    }
+
+    int getTimestampsCount() {
+        return valuesCount;
+    }
+
+    long getTimestamp(int index) {
+        return getSegment(index).getLong(rowOffset(index % segmentRows));
+    }
+
+    long getValue(int itemIndex, int valueIndex) {
+        return getSegment(valueIndex).getLong(rowOffset(valueIndex % segmentRows) +
+                                              (itemIndex + 1) * 8);
+    }
+
+
+    // segmentRows * rowSize never exceeds Integer.MAX_VALUE
+    private int rowOffset(int row) {
+        return (int)((long)row * rowSize);
+    }
+
+
+    private synchronized MappedByteBuffer getSegment(int index) {
+        return segments.get(index / segmentRows);
+    }
+
+    private boolean createSegment() {
+        File file = new File(directory, SEGMENT_PREFIX + segments.size() + SEGMENT_EXT);
+        RandomAccessFile raf = null;
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs())
+                throw new IOException("Cannot create directory " + directory); // NOI18N
+            raf = new RandomAccessFile(file, "rw"); // NOI18N
+            long size = (long)segmentRows * rowSize;
+            raf.setLength(size);
+            // The mapping stays valid after the channel is closed
+            segments.add(raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size));
+            segmentFiles.add(file);
+            return true;
+        } catch (IOException e) {
+            LOGGER.log(Level.INFO, "Failed to create timeline archive segment " + file, e); // NOI18N
+            failed = true;
+            return false;
+        } finally {
+            if (raf != null) try { raf.close(); } catch (IOException e) {}
+        }
+    }
+
+}
@@ -26,7 +26,10 @@
 package com.sun.tools.visualvm.modules.tracer.impl.timeline;
 
 import com.sun.tools.visualvm.modules.tracer.ProbeItemDescriptor;
+import com.sun.tools.visualvm.modules.tracer.impl.options.TracerOptions;
 import com.sun.tools.visualvm.modules.tracer.impl.timeline.items.ValueItemDescriptor;
+import com.sun.tools.visualvm.uisupport.MinMaxIndex;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import org.netbeans.lib.profiler.charts.Timeline;
@@ -35,27 +38,59 @@ import org.netbeans.lib.profiler.charts.xy.synchronous.SynchronousXYItem;
 /**
  * All methods must be invoked from the EDT.
  *
+ * When the memory cap defined by TracerOptions is set, the model keeps the
+ * most recent values in full resolution and rolls the older values up into
+ * coarser buckets. A rolled up value holds the average of its bucket and the
+ * bucket minimum and maximum are available via getMinValue/getMaxValue. The
+ * buckets are always stored before the full resolution values, the older
+ * the bucket the more values it covers.
+ *
+ * Each item has a MinMaxIndex of its values for painting the values envelope
+ * when there are more values than pixels.
+ *
+ * When created with an archive directory, all the values are also stored in
+ * full resolution in a TimelineArchive which can be used for exporting the
+ * data without keeping them on the heap.
+ *
  * @author Jiri Sedlacek
  */
 final class TimelineModel implements Timeline {
 
     private static final int STORAGE_BUFFER_STEP = 50;
 
+    // number of full resolution values rolled up into one bucket
+    private static final int ROLLUP_FACTOR = 4;
+    // bounded storage never holds less values than this
+    private static final int MIN_BOUNDED_VALUES = 1000;
+
     private int bufferStep;
 
     private int valuesCount;
     private long[] timestamps;
     private long[][] values;
+    private MinMaxIndex[] indexes;
+
+    // bounded mode only
+    private int maxValuesCount;
+    private int recentValuesCount;
+    private int rolledCount;
+    private int[] weights;
+    private long[][] minValues;
+    private long[][] maxValues;
+
+    private final TimelineArchive archive;
+    private boolean archiveComplete;
 
     private final List<TimelineXYItem> items = new ArrayList();
 
 
-    TimelineModel() {
-        this(STORAGE_BUFFER_STEP);
+    TimelineModel(File archiveDirectory) {
+        this(STORAGE_BUFFER_STEP, archiveDirectory);
     }
     
-    private TimelineModel(int bufferStep) {
+    private TimelineModel(int bufferStep, File archiveDirectory) {
         this.bufferStep = bufferStep;
+        archive = archiveDirectory == null ? null : new TimelineArchive(archiveDirectory);
         reset();
     }
 
@@ -78,6 +113,9 @@ final class TimelineModel implements Timeline {
                     public long getYValue(int valueIndex) {
                         return values[getIndex()][valueIndex];
                     }
+                    void getMinMaxValues(int fromIndex, int toIndex, long[] minMax) {
+                        indexes[getIndex()].getMinMax(fromIndex, toIndex, minMax);
+                    }
                 };
             } else {
                 // Reserved for non-value items
@@ -101,7 +139,19 @@ final class TimelineModel implements Timeline {
     }
 
 
-    void addValues(long timestamp, long[] newValues) {
+    /**
+     * Adds new values to the model.
+     *
+     * @return true if older values have been rolled up to make room for the
+     * new values, all value indexes may have changed in that case
+     */
+    boolean addValues(long timestamp, long[] newValues) {
+        boolean compacted = false;
+        if (maxValuesCount > 0 && valuesCount == maxValuesCount) {
+            compact();
+            compacted = true;
+        }
+
         updateStorage();
 
         // Check last timestamp whether greater than the new one
@@ -112,23 +162,42 @@ final class TimelineModel implements Timeline {
         timestamps[valuesCount] = timestamp;
         for (int i = 0; i < values.length; i++)
             values[i][valuesCount] = newValues[i];
+        if (archiveComplete) archiveComplete = archive.addValues(timestamp, newValues);
+        if (weights != null) weights[valuesCount] = 1;
 
         valuesCount++;
+
+        for (int i = 0; i < indexes.length; i++)
+            indexes[i].update(valuesCount - 1, valuesCount);
+
+        return compacted;
     }
     
 
     void reset() {
         valuesCount = 0;
+        rolledCount = 0;
 
         timestamps = null;
+        weights = null;
+        indexes = null;
         if (values != null) {
             if (values.length == 0) {
                 values = null;
+                minValues = null;
+                maxValues = null;
             } else {
                 for (int i = 0; i < values.length; i++)
                     values[i] = new long[0];
             }
         }
+
+        updateLimits();
+
+        if (archive != null) {
+            archive.reset(values == null ? 0 : values.length);
+            archiveComplete = true;
+        }
     }
 
 
@@ -153,15 +222,165 @@ final class TimelineModel implements Timeline {
     }
 
 
+    /**
+     * Returns the full resolution archive of all values or null if not
+     * available.
+     */
+    TimelineArchive getArchive() {
+        return archiveComplete ? archive : null;
+    }
+
+    /**
+     * Returns number of the oldest values which are rolled up buckets.
+     */
+    int getRolledUpCount() {
+        return rolledCount;
+    }
+
+    long getMinValue(int itemIndex, int valueIndex) {
+        return valueIndex < rolledCount ? minValues[itemIndex][valueIndex] :
+                                          values[itemIndex][valueIndex];
+    }
+
+    long getMaxValue(int itemIndex, int valueIndex) {
+        return valueIndex < rolledCount ? maxValues[itemIndex][valueIndex] :
+                                          values[itemIndex][valueIndex];
+    }
+
+
+    private void updateLimits() {
+        int itemsCount = values == null ? 0 : values.length;
+        long memoryCap = TracerOptions.getInstance().getTimelineMemoryCap() * 1024L * 1024L;
+
+        if (memoryCap <= 0 || itemsCount == 0) {
+            maxValuesCount = 0;
+            recentValuesCount = 0;
+            minValues = null;
+            maxValues = null;
+        } else {
+            // timestamp, weight and value, minimum and maximum for each item
+            long valueSize = 8 + 4 + 3 * 8 * itemsCount;
+            maxValuesCount = (int)Math.min(Integer.MAX_VALUE - 8, memoryCap / valueSize);
+            maxValuesCount = Math.max(maxValuesCount, MIN_BOUNDED_VALUES);
+            recentValuesCount = TracerOptions.getInstance().getTimelineRecentValues();
+            recentValuesCount = Math.max(0, Math.min(recentValuesCount, maxValuesCount / 2));
+            if (minValues == null || minValues.length != itemsCount) {
+                minValues = new long[itemsCount][];
+                maxValues = new long[itemsCount][];
+            }
+            for (int i = 0; i < itemsCount; i++) {
+                minValues[i] = new long[0];
+                maxValues[i] = new long[0];
+            }
+        }
+    }
+
     private void updateStorage() {
         if (timestamps == null) {
-            timestamps = new long[bufferStep];
-            for (int i = 0; i < values.length; i++)
-                values[i] = new long[bufferStep];
+            int length = maxValuesCount > 0 ? Math.min(bufferStep, maxValuesCount) : bufferStep;
+            timestamps = new long[length];
+            indexes = new MinMaxIndex[values.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = new long[length];
+                indexes[i] = createIndex(i);
+                indexes[i].ensureCapacity(length, 0);
+            }
+            if (maxValuesCount > 0) weights = new int[length];
         } else if (valuesCount == timestamps.length) {
-            timestamps = extendArray(timestamps, bufferStep);
-            for (int i = 0; i < values.length; i++)
-                values[i] = extendArray(values[i], bufferStep);
+            int extraLength = Math.max(bufferStep, timestamps.length / 2);
+            if (maxValuesCount > 0)
+                extraLength = Math.min(extraLength, maxValuesCount - timestamps.length);
+            timestamps = extendArray(timestamps, extraLength);
+            for (int i = 0; i < values.length; i++) {
+                values[i] = extendArray(values[i], extraLength);
+                indexes[i].ensureCapacity(timestamps.length, valuesCount);
+            }
+            if (weights != null) {
+                int[] newWeights = new int[weights.length + extraLength];
+                System.arraycopy(weights, 0, newWeights, 0, weights.length);
+                weights = newWeights;
+            }
+        }
+    }
+
+    private MinMaxIndex createIndex(final int itemIndex) {
+        return new MinMaxIndex() {
+            protected long getMin(int index) { return getMinValue(itemIndex, index); }
+            protected long getMax(int index) { return getMaxValue(itemIndex, index); }
+        };
+    }
+
+    private void compact() {
+        int rawCount = valuesCount - rolledCount;
+        int toRoll = Math.max(0, rawCount - recentValuesCount);
+        toRoll -= toRoll % ROLLUP_FACTOR;
+
+        // Coarsen the existing buckets if rolling up the old values doesn't free enough space
+        int freed = toRoll - toRoll / ROLLUP_FACTOR;
+        boolean mergeBuckets = freed < maxValuesCount / 4 && rolledCount > 1;
+
+        ensureRollupStorage(rolledCount + toRoll / ROLLUP_FACTOR);
+
+        int newRolledCount = 0;
+        if (mergeBuckets) {
+            for (int i = 0; i < rolledCount; i += 2)
+                rollup(i, Math.min(i + 2, rolledCount), newRolledCount++);
+        } else {
+            newRolledCount = rolledCount;
+        }
+
+        int rollEnd = rolledCount + toRoll;
+        for (int i = rolledCount; i < rollEnd; i += ROLLUP_FACTOR)
+            rollup(i, i + ROLLUP_FACTOR, newRolledCount++);
+
+        int remaining = valuesCount - rollEnd;
+        System.arraycopy(timestamps, rollEnd, timestamps, newRolledCount, remaining);
+        System.arraycopy(weights, rollEnd, weights, newRolledCount, remaining);
+        for (int i = 0; i < values.length; i++)
+            System.arraycopy(values[i], rollEnd, values[i], newRolledCount, remaining);
+
+        rolledCount = newRolledCount;
+        valuesCount = newRolledCount + remaining;
+
+        for (int i = 0; i < indexes.length; i++)
+            indexes[i].rebuild(valuesCount);
+
+        for (TimelineXYItem item : items) item.valuesCompacted();
+    }
+
+    // Rolls up values [from, to) into a bucket at index target, target <= from
+    private void rollup(int from, int to, int target) {
+        int weight = 0;
+        for (int i = from; i < to; i++) weight += weights[i];
+
+        for (int item = 0; item < values.length; item++) {
+            long[] itemValues = values[item];
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            double sum = 0;
+            for (int i = from; i < to; i++) {
+                long value = itemValues[i];
+                boolean bucket = i < rolledCount;
+                min = Math.min(min, bucket ? minValues[item][i] : value);
+                max = Math.max(max, bucket ? maxValues[item][i] : value);
+                sum += (double)value * weights[i];
+            }
+            itemValues[target] = Math.round(sum / weight);
+            minValues[item][target] = min;
+            maxValues[item][target] = max;
+        }
+
+        timestamps[target] = timestamps[from];
+        weights[target] = weight;
+    }
+
+    private void ensureRollupStorage(int rollupCount) {
+        for (int i = 0; i < values.length; i++) {
+            if (minValues[i].length < rollupCount) {
+                int extraLength = Math.max(rollupCount - minValues[i].length, bufferStep);
+                minValues[i] = extendArray(minValues[i], extraLength);
+                maxValues[i] = extendArray(maxValues[i], extraLength);
+            }
         }
     }
 
@@ -30,19 +30,24 @@ import com.sun.tools.visualvm.modules.tracer.ProbeItemDescriptor;
 import com.sun.tools.visualvm.modules.tracer.TracerProbe;
 import com.sun.tools.visualvm.modules.tracer.TracerProbeDescriptor;
 import com.sun.tools.visualvm.modules.tracer.impl.options.TracerOptions;
+import com.sun.tools.visualvm.modules.tracer.impl.probes.ProbeStatistics;
 import com.sun.tools.visualvm.modules.tracer.impl.details.DetailsPanel;
 import com.sun.tools.visualvm.modules.tracer.impl.details.DetailsTableModel;
 import com.sun.tools.visualvm.modules.tracer.impl.export.DataExport;
 import com.sun.tools.visualvm.modules.tracer.impl.timeline.TimelineChart.Row;
 import com.sun.tools.visualvm.modules.tracer.impl.timeline.items.ValueItemDescriptor;
 import java.awt.Color;
+import java.io.File;
 import java.text.Format;
 import java.text.MessageFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.swing.SwingUtilities;
 import javax.swing.table.AbstractTableModel;
@@ -83,6 +88,9 @@ public final class TimelineSupport {
 
     private final Set<ValuesListener> valuesListeners = new HashSet();
 
+    private final Map<TracerProbe, ProbeStatistics> probesStatistics =
+            Collections.synchronizedMap(new HashMap());
+
     private final Set<Integer> selectedTimestamps = new HashSet();
     private final Set<SelectionListener> selectionListeners = new HashSet();
 
@@ -90,10 +98,14 @@ public final class TimelineSupport {
     // --- Constructor ---------------------------------------------------------
 
     public TimelineSupport(DescriptorResolver descriptorResolver) {
+        this(descriptorResolver, null);
+    }
+
+    public TimelineSupport(DescriptorResolver descriptorResolver, File archiveDirectory) {
         this.descriptorResolver = descriptorResolver;
         
         // TODO: must be called in EDT!
-        model = new TimelineModel();
+        model = new TimelineModel(archiveDirectory);
         itemsModel = new SynchronousXYItemsModel(model);
         chart = new TimelineChart(itemsModel);
         tooltips = new TimelineTooltipOverlay(this);
@@ -187,6 +199,7 @@ public final class TimelineSupport {
 
                 rows.remove(row);
                 probes.remove(probe);
+                probesStatistics.remove(probe);
 
                 setupOverlays();
             }
@@ -197,6 +210,15 @@ public final class TimelineSupport {
         return probes;
     }
 
+    public void setProbeStatistics(TracerProbe probe, ProbeStatistics statistics) {
+        if (statistics == null) probesStatistics.remove(probe);
+        else probesStatistics.put(probe, statistics);
+    }
+
+    public ProbeStatistics getProbeStatistics(TracerProbe probe) {
+        return probesStatistics.get(probe);
+    }
+
     public int getItemsCount() {
         return model.getItemsCount();
     }
@@ -395,9 +417,16 @@ public final class TimelineSupport {
 
     public void addValues(final long timestamp, final long[] newValues) {
         int newRow = detailsModel == null ? -1 : detailsModel.getRowCount();
-        model.addValues(timestamp, newValues);
+        boolean compacted = model.addValues(timestamp, newValues);
         itemsModel.valuesAdded();
-        if (newRow != -1) detailsModel.fireTableRowsInserted(newRow, newRow);
+        if (compacted) {
+            // Indexes of the values have changed
+            resetSelectedTimestamps();
+            pointsComputer.reset();
+            if (detailsModel != null) detailsModel.fireTableDataChanged();
+        } else if (newRow != -1) {
+            detailsModel.fireTableRowsInserted(newRow, newRow);
+        }
         fireValuesAdded();
     }
 
@@ -411,7 +440,10 @@ public final class TimelineSupport {
     }
 
     public void exportAllValues(String title) {
-        final int rowsCount = model.getTimestampsCount();
+        // Full resolution values are exported from the archive if available
+        final TimelineArchive archive = model.getArchive();
+        final int rowsCount = archive != null ? archive.getTimestampsCount() :
+                                                model.getTimestampsCount();
         final int columnsCount = model.getItemsCount();
         
         final Format timeFormatter = new SimpleDateFormat(MessageFormat.format(
@@ -444,10 +476,12 @@ public final class TimelineSupport {
             }
 
             public Object getValueAt(int rowIndex, int columnIndex) {
-                if (columnIndex == 0) return timeFormatter.format(model.
-                                             getTimestamp(rowIndex));
+                if (columnIndex == 0) return timeFormatter.format(archive != null ?
+                                             archive.getTimestamp(rowIndex) :
+                                             model.getTimestamp(rowIndex));
 
-                long value = itemsModel.getItem(columnIndex - 1).getYValue(rowIndex);
+                long value = archive != null ? archive.getValue(columnIndex - 1, rowIndex) :
+                             itemsModel.getItem(columnIndex - 1).getYValue(rowIndex);
                 return descriptors[columnIndex - 1].getValueString(value,
                                                     ItemValueFormatter.FORMAT_EXPORT);
             }
@@ -76,6 +76,29 @@ abstract class TimelineXYItem extends SynchronousXYItem {
 
     final int getIndex() { return itemIndex; }
 
+    // Values have been rolled up, bounds must be recomputed from all values
+    final void valuesCompacted() {
+        minY = Long.MAX_VALUE;
+        maxY = Long.MIN_VALUE;
+        lastIndex = -1;
+    }
+
+    /**
+     * Merges minimum and maximum of values [fromIndex, toIndex] into minMax[0]
+     * and minMax[1].
+     */
+    void getMinMaxValues(int fromIndex, int toIndex, long[] minMax) {
+        long min = minMax[0];
+        long max = minMax[1];
+        for (int i = fromIndex; i <= toIndex; i++) {
+            long value = getYValue(i);
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        minMax[0] = min;
+        minMax[1] = max;
+    }
+
 
     // --- Item telemetry ------------------------------------------------------
 
@@ -191,7 +191,9 @@ class ApplicationSnapshotProvider {
 
                     File storageDirectory = persistent ? ApplicationSnapshotsSupport.getStorageDirectory() :
                                                          Storage.getTemporaryStorageDirectory();
-                    File snapshotDirectory = Utils.extractArchive(archive, storageDirectory);
+                    // heap dumps are extracted in background unless the archive is deleted
+                    File snapshotDirectory = deleteArchive ? Utils.extractArchive(archive, storageDirectory) :
+                                                             Utils.extractArchiveLazily(archive, storageDirectory);
                     if (snapshotDirectory != null) {
                         Storage storage = new Storage(snapshotDirectory, PROPERTIES_FILENAME);
                         ApplicationSnapshot snapshot = new ApplicationSnapshot(snapshotDirectory, storage);
@@ -46,6 +46,7 @@ class AttachModelImpl extends AttachModel {
 
     String pid;
     HotSpotVirtualMachine vm;
+    private final ClassNameTable classNames = new ClassNameTable();
     
     AttachModelImpl(Application app) {
         pid = Integer.toString(app.getPid());
@@ -109,7 +110,7 @@ class AttachModelImpl extends AttachModel {
     public synchronized HeapHistogramImpl takeHeapHistogram() {
         try {
             InputStream in = getVirtualMachine().heapHisto(ALL_OBJECTS_OPTION);
-            HeapHistogramImpl h = new HeapHistogramImpl(in);
+            HeapHistogramImpl h = new HeapHistogramImpl(in, classNames);
             in.close();
             return h;
         } catch (IOException ex) {
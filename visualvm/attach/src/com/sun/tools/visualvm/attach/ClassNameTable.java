@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.tools.visualvm.attach;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Intern table of the class names found in heap histograms. Maps raw UTF-8
+ * JVM class names to the converted class names so that repeated histograms
+ * of the same application don't create new strings. Also provides mapping
+ * of the class names to rows of the histogram being currently parsed.
+ *
+ * The table is cleared when a histogram starts and less than half of the
+ * names were present in the previous one, so that the names of unloaded
+ * classes don't accumulate for the life of the application.
+ *
+ * The table is not thread safe, AttachModelImpl takes the histograms
+ * sequentially.
+ *
+ * @author Tomas Hurka
+ */
+final class ClassNameTable {
+
+    private static final int INITIAL_SIZE = 1024;
+
+    private int[] slots;    // entry index + 1, 0 for empty slot
+    private byte[][] keys;
+    private int[] hashes;
+    private String[] names;
+    private boolean[] permGen;
+    private int size;
+
+    // rows of the histogram being parsed, valid only if stamps[id] == stamp
+    private int[] stamps;
+    private int[] rows;
+    private int stamp;
+    // number of names present in the histogram being parsed
+    private int used;
+
+
+    ClassNameTable() {
+        clear();
+    }
+
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns id of the class name stored in bytes[0..length), the name is
+     * added to the table if not present yet.
+     */
+    int lookup(byte[] bytes, int length, int hash) {
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (true) {
+            int entry = slots[slot];
+            if (entry == 0) break;
+            int id = entry - 1;
+            if (hashes[id] == hash && equals(keys[id], bytes, length)) return id;
+            slot = (slot + 1) & mask;
+        }
+        return add(bytes, length, hash, slot);
+    }
+
+    String getName(int id) {
+        return names[id];
+    }
+
+    boolean isPermGen(int id) {
+        return permGen[id];
+    }
+
+    /**
+     * Starts a new histogram, forgets all rows.
+     */
+    void newHistogram() {
+        if (size > used * 2) clear();
+        used = 0;
+        stamp++;
+    }
+
+    int getRow(int id) {
+        return stamps[id] == stamp ? rows[id] : -1;
+    }
+
+    void setRow(int id, int row) {
+        if (stamps[id] != stamp) used++;
+        stamps[id] = stamp;
+        rows[id] = row;
+    }
+
+
+    private void clear() {
+        slots = new int[INITIAL_SIZE * 2];
+        keys = new byte[INITIAL_SIZE][];
+        hashes = new int[INITIAL_SIZE];
+        names = new String[INITIAL_SIZE];
+        permGen = new boolean[INITIAL_SIZE];
+        stamps = new int[INITIAL_SIZE];
+        rows = new int[INITIAL_SIZE];
+        size = 0;
+    }
+
+    private int add(byte[] bytes, int length, int hash, int slot) {
+        if (size == keys.length) {
+            int newLength = keys.length * 2;
+            keys = copyOf(keys, newLength);
+            hashes = copyOf(hashes, newLength);
+            names = copyOf(names, newLength);
+            permGen = copyOf(permGen, newLength);
+            stamps = copyOf(stamps, newLength);
+            rows = copyOf(rows, newLength);
+        }
+        int id = size++;
+        byte[] key = new byte[length];
+        System.arraycopy(bytes, 0, key, 0, length);
+        String jvmName;
+        try {
+            jvmName = new String(key, "UTF-8");    // NOI18N
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        keys[id] = key;
+        hashes[id] = hash;
+        permGen[id] = length > 0 && key[0] == '<';  // NOI18N
+        names[id] = HeapHistogramImpl.ClassInfoImpl.convertJVMName(jvmName, permGen[id]);
+        slots[slot] = id + 1;
+
+        // keep the load factor below 0.5
+        if (size * 2 > slots.length) rehash();
+        return id;
+    }
+
+    private void rehash() {
+        int[] newSlots = new int[slots.length * 2];
+        int mask = newSlots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (newSlots[slot] != 0) slot = (slot + 1) & mask;
+            newSlots[slot] = id + 1;
+        }
+        slots = newSlots;
+    }
+
+    private static boolean equals(byte[] key, byte[] bytes, int length) {
+        if (key.length != length) return false;
+        for (int i = 0; i < length; i++)
+            if (key[i] != bytes[i]) return false;
+        return true;
+    }
+
+    private static byte[][] copyOf(byte[][] array, int length) {
+        byte[][] newArray = new byte[length][];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+    private static int[] copyOf(int[] array, int length) {
+        int[] newArray = new int[length];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+    private static String[] copyOf(String[] array, int length) {
+        String[] newArray = new String[length];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+    private static boolean[] copyOf(boolean[] array, int length) {
+        boolean[] newArray = new boolean[length];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+}
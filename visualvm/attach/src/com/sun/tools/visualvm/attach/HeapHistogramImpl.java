@@ -26,11 +26,14 @@
 package com.sun.tools.visualvm.attach;
 
 import com.sun.tools.visualvm.application.jvm.HeapHistogram;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.AbstractSet;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Scanner;
 import java.util.Set;
 
@@ -85,36 +88,59 @@ class HeapHistogramImpl extends HeapHistogram {
     HeapHistogramImpl() {
     }
     
-    HeapHistogramImpl(InputStream in) {
-        Map<String,ClassInfoImpl> classesMap = new HashMap(1024);
-        Map<String,ClassInfoImpl> permGenMap = new HashMap(1024);
+    HeapHistogramImpl(InputStream in) throws IOException {
+        this(in, new ClassNameTable());
+    }
+
+    HeapHistogramImpl(InputStream in, ClassNameTable names) throws IOException {
         time = new Date();
-        Scanner sc = new Scanner(in, "UTF-8");  // NOI18N
-        sc.useRadix(10);
-        while(!sc.hasNext("-+")) {
-            sc.nextLine();
-        }
-        sc.skip("-+");
-        sc.nextLine();
+        names.newHistogram();
+        ClassInfoColumns heap = new ClassInfoColumns(names.size() + 16);
+        ClassInfoColumns permGen = new ClassInfoColumns(16);
+        HistogramReader reader = new HistogramReader(in);
 
-        
-        while(sc.hasNext("[0-9]+:")) {  // NOI18N
-            ClassInfoImpl newClInfo = new ClassInfoImpl(sc);
-            if (newClInfo.isPermGen()) {
-                storeClassInfo(newClInfo, permGenMap);
-                totalPermGenBytes += newClInfo.getBytes();
-                totalPermgenInstances += newClInfo.getInstancesCount();
+        // skip header up to the ----- line
+        int c;
+        do {
+            c = reader.peekNonBlank();
+            reader.skipLine();
+        } while (c != '-' && c != -1);
+
+        while ((c = reader.peekNonBlank()) != -1) {
+            if (c >= '0' && c <= '9') {  // NOI18N
+                reader.readLong();          // row number
+                reader.skip(':');           // NOI18N
+                long instances = reader.readLong();
+                long bytes = reader.readLong();
+                int id = reader.readClassName(names);
+                reader.skipLine();          // skip module name on JDK 9
+                if (id == -1) continue;
+
+                ClassInfoColumns columns;
+                if (names.isPermGen(id)) {
+                    columns = permGen;
+                    totalPermGenBytes += bytes;
+                    totalPermgenInstances += instances;
+                } else {
+                    columns = heap;
+                    totalHeapBytes += bytes;
+                    totalHeapInstances += instances;
+                }
+                int row = names.getRow(id);
+                if (row == -1) names.setRow(id, columns.add(names.getName(id), instances, bytes));
+                else columns.merge(row, instances, bytes);
+            } else if (c == 'T') {       // NOI18N
+                // Total
+                reader.skipWord();
+                totalInstances = reader.readLong();
+                totalBytes = reader.readLong();
+                reader.skipLine();
             } else {
-                storeClassInfo(newClInfo, classesMap);
-                totalHeapBytes += newClInfo.getBytes();
-                totalHeapInstances += newClInfo.getInstancesCount();                
+                reader.skipLine();
             }
         }
-        sc.next("Total");   // NOI18N
-        totalInstances = sc.nextLong();
-        totalBytes = sc.nextLong();
-        classes = new HashSet(classesMap.values());
-        permGenClasses = new HashSet(permGenMap.values());
+        classes = heap;
+        permGenClasses = permGen;
     }
 
     void storeClassInfo(final ClassInfoImpl newClInfo, final Map<String, ClassInfoImpl> map) {
@@ -183,6 +209,12 @@ class HeapHistogramImpl extends HeapHistogram {
             permGen = jvmName.charAt(0) == '<';     // NOI18N
             name = convertJVMName(jvmName);
         }
+
+        ClassInfoImpl(String name, long instances, long bytes) {
+            this.name = name;
+            this.instances = instances;
+            this.bytes = bytes;
+        }
         
         public String getName() {
             return name;
@@ -214,6 +246,10 @@ class HeapHistogramImpl extends HeapHistogram {
         }
         
         String convertJVMName(String jvmName) {
+            return convertJVMName(jvmName, isPermGen());
+        }
+
+        static String convertJVMName(String jvmName, boolean permGen) {
             String name = null;
             int index = jvmName.lastIndexOf('[');     // NOI18N
             
@@ -253,7 +289,7 @@ class HeapHistogramImpl extends HeapHistogram {
                 for (int i=0;i<=index;i++) {
                     name+="[]";
                 }
-            } else if (isPermGen()) {
+            } else if (permGen) {
                 name = permGenNames.get(jvmName);
             }
             if (name == null) {
@@ -263,4 +299,161 @@ class HeapHistogramImpl extends HeapHistogram {
         }
     }
     
+
+    /**
+     * Histogram stored in parallel arrays, exposed as a set of ClassInfo.
+     */
+    static final class ClassInfoColumns extends AbstractSet<ClassInfo> {
+        private String[] names;
+        private long[] instances;
+        private long[] bytes;
+        private int size;
+
+        ClassInfoColumns(int capacity) {
+            names = new String[capacity];
+            instances = new long[capacity];
+            bytes = new long[capacity];
+        }
+
+        int add(String name, long instancesCount, long bytesCount) {
+            if (size == names.length) {
+                int newLength = size * 2;
+                String[] newNames = new String[newLength];
+                System.arraycopy(names, 0, newNames, 0, size);
+                names = newNames;
+                long[] newInstances = new long[newLength];
+                System.arraycopy(instances, 0, newInstances, 0, size);
+                instances = newInstances;
+                long[] newBytes = new long[newLength];
+                System.arraycopy(bytes, 0, newBytes, 0, size);
+                bytes = newBytes;
+            }
+            names[size] = name;
+            instances[size] = instancesCount;
+            bytes[size] = bytesCount;
+            return size++;
+        }
+
+        void merge(int row, long instancesCount, long bytesCount) {
+            instances[row] += instancesCount;
+            bytes[row] += bytesCount;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public Iterator<ClassInfo> iterator() {
+            return new Iterator<ClassInfo>() {
+                private int row;
+
+                public boolean hasNext() {
+                    return row < size;
+                }
+
+                public ClassInfo next() {
+                    if (row >= size) throw new NoSuchElementException();
+                    ClassInfo info = new ClassInfoImpl(names[row], instances[row], bytes[row]);
+                    row++;
+                    return info;
+                }
+
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+
+    /**
+     * Streaming parser of the heapHisto output working directly on bytes.
+     */
+    private static final class HistogramReader {
+        private final InputStream in;
+        private final byte[] buffer = new byte[65536];
+        private int position;
+        private int limit;
+        private byte[] name = new byte[256];
+
+        HistogramReader(InputStream in) {
+            this.in = in;
+        }
+
+        // returns next character which isn't space or tab without consuming it
+        int peekNonBlank() throws IOException {
+            while (true) {
+                if (position == limit && !fill()) return -1;
+                int b = buffer[position] & 0xff;
+                if (b != ' ' && b != '\t' && b != '\r') return b;   // NOI18N
+                position++;
+            }
+        }
+
+        void skipLine() throws IOException {
+            while (true) {
+                if (position == limit && !fill()) return;
+                if (buffer[position++] == '\n') return; // NOI18N
+            }
+        }
+
+        void skip(char c) throws IOException {
+            if (peekNonBlank() == c) position++;
+        }
+
+        void skipWord() throws IOException {
+            int c = peekNonBlank();
+            while (c != -1 && !isWhitespace(c)) {
+                position++;
+                c = peek();
+            }
+        }
+
+        long readLong() throws IOException {
+            int c = peekNonBlank();
+            long value = 0;
+            while (c >= '0' && c <= '9') {  // NOI18N
+                value = value * 10 + (c - '0'); // NOI18N
+                position++;
+                c = peek();
+            }
+            return value;
+        }
+
+        // reads class name and returns its id or -1 if there is no name
+        int readClassName(ClassNameTable table) throws IOException {
+            int c = peekNonBlank();
+            int length = 0;
+            int hash = 0;
+            while (c != -1 && !isWhitespace(c)) {
+                if (length == name.length) {
+                    byte[] newName = new byte[length * 2];
+                    System.arraycopy(name, 0, newName, 0, length);
+                    name = newName;
+                }
+                name[length++] = (byte)c;
+                hash = 31 * hash + c;
+                position++;
+                c = peek();
+            }
+            if (length == 0) return -1;
+            return table.lookup(name, length, hash ^ (hash >>> 16));
+        }
+
+        private int peek() throws IOException {
+            if (position == limit && !fill()) return -1;
+            return buffer[position] & 0xff;
+        }
+
+        private boolean fill() throws IOException {
+            int read = in.read(buffer, 0, buffer.length);
+            if (read <= 0) return false;
+            position = 0;
+            limit = read;
+            return true;
+        }
+
+        private static boolean isWhitespace(int c) {
+            return c == ' ' || c == '\t' || c == '\r' || c == '\n';  // NOI18N
+        }
+    }
 }
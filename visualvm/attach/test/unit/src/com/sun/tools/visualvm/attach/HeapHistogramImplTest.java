@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * 
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ * 
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ * 
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tools.visualvm.attach;
+
+import com.sun.tools.visualvm.application.jvm.HeapHistogram.ClassInfo;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Tomas Hurka
+ */
+public class HeapHistogramImplTest {
+
+    // heap histogram of a JDK 6 application including the permanent generation
+    private static final String JDK6_HISTOGRAM =
+        "\n" + // NOI18N
+        " num     #instances         #bytes  class name\n" + // NOI18N
+        "----------------------------------------------\n" + // NOI18N
+        "   1:         22813        3082096  <constMethodKlass>\n" + // NOI18N
+        "   2:         22813        2745744  <methodKlass>\n" + // NOI18N
+        "   3:         35212        2522016  [C\n" + // NOI18N
+        "   4:         35041         840984  java.lang.String\n" + // NOI18N
+        "   5:          1302         613448  [[I\n" + // NOI18N
+        "   6:           100           1600  java.lang.String\n" + // NOI18N
+        "Total        117281        9805888\n"; // NOI18N
+
+    public HeapHistogramImplTest() {
+    }
+
+    /**
+     * Test of parsing a heap histogram of JDK 9+ with module names, of class HeapHistogramImpl.
+     */
+    @Test
+    public void testParse() throws IOException {
+        System.out.println("parse");
+        HeapHistogramImpl histogram = parse(new ClassNameTable());
+
+        assertEquals(12934, histogram.getTotalInstances());
+        assertEquals(2102480, histogram.getTotalBytes());
+        assertEquals(12934, histogram.getTotalHeapInstances());
+        assertEquals(2102480, histogram.getTotalHeapBytes());
+        assertEquals(0, histogram.getPermGenHistogram().size());
+
+        Map<String, ClassInfo> classes = toMap(histogram.getHeapHistogram());
+        assertEquals(228, classes.size());
+        assertClass(classes, "int[]", 437, 1535256); // NOI18N
+        assertClass(classes, "java.lang.Object[]", 992, 68288); // NOI18N
+        assertClass(classes, "java.lang.String", 2017, 48408); // NOI18N
+        assertClass(classes, "java.util.HashMap$Node", 997, 31904); // NOI18N
+        assertClass(classes, "java.util.HashMap$Node[]", 273, 26016); // NOI18N
+        assertClass(classes, "sun.net.www.protocol.file.Handler", 1, 16); // NOI18N
+    }
+
+    /**
+     * Test of parsing a heap histogram with permanent generation and duplicate names, of class HeapHistogramImpl.
+     */
+    @Test
+    public void testParsePermGen() throws IOException {
+        System.out.println("parse permgen");
+        HeapHistogramImpl histogram = parse(new ClassNameTable(), JDK6_HISTOGRAM);
+
+        assertEquals(117281, histogram.getTotalInstances());
+        assertEquals(9805888, histogram.getTotalBytes());
+        assertEquals(45626, histogram.getTotalPerGenInstances());
+        assertEquals(5827840, histogram.getTotalPermGenHeapBytes());
+
+        Map<String, ClassInfo> permGen = toMap(histogram.getPermGenHistogram());
+        assertEquals(2, permGen.size());
+        assertClass(permGen, "Read-Only Method Metadata", 22813, 3082096); // NOI18N
+        assertClass(permGen, "Read-Write Method Metadata", 22813, 2745744); // NOI18N
+
+        Map<String, ClassInfo> heap = toMap(histogram.getHeapHistogram());
+        assertEquals(3, heap.size());
+        assertClass(heap, "char[]", 35212, 2522016); // NOI18N
+        assertClass(heap, "java.lang.String", 35141, 842584); // NOI18N
+        assertClass(heap, "int[][]", 1302, 613448); // NOI18N
+    }
+
+    /**
+     * Test of reusing the class names between histograms, of class ClassNameTable.
+     */
+    @Test
+    public void testSharedNames() throws IOException {
+        System.out.println("shared names");
+        ClassNameTable names = new ClassNameTable();
+        parse(names);
+        assertEquals(228, names.size());
+        parse(names);
+        assertEquals(228, names.size());
+    }
+
+    /**
+     * Test of dropping the names no longer present in the histograms, of class ClassNameTable.
+     */
+    @Test
+    public void testStaleNames() throws IOException {
+        System.out.println("stale names");
+        ClassNameTable names = new ClassNameTable();
+        parse(names);
+        parse(names, JDK6_HISTOGRAM);
+        assertEquals(231, names.size()); // [C and java.lang.String are shared
+
+        // most of the names were missing in the previous histogram
+        HeapHistogramImpl histogram = parse(names, JDK6_HISTOGRAM);
+        assertEquals(5, names.size());
+        assertEquals(3, histogram.getHeapHistogram().size());
+    }
+
+    private HeapHistogramImpl parse(ClassNameTable names) throws IOException {
+        InputStream in = getClass().getResourceAsStream("histogram.txt"); // NOI18N
+        try {
+            return new HeapHistogramImpl(in, names);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static HeapHistogramImpl parse(ClassNameTable names, String text) throws IOException {
+        return new HeapHistogramImpl(new ByteArrayInputStream(text.getBytes("UTF-8")), names); // NOI18N
+    }
+
+    private static Map<String, ClassInfo> toMap(Set<ClassInfo> classes) {
+        Map<String, ClassInfo> map = new HashMap<String, ClassInfo>();
+        for (ClassInfo info : classes) {
+            assertNull(info.getName(), map.put(info.getName(), info));
+        }
+        return map;
+    }
+
+    private static void assertClass(Map<String, ClassInfo> classes, String name, long instances, long bytes) {
+        ClassInfo info = classes.get(name);
+        assertNotNull(name, info);
+        assertEquals(name, instances, info.getInstancesCount());
+        assertEquals(name, bytes, info.getBytes());
+    }
+}
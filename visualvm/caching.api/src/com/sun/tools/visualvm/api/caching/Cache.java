@@ -58,4 +58,12 @@ abstract public class Cache<K,V> {
      */
     abstract public void setTTL(long ttl);
 
+    /**
+     * Provides the usage statistics of the cache
+     * @return Returns a snapshot of the cache statistics; {@linkplain CacheStatistics#EMPTY} if the cache does not collect them
+     */
+    public CacheStatistics getStatistics() {
+        return CacheStatistics.EMPTY;
+    }
+
 }
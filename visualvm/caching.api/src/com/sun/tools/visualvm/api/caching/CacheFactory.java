@@ -71,4 +71,48 @@ final public class CacheFactory {
     public <K,V> Cache<K,V> softMapCache(EntryFactory<K,V> resolver) {
         return delegate.softMapCache(resolver);
     }
+
+    /**
+     * Creates a cache safe for heavily concurrent access
+     * <p>
+     * A slow miss never blocks lookups of other keys and concurrent misses of
+     * the same key are resolved only once. The keys are held strongly, the size
+     * of the cache is not limited.
+     * </p>
+     * @param resolver The {@linkplain EntryFactory} to resolve cache misses
+     * @return Returns a new concurrent cache
+     */
+    public <K,V> Cache<K,V> concurrentCache(EntryFactory<K,V> resolver) {
+        return delegate.concurrentCache(resolver, null, 0, EvictionPolicy.LRU, 0f);
+    }
+    /**
+     * Creates a size bounded cache safe for heavily concurrent access
+     * @param resolver The {@linkplain EntryFactory} to resolve cache misses
+     * @param persistor The {@linkplain Persistor} to retrieve and store the entries; may be <b>null</b>
+     * @param maxSize The maximum number of entries; 0 for unbounded cache
+     * @param policy The {@linkplain EvictionPolicy} used when the cache exceeds its maximum size
+     * @return Returns a new concurrent cache
+     * @see #concurrentCache(EntryFactory)
+     */
+    public <K,V> Cache<K,V> concurrentCache(EntryFactory<K,V> resolver, Persistor<K,V> persistor, int maxSize, EvictionPolicy policy) {
+        return delegate.concurrentCache(resolver, persistor, maxSize, policy, 0f);
+    }
+    /**
+     * Creates a size bounded cache safe for heavily concurrent access, refreshing
+     * the entries in background before their TTL expires
+     * <p>
+     * An entry older than <code>refreshAhead * TTL</code> is still served from the cache
+     * while a fresh value is being resolved in background
+     * </p>
+     * @param resolver The {@linkplain EntryFactory} to resolve cache misses
+     * @param persistor The {@linkplain Persistor} to retrieve and store the entries; may be <b>null</b>
+     * @param maxSize The maximum number of entries; 0 for unbounded cache
+     * @param policy The {@linkplain EvictionPolicy} used when the cache exceeds its maximum size
+     * @param refreshAhead The fraction of TTL (0, 1) after which the entry gets refreshed; 0 disables refresh-ahead
+     * @return Returns a new concurrent cache
+     * @see #concurrentCache(EntryFactory)
+     */
+    public <K,V> Cache<K,V> concurrentCache(EntryFactory<K,V> resolver, Persistor<K,V> persistor, int maxSize, EvictionPolicy policy, float refreshAhead) {
+        return delegate.concurrentCache(resolver, persistor, maxSize, policy, refreshAhead);
+    }
 }
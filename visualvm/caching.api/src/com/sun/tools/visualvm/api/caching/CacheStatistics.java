@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.tools.visualvm.api.caching;
+
+/**
+ * An immutable snapshot of the {@linkplain Cache} usage statistics
+ * @author Jaroslav Bachorik
+ */
+final public class CacheStatistics {
+    /**
+     * Statistics of a cache not collecting any data
+     */
+    final public static CacheStatistics EMPTY = new CacheStatistics(0, 0, 0, 0, 0, 0);
+
+    final private long hitCount;
+    final private long missCount;
+    final private long loadCount;
+    final private long totalLoadTime;
+    final private long evictionCount;
+    final private long refreshCount;
+
+    public CacheStatistics(long hitCount, long missCount, long loadCount, long totalLoadTime, long evictionCount, long refreshCount) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.loadCount = loadCount;
+        this.totalLoadTime = totalLoadTime;
+        this.evictionCount = evictionCount;
+        this.refreshCount = refreshCount;
+    }
+
+    /**
+     * @return Returns the number of lookups served from the cache
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return Returns the number of lookups not found in the cache or found expired
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return Returns the ratio of hits to all the lookups or 1.0 if there were no lookups yet
+     */
+    public double getHitRate() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 1.0 : (double)hitCount / requests;
+    }
+
+    /**
+     * @return Returns the number of times the {@linkplain Persistor} or the {@linkplain EntryFactory} was asked for a value
+     */
+    public long getLoadCount() {
+        return loadCount;
+    }
+
+    /**
+     * @return Returns the total time spent loading values in nanoseconds
+     */
+    public long getTotalLoadTime() {
+        return totalLoadTime;
+    }
+
+    /**
+     * @return Returns the average time of one load in nanoseconds
+     */
+    public double getAverageLoadTime() {
+        return loadCount == 0 ? 0.0 : (double)totalLoadTime / loadCount;
+    }
+
+    /**
+     * @return Returns the number of entries evicted because of the size limit
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return Returns the number of entries reloaded in background before their TTL expired
+     */
+    public long getRefreshCount() {
+        return refreshCount;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStatistics[hits=" + hitCount + ", misses=" + missCount + ", loads=" + loadCount + // NOI18N
+               ", loadTime=" + totalLoadTime + "ns, evictions=" + evictionCount + ", refreshes=" + refreshCount + "]"; // NOI18N
+    }
+}
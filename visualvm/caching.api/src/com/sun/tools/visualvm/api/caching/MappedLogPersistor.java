@@ -0,0 +1,503 @@
+/*
+ * Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.tools.visualvm.api.caching;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.openide.util.RequestProcessor;
+
+/**
+ * A general purpose {@linkplain Persistor} backed by a memory-mapped append-only log
+ * <p>
+ * All the entries live in one file per persistor. The file is scanned once when the
+ * persistor is created to build an in-memory index of the keys; retrieving a value
+ * then reads it directly from the mapped file without any per-key file I/O.
+ * Every {@linkplain #store(java.lang.Object, com.sun.tools.visualvm.api.caching.Entry)}
+ * appends a new record, the superseded records are dropped by a background compaction
+ * once they take more space than the live ones.
+ * </p>
+ * <p>
+ * The keys and values are converted to bytes by the provided {@linkplain Codec} instances.
+ * The keys must implement <code>equals()</code> and <code>hashCode()</code> consistently
+ * with their encoded form.
+ * </p>
+ * @author Jaroslav Bachorik
+ */
+public class MappedLogPersistor<K, V> implements Persistor<K, V> {
+    private static final Logger LOGGER = Logger.getLogger(MappedLogPersistor.class.getName());
+
+    /**
+     * Converts instances of a certain type to and from their binary form
+     */
+    public static interface Codec<T> {
+        void write(T value, DataOutput out) throws IOException;
+        T read(DataInput in) throws IOException;
+    }
+
+    /**
+     * {@linkplain Codec} for {@linkplain String} instances
+     */
+    final public static Codec<String> STRING_CODEC = new Codec<String>() {
+        @Override
+        public void write(String value, DataOutput out) throws IOException {
+            out.writeUTF(value);
+        }
+
+        @Override
+        public String read(DataInput in) throws IOException {
+            return in.readUTF();
+        }
+    };
+
+    private static final int MAGIC = 0x56564d4c; // VVML
+    private static final int VERSION = 1;
+    private static final int END_OFFSET = 8;
+    private static final int HEADER_SIZE = 16;
+    private static final int MIN_CAPACITY = 64 * 1024;
+    private static final String SUFFIX = ".log"; // NOI18N
+    private static final String TMP_SUFFIX = ".tmp"; // NOI18N
+
+    private static final RequestProcessor COMPACTOR = new RequestProcessor("MappedLogPersistor Compaction"); // NOI18N
+
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_REMOVE = 2;
+    // record: int length, byte type, long timestamp, int key length, key, value
+    private static final int RECORD_OVERHEAD = 4 + 1 + 8 + 4;
+
+    final private File directory;
+    final private String name;
+    final private Codec<K> keyCodec;
+    final private Codec<V> valueCodec;
+
+    // @GuardedBy this
+    final private Map<K, Location> index = new HashMap<K, Location>();
+    private int generation;
+    private File file;
+    private RandomAccessFile raf;
+    private MappedByteBuffer buffer;
+    private int writePos;
+    private long garbageBytes;
+    private boolean compacting;
+    private boolean closed;
+
+    /**
+     * Opens the log stored in the given directory, creating a new one if necessary
+     * @param directory The directory to keep the log in
+     * @param name The name of the log; used as the file name prefix
+     * @param keyCodec The {@linkplain Codec} for the keys
+     * @param valueCodec The {@linkplain Codec} for the values
+     * @throws IOException
+     */
+    public MappedLogPersistor(File directory, String name, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        this.directory = directory;
+        this.name = name;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        open();
+    }
+
+    @Override
+    public synchronized Entry<V> retrieve(K key) {
+        if (closed) return null;
+        Location location = index.get(key);
+        if (location == null) return null;
+        try {
+            ByteBuffer data = buffer.duplicate();
+            data.limit(location.valueOffset + location.valueLength);
+            data.position(location.valueOffset);
+            V value = valueCodec.read(new DataInputStream(new ByteBufferInputStream(data)));
+            return new Entry<V>(value, location.timestamp);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to read the value for " + key, e); // NOI18N
+            index.remove(key);
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized void store(K key, Entry<V> value) {
+        if (closed || value == null || value.getContent() == null) return;
+        try {
+            append(RECORD_PUT, key, encode(valueCodec, value.getContent()), value.getUpdateTimeStamp());
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to store the value for " + key, e); // NOI18N
+        }
+    }
+
+    /**
+     * Removes the persisted entry for the given key
+     * @param key The key to remove the entry for
+     */
+    public synchronized void remove(K key) {
+        if (closed || !index.containsKey(key)) return;
+        try {
+            append(RECORD_REMOVE, key, new byte[0], System.currentTimeMillis());
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to remove the value for " + key, e); // NOI18N
+        }
+    }
+
+    /**
+     * Flushes the log and releases the file; the persistor can not be used afterwards
+     */
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        buffer.force();
+        closeFile(raf);
+        index.clear();
+    }
+
+    private void open() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can not create " + directory); // NOI18N
+        }
+        File[] tmpLogs = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String fileName) {
+                return fileName.startsWith(name + ".") && fileName.endsWith(SUFFIX + TMP_SUFFIX); // NOI18N
+            }
+        });
+        if (tmpLogs != null) {
+            for (File tmpLog : tmpLogs) {
+                // incomplete generation left behind by an interrupted compaction
+                tmpLog.delete();
+            }
+        }
+        File[] logs = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String fileName) {
+                return parseGeneration(fileName) >= 0;
+            }
+        });
+        File current = null;
+        int currentGeneration = -1;
+        if (logs != null) {
+            for (File log : logs) {
+                int gen = parseGeneration(log.getName());
+                if (gen > currentGeneration && isValid(log)) {
+                    if (current != null) current.delete();
+                    current = log;
+                    currentGeneration = gen;
+                } else {
+                    // superseded generation left behind by a compaction
+                    log.delete();
+                }
+            }
+        }
+        if (current == null) {
+            generation = 0;
+            file = logFile(0);
+            mapFile(file, MIN_CAPACITY, true);
+        } else {
+            generation = currentGeneration;
+            file = current;
+            mapFile(file, (int)Math.max(MIN_CAPACITY, current.length()), false);
+            loadIndex();
+        }
+    }
+
+    private void mapFile(File f, int capacity, boolean init) throws IOException {
+        raf = new RandomAccessFile(f, "rw"); // NOI18N
+        buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        if (init) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(END_OFFSET, HEADER_SIZE);
+        }
+        writePos = buffer.getInt(END_OFFSET);
+    }
+
+    private void loadIndex() {
+        int pos = HEADER_SIZE;
+        long liveBytes = 0;
+        while (pos < writePos) {
+            int length = buffer.getInt(pos);
+            int keyLength = -1;
+            if (length >= RECORD_OVERHEAD - 4 && length <= writePos - pos - 4) {
+                keyLength = buffer.getInt(pos + 13);
+            }
+            if (keyLength < 0 || keyLength > length - (RECORD_OVERHEAD - 4)) {
+                LOGGER.log(Level.WARNING, "Corrupted record at {0} in {1}, ignoring the rest", new Object[]{pos, file}); // NOI18N
+                writePos = pos;
+                buffer.putInt(END_OFFSET, writePos);
+                break;
+            }
+            byte type = buffer.get(pos + 4);
+            long timestamp = buffer.getLong(pos + 5);
+            ByteBuffer keyData = buffer.duplicate();
+            keyData.limit(pos + RECORD_OVERHEAD + keyLength);
+            keyData.position(pos + RECORD_OVERHEAD);
+            try {
+                K key = keyCodec.read(new DataInputStream(new ByteBufferInputStream(keyData)));
+                Location old;
+                if (type == RECORD_PUT) {
+                    int valueOffset = pos + RECORD_OVERHEAD + keyLength;
+                    old = index.put(key, new Location(pos, 4 + length, valueOffset, pos + 4 + length - valueOffset, timestamp));
+                    liveBytes += 4 + length;
+                } else {
+                    old = index.remove(key);
+                }
+                if (old != null) liveBytes -= old.recordLength;
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to read the key at " + pos + " in " + file, e); // NOI18N
+            }
+            pos += 4 + length;
+        }
+        garbageBytes = writePos - HEADER_SIZE - liveBytes;
+    }
+
+    private void append(byte type, K key, byte[] value, long timestamp) throws IOException {
+        byte[] keyBytes = encode(keyCodec, key);
+        int recordLength = RECORD_OVERHEAD + keyBytes.length + value.length;
+        ensureCapacity((long)writePos + recordLength);
+
+        int pos = writePos;
+        buffer.position(pos);
+        buffer.putInt(recordLength - 4);
+        buffer.put(type);
+        buffer.putLong(timestamp);
+        buffer.putInt(keyBytes.length);
+        buffer.put(keyBytes);
+        buffer.put(value);
+        writePos = pos + recordLength;
+        // the record becomes visible only once the end offset is updated
+        buffer.putInt(END_OFFSET, writePos);
+
+        Location old;
+        if (type == RECORD_PUT) {
+            old = index.put(key, new Location(pos, recordLength, pos + RECORD_OVERHEAD + keyBytes.length, value.length, timestamp));
+        } else {
+            old = index.remove(key);
+            garbageBytes += recordLength;
+        }
+        if (old != null) {
+            garbageBytes += old.recordLength;
+        }
+        if (garbageBytes > MIN_CAPACITY / 2 && garbageBytes > writePos - HEADER_SIZE - garbageBytes) {
+            scheduleCompaction();
+        }
+    }
+
+    private void ensureCapacity(long required) throws IOException {
+        if (required <= buffer.capacity()) return;
+        if (required > Integer.MAX_VALUE) {
+            throw new IOException("Log size limit exceeded: " + file); // NOI18N
+        }
+        long capacity = Math.min(Integer.MAX_VALUE, Math.max(required, (long)buffer.capacity() * 2));
+        buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private void scheduleCompaction() {
+        if (compacting) return;
+        compacting = true;
+        COMPACTOR.post(new Runnable() {
+            @Override
+            public void run() {
+                synchronized(MappedLogPersistor.this) {
+                    try {
+                        if (!closed) compact();
+                    } catch (IOException e) {
+                        LOGGER.log(Level.WARNING, "Unable to compact " + file, e); // NOI18N
+                    } finally {
+                        compacting = false;
+                    }
+                }
+            }
+        });
+    }
+
+    // @GuardedBy this
+    private void compact() throws IOException {
+        // the live records are written to a temporary file first; it becomes the next
+        // generation only after it has been completely written and forced to the disk,
+        // so a crash at any point leaves at least one complete generation behind
+        File tmpFile = new File(directory, name + "." + (generation + 1) + SUFFIX + TMP_SUFFIX); // NOI18N
+        File newFile = logFile(generation + 1);
+        Map<K, Location> newIndex = new HashMap<K, Location>();
+        int pos = HEADER_SIZE;
+        RandomAccessFile tmpRaf = new RandomAccessFile(tmpFile, "rw"); // NOI18N
+        try {
+            FileChannel channel = tmpRaf.getChannel();
+            channel.truncate(0);
+            channel.position(HEADER_SIZE);
+            for (Map.Entry<K, Location> entry : index.entrySet()) {
+                Location location = entry.getValue();
+                ByteBuffer record = buffer.duplicate();
+                record.limit(location.recordOffset + location.recordLength);
+                record.position(location.recordOffset);
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+                newIndex.put(entry.getKey(), new Location(pos, location.recordLength, pos + (location.valueOffset - location.recordOffset),
+                                                          location.valueLength, location.timestamp));
+                pos += location.recordLength;
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(pos).putInt(0);
+            header.flip();
+            channel.position(0);
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            closeFile(tmpRaf);
+            tmpFile.delete();
+            throw e;
+        }
+        closeFile(tmpRaf);
+        if (!tmpFile.renameTo(newFile)) {
+            tmpFile.delete();
+            throw new IOException("Can not rename " + tmpFile + " to " + newFile); // NOI18N
+        }
+
+        File oldFile = file;
+        RandomAccessFile oldRaf = raf;
+        MappedByteBuffer oldBuffer = buffer;
+        try {
+            mapFile(newFile, (int)Math.min(Integer.MAX_VALUE, Math.max(MIN_CAPACITY, (long)pos * 2)), false);
+        } catch (IOException e) {
+            // keep appending to the old generation, it still holds all the entries
+            if (raf != oldRaf) closeFile(raf);
+            raf = oldRaf;
+            buffer = oldBuffer;
+            newFile.delete();
+            throw e;
+        }
+        index.clear();
+        index.putAll(newIndex);
+        generation++;
+        file = newFile;
+        garbageBytes = 0;
+        closeFile(oldRaf);
+        if (!oldFile.delete()) {
+            // probably still mapped; it will be removed on the next start
+            oldFile.deleteOnExit();
+        }
+    }
+
+    private boolean isValid(File log) {
+        RandomAccessFile f = null;
+        try {
+            f = new RandomAccessFile(log, "r"); // NOI18N
+            return f.length() >= HEADER_SIZE && f.readInt() == MAGIC && f.readInt() == VERSION;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            closeFile(f);
+        }
+    }
+
+    private File logFile(int gen) {
+        return new File(directory, name + "." + gen + SUFFIX); // NOI18N
+    }
+
+    private int parseGeneration(String fileName) {
+        if (!fileName.startsWith(name + ".") || !fileName.endsWith(SUFFIX)) return -1; // NOI18N
+        try {
+            return Integer.parseInt(fileName.substring(name.length() + 1, fileName.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static <T> byte[] encode(Codec<T> codec, T value) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bos);
+        codec.write(value, dos);
+        dos.flush();
+        return bos.toByteArray();
+    }
+
+    private static void closeFile(RandomAccessFile f) {
+        if (f != null) {
+            try {
+                f.close();
+            } catch (IOException e) {}
+        }
+    }
+
+    /**
+     * Position of a live record in the log
+     */
+    private static final class Location {
+        final int recordOffset;
+        final int recordLength;
+        final int valueOffset;
+        final int valueLength;
+        final long timestamp;
+
+        Location(int recordOffset, int recordLength, int valueOffset, int valueLength, long timestamp) {
+            this.recordOffset = recordOffset;
+            this.recordLength = recordLength;
+            this.valueOffset = valueOffset;
+            this.valueLength = valueLength;
+            this.timestamp = timestamp;
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        final private ByteBuffer data;
+
+        ByteBufferInputStream(ByteBuffer data) {
+            this.data = data;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return data.hasRemaining() ? data.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (!data.hasRemaining()) return -1;
+            len = Math.min(len, data.remaining());
+            data.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return data.remaining();
+        }
+    }
+}
@@ -29,6 +29,7 @@ package com.sun.tools.visualvm.api.caching.impl;
 import com.sun.tools.visualvm.api.caching.Cache;
 import com.sun.tools.visualvm.api.caching.CacheFactory;
 import com.sun.tools.visualvm.api.caching.EntryFactory;
+import com.sun.tools.visualvm.api.caching.EvictionPolicy;
 import com.sun.tools.visualvm.api.caching.Persistor;
 import org.openide.util.lookup.ServiceProvider;
 
@@ -63,4 +64,8 @@ public class CacheFactoryImpl {
     public <K,V> Cache<K,V> softMapCache(EntryFactory<K,V> resolver) {
         return new CacheImpl<K, V>(resolver, new SoftKeyFactory<K>());
     }
+
+    public <K,V> Cache<K,V> concurrentCache(EntryFactory<K,V> resolver, Persistor<K,V> persistor, int maxSize, EvictionPolicy policy, float refreshAhead) {
+        return new ConcurrentCacheImpl<K, V>(resolver, persistor, maxSize, policy, refreshAhead);
+    }
 }
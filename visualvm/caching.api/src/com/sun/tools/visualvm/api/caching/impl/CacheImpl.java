@@ -27,6 +27,7 @@ package com.sun.tools.visualvm.api.caching.impl;
 
 
 import com.sun.tools.visualvm.api.caching.Cache;
+import com.sun.tools.visualvm.api.caching.CacheStatistics;
 import com.sun.tools.visualvm.api.caching.Entry;
 import com.sun.tools.visualvm.api.caching.EntryFactory;
 import com.sun.tools.visualvm.api.caching.Persistor;
@@ -47,6 +48,9 @@ final class CacheImpl<K, V> extends Cache<K,V> {
     private KeyFactory<K> keyFactory = KeyFactory.DEFAULT;
     private EntryFactory<K,V> resolver = EntryFactory.DEFAULT;
 
+    // @GuardedBy objectCache
+    private long hitCount, missCount, loadCount, loadTime;
+
     CacheImpl() {};
 
     CacheImpl(EntryFactory<K,V> resolver) {
@@ -98,6 +102,11 @@ final class CacheImpl<K, V> extends Cache<K,V> {
         Reference<K> softKey = keyFactory.createKey(key);
         synchronized(objectCache) {
             Entry<V> entry = objectCache.get(softKey);
+            if (entry != null && (System.currentTimeMillis() - entry.getUpdateTimeStamp()) <= update_interval) {
+                hitCount++;
+            } else {
+                missCount++;
+            }
             if (entry == null) {
                 entry = persistor.retrieve(key);
             }
@@ -149,6 +158,13 @@ final class CacheImpl<K, V> extends Cache<K,V> {
         this.update_interval = ttl;
     }
 
+    @Override
+    public CacheStatistics getStatistics() {
+        synchronized(objectCache) {
+            return new CacheStatistics(hitCount, missCount, loadCount, loadTime, 0, 0);
+        }
+    }
+
     /**
      * This method is called in case of cache-miss
      * It can return NULL if it's not possible to resolve the missing instance
@@ -156,6 +172,12 @@ final class CacheImpl<K, V> extends Cache<K,V> {
      * @return Returns the resolved object or NULL
      */
     private Entry<V> cacheMiss(K key) {
-        return resolver.createEntry(key);
+        long start = System.nanoTime();
+        try {
+            return resolver.createEntry(key);
+        } finally {
+            loadCount++;
+            loadTime += System.nanoTime() - start;
+        }
     }
 }
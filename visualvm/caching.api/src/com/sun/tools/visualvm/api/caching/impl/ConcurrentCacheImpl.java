@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.tools.visualvm.api.caching.impl;
+
+import com.sun.tools.visualvm.api.caching.Cache;
+import com.sun.tools.visualvm.api.caching.CacheStatistics;
+import com.sun.tools.visualvm.api.caching.Entry;
+import com.sun.tools.visualvm.api.caching.EntryFactory;
+import com.sun.tools.visualvm.api.caching.EvictionPolicy;
+import com.sun.tools.visualvm.api.caching.Persistor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Concurrent cache implementation
+ * <p>
+ * The entries are kept in a lock-striped map; a cache miss is resolved outside
+ * of any lock by a per-key in-flight future so that concurrent misses of one key
+ * are resolved only once while the lookups of other keys proceed.
+ * </p>
+ * <p>
+ * Optionally the cache can be bounded - the least recently or the least frequently
+ * used entries are evicted in batches once the limit is exceeded - and can refresh
+ * the entries approaching their TTL in background.
+ * </p>
+ * @author Jaroslav Bachorik
+ */
+final class ConcurrentCacheImpl<K, V> extends Cache<K,V> {
+    private static final Logger LOG = Logger.getLogger(ConcurrentCacheImpl.class.getName());
+
+    private static final ExecutorService refreshService;
+
+    static {
+        ThreadPoolExecutor service = new ThreadPoolExecutor(2, 2, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Cache Refresh " + counter.incrementAndGet()); // NOI18N
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        service.allowCoreThreadTimeOut(true);
+        refreshService = service;
+    }
+
+    final private ConcurrentMap<K, Node<V>> objectCache = new ConcurrentHashMap<K, Node<V>>();
+    final private ConcurrentMap<K, FutureTask<Entry<V>>> inFlight = new ConcurrentHashMap<K, FutureTask<Entry<V>>>();
+    final private Lock evictionLock = new ReentrantLock();
+
+    final private EntryFactory<K,V> resolver;
+    final private Persistor<K,V> persistor;
+    final private int maxSize;
+    final private EvictionPolicy policy;
+    final private float refreshAhead;
+
+    private volatile long update_interval = 60480000; // 7 days in milliseconds
+
+    // logical clock used for LRU ordering
+    final private AtomicLong accessClock = new AtomicLong();
+
+    final private AtomicLong hitCount = new AtomicLong();
+    final private AtomicLong missCount = new AtomicLong();
+    final private AtomicLong loadCount = new AtomicLong();
+    final private AtomicLong loadTime = new AtomicLong();
+    final private AtomicLong evictionCount = new AtomicLong();
+    final private AtomicLong refreshCount = new AtomicLong();
+
+    ConcurrentCacheImpl(EntryFactory<K,V> resolver, Persistor<K,V> persistor, int maxSize, EvictionPolicy policy, float refreshAhead) {
+        if (maxSize < 0) throw new IllegalArgumentException("maxSize must not be negative"); // NOI18N
+        if (refreshAhead < 0f || refreshAhead >= 1f) throw new IllegalArgumentException("refreshAhead must be in range <0, 1)"); // NOI18N
+        this.resolver = resolver != null ? resolver : ConcurrentCacheImpl.<K,V>defaultResolver();
+        this.persistor = persistor;
+        this.maxSize = maxSize;
+        this.policy = policy != null ? policy : EvictionPolicy.LRU;
+        this.refreshAhead = refreshAhead;
+    }
+
+    /**
+     * Retrieves an object from the cache by the given key
+     * <p>
+     * If there is no valid cached version the registered {@linkplain Persistor} and
+     * {@linkplain EntryFactory} are consulted. Only the callers asking for the same
+     * missing key wait for the resolution.
+     * </p>
+     * @param key The key identifying the object to be retrieved
+     * @return Returns the cached object or NULL
+     */
+    @Override
+    final public V retrieveObject(K key) {
+        Node<V> node = objectCache.get(key);
+        if (node != null) {
+            Entry<V> entry = node.entry;
+            long age = System.currentTimeMillis() - entry.getUpdateTimeStamp();
+            if (age <= update_interval) {
+                hitCount.incrementAndGet();
+                node.touch(accessClock.incrementAndGet());
+                if (refreshAhead > 0f && age > update_interval * refreshAhead) {
+                    scheduleRefresh(key);
+                }
+                return entry.getContent();
+            }
+        }
+        missCount.incrementAndGet();
+        Entry<V> entry = load(key, node == null);
+        if (entry == null && node != null) {
+            // keep serving the expired value rather than nothing
+            entry = node.entry;
+        }
+        return entry != null ? entry.getContent() : null;
+    }
+
+    @Override
+    final public V invalidateObject(K key) {
+        Node<V> node = objectCache.remove(key);
+        return node != null ? node.entry.getContent() : null;
+    }
+
+    /**
+     * Property getter
+     * @return Returns TTL interval in milliseconds
+     */
+    @Override
+    final public long getTTL() {
+        return update_interval;
+    }
+
+    /**
+     * Property setter
+     * @param ttl TTL interval in milliseconds
+     */
+    @Override
+    final public void setTTL(long ttl) {
+        this.update_interval = ttl;
+    }
+
+    @Override
+    public CacheStatistics getStatistics() {
+        return new CacheStatistics(hitCount.get(), missCount.get(), loadCount.get(), loadTime.get(),
+                                   evictionCount.get(), refreshCount.get());
+    }
+
+    /**
+     * Resolves the entry for the given key, making sure only one resolution
+     * per key is in progress at any time
+     * @param key The key to resolve
+     * @param usePersistor Whether the {@linkplain Persistor} should be asked first
+     * @return Returns the resolved entry or NULL
+     */
+    private Entry<V> load(final K key, final boolean usePersistor) {
+        FutureTask<Entry<V>> task = new FutureTask<Entry<V>>(new Callable<Entry<V>>() {
+            @Override
+            public Entry<V> call() throws Exception {
+                return doLoad(key, usePersistor);
+            }
+        });
+        FutureTask<Entry<V>> running = inFlight.putIfAbsent(key, task);
+        if (running == null) {
+            running = task;
+            try {
+                task.run();
+            } finally {
+                inFlight.remove(key, task);
+            }
+        }
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+            if (cause instanceof Error) throw (Error)cause;
+            LOG.log(Level.WARNING, null, cause);
+            return null;
+        }
+    }
+
+    private Entry<V> doLoad(K key, boolean usePersistor) {
+        long start = System.nanoTime();
+        try {
+            loadCount.incrementAndGet();
+            Entry<V> entry = null;
+            if (usePersistor && persistor != null) {
+                entry = persistor.retrieve(key);
+                if (entry != null && System.currentTimeMillis() - entry.getUpdateTimeStamp() > update_interval) {
+                    entry = null;
+                }
+            }
+            if (entry == null) {
+                entry = resolver.createEntry(key);
+                if (entry == null || entry.getContent() == null) {
+                    return null;
+                }
+                if (persistor != null) {
+                    persistor.store(key, entry);
+                }
+            }
+            objectCache.put(key, new Node<V>(entry, accessClock.incrementAndGet()));
+            if (maxSize > 0 && objectCache.size() > maxSize) {
+                evict();
+            }
+            return entry;
+        } finally {
+            loadTime.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    private void scheduleRefresh(final K key) {
+        final FutureTask<Entry<V>> task = new FutureTask<Entry<V>>(new Callable<Entry<V>>() {
+            @Override
+            public Entry<V> call() throws Exception {
+                // evicted meanwhile, callers may be waiting for it
+                if (!objectCache.containsKey(key)) return doLoad(key, true);
+                refreshCount.incrementAndGet();
+                return doLoad(key, false);
+            }
+        });
+        // only the caller claiming the key submits the refresh, callers
+        // missing the key meanwhile wait for the refreshed entry
+        if (inFlight.putIfAbsent(key, task) != null) return;
+        refreshService.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } finally {
+                    inFlight.remove(key, task);
+                }
+            }
+        });
+    }
+
+    /**
+     * Removes the least valuable entries according to the {@linkplain EvictionPolicy}
+     * <p>
+     * The cache is trimmed to 7/8 of its maximum size so the cost of ordering the
+     * entries is amortized over a number of insertions. Only one thread evicts at a time.
+     * </p>
+     */
+    private void evict() {
+        if (!evictionLock.tryLock()) return;
+        try {
+            int size = objectCache.size();
+            if (size <= maxSize) return;
+            int toRemove = size - maxSize + (maxSize >> 3);
+
+            List<Map.Entry<K, Node<V>>> candidates = new ArrayList<Map.Entry<K, Node<V>>>(objectCache.entrySet());
+            Collections.sort(candidates, policy == EvictionPolicy.LFU ? lfuOrder : lruOrder);
+            for (int i = 0; i < toRemove && i < candidates.size(); i++) {
+                Map.Entry<K, Node<V>> candidate = candidates.get(i);
+                if (objectCache.remove(candidate.getKey(), candidate.getValue())) {
+                    evictionCount.incrementAndGet();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private final Comparator<Map.Entry<K, Node<V>>> lruOrder = new Comparator<Map.Entry<K, Node<V>>>() {
+        @Override
+        public int compare(Map.Entry<K, Node<V>> o1, Map.Entry<K, Node<V>> o2) {
+            long a1 = o1.getValue().lastAccess;
+            long a2 = o2.getValue().lastAccess;
+            return a1 < a2 ? -1 : (a1 == a2 ? 0 : 1);
+        }
+    };
+
+    private final Comparator<Map.Entry<K, Node<V>>> lfuOrder = new Comparator<Map.Entry<K, Node<V>>>() {
+        @Override
+        public int compare(Map.Entry<K, Node<V>> o1, Map.Entry<K, Node<V>> o2) {
+            int h1 = o1.getValue().hits.get();
+            int h2 = o2.getValue().hits.get();
+            if (h1 != h2) return h1 < h2 ? -1 : 1;
+            return lruOrder.compare(o1, o2);
+        }
+    };
+
+    // EntryFactory.DEFAULT maps each key to an entry holding the key itself
+    @SuppressWarnings("unchecked")
+    private static <K,V> EntryFactory<K,V> defaultResolver() {
+        return EntryFactory.DEFAULT;
+    }
+
+    /**
+     * A cached entry together with its usage data
+     */
+    private static final class Node<V> {
+        final Entry<V> entry;
+        final AtomicInteger hits = new AtomicInteger();
+        volatile long lastAccess;
+
+        Node(Entry<V> entry, long accessStamp) {
+            this.entry = entry;
+            this.lastAccess = accessStamp;
+        }
+
+        void touch(long accessStamp) {
+            lastAccess = accessStamp;
+            hits.incrementAndGet();
+        }
+    }
+}
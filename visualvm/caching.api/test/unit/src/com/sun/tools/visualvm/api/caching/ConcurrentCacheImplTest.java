@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.tools.visualvm.api.caching;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jaroslav Bachorik
+ */
+public class ConcurrentCacheImplTest {
+    private final AtomicInteger missCount = new AtomicInteger();
+
+    private Cache<String, String> echoCache;
+
+    public ConcurrentCacheImplTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+        missCount.set(0);
+        echoCache = CacheFactory.getInstance().concurrentCache(new EntryFactory<String, String>() {
+            @Override
+            public Entry<String> createEntry(String key) {
+                missCount.incrementAndGet();
+                return new Entry<String>(key);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        echoCache = null;
+    }
+
+    /**
+     * Test of retrieveObject method, of class ConcurrentCacheImpl.
+     */
+    @Test
+    public void testRetrieveObjectCached() {
+        System.out.println("retrieveObject - cached");
+        assertEquals("key", echoCache.retrieveObject("key"));
+        assertEquals("key", echoCache.retrieveObject("key"));
+        assertEquals(1, missCount.get());
+
+        CacheStatistics stats = echoCache.getStatistics();
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(1, stats.getLoadCount());
+    }
+
+    /**
+     * Test of retrieveObject method, of class ConcurrentCacheImpl.
+     */
+    @Test
+    public void testRetrieveObjectEvicted() throws Exception {
+        System.out.println("retrieveObject - evicted");
+        echoCache.setTTL(500);
+        echoCache.retrieveObject("key");
+        Thread.sleep(1000);
+        assertEquals("key", echoCache.retrieveObject("key"));
+        assertEquals(2, missCount.get());
+    }
+
+    /**
+     * Concurrent misses of one key must be resolved only once
+     * while the other keys are not blocked.
+     */
+    @Test
+    public void testConcurrentMissSingleLoad() throws Exception {
+        System.out.println("retrieveObject - concurrent miss");
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger slowLoads = new AtomicInteger();
+        final Cache<String, String> cache = CacheFactory.getInstance().concurrentCache(new EntryFactory<String, String>() {
+            @Override
+            public Entry<String> createEntry(String key) {
+                if (key.equals("slow")) {
+                    slowLoads.incrementAndGet();
+                    loading.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return new Entry<String>(key);
+            }
+        });
+
+        Thread[] readers = new Thread[4];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    cache.retrieveObject("slow");
+                }
+            });
+            readers[i].start();
+        }
+        assertTrue(loading.await(10, TimeUnit.SECONDS));
+        assertEquals("fast", cache.retrieveObject("fast"));
+
+        release.countDown();
+        for (Thread reader : readers) {
+            reader.join(10000);
+        }
+        assertEquals(1, slowLoads.get());
+        assertEquals("slow", cache.retrieveObject("slow"));
+    }
+
+    /**
+     * Concurrent hits of an entry due for refresh must trigger one refresh only.
+     */
+    @Test
+    public void testRefreshAheadSingleRefresh() throws Exception {
+        System.out.println("retrieveObject - refresh ahead");
+        final CountDownLatch refreshing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Cache<String, String> cache = CacheFactory.getInstance().concurrentCache(new EntryFactory<String, String>() {
+            @Override
+            public Entry<String> createEntry(String key) {
+                if (missCount.incrementAndGet() > 1) {
+                    refreshing.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return new Entry<String>(key);
+            }
+        }, null, 0, EvictionPolicy.LRU, 0.5f);
+        cache.setTTL(1000);
+        cache.retrieveObject("key");
+        Thread.sleep(600);
+
+        Thread[] readers = new Thread[8];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    assertEquals("key", cache.retrieveObject("key"));
+                }
+            });
+            readers[i].start();
+        }
+        for (Thread reader : readers) {
+            reader.join(10000);
+        }
+        assertTrue(refreshing.await(10, TimeUnit.SECONDS));
+        release.countDown();
+        Thread.sleep(200);
+        assertEquals(2, missCount.get());
+        assertEquals(1, cache.getStatistics().getRefreshCount());
+    }
+
+    /**
+     * Test of the size bound with LRU eviction.
+     */
+    @Test
+    public void testLRUEviction() {
+        System.out.println("retrieveObject - LRU eviction");
+        Cache<String, String> cache = CacheFactory.getInstance().concurrentCache(new EntryFactory<String, String>() {
+            @Override
+            public Entry<String> createEntry(String key) {
+                missCount.incrementAndGet();
+                return new Entry<String>(key);
+            }
+        }, null, 8, EvictionPolicy.LRU);
+
+        for (int i = 0; i < 8; i++) {
+            cache.retrieveObject("key" + i);
+        }
+        cache.retrieveObject("key0"); // make key0 the most recently used
+        cache.retrieveObject("key8"); // exceeds the limit
+        assertTrue(cache.getStatistics().getEvictionCount() > 0);
+
+        missCount.set(0);
+        cache.retrieveObject("key0");
+        assertEquals(0, missCount.get());
+        cache.retrieveObject("key1");
+        assertEquals(1, missCount.get());
+    }
+
+    /**
+     * Test of invalidateObject method, of class ConcurrentCacheImpl.
+     */
+    @Test
+    public void testInvalidateObject() {
+        System.out.println("invalidateObject");
+        echoCache.retrieveObject("key");
+        assertEquals("key", echoCache.invalidateObject("key"));
+        echoCache.retrieveObject("key");
+        assertEquals(2, missCount.get());
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.tools.visualvm.api.caching;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jaroslav Bachorik
+ */
+public class MappedLogPersistorTest {
+    private File directory;
+    private MappedLogPersistor<String, String> instance;
+
+    public MappedLogPersistorTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("persistor", "test");
+        directory.delete();
+        directory.mkdirs();
+        instance = open();
+    }
+
+    @After
+    public void tearDown() {
+        instance.close();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private MappedLogPersistor<String, String> open() throws IOException {
+        return new MappedLogPersistor<String, String>(directory, "test", MappedLogPersistor.STRING_CODEC, MappedLogPersistor.STRING_CODEC);
+    }
+
+    /**
+     * Test of store and retrieve methods, of class MappedLogPersistor.
+     */
+    @Test
+    public void testStoreRetrieve() {
+        System.out.println("store/retrieve");
+        assertNull(instance.retrieve("key"));
+        instance.store("key", new Entry<String>("value", 1234L));
+        Entry<String> entry = instance.retrieve("key");
+        assertEquals("value", entry.getContent());
+        assertEquals(1234L, entry.getUpdateTimeStamp());
+    }
+
+    /**
+     * The entries must survive reopening the log
+     */
+    @Test
+    public void testReopen() throws IOException {
+        System.out.println("reopen");
+        instance.store("key1", new Entry<String>("value1"));
+        instance.store("key2", new Entry<String>("value2"));
+        instance.store("key1", new Entry<String>("value3"));
+        instance.remove("key2");
+        instance.close();
+
+        instance = open();
+        assertEquals("value3", instance.retrieve("key1").getContent());
+        assertNull(instance.retrieve("key2"));
+    }
+
+    /**
+     * Overwriting the same keys must not grow the log without bounds
+     */
+    @Test
+    public void testCompaction() throws Exception {
+        System.out.println("compaction");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append('x');
+        }
+        String value = sb.toString();
+        for (int i = 0; i < 2000; i++) {
+            instance.store("key" + (i % 10), new Entry<String>(value + i));
+        }
+        Thread.sleep(1000);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(value + (1990 + i), instance.retrieve("key" + i).getContent());
+        }
+        long totalSize = 0;
+        for (File f : directory.listFiles()) {
+            totalSize += f.length();
+        }
+        assertTrue(totalSize < 2000 * 1000);
+
+        instance.close();
+        instance = open();
+        assertEquals(value + 1999, instance.retrieve("key9").getContent());
+    }
+
+    /**
+     * An incomplete generation left behind by an interrupted compaction must not replace the current one
+     */
+    @Test
+    public void testInterruptedCompaction() throws IOException {
+        System.out.println("interrupted compaction");
+        instance.store("key", new Entry<String>("value"));
+        instance.close();
+
+        FileOutputStream fos = new FileOutputStream(new File(directory, "test.1.log.tmp"));
+        try {
+            fos.write(new byte[]{0x56, 0x56, 0x4d, 0x4c, 0, 0, 0, 1});
+        } finally {
+            fos.close();
+        }
+
+        instance = open();
+        assertEquals("value", instance.retrieve("key").getContent());
+        assertFalse(new File(directory, "test.1.log.tmp").exists());
+    }
+
+    /**
+     * A record with a corrupted key length must truncate the log at that record
+     */
+    @Test
+    public void testCorruptedKeyLength() throws IOException {
+        System.out.println("corrupted key length");
+        instance.store("key1", new Entry<String>("value1"));
+        instance.store("key2", new Entry<String>("value2"));
+        instance.close();
+
+        RandomAccessFile raf = new RandomAccessFile(new File(directory, "test.0.log"), "rw");
+        try {
+            raf.seek(16);
+            int second = 16 + 4 + raf.readInt();
+            raf.seek(second + 13);
+            raf.writeInt(Integer.MAX_VALUE);
+        } finally {
+            raf.close();
+        }
+
+        instance = open();
+        assertEquals("value1", instance.retrieve("key1").getContent());
+        assertNull(instance.retrieve("key2"));
+
+        // the log stays usable after the corrupted tail is dropped
+        instance.store("key3", new Entry<String>("value3"));
+        instance.close();
+        instance = open();
+        assertEquals("value1", instance.retrieve("key1").getContent());
+        assertNull(instance.retrieve("key2"));
+        assertEquals("value3", instance.retrieve("key3").getContent());
+    }
+}
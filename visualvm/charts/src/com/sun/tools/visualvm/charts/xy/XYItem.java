@@ -154,6 +154,24 @@ abstract class XYItem extends SynchronousXYItem {
         
     }
 
+    // --- Level of detail -----------------------------------------------------
+
+    /**
+     * Merges minimum and maximum of values [fromIndex, toIndex] into minMax[0]
+     * and minMax[1]. Overridden by storages providing an index of the values.
+     */
+    void getMinMaxValues(int fromIndex, int toIndex, long[] minMax) {
+        long min = minMax[0];
+        long max = minMax[1];
+        for (int i = fromIndex; i <= toIndex; i++) {
+            long value = getYValue(i);
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        minMax[0] = min;
+        minMax[1] = max;
+    }
+
     public long getMinYValue() { return minY; }
 
     public long getMaxYValue() { return maxY; }
@@ -326,16 +326,22 @@ public class XYPainter extends SynchronousXYItemPainter {
         if (lastIndex == -1) lastIndex = valuesCount - 1;
         
         int firstX = getViewX(context, item, firstIndex);
-        while (firstIndex > 0 && getViewX(context, item, firstIndex) >= firstX - lineWidth)
-            firstIndex--;
+        firstIndex = Math.max(0, getLastIndex(context, item, 0, firstIndex, firstX - lineWidth - 1));
         
         int lastX = getViewX(context, item, lastIndex);
-        while (lastIndex < valuesCount - 1 && getViewX(context, item, lastIndex) <= lastX + lineWidth)
-            lastIndex++;
+        lastIndex = Math.min(valuesCount - 1, getLastIndex(context, item, lastIndex,
+                             valuesCount - 1, lastX + lineWidth) + 1);
         
         double itemValueFactor = type == TYPE_RELATIVE ? getItemValueFactor(context,
                                  maxValueOffset, item.getBounds().height) : 0;
         
+        // Many values per pixel, envelope of the values for each pixel column
+        if (lastIndex - firstIndex > dirtyArea.width * 2 &&
+            item instanceof com.sun.tools.visualvm.charts.xy.XYItem)
+            return getIndexedMinMaxPoints((com.sun.tools.visualvm.charts.xy.XYItem)item,
+                                          firstIndex, lastIndex, context, type,
+                                          itemValueFactor);
+        
         int maxPoints = Math.max(dirtyArea.width, (lastIndex - firstIndex + 1) * 3);
         
         int[] xPoints = new int[maxPoints + 2];
@@ -393,9 +399,71 @@ public class XYPainter extends SynchronousXYItemPainter {
         return new int[][] { xPoints, yPoints, { nPoints } };
     }
     
+    private int[][] getIndexedMinMaxPoints(com.sun.tools.visualvm.charts.xy.XYItem item,
+                                           int firstIndex, int lastIndex,
+                                           SynchronousXYChartContext context,
+                                           int type, double itemValueFactor) {
+        
+        int columns = getViewX(context, item, lastIndex) - getViewX(context, item, firstIndex) + 1;
+        int[] xPoints = new int[columns * 3 + 2];
+        int[] yPoints = new int[columns * 3 + 2];
+        long[] minMax = new long[2];
+        
+        int nPoints = 0;
+        int index = firstIndex;
+        while (index <= lastIndex) {
+            int x = getViewX(context, item, index);
+            int columnEnd = getLastIndex(context, item, index, lastIndex, x);
+            
+            minMax[0] = Long.MAX_VALUE;
+            minMax[1] = Long.MIN_VALUE;
+            item.getMinMaxValues(index, columnEnd, minMax);
+            
+            int y1 = Utils.checkedInt(Math.ceil(getViewY(item, minMax[0], type,
+                                                context, itemValueFactor)));
+            xPoints[nPoints] = x;
+            yPoints[nPoints] = y1;
+            nPoints++;
+            
+            if (minMax[0] != minMax[1]) {
+                int y2 = Utils.checkedInt(Math.ceil(getViewY(item, minMax[1], type,
+                                                    context, itemValueFactor)));
+                int minY = Math.min(y1, y2);
+                int maxY = Math.max(y1, y2);
+                
+                yPoints[nPoints - 1] = minY;
+                
+                xPoints[nPoints] = x;
+                yPoints[nPoints] = maxY;
+                nPoints++;
+                
+                xPoints[nPoints] = x;
+                yPoints[nPoints] = minY;
+                nPoints++;
+            }
+            
+            index = columnEnd + 1;
+        }
+        
+        return new int[][] { xPoints, yPoints, { nPoints } };
+    }
+    
     private static int getViewX(SynchronousXYChartContext context, XYItem item, int index) {
         return Utils.checkedInt(Math.ceil(context.getViewX(item.getXValue(index))));
     }
+    
+    // Returns the last index in [fromIndex, toIndex] displayed at or before viewX, or fromIndex - 1
+    private static int getLastIndex(SynchronousXYChartContext context, XYItem item,
+                                    int fromIndex, int toIndex, int viewX) {
+        int low = fromIndex;
+        int high = toIndex;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (getViewX(context, item, mid) <= viewX) low = mid + 1;
+            else high = mid - 1;
+        }
+        return high;
+    }
 
     private LongRect getViewBoundsRelative(LongRect dataBounds, XYItem item,
                                            ChartContext context) {
@@ -469,11 +537,16 @@ public class XYPainter extends SynchronousXYItemPainter {
 
     private static double getYValue(XYItem item, int valueIndex,
                                   int type, ChartContext context, double itemValueFactor) {
+        return getViewY(item, item.getYValue(valueIndex), type, context, itemValueFactor);
+    }
+
+    private static double getViewY(XYItem item, long value,
+                                   int type, ChartContext context, double itemValueFactor) {
         if (type == TYPE_ABSOLUTE) {
-            return context.getViewY(item.getYValue(valueIndex));
+            return context.getViewY(value);
         } else {
             return context.getViewY(context.getDataOffsetY() + (itemValueFactor *
-                        (item.getYValue(valueIndex) - item.getBounds().y)));
+                        (value - item.getBounds().y)));
         }
     }
 
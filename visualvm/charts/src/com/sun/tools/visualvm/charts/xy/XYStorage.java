@@ -25,6 +25,7 @@
 
 package com.sun.tools.visualvm.charts.xy;
 
+import com.sun.tools.visualvm.uisupport.MinMaxIndex;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
@@ -41,7 +42,8 @@ import org.netbeans.lib.profiler.charts.xy.synchronous.SynchronousXYItem;
 public class XYStorage implements Timeline {
 
     private static final String SNAPSHOT_HEADER = "XYStorageSnapshot"; // NOI18N
-    private static final int SNAPSHOT_VERSION = 1;
+    private static final int SNAPSHOT_VERSION_1 = 1;
+    private static final int SNAPSHOT_VERSION = 2;
 
     public static final long NO_VALUE = Long.MIN_VALUE - 1;
 
@@ -51,6 +53,7 @@ public class XYStorage implements Timeline {
     private int valuesCount;
     private long[] timestamps;
     private long[][] values;
+    private MinMaxIndex[] indexes;
 
     private int cycleIndex;
 
@@ -68,6 +71,9 @@ public class XYStorage implements Timeline {
             public long getYValue(int valueIndex) {
                 return getValue(itemIndex, valueIndex);
             }
+            void getMinMaxValues(int fromIndex, int toIndex, long[] minMax) {
+                XYStorage.this.getMinMaxValues(itemIndex, fromIndex, toIndex, minMax);
+            }
         };
     }
 
@@ -75,13 +81,20 @@ public class XYStorage implements Timeline {
     public synchronized void addValues(long timestamp, long[] values) {
         updateStorage();
 
-        setTimestamp(Math.min(valuesCount, valuesLimit - 1), timestamp);
+        int valueIndex = Math.min(valuesCount, valuesLimit - 1);
+        setTimestamp(valueIndex, timestamp);
         for (int i = 0; i < values.length; i++)
-            setValue(i, Math.min(valuesCount, valuesLimit - 1), values[i]);
+            setValue(i, valueIndex, values[i]);
 
         if (valuesCount < valuesLimit) valuesCount++;
+
+        int slot = getIndex(valueIndex);
+        for (int i = 0; i < values.length; i++)
+            indexes[i].update(slot, valuesCount);
     }
 
+    // Snapshot version 2 stores the timestamps followed by the values of each
+    // item, each column as a block of zig-zag varint encoded deltas.
     public synchronized void saveValues(OutputStream os) throws IOException {
         DataOutputStream dos = null;
         try {
@@ -95,10 +108,17 @@ public class XYStorage implements Timeline {
             dos.writeInt(icount); // Items count
             dos.writeInt(vcount); // Values count
 
-            for (int vidx = 0; vidx < vcount; vidx++) {
-                dos.writeLong(getTimestamp(vidx));
-                for (int iidx = 0; iidx < icount; iidx++)
-                    dos.writeLong(getValue(iidx, vidx));
+            byte[] block = new byte[Math.max(16, vcount * 2)];
+            long[] column = new long[vcount];
+
+            for (int vidx = 0; vidx < vcount; vidx++)
+                column[vidx] = getTimestamp(vidx);
+            block = writeBlock(column, vcount, block, dos);
+
+            for (int iidx = 0; iidx < icount; iidx++) {
+                for (int vidx = 0; vidx < vcount; vidx++)
+                    column[vidx] = getValue(iidx, vidx);
+                block = writeBlock(column, vcount, block, dos);
             }
         } finally {
             if (dos != null) dos.close();
@@ -112,25 +132,119 @@ public class XYStorage implements Timeline {
 
             if (!SNAPSHOT_HEADER.equals(dis.readUTF()))
                 throw new IOException("Unknown snapshot format"); // NOI18N
-            if (SNAPSHOT_VERSION != dis.readInt())
+            int version = dis.readInt();
+            if (version != SNAPSHOT_VERSION && version != SNAPSHOT_VERSION_1)
                 throw new IOException("Unsupported snapshot version"); // NOI18N
-            if (values.length != dis.readInt())
+            int icount = values.length;
+            if (icount != dis.readInt())
                 throw new IOException("Snapshot doesn't match number of items"); // NOI18N
 
             int vcount = dis.readInt();
-            long[] vals = new long[values.length];
-            
-            for (int vidx = 0; vidx < vcount; vidx++) {
-                long timestamp = dis.readLong();
-                for (int iidx = 0; iidx < vals.length; iidx++)
-                    vals[iidx] = dis.readLong();
-                addValues(timestamp, vals);
+            long[] tstamps = new long[vcount];
+            long[][] vals = new long[icount][vcount];
+
+            if (version == SNAPSHOT_VERSION_1) {
+                for (int vidx = 0; vidx < vcount; vidx++) {
+                    tstamps[vidx] = dis.readLong();
+                    for (int iidx = 0; iidx < icount; iidx++)
+                        vals[iidx][vidx] = dis.readLong();
+                }
+            } else {
+                byte[] block = new byte[0];
+                block = readBlock(tstamps, block, dis);
+                for (int iidx = 0; iidx < icount; iidx++)
+                    block = readBlock(vals[iidx], block, dis);
             }
+
+            addValues(tstamps, vals, vcount);
         } finally {
             if (dis != null) dis.close();
         }
     }
 
+    // Fills the empty storage directly, otherwise adds the values one by one
+    private void addValues(long[] tstamps, long[][] vals, int vcount) {
+        if (valuesCount != 0 || timestamps == null) {
+            long[] row = new long[vals.length];
+            for (int vidx = 0; vidx < vcount; vidx++) {
+                for (int iidx = 0; iidx < row.length; iidx++)
+                    row[iidx] = vals[iidx][vidx];
+                addValues(tstamps[vidx], row);
+            }
+            return;
+        }
+
+        int count = Math.min(vcount, valuesLimit);
+        int offset = vcount - count;
+        int bufferSize = Math.max(timestamps.length,
+                         Math.min(valuesLimit, (count / bufferStep + 1) * bufferStep));
+
+        timestamps = new long[bufferSize];
+        System.arraycopy(tstamps, offset, timestamps, 0, count);
+        for (int iidx = 0; iidx < values.length; iidx++) {
+            values[iidx] = new long[bufferSize];
+            System.arraycopy(vals[iidx], offset, values[iidx], 0, count);
+        }
+
+        valuesCount = count;
+        cycleIndex = 0;
+
+        for (int iidx = 0; iidx < indexes.length; iidx++) {
+            indexes[iidx].ensureCapacity(bufferSize, 0);
+            indexes[iidx].rebuild(count);
+        }
+    }
+
+    private static byte[] writeBlock(long[] column, int count, byte[] block,
+                                     DataOutputStream dos) throws IOException {
+        int length = 0;
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            if (block.length - length < 10) { // 10 bytes is max varint length
+                byte[] newBlock = new byte[block.length * 2];
+                System.arraycopy(block, 0, newBlock, 0, length);
+                block = newBlock;
+            }
+            long delta = column[i] - previous;
+            previous = column[i];
+            long zigzag = (delta << 1) ^ (delta >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                block[length++] = (byte)((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            block[length++] = (byte)zigzag;
+        }
+        dos.writeInt(length);
+        dos.write(block, 0, length);
+        return block;
+    }
+
+    private static byte[] readBlock(long[] column, byte[] block,
+                                    DataInputStream dis) throws IOException {
+        int length = dis.readInt();
+        if (length < 0) throw new IOException("Corrupted snapshot"); // NOI18N
+        if (block.length < length) block = new byte[length];
+        dis.readFully(block, 0, length);
+
+        int position = 0;
+        long previous = 0;
+        for (int i = 0; i < column.length; i++) {
+            long zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (position == length || shift > 63)
+                    throw new IOException("Corrupted snapshot"); // NOI18N
+                b = block[position++];
+                zigzag |= (long)(b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            previous += (zigzag >>> 1) ^ -(zigzag & 1);
+            column[i] = previous;
+        }
+        return block;
+    }
+
 
     private void initialize() {
         reset();
@@ -146,6 +260,13 @@ public class XYStorage implements Timeline {
             else for (int i = 0; i < values.length; i++)
                     values[i] = new long[bufferStep];
         }
+
+        if (values == null) {
+            indexes = null;
+        } else {
+            for (int i = 0; i < values.length; i++)
+                indexes[i] = createIndex(i, bufferStep);
+        }
     }
 
 
@@ -155,16 +276,44 @@ public class XYStorage implements Timeline {
             timestamps = new long[bufferStep];
             values = new long[1][];
             values[0] = new long[bufferStep];
+            indexes = new MinMaxIndex[] { createIndex(0, bufferStep) };
         } else {
             values = extendArray(values, 1);
             itemIndex = values.length - 1;
             values[itemIndex] = new long[timestamps.length];
             if (values[itemIndex].length > 0)
                 Arrays.fill(values[itemIndex], NO_VALUE);
+            MinMaxIndex[] newIndexes = new MinMaxIndex[values.length];
+            System.arraycopy(indexes, 0, newIndexes, 0, indexes.length);
+            newIndexes[itemIndex] = createIndex(itemIndex, timestamps.length);
+            indexes = newIndexes;
         }
         return itemIndex;
     }
 
+    private MinMaxIndex createIndex(final int itemIndex, int capacity) {
+        MinMaxIndex minMaxIndex = new MinMaxIndex() {
+            protected long getMin(int index) { return values[itemIndex][index]; }
+            protected long getMax(int index) { return values[itemIndex][index]; }
+        };
+        minMaxIndex.ensureCapacity(capacity, valuesCount);
+        return minMaxIndex;
+    }
+
+    private synchronized void getMinMaxValues(int itemIndex, int fromIndex,
+                                              int toIndex, long[] minMax) {
+        MinMaxIndex index = indexes[itemIndex];
+        int from = getIndex(fromIndex);
+        int to = getIndex(toIndex);
+        if (from <= to) {
+            index.getMinMax(from, to, minMax);
+        } else {
+            // Range wraps around the end of the cyclic buffer
+            index.getMinMax(from, valuesCount - 1, minMax);
+            index.getMinMax(0, to, minMax);
+        }
+    }
+
 
     private int getIndex(int index) {
         if (cycleIndex != 0) {
@@ -204,8 +353,10 @@ public class XYStorage implements Timeline {
         if (valuesCount == bufferSize && bufferSize < valuesLimit) {
             int extent = Math.min(bufferStep, valuesLimit - bufferSize);
             timestamps = extendArray(timestamps, extent);
-            for (int i = 0; i < values.length; i++)
+            for (int i = 0; i < values.length; i++) {
                 values[i] = extendArray(values[i], extent);
+                indexes[i].ensureCapacity(timestamps.length, valuesCount);
+            }
             cycleIndex = 0;
         } else if (isFull()) {
             cycleIndex++;
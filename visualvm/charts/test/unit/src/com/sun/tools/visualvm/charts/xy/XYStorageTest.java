@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * 
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ * 
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ * 
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.tools.visualvm.charts.xy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import org.netbeans.lib.profiler.charts.xy.synchronous.SynchronousXYItem;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jiri Sedlacek
+ */
+public class XYStorageTest {
+
+    private static final long[] TIMESTAMPS = { 1000, 2000, 3000, 3500, 5000 };
+    private static final long[][] VALUES = {
+        { 10, 20, 15, Long.MAX_VALUE, -5 },
+        { XYStorage.NO_VALUE, XYStorage.NO_VALUE, 0, Long.MIN_VALUE, 7 }
+    };
+
+    public XYStorageTest() {
+    }
+
+    /**
+     * Test that version 1 snapshots are loaded and saved again as version 2.
+     */
+    @Test
+    public void testVersion1RoundTrip() throws IOException {
+        System.out.println("version1RoundTrip");
+        XYStorage storage = new XYStorage(100, 2);
+        SynchronousXYItem[] items = addItems(storage);
+        storage.loadValues(new ByteArrayInputStream(version1Snapshot(VALUES.length, TIMESTAMPS.length)));
+        assertValues(storage, items, 0);
+
+        byte[] snapshot = save(storage);
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(snapshot));
+        assertEquals("XYStorageSnapshot", dis.readUTF()); // NOI18N
+        assertEquals(2, dis.readInt());
+        // columnar deltas are smaller than the rows of longs
+        assertTrue(snapshot.length < version1Snapshot(VALUES.length, TIMESTAMPS.length).length);
+
+        XYStorage loaded = new XYStorage(100, 2);
+        SynchronousXYItem[] loadedItems = addItems(loaded);
+        loaded.loadValues(new ByteArrayInputStream(snapshot));
+        assertValues(loaded, loadedItems, 0);
+        assertArrayEquals(snapshot, save(loaded));
+    }
+
+    /**
+     * Test that only the newest values fitting the limit are loaded.
+     */
+    @Test
+    public void testValuesLimit() throws IOException {
+        System.out.println("valuesLimit");
+        XYStorage storage = new XYStorage(3, 2);
+        SynchronousXYItem[] items = addItems(storage);
+        storage.loadValues(new ByteArrayInputStream(version1Snapshot(VALUES.length, TIMESTAMPS.length)));
+        assertValues(storage, items, 2);
+
+        XYStorage loaded = new XYStorage(3, 2);
+        SynchronousXYItem[] loadedItems = addItems(loaded);
+        loaded.loadValues(new ByteArrayInputStream(save(storage)));
+        assertValues(loaded, loadedItems, 2);
+    }
+
+    /**
+     * Test that snapshot values are appended to a storage which isn't empty.
+     */
+    @Test
+    public void testLoadToNonEmpty() throws IOException {
+        System.out.println("loadToNonEmpty");
+        XYStorage storage = new XYStorage(100, 2);
+        SynchronousXYItem[] items = addItems(storage);
+        storage.addValues(500, new long[] { 1, 2 });
+        storage.loadValues(new ByteArrayInputStream(version1Snapshot(VALUES.length, TIMESTAMPS.length)));
+
+        assertEquals(TIMESTAMPS.length + 1, storage.getTimestampsCount());
+        assertEquals(500, storage.getTimestamp(0));
+        assertEquals(2, items[1].getYValue(0));
+        for (int i = 0; i < TIMESTAMPS.length; i++) {
+            assertEquals(TIMESTAMPS[i], storage.getTimestamp(i + 1));
+            for (int j = 0; j < items.length; j++)
+                assertEquals(VALUES[j][i], items[j].getYValue(i + 1));
+        }
+    }
+
+    /**
+     * Test that snapshots with a different number of items are rejected.
+     */
+    @Test(expected = IOException.class)
+    public void testItemsMismatch() throws IOException {
+        System.out.println("itemsMismatch");
+        XYStorage storage = new XYStorage(100, 2);
+        storage.addItem("single", 0, 0); // NOI18N
+        storage.loadValues(new ByteArrayInputStream(version1Snapshot(VALUES.length, TIMESTAMPS.length)));
+    }
+
+    private static SynchronousXYItem[] addItems(XYStorage storage) {
+        SynchronousXYItem[] items = new SynchronousXYItem[VALUES.length];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = storage.addItem("item" + i, 0, 0); // NOI18N
+            items[i].setTimeline(storage);
+        }
+        return items;
+    }
+
+    // Snapshot version 1 stores rows of the timestamp and the item values
+    private static byte[] version1Snapshot(int icount, int vcount) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bos);
+        dos.writeUTF("XYStorageSnapshot"); // NOI18N
+        dos.writeInt(1);
+        dos.writeInt(icount);
+        dos.writeInt(vcount);
+        for (int vidx = 0; vidx < vcount; vidx++) {
+            dos.writeLong(TIMESTAMPS[vidx]);
+            for (int iidx = 0; iidx < icount; iidx++)
+                dos.writeLong(VALUES[iidx][vidx]);
+        }
+        dos.close();
+        return bos.toByteArray();
+    }
+
+    private static byte[] save(XYStorage storage) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        storage.saveValues(bos);
+        return bos.toByteArray();
+    }
+
+    private static void assertValues(XYStorage storage, SynchronousXYItem[] items, int offset) {
+        assertEquals(TIMESTAMPS.length - offset, storage.getTimestampsCount());
+        for (int i = offset; i < TIMESTAMPS.length; i++) {
+            assertEquals(TIMESTAMPS[i], storage.getTimestamp(i - offset));
+            for (int j = 0; j < items.length; j++)
+                assertEquals(VALUES[j][i], items[j].getYValue(i - offset));
+        }
+    }
+}
@@ -51,6 +51,11 @@ public class Install extends ModuleInstall {
         SnapshotsSupport.getInstance();
     }
     
+    public void close() {
+        // Custom properties are saved asynchronously, write pending changes
+        Storage.flushCustomProperties();
+    }
+    
     private void cleanupPreviousSession() {
         File temporaryStorage = new File(Storage.getTemporaryStorageDirectoryString());
         Utils.delete(temporaryStorage, false);
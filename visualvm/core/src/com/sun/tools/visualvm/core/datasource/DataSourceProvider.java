@@ -37,11 +37,14 @@ import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.openide.util.RequestProcessor;
 
 /**
  * Default implementation of DataSourceProvider.
  * DataSourceProviders can benefit from extending this class which implements
  * managing created DataSource instances and firing the events to listeners.
+ * Changes made within a short time window are delivered to the listeners
+ * as a single event.
  *
  * @author Jiri Sedlacek
  */
@@ -51,9 +54,22 @@ public class DataSourceProvider {
             Boolean.getBoolean(DataSourceProvider.class.getName() + ".suppressExceptionsUI"); // NOI18N
     private static final Logger LOGGER = Logger.getLogger(DataSourceProvider.class.getName());
 
+    // Changes within this time are delivered in one event
+    private static final int COALESCING_WINDOW = 50;
+    // Listeners processing an event longer than this are reported
+    private static final long SLOW_LISTENER_THRESHOLD = 100;
+
     private final Set<DataSource> dataSources = Collections.synchronizedSet(new HashSet());
     private final Map<DataChangeListener<? extends DataSource>, Class<? extends DataSource>> listeners = new HashMap();
 
+    // Changes not yet delivered to the listeners, accessed in EVENT_QUEUE only
+    private final Set<DataSource> pendingAdded = new HashSet();
+    private final Set<DataSource> pendingRemoved = new HashSet();
+    private long pendingSince;
+    private final RequestProcessor.Task firePendingTask = DataSource.EVENT_QUEUE.create(new Runnable() {
+        public void run() { firePendingChanges(); }
+    });
+
 
     /**
      * Creates new instance of DataSourceProvider.
@@ -76,6 +92,8 @@ public class DataSourceProvider {
                     String msg = "Listener " + listener + " already registered"; // NOI18N
                     LOGGER.log(Level.SEVERE, msg, new UnsupportedOperationException(msg));
                 } else {
+                    // The current state will include the pending changes
+                    firePendingChanges();
                     listeners.put(listener, scope);
                     fireCurrentState(listener);
                 }
@@ -96,6 +114,8 @@ public class DataSourceProvider {
                     String msg = "Listener " + listener + " not registered"; // NOI18N
                     LOGGER.log(Level.SEVERE, msg, new UnsupportedOperationException(msg));
                 } else {
+                    // Changes made before removing the listener are delivered to it
+                    firePendingChanges();
                     listeners.remove(listener);
                 }
             }
@@ -245,8 +265,42 @@ public class DataSourceProvider {
     }
 
     private void fireDataChanged(Set<? extends DataSource> added, Set<? extends DataSource> removed) {
+        if (listeners.isEmpty()) return;
+
+        // Adding a DataSource removed within the window or vice versa must
+        // be delivered as two events
+        if (!Collections.disjoint(added, pendingRemoved) || !Collections.disjoint(removed, pendingAdded))
+            firePendingChanges();
+
+        pendingAdded.addAll(added);
+        pendingRemoved.addAll(removed);
+        if (pendingSince == 0) {
+            pendingSince = System.currentTimeMillis();
+            firePendingTask.schedule(COALESCING_WINDOW);
+        }
+    }
+
+    private void firePendingChanges() {
+        if (pendingSince == 0) return;
+
+        Set<DataSource> added = new HashSet(pendingAdded);
+        Set<DataSource> removed = new HashSet(pendingRemoved);
+        long delay = System.currentTimeMillis() - pendingSince;
+        pendingAdded.clear();
+        pendingRemoved.clear();
+        pendingSince = 0;
+
         Set<DataChangeListener<? extends DataSource>> listenersSet = listeners.keySet();
-        for (DataChangeListener listener : listenersSet) fireDataChanged(listener, added, removed);
+        for (DataChangeListener listener : listenersSet) {
+            long start = System.currentTimeMillis();
+            fireDataChanged(listener, added, removed);
+            long time = System.currentTimeMillis() - start;
+            if (time >= SLOW_LISTENER_THRESHOLD)
+                LOGGER.log(Level.INFO, "Slow DataChangeListener {0}: {1} ms", new Object[] { listener, time }); // NOI18N
+            else if (LOGGER.isLoggable(Level.FINE))
+                LOGGER.log(Level.FINE, "DataChangeListener {0}: {1} ms, delivered after {2} ms", // NOI18N
+                           new Object[] { listener, time, delay });
+        }
     }
 
     private void fireDataChanged(DataChangeListener<? extends DataSource> listener, Set<? extends DataSource> added, Set<? extends DataSource> removed) {
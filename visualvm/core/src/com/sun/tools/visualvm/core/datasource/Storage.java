@@ -28,14 +28,24 @@ package com.sun.tools.visualvm.core.datasource;
 import com.sun.tools.visualvm.core.datasupport.Utils;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.openide.util.RequestProcessor;
 
 /**
  * Storage for a DataSource.
@@ -50,6 +60,18 @@ public final class Storage {
     
     private static final Logger LOGGER = Logger.getLogger(Storage.class.getName());
     
+    // Changes of custom properties are written after STORE_DELAY of inactivity,
+    // at most MAX_STORE_DELAY after the first unsaved change
+    private static final int STORE_DELAY = 1000;
+    private static final int MAX_STORE_DELAY = 5000;
+    private static final RequestProcessor STORE_PROCESSOR = new RequestProcessor("Storage Writer");   // NOI18N
+    // @GuardedBy pendingStorages
+    private static final Set<Storage> pendingStorages = new HashSet();
+    
+    private static final int BINARY_MAGIC = 0x56564d50; // VVMP
+    private static final int BINARY_VERSION = 1;
+    private static final String TMP_EXT = ".tmp";   // NOI18N
+    
     /**
      * Default extension for storage file.
      */
@@ -72,6 +94,15 @@ public final class Storage {
     private final File propertiesFile;
     
     private Properties properties;
+    
+    // Serializes writes of the properties file, acquired before this
+    private final Object storeLock = new Object();
+    // @GuardedBy this
+    private RequestProcessor.Task storeTask;
+    // @GuardedBy this
+    private boolean storePending;
+    // @GuardedBy this
+    private long storePendingSince;
 
 
     /**
@@ -174,7 +205,7 @@ public final class Storage {
         for (int i = 0; i < keys.length; i++)
             if (values[i] != null) prop.put(keys[i], values[i]);
             else prop.remove(keys[i]);
-        storeCustomProperties(); // NOTE: this could be done lazily if storeCustomProperties() was public
+        scheduleStoreCustomProperties();
     }
 
     /**
@@ -198,7 +229,7 @@ public final class Storage {
         if (prop != null)
             for (int i = 0; i < keys.length; i++)
                 prop.remove(keys[i]);
-        storeCustomProperties(); // NOTE: this could be done lazily if storeCustomProperties() was public
+        scheduleStoreCustomProperties();
     }
 
     /**
@@ -222,15 +253,61 @@ public final class Storage {
         if (file.isDirectory()) throw new IllegalArgumentException("Not a valid file: " + file);    // NOI18N
         
         Properties prop = getCustomProperties(false);
-        if (prop != null && !prop.isEmpty()) storeProperties(prop, file);
+        if (prop != null && !prop.isEmpty()) storeProperties(prop, file, false);
     }
     
     /**
      * Deletes properties file.
      */
-    public synchronized void deleteCustomPropertiesStorage() {
-        if (propertiesFile != null && propertiesFile.exists())
-            if (!propertiesFile.delete()) propertiesFile.deleteOnExit();
+    public void deleteCustomPropertiesStorage() {
+        synchronized (storeLock) {
+            synchronized (this) {
+                cancelStoreCustomProperties();
+                if (propertiesFile != null && propertiesFile.exists())
+                    if (!propertiesFile.delete()) propertiesFile.deleteOnExit();
+            }
+        }
+    }
+    
+    /**
+     * Writes changes of custom properties of all Storage instances which
+     * haven't been saved yet. Custom properties are saved asynchronously,
+     * this method should be called before the properties files are accessed
+     * directly, for example when archiving a storage directory.
+     *
+     * @since VisualVM 1.3.8
+     */
+    public static void flushCustomProperties() {
+        List<Storage> storages;
+        synchronized (pendingStorages) {
+            storages = new ArrayList(pendingStorages);
+        }
+        for (Storage storage : storages) storage.storeCustomProperties();
+    }
+    
+    /**
+     * Returns the given properties file in the XML format readable by all
+     * VisualVM versions. Custom properties of a Storage are saved in a binary
+     * format, the XML format should be used when the properties file is
+     * shared, for example in an archive of a storage directory.
+     *
+     * @param file properties file
+     * @return XML content of the properties file or null if the file already is in the XML format
+     * @throws IOException if reading the properties file fails
+     * @since VisualVM 1.3.8
+     */
+    public static byte[] getXMLProperties(File file) throws IOException {
+        InputStream is = new BufferedInputStream(new FileInputStream(file));
+        try {
+            if (!isBinaryProperties(is)) return null;
+            Properties properties = new Properties();
+            loadBinaryProperties(properties, is);
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            properties.storeToXML(os, null);
+            return os.toByteArray();
+        } finally {
+            is.close();
+        }
     }
     
     
@@ -317,8 +394,42 @@ public final class Storage {
     }
     
     
+    private void scheduleStoreCustomProperties() {
+        if (propertiesFile == null) return;
+        
+        long time = System.currentTimeMillis();
+        if (!storePending) {
+            storePending = true;
+            storePendingSince = time;
+            synchronized (pendingStorages) { pendingStorages.add(this); }
+        }
+        if (storeTask == null) storeTask = STORE_PROCESSOR.create(new Runnable() {
+            public void run() { storeCustomProperties(); }
+        });
+        long maxDelay = storePendingSince + MAX_STORE_DELAY - time;
+        storeTask.schedule((int)Math.max(0, Math.min(STORE_DELAY, maxDelay)));
+    }
+    
+    private void cancelStoreCustomProperties() {
+        if (!storePending) return;
+        storePending = false;
+        if (storeTask != null) storeTask.cancel();
+        synchronized (pendingStorages) { pendingStorages.remove(this); }
+    }
+    
     private void storeCustomProperties() {
-        if (properties != null && propertiesFile != null) storeProperties(properties, propertiesFile);
+        synchronized (storeLock) {
+            Properties prop;
+            synchronized (this) {
+                if (!storePending) return;
+                cancelStoreCustomProperties();
+                if (properties == null) return;
+                // The copy is written without blocking access to the properties
+                prop = new Properties();
+                prop.putAll(properties);
+            }
+            storeProperties(prop, propertiesFile, true);
+        }
     }
     
     private Properties getCustomProperties(boolean createEmpty) {
@@ -337,7 +448,8 @@ public final class Storage {
             is = new FileInputStream(file);
             bis = new BufferedInputStream(is);
             Properties properties = new Properties();
-            properties.loadFromXML(bis);
+            if (isBinaryProperties(bis)) loadBinaryProperties(properties, bis);
+            else properties.loadFromXML(bis);
             return properties;
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error loading properties", e);    // NOI18N
@@ -352,25 +464,90 @@ public final class Storage {
         }
     }
     
-    private static void storeProperties(Properties properties, File file) {
+    // Properties are written to a temporary file renamed to the target file
+    // to never leave a partially written file. The binary format is only used
+    // for the Storage's own properties file, exported and archived properties
+    // are XML.
+    private static void storeProperties(Properties properties, File file, boolean binary) {
         Utils.prepareDirectory(file.getParentFile()); // Directories may not be created yet
 
-        OutputStream os = null;
+        File tmpFile = new File(file.getParentFile(), file.getName() + TMP_EXT);
+        FileOutputStream fos = null;
         BufferedOutputStream bos = null;
         try {
-            os = new FileOutputStream(file);
-            bos = new BufferedOutputStream(os);
-            properties.storeToXML(os, null);
+            fos = new FileOutputStream(tmpFile);
+            bos = new BufferedOutputStream(fos);
+            if (binary) storeBinaryProperties(properties, bos);
+            else properties.storeToXML(bos, null);
+            bos.flush();
+            fos.getFD().sync();
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error storing properties", e);    // NOI18N
+            closeStream(bos, fos);
+            tmpFile.delete();
+            return;
+        }
+        closeStream(bos, fos);
+        
+        // File.renameTo doesn't replace an existing file on some platforms
+        if (!tmpFile.renameTo(file) && !(file.delete() && tmpFile.renameTo(file))) {
+            LOGGER.log(Level.SEVERE, "Error storing properties to " + file);    // NOI18N
+            tmpFile.delete();
+        }
+    }
+    
+    private static void closeStream(OutputStream bos, OutputStream os) {
+        try {
+            if (bos != null) bos.close();
+            if (os != null) os.close();
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Problem closing output stream", e);   // NOI18N
+        }
+    }
+    
+    private static boolean isBinaryProperties(InputStream is) throws IOException {
+        is.mark(4);
+        try {
+            return new DataInputStream(is).readInt() == BINARY_MAGIC;
+        } catch (IOException e) {
+            return false;
         } finally {
-            try {
-                if (bos != null) bos.close();
-                if (os != null) os.close();
-            } catch (Exception e) {
-                LOGGER.log(Level.SEVERE, "Problem closing output stream", e);   // NOI18N
-            }
+            is.reset();
         }
     }
+    
+    private static void loadBinaryProperties(Properties properties, InputStream is) throws IOException {
+        DataInputStream dis = new DataInputStream(is);
+        dis.readInt(); // magic
+        int version = dis.readInt();
+        if (version > BINARY_VERSION) throw new IOException("Unsupported properties version " + version);   // NOI18N
+        int count = dis.readInt();
+        for (int i = 0; i < count; i++) properties.put(readString(dis), readString(dis));
+    }
+    
+    private static void storeBinaryProperties(Properties properties, OutputStream os) throws IOException {
+        DataOutputStream dos = new DataOutputStream(os);
+        dos.writeInt(BINARY_MAGIC);
+        dos.writeInt(BINARY_VERSION);
+        dos.writeInt(properties.size());
+        for (Map.Entry entry : properties.entrySet()) {
+            writeString(entry.getKey().toString(), dos);
+            writeString(entry.getValue().toString(), dos);
+        }
+        dos.flush();
+    }
+    
+    // DataOutputStream.writeUTF is limited to 64kB, values may be larger
+    private static void writeString(String string, DataOutputStream dos) throws IOException {
+        byte[] bytes = string.getBytes("UTF-8");    // NOI18N
+        dos.writeInt(bytes.length);
+        dos.write(bytes);
+    }
+    
+    private static String readString(DataInputStream dis) throws IOException {
+        byte[] bytes = new byte[dis.readInt()];
+        dis.readFully(bytes);
+        return new String(bytes, "UTF-8");  // NOI18N
+    }
 
 }
@@ -26,6 +26,7 @@
 package com.sun.tools.visualvm.core.datasupport;
 
 import com.sun.tools.visualvm.core.datasource.DataSource;
+import com.sun.tools.visualvm.core.datasource.Storage;
 import java.awt.Image;
 import java.awt.Toolkit;
 import java.awt.image.BufferedImage;
@@ -33,11 +34,10 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.InputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -46,8 +46,6 @@ import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
 import javax.imageio.ImageIO;
 import org.openide.util.RequestProcessor;
 import org.openide.util.Utilities;
@@ -65,6 +63,10 @@ public final class Utils {
     public static final RequestProcessor FILE_QUEUE = new RequestProcessor("File Queue");   // NOI18N
     
     private static final int COPY_PACKET_SIZE = 16384;
+    private static final long STORED_ENTRY_SIZE = 1024 * 1024;
+    private static final RequestProcessor EXTRACT_QUEUE = new RequestProcessor("Archive Extractor");   // NOI18N
+    // Members of archives being extracted in background, @GuardedBy pendingMembers
+    private static final Set<File> pendingMembers = new HashSet<File>();
     private static final Logger LOGGER = Logger.getLogger(Utils.class.getName());
 
     /**
@@ -345,85 +347,175 @@ public final class Utils {
     /**
      * Creates a zip archive of the given directory. Currently doesn't support
      * archiving subdirectories (only files are added to the archive).
+     * Large files like heap dumps are stored uncompressed, other files are
+     * compressed. Custom properties of Storages are archived in the XML format.
      * 
      * @param directory directory to be archived.
      * @param archive archive file.
      */
     public static void createArchive(File directory, File archive) {        
-        ZipOutputStream zos = null;
-        FileInputStream fis = null;
+        ZipArchive.Writer writer = null;
         
+        Storage.flushCustomProperties(); // Properties files may not be written yet
         File[] contents = directory.listFiles();
         
         try {
-            zos = new ZipOutputStream(new FileOutputStream(archive));
-            for (File file : contents) {
+            writer = new ZipArchive.Writer(archive);
+            if (contents != null) for (File file : contents) {
                 if (file.isFile()) {
-                    zos.putNextEntry(new ZipEntry(file.getName()));
-                    try {
-                        fis = new FileInputStream(file);
-                        int bytes;
-                        byte[] packet = new byte[COPY_PACKET_SIZE];
-                        while ((bytes = fis.read(packet, 0, COPY_PACKET_SIZE)) != -1) zos.write(packet, 0, bytes);
-                    } finally {
-                        try { if (fis != null) fis.close(); } catch (Exception e) { LOGGER.log(Level.SEVERE, "Problem closing archive entry stream", e); }  // NOI18N
-                        if (zos != null) zos.closeEntry();
-                    }
+                    waitForExtraction(file); // Snapshot may still be extracted
+                    // archives are opened by other versions, properties are archived as XML
+                    byte[] xmlProperties = file.getName().endsWith(Storage.DEFAULT_PROPERTIES_EXT) ?
+                                           Storage.getXMLProperties(file) : null;
+                    if (xmlProperties != null) writer.add(file.getName(), xmlProperties, file.lastModified());
+                    // compressing heap dumps takes long and saves little
+                    else writer.add(file, file.length() >= STORED_ENTRY_SIZE);
                 } else {
                     // TODO: process directory
                 }
             }
+            writer.close();
+            writer = null;
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error creating archive", e);  // NOI18N
         } finally {
-            try { if (zos != null) zos.close(); } catch (Exception e) { LOGGER.log(Level.SEVERE, "Problem closing archive stream", e); }    // NOI18N
+            if (writer != null) {
+                try { writer.close(); } catch (Exception e) { LOGGER.log(Level.SEVERE, "Problem closing archive", e); }    // NOI18N
+                if (!archive.delete()) archive.deleteOnExit();
+            }
         }
     }
     
     /**
      * Extracts given zip archive, returns extracted directory. Currently doesn't support extracting subdirectories,
-     * (only extracts toplevel files).
+     * (only extracts toplevel files). Archives containing entries outside of the extracted directory are rejected.
+     * The extracted directory is deleted if extracting the archive fails.
      * 
      * @param archive archive to be extracted.
      * @param destination destination directory.
      * @return extracted directory or null if extracting the archive failed.
      */
     public static File extractArchive(File archive, File destination) {
+        return extractArchive(archive, destination, false);
+    }
+    
+    /**
+     * Extracts given zip archive like extractArchive(File, File) but returns
+     * before large uncompressed members like heap dumps are extracted. Files of
+     * these members are created immediately and filled in background,
+     * waitForExtraction(File) must be called before reading them. The archive
+     * must not be deleted until all its members are extracted.
+     * 
+     * @param archive archive to be extracted.
+     * @param destination destination directory.
+     * @return extracted directory or null if extracting the archive failed.
+     * @since VisualVM 1.3.8
+     */
+    public static File extractArchiveLazily(File archive, File destination) {
+        return extractArchive(archive, destination, true);
+    }
+    
+    /**
+     * Waits until the given file is extracted if it's a member of an archive
+     * extracted by extractArchiveLazily(File, File). Returns immediately for
+     * other files. Must not be called in EDT.
+     * 
+     * @param file file to be read.
+     * @return true if the file exists, false if extracting it failed or the waiting has been interrupted.
+     * @since VisualVM 1.3.8
+     */
+    public static boolean waitForExtraction(File file) {
+        File member = file.getAbsoluteFile();
+        synchronized (pendingMembers) {
+            try {
+                while (pendingMembers.contains(member)) pendingMembers.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return member.isFile();
+    }
+    
+    private static File extractArchive(File archive, File destination, boolean lazy) {
         // TODO: implement extracting directories
         
         File directory = getUniqueFile(destination, archive.getName());
-        ZipFile zipFile = null;
+        ZipArchive zipArchive = null;
         
         try {
-            prepareDirectory(directory);
+            zipArchive = ZipArchive.open(archive);
+            List<ZipArchive.Entry> entries = zipArchive.getEntries();
+            // the central directory is read first, nothing is extracted from an unsafe archive
+            for (ZipArchive.Entry entry : entries)
+                if (!isSafeEntryName(entry.getName()))
+                    throw new IOException("Unsafe archive entry " + entry.getName());   // NOI18N
             
-            zipFile = new ZipFile(archive);
-            Enumeration<? extends ZipEntry> entries = zipFile.entries();
-            while (entries.hasMoreElements()) {
-                ZipEntry entry = entries.nextElement();
-                FileOutputStream fos = null;
-                InputStream is = null;
-                try {
-                    is = zipFile.getInputStream(entry);
-                    fos = new FileOutputStream(new File(directory, entry.getName()));
-                    int bytes;
-                    byte[] packet = new byte[COPY_PACKET_SIZE];
-                    while ((bytes = is.read(packet, 0, COPY_PACKET_SIZE)) != -1) fos.write(packet, 0, bytes);
-                } finally {
-                    try { if (fos != null) fos.close(); } catch (Exception e) { LOGGER.log(Level.SEVERE, "Problem closing extracted file stream", e); } // NOI18N
-                    try { if (is != null) is.close(); } catch (Exception e) { LOGGER.log(Level.SEVERE, "Problem closing zipentry stream", e); } // NOI18N
-                }
+            if (!prepareDirectory(directory)) throw new IOException("Cannot create directory " + directory);   // NOI18N
+            List<ZipArchive.Entry> largeEntries = new ArrayList<ZipArchive.Entry>();
+            for (ZipArchive.Entry entry : entries) {
+                if (lazy && entry.getMethod() == ZipEntry.STORED && entry.getSize() >= STORED_ENTRY_SIZE)
+                    largeEntries.add(entry);
+                else
+                    zipArchive.extract(entry, new File(directory, entry.getName()));
+            }
+            if (!largeEntries.isEmpty()) {
+                extractLater(zipArchive, largeEntries, directory);
+                zipArchive = null;
             }
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error extracting archive", e);    // NOI18N
+            if (directory.exists()) delete(directory, true);
             return null;
         } finally {
-            try { if (zipFile != null) zipFile.close(); } catch (Exception e) { LOGGER.log(Level.SEVERE, "Problem closing archive", e); }   // NOI18N
+            try { if (zipArchive != null) zipArchive.close(); } catch (Exception e) { LOGGER.log(Level.SEVERE, "Problem closing archive", e); }   // NOI18N
         }
         
         return directory;
     }
     
+    // Files of the members are created before returning, a failed member is deleted
+    private static void extractLater(final ZipArchive zipArchive, final List<ZipArchive.Entry> entries,
+                                     final File directory) throws IOException {
+        final List<File> files = new ArrayList<File>(entries.size());
+        for (ZipArchive.Entry entry : entries) {
+            File file = new File(directory, entry.getName()).getAbsoluteFile();
+            if (!file.createNewFile()) throw new IOException("Cannot create file " + file);    // NOI18N
+            files.add(file);
+        }
+        synchronized (pendingMembers) { pendingMembers.addAll(files); }
+        
+        EXTRACT_QUEUE.post(new Runnable() {
+            public void run() {
+                try {
+                    for (int i = 0; i < files.size(); i++) {
+                        File file = files.get(i);
+                        try {
+                            zipArchive.extract(entries.get(i), file);
+                        } catch (Exception e) {
+                            LOGGER.log(Level.SEVERE, "Error extracting archive member " + file, e);  // NOI18N
+                            delete(file, true);
+                        } finally {
+                            synchronized (pendingMembers) {
+                                pendingMembers.remove(file);
+                                pendingMembers.notifyAll();
+                            }
+                        }
+                    }
+                } finally {
+                    try { zipArchive.close(); } catch (Exception e) { LOGGER.log(Level.SEVERE, "Problem closing archive", e); }   // NOI18N
+                }
+            }
+        });
+    }
+    
+    // only plain file names, extracting outside of the directory isn't allowed
+    private static boolean isSafeEntryName(String name) {
+        if (name.length() == 0 || name.equals(".") || name.equals("..")) return false;  // NOI18N
+        if (name.indexOf('/') != -1 || name.indexOf('\\') != -1) return false;
+        return !new File(name).isAbsolute();
+    }
+    
     /**
      * Encodes given string using the Base64 encoding.
      * 
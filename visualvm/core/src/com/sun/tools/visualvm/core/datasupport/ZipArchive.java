@@ -0,0 +1,553 @@
+/*
+ * Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.tools.visualvm.core.datasupport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Zip archive accessed through its central directory. The directory is read
+ * first, STORED members are copied out using FileChannel.transferTo without
+ * passing the data through the Java heap. The Writer computes the CRC of a
+ * member while copying it and patches the local header afterwards, each file
+ * is read only once. Zip64 records are used for members and archives over 4GB.
+ *
+ * @author Jiri Sedlacek
+ */
+final class ZipArchive {
+
+    private static final int LOCAL_HEADER_SIG = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIG = 0x02014b50;
+    private static final int END_SIG = 0x06054b50;
+    private static final int ZIP64_END_SIG = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_SIZE = 22;
+    private static final int ZIP64_END_SIZE = 56;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    private static final int VERSION = 20;
+    private static final int VERSION_ZIP64 = 45;
+    private static final int FLAG_UTF8 = 0x800;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+
+    private static final int PACKET_SIZE = 65536;
+    private static final String UTF8 = "UTF-8"; // NOI18N
+
+    private final RandomAccessFile file;
+    private final List<Entry> entries;
+
+
+    private ZipArchive(RandomAccessFile file, List<Entry> entries) {
+        this.file = file;
+        this.entries = entries;
+    }
+
+
+    /**
+     * Opens the archive and reads its central directory, members are not read.
+     */
+    static ZipArchive open(File archive) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(archive, "r"); // NOI18N
+        try {
+            FileChannel channel = raf.getChannel();
+            long length = channel.size();
+
+            // the end record is followed by a comment of up to 64kB
+            int tailSize = (int)Math.min(length, END_SIZE + MAX_COMMENT_SIZE);
+            ByteBuffer tail = read(channel, length - tailSize, tailSize);
+            int endPos = -1;
+            for (int pos = tailSize - END_SIZE; pos >= 0; pos--) {
+                if (tail.getInt(pos) == END_SIG) { endPos = pos; break; }
+            }
+            if (endPos == -1) throw new IOException("Not a zip archive: " + archive); // NOI18N
+
+            long count = tail.getShort(endPos + 10) & 0xFFFF;
+            long directorySize = tail.getInt(endPos + 12) & ZIP64_MAGIC;
+            long directoryOffset = tail.getInt(endPos + 16) & ZIP64_MAGIC;
+            long endOffset = length - tailSize + endPos;
+            if (count == ZIP64_MAGIC_COUNT || directorySize == ZIP64_MAGIC || directoryOffset == ZIP64_MAGIC) {
+                if (endOffset < ZIP64_LOCATOR_SIZE) throw new IOException("Missing zip64 end record: " + archive); // NOI18N
+                ByteBuffer locator = read(channel, endOffset - ZIP64_LOCATOR_SIZE, ZIP64_LOCATOR_SIZE);
+                if (locator.getInt(0) != ZIP64_LOCATOR_SIG) throw new IOException("Missing zip64 end record: " + archive); // NOI18N
+                ByteBuffer end = read(channel, locator.getLong(8), ZIP64_END_SIZE);
+                if (end.getInt(0) != ZIP64_END_SIG) throw new IOException("Corrupted zip64 end record: " + archive); // NOI18N
+                count = end.getLong(32);
+                directorySize = end.getLong(40);
+                directoryOffset = end.getLong(48);
+            }
+            if (directoryOffset < 0 || directorySize < 0 || directoryOffset + directorySize > endOffset ||
+                directorySize > Integer.MAX_VALUE || count > directorySize / CENTRAL_HEADER_SIZE)
+                throw new IOException("Corrupted zip central directory: " + archive); // NOI18N
+
+            ByteBuffer directory = read(channel, directoryOffset, (int)directorySize);
+            List<Entry> entries = new ArrayList<Entry>((int)count);
+            for (int i = 0; i < count; i++) entries.add(readEntry(directory, directoryOffset));
+
+            ZipArchive zipArchive = new ZipArchive(raf, Collections.unmodifiableList(entries));
+            raf = null;
+            return zipArchive;
+        } finally {
+            if (raf != null) raf.close();
+        }
+    }
+
+
+    List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Copies the member to the target file. STORED members are transferred by
+     * the kernel, DEFLATED members are inflated and their CRC is checked.
+     */
+    void extract(Entry entry, File target) throws IOException {
+        FileChannel channel = file.getChannel();
+        ByteBuffer header = read(channel, entry.headerOffset, LOCAL_HEADER_SIZE);
+        if (header.getInt(0) != LOCAL_HEADER_SIG) throw new IOException("Corrupted zip entry " + entry.name); // NOI18N
+        long dataOffset = entry.headerOffset + LOCAL_HEADER_SIZE +
+                          (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+        if (dataOffset + entry.compressedSize > channel.size()) throw new IOException("Corrupted zip entry " + entry.name); // NOI18N
+
+        FileOutputStream fos = new FileOutputStream(target);
+        try {
+            if (entry.method == ZipEntry.STORED) {
+                if (entry.compressedSize != entry.size) throw new IOException("Corrupted zip entry " + entry.name); // NOI18N
+                transfer(channel, dataOffset, entry.size, fos.getChannel());
+            } else if (entry.method == ZipEntry.DEFLATED) {
+                inflate(channel, dataOffset, entry, fos);
+            } else {
+                throw new IOException("Unsupported compression method " + entry.method + " of zip entry " + entry.name); // NOI18N
+            }
+        } finally {
+            fos.close();
+        }
+    }
+
+    void close() throws IOException {
+        file.close();
+    }
+
+
+    private static Entry readEntry(ByteBuffer directory, long directoryOffset) throws IOException {
+        int pos = directory.position();
+        if (directory.remaining() < CENTRAL_HEADER_SIZE || directory.getInt(pos) != CENTRAL_HEADER_SIG)
+            throw new IOException("Corrupted zip central directory at " + (directoryOffset + pos)); // NOI18N
+        int method = directory.getShort(pos + 10) & 0xFFFF;
+        long crc = directory.getInt(pos + 16) & ZIP64_MAGIC;
+        long compressedSize = directory.getInt(pos + 20) & ZIP64_MAGIC;
+        long size = directory.getInt(pos + 24) & ZIP64_MAGIC;
+        int nameLength = directory.getShort(pos + 28) & 0xFFFF;
+        int extraLength = directory.getShort(pos + 30) & 0xFFFF;
+        int commentLength = directory.getShort(pos + 32) & 0xFFFF;
+        long headerOffset = directory.getInt(pos + 42) & ZIP64_MAGIC;
+        int next = pos + CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        if (next > directory.limit())
+            throw new IOException("Corrupted zip central directory at " + (directoryOffset + pos)); // NOI18N
+
+        byte[] nameBytes = new byte[nameLength];
+        directory.position(pos + CENTRAL_HEADER_SIZE);
+        directory.get(nameBytes);
+        // the JDK reads and writes names as UTF-8 regardless of the flag
+        String name = new String(nameBytes, UTF8);
+
+        // zip64 extra field contains only the values which didn't fit
+        int extra = pos + CENTRAL_HEADER_SIZE + nameLength;
+        int extraEnd = extra + extraLength;
+        while (extra + 4 <= extraEnd) {
+            int id = directory.getShort(extra) & 0xFFFF;
+            int length = directory.getShort(extra + 2) & 0xFFFF;
+            int data = extra + 4;
+            if (data + length > extraEnd) break;
+            if (id == ZIP64_EXTRA_ID) {
+                if (size == ZIP64_MAGIC && data + 8 <= extraEnd) { size = directory.getLong(data); data += 8; }
+                if (compressedSize == ZIP64_MAGIC && data + 8 <= extraEnd) { compressedSize = directory.getLong(data); data += 8; }
+                if (headerOffset == ZIP64_MAGIC && data + 8 <= extraEnd) { headerOffset = directory.getLong(data); }
+            }
+            extra += 4 + length;
+        }
+        if (size < 0 || compressedSize < 0 || headerOffset < 0 || headerOffset >= directoryOffset)
+            throw new IOException("Corrupted zip entry " + name); // NOI18N
+
+        directory.position(next);
+        return new Entry(name, method, crc, compressedSize, size, headerOffset);
+    }
+
+    private static void inflate(FileChannel channel, long position, Entry entry, OutputStream os) throws IOException {
+        Inflater inflater = new Inflater(true);
+        CRC32 crc = new CRC32();
+        try {
+            byte[] input = new byte[PACKET_SIZE];
+            byte[] output = new byte[PACKET_SIZE];
+            long remaining = entry.compressedSize;
+            boolean padded = false;
+            long size = 0;
+            while (!inflater.finished()) {
+                if (inflater.needsInput()) {
+                    if (remaining == 0) {
+                        // the raw inflater may need an extra dummy byte to finish
+                        if (padded) throw new IOException("Unexpected end of zip entry " + entry.name); // NOI18N
+                        padded = true;
+                        inflater.setInput(new byte[1]);
+                    } else {
+                        int bytes = (int)Math.min(input.length, remaining);
+                        ByteBuffer buffer = ByteBuffer.wrap(input, 0, bytes);
+                        while (buffer.hasRemaining())
+                            if (channel.read(buffer, position + buffer.position()) < 0)
+                                throw new IOException("Unexpected end of file"); // NOI18N
+                        inflater.setInput(input, 0, bytes);
+                        position += bytes;
+                        remaining -= bytes;
+                    }
+                }
+                int bytes = inflater.inflate(output);
+                if (bytes == 0 && inflater.needsDictionary())
+                    throw new IOException("Corrupted zip entry " + entry.name); // NOI18N
+                crc.update(output, 0, bytes);
+                os.write(output, 0, bytes);
+                size += bytes;
+            }
+            if (size != entry.size || crc.getValue() != entry.crc)
+                throw new IOException("Corrupted zip entry " + entry.name); // NOI18N
+        } catch (DataFormatException e) {
+            IOException ioe = new IOException("Corrupted zip entry " + entry.name); // NOI18N
+            ioe.initCause(e);
+            throw ioe;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining())
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new IOException("Unexpected end of file"); // NOI18N
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void transfer(FileChannel source, long position, long length,
+                                 FileChannel target) throws IOException {
+        long transferred = 0;
+        while (transferred < length) {
+            long bytes = source.transferTo(position + transferred, length - transferred, target);
+            if (bytes <= 0 && position + transferred >= source.size())
+                throw new IOException("Unexpected end of file"); // NOI18N
+            transferred += bytes;
+        }
+    }
+
+    private static int dosTime(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        int year = calendar.get(Calendar.YEAR);
+        if (year < 1980) return (1 << 21) | (1 << 16);
+        return (year - 1980) << 25 | (calendar.get(Calendar.MONTH) + 1) << 21 |
+               calendar.get(Calendar.DAY_OF_MONTH) << 16 | calendar.get(Calendar.HOUR_OF_DAY) << 11 |
+               calendar.get(Calendar.MINUTE) << 5 | calendar.get(Calendar.SECOND) >> 1;
+    }
+
+
+    static final class Entry {
+
+        private final String name;
+        private final int method;
+        private final long crc;
+        private final long compressedSize;
+        private final long size;
+        private final long headerOffset;
+        private final int time;
+
+        private Entry(String name, int method, long crc, long compressedSize, long size, long headerOffset) {
+            this(name, method, crc, compressedSize, size, headerOffset, 0);
+        }
+
+        private Entry(String name, int method, long crc, long compressedSize, long size, long headerOffset, int time) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.headerOffset = headerOffset;
+            this.time = time;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        int getMethod() {
+            return method;
+        }
+
+        long getSize() {
+            return size;
+        }
+    }
+
+
+    /**
+     * Writes a zip archive. The local header of each member is written with
+     * a zero CRC and patched once the member has been copied.
+     */
+    static final class Writer {
+
+        private final RandomAccessFile file;
+        private final FileChannel channel;
+        private final List<Entry> entries = new ArrayList<Entry>();
+        private final byte[] packet = new byte[PACKET_SIZE];
+        private final byte[] output = new byte[PACKET_SIZE];
+        private long position;
+
+        Writer(File archive) throws IOException {
+            file = new RandomAccessFile(archive, "rw"); // NOI18N
+            file.setLength(0);
+            channel = file.getChannel();
+        }
+
+        /**
+         * Adds the file, STORED or DEFLATED.
+         */
+        void add(File member, boolean store) throws IOException {
+            FileInputStream fis = new FileInputStream(member);
+            try {
+                FileChannel source = fis.getChannel();
+                long size = source.size();
+                byte[] name = member.getName().getBytes(UTF8);
+                int method = store ? ZipEntry.STORED : ZipEntry.DEFLATED;
+                boolean zip64 = size >= ZIP64_MAGIC;
+                long headerOffset = position;
+                writeLocalHeader(name, method, 0, store ? size : 0, size, zip64, dosTime(member.lastModified()));
+
+                CRC32 crc = new CRC32();
+                Deflater deflater = store ? null : new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+                long dataOffset = position;
+                try {
+                    ByteBuffer buffer = ByteBuffer.wrap(packet);
+                    long read = 0;
+                    while (read < size) {
+                        buffer.clear();
+                        int bytes = source.read(buffer);
+                        if (bytes < 0) throw new IOException("File truncated while archiving: " + member); // NOI18N
+                        crc.update(packet, 0, bytes);
+                        if (deflater == null) write(ByteBuffer.wrap(packet, 0, bytes));
+                        else deflate(deflater, packet, bytes);
+                        read += bytes;
+                    }
+                    if (deflater != null) {
+                        deflater.finish();
+                        while (!deflater.finished()) write(ByteBuffer.wrap(output, 0, deflater.deflate(output)));
+                    }
+                } finally {
+                    if (deflater != null) deflater.end();
+                }
+                long compressedSize = position - dataOffset;
+
+                ByteBuffer patch = buffer(8);
+                patch.putInt((int)crc.getValue());
+                if (!zip64) patch.putInt((int)compressedSize);
+                patch.flip();
+                while (patch.hasRemaining()) channel.write(patch, headerOffset + 14 + patch.position());
+
+                entries.add(new Entry(member.getName(), method, crc.getValue(), compressedSize, size,
+                                      headerOffset, dosTime(member.lastModified())));
+            } finally {
+                fis.close();
+            }
+        }
+
+        /**
+         * Adds the data as a DEFLATED member.
+         */
+        void add(String memberName, byte[] data, long lastModified) throws IOException {
+            byte[] name = memberName.getBytes(UTF8);
+            int time = dosTime(lastModified);
+            long headerOffset = position;
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            try {
+                deflater.setInput(data);
+                deflater.finish();
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                while (!deflater.finished()) compressed.write(output, 0, deflater.deflate(output));
+                byte[] compressedData = compressed.toByteArray();
+                writeLocalHeader(name, ZipEntry.DEFLATED, crc.getValue(), compressedData.length, data.length, false, time);
+                write(ByteBuffer.wrap(compressedData));
+                entries.add(new Entry(memberName, ZipEntry.DEFLATED, crc.getValue(), compressedData.length,
+                                      data.length, headerOffset, time));
+            } finally {
+                deflater.end();
+            }
+        }
+
+        /**
+         * Writes the central directory and closes the archive.
+         */
+        void close() throws IOException {
+            try {
+                long directoryOffset = position;
+                for (Entry entry : entries) writeCentralHeader(entry);
+                long directorySize = position - directoryOffset;
+
+                boolean zip64 = entries.size() >= ZIP64_MAGIC_COUNT || directoryOffset >= ZIP64_MAGIC ||
+                                directorySize >= ZIP64_MAGIC;
+                if (zip64) {
+                    long endOffset = position;
+                    ByteBuffer end = buffer(ZIP64_END_SIZE + ZIP64_LOCATOR_SIZE);
+                    end.putInt(ZIP64_END_SIG);
+                    end.putLong(ZIP64_END_SIZE - 12);
+                    end.putShort((short)VERSION_ZIP64);
+                    end.putShort((short)VERSION_ZIP64);
+                    end.putInt(0);
+                    end.putInt(0);
+                    end.putLong(entries.size());
+                    end.putLong(entries.size());
+                    end.putLong(directorySize);
+                    end.putLong(directoryOffset);
+                    end.putInt(ZIP64_LOCATOR_SIG);
+                    end.putInt(0);
+                    end.putLong(endOffset);
+                    end.putInt(1);
+                    end.flip();
+                    write(end);
+                }
+
+                ByteBuffer end = buffer(END_SIZE);
+                end.putInt(END_SIG);
+                end.putShort((short)0);
+                end.putShort((short)0);
+                end.putShort((short)Math.min(entries.size(), ZIP64_MAGIC_COUNT));
+                end.putShort((short)Math.min(entries.size(), ZIP64_MAGIC_COUNT));
+                end.putInt((int)Math.min(directorySize, ZIP64_MAGIC));
+                end.putInt((int)Math.min(directoryOffset, ZIP64_MAGIC));
+                end.putShort((short)0);
+                end.flip();
+                write(end);
+            } finally {
+                file.close();
+            }
+        }
+
+        private void writeLocalHeader(byte[] name, int method, long crc, long compressedSize, long size,
+                                      boolean zip64, int time) throws IOException {
+            ByteBuffer header = buffer(LOCAL_HEADER_SIZE + name.length + (zip64 ? 20 : 0));
+            header.putInt(LOCAL_HEADER_SIG);
+            header.putShort((short)(zip64 ? VERSION_ZIP64 : VERSION));
+            header.putShort((short)FLAG_UTF8);
+            header.putShort((short)method);
+            header.putInt(time);
+            header.putInt((int)crc);
+            header.putInt(zip64 ? (int)ZIP64_MAGIC : (int)compressedSize);
+            header.putInt(zip64 ? (int)ZIP64_MAGIC : (int)size);
+            header.putShort((short)name.length);
+            header.putShort((short)(zip64 ? 20 : 0));
+            header.put(name);
+            if (zip64) {
+                header.putShort((short)ZIP64_EXTRA_ID);
+                header.putShort((short)16);
+                header.putLong(size);
+                header.putLong(compressedSize);
+            }
+            header.flip();
+            write(header);
+        }
+
+        private void writeCentralHeader(Entry entry) throws IOException {
+            byte[] name = entry.name.getBytes(UTF8);
+            boolean largeSize = entry.size >= ZIP64_MAGIC || entry.compressedSize >= ZIP64_MAGIC;
+            boolean largeOffset = entry.headerOffset >= ZIP64_MAGIC;
+            int extraLength = (largeSize || largeOffset) ? 4 + (largeSize ? 16 : 0) + (largeOffset ? 8 : 0) : 0;
+            int version = extraLength > 0 ? VERSION_ZIP64 : VERSION;
+
+            ByteBuffer header = buffer(CENTRAL_HEADER_SIZE + name.length + extraLength);
+            header.putInt(CENTRAL_HEADER_SIG);
+            header.putShort((short)version);
+            header.putShort((short)version);
+            header.putShort((short)FLAG_UTF8);
+            header.putShort((short)entry.method);
+            header.putInt(entry.time);
+            header.putInt((int)entry.crc);
+            header.putInt(largeSize ? (int)ZIP64_MAGIC : (int)entry.compressedSize);
+            header.putInt(largeSize ? (int)ZIP64_MAGIC : (int)entry.size);
+            header.putShort((short)name.length);
+            header.putShort((short)extraLength);
+            header.putShort((short)0); // comment
+            header.putShort((short)0); // disk
+            header.putShort((short)0); // internal attributes
+            header.putInt(0); // external attributes
+            header.putInt(largeOffset ? (int)ZIP64_MAGIC : (int)entry.headerOffset);
+            header.put(name);
+            if (extraLength > 0) {
+                header.putShort((short)ZIP64_EXTRA_ID);
+                header.putShort((short)(extraLength - 4));
+                if (largeSize) {
+                    header.putLong(entry.size);
+                    header.putLong(entry.compressedSize);
+                }
+                if (largeOffset) header.putLong(entry.headerOffset);
+            }
+            header.flip();
+            write(header);
+        }
+
+        private void deflate(Deflater deflater, byte[] data, int length) throws IOException {
+            deflater.setInput(data, 0, length);
+            while (!deflater.needsInput()) write(ByteBuffer.wrap(output, 0, deflater.deflate(output)));
+        }
+
+        private void write(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) position += channel.write(buffer, position);
+        }
+
+        private static ByteBuffer buffer(int length) {
+            return ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+}
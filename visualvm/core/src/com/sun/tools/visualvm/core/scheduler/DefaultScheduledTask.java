@@ -29,15 +29,20 @@ import java.beans.PropertyChangeSupport;
 import java.lang.ref.WeakReference;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 
 /**
  * A default implementation of the <code>ScheduledTask</code>
  * @author Jaroslav Bachorik
  */
-class DefaultScheduledTask implements ScheduledTask, SchedulerTask {
+class DefaultScheduledTask implements ScheduledTask, SchedulerTask, ScheduledTaskStatistics {
+    private static final Logger LOGGER = Logger.getLogger(DefaultScheduledTask.class.getName());
     static private final Map<Quantum, WeakReference<SchedulingPipe>> pipeMap = new HashMap<Quantum, WeakReference<SchedulingPipe>>();
 
     //~ Instance fields ----------------------------------------------------------------------------------------------------------
@@ -52,6 +57,16 @@ class DefaultScheduledTask implements ScheduledTask, SchedulerTask {
 
     private SchedulingPipe pipe = null;
 
+    // set while the task is waiting for a worker or running
+    private final AtomicBoolean pending = new AtomicBoolean(false);
+
+    private final AtomicLong runCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong totalRunTime = new AtomicLong();
+    private volatile long lastRunTime = -1;
+    private volatile long lastLag = -1;
+    private volatile long maxLag = -1;
+
     //~ Constructors -------------------------------------------------------------------------------------------------------------
 
     public DefaultScheduledTask(Quantum interval, SchedulerTask task) {
@@ -174,6 +189,83 @@ class DefaultScheduledTask implements ScheduledTask, SchedulerTask {
         delegateTask.onSchedule(timeStamp);
     }
 
+    /**
+     * @see ScheduledTaskStatistics#getRunCount()
+     */
+    public long getRunCount() {
+        return runCount.get();
+    }
+
+    /**
+     * @see ScheduledTaskStatistics#getDroppedCount()
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * @see ScheduledTaskStatistics#getLastRunTime()
+     */
+    public long getLastRunTime() {
+        return lastRunTime;
+    }
+
+    /**
+     * @see ScheduledTaskStatistics#getAverageRunTime()
+     */
+    public long getAverageRunTime() {
+        long count = runCount.get();
+        return count == 0 ? -1 : totalRunTime.get() / count;
+    }
+
+    /**
+     * @see ScheduledTaskStatistics#getLastLag()
+     */
+    public long getLastLag() {
+        return lastLag;
+    }
+
+    /**
+     * @see ScheduledTaskStatistics#getMaxLag()
+     */
+    public long getMaxLag() {
+        return maxLag;
+    }
+
+    /**
+     * Marks the task as waiting for execution
+     * @return Returns <b>false</b> if the previous execution hasn't finished yet
+     */
+    boolean markPending() {
+        return pending.compareAndSet(false, true);
+    }
+
+    void tickDropped() {
+        droppedCount.incrementAndGet();
+    }
+
+    /**
+     * Runs the task on behalf of a {@linkplain SchedulingPipe}, collecting the statistics
+     * @param timeStamp The timestamp shared by all the tasks of the batch
+     * @param lag The delay between the scheduled and the actual start of the execution in milliseconds
+     */
+    void execute(long timeStamp, long lag) {
+        long start = System.nanoTime();
+        try {
+            onSchedule(timeStamp);
+        } catch (Throwable e) {
+            LOGGER.log(Level.SEVERE, null, e);
+        } finally {
+            long runTime = (System.nanoTime() - start) / 1000000;
+            lastRunTime = runTime;
+            totalRunTime.addAndGet(runTime);
+            runCount.incrementAndGet();
+            lastLag = lag;
+            if (lag > maxLag) maxLag = lag;
+            pending.set(false);
+        }
+    }
+
     void setPipe(SchedulingPipe pipe) {
         this.pipe = pipe;
     }
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.tools.visualvm.core.scheduler;
+
+/**
+ * Runtime statistics of a periodically executed {@linkplain ScheduledTask}
+ * <p>Use {@linkplain Scheduler#getStatistics(ScheduledTask)} to obtain the
+ * statistics for a scheduled task</p>
+ *
+ * @author Jaroslav Bachorik
+ */
+public interface ScheduledTaskStatistics {
+    /**
+     * The number of the periodic executions
+     * @return Returns the number of finished periodic executions
+     */
+    long getRunCount();
+
+    /**
+     * The number of the skipped executions
+     * A tick is skipped when the previous execution of the task is still in progress
+     * @return Returns the number of skipped executions
+     */
+    long getDroppedCount();
+
+    /**
+     * The duration of the last execution
+     * @return Returns the duration of the last execution in milliseconds or -1
+     */
+    long getLastRunTime();
+
+    /**
+     * The average duration of the executions
+     * @return Returns the average duration in milliseconds or -1
+     */
+    long getAverageRunTime();
+
+    /**
+     * The delay between the scheduled and the actual start of the last execution
+     * @return Returns the last lag in milliseconds or -1
+     */
+    long getLastLag();
+
+    /**
+     * The maximum delay between the scheduled and the actual start of an execution
+     * @return Returns the maximum lag in milliseconds or -1
+     */
+    long getMaxLag();
+}
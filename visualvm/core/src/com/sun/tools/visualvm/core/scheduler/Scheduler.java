@@ -90,6 +90,15 @@ public class Scheduler {
         return scheduled;
     }
 
+    /**
+     * Provides the runtime statistics of a task scheduled by this scheduler
+     * @param task The scheduled task
+     * @return Returns the {@linkplain ScheduledTaskStatistics} for the task or <b>null</b> for unknown task implementations
+     */
+    public final ScheduledTaskStatistics getStatistics(ScheduledTask task) {
+        return task instanceof ScheduledTaskStatistics ? (ScheduledTaskStatistics)task : null;
+    }
+
     /**
      * Unschedules an instance of <code>Scheduled</code> class
      * @param task The task to be unscheduled
@@ -26,23 +26,21 @@
 package com.sun.tools.visualvm.core.scheduler;
 
 import java.lang.ref.WeakReference;
-import java.util.HashSet;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Scheduling pipe maintains a list of {@linkplain ScheduledTask} instances
  * for a certain scheduling interval
- * <p>It allows addition and removal of the tasks and takes care of creating
- * and releasing appropriate scheduled executors</p>
+ * <p>It allows addition and removal of the tasks and takes care of registering
+ * and unregistering itself in the shared {@linkplain SchedulingTimer}. All the
+ * tasks of the pipe are dispatched in one batch, receiving the same timestamp.</p>
+ * <p>A task which is still pending or running when the pipe expires again
+ * skips that tick instead of being queued behind itself</p>
  * 
  * @author Jaroslav Bachorik <jaroslav.bachorik@sun.com>
  */
@@ -50,93 +48,106 @@ final class SchedulingPipe {
     private static final Logger LOGGER = Logger.getLogger(SchedulingPipe.class.getName());
 
     final private Object pipeLock = new Object();
-    final private ReadWriteLock tasksLock = new ReentrantReadWriteLock();
 
-    // @GuardedBy pipeLock
-    private ScheduledFuture pipeFuture = null;
+    // @GuardedBy SchedulingTimer.lock
+    long expirationMs = -1;
+    // @GuardedBy SchedulingTimer.lock
+    TimingWheel.Bucket bucket = null;
 
-    final private static ScheduledExecutorService schedulerService = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors());
-    final private static ExecutorService dispatcher = Executors.newCachedThreadPool();
-    
-    // @GuardedBy tasksLock
-    final private Set<WeakReference<DefaultScheduledTask>> tasks = new HashSet<WeakReference<DefaultScheduledTask>>();
+    // modified under pipeLock, iterated lock-free on every tick
+    final private List<WeakReference<DefaultScheduledTask>> tasks = new CopyOnWriteArrayList<WeakReference<DefaultScheduledTask>>();
 
-    private Quantum interval;
+    final private Quantum interval;
+    final private long intervalMs;
 
     SchedulingPipe(Quantum interval) {
         this.interval = interval;
+        this.intervalMs = Math.max(1, interval.unit.toMillis(interval.interval));
     }
 
     void addTask(DefaultScheduledTask task) {
-        try {
-            tasksLock.writeLock().lock();
-            if (tasks.isEmpty()) {
-                startPipe();
-            }
+        synchronized(pipeLock) {
+            boolean start = tasks.isEmpty();
             tasks.add(new WeakReference<DefaultScheduledTask>(task));
-        } finally {
-            tasksLock.writeLock().unlock();
-        }
-    }
-
-    private void startPipe() {
-        synchronized (pipeLock) {
-            pipeFuture = schedulerService.scheduleAtFixedRate(new Runnable() {
-
-                public void run() {
-                    try {
-                        tasksLock.writeLock().lock();
-                        final long timeStamp = System.currentTimeMillis();
-                        for (Iterator<WeakReference<DefaultScheduledTask>> iter = tasks.iterator(); iter.hasNext();) {
-                            WeakReference<DefaultScheduledTask> ref = iter.next();
-                            final DefaultScheduledTask t = ref.get();
-                            if (t != null) {
-                                dispatcher.submit(new Runnable() {
-
-                                    public void run() {
-                                        try {
-                                            t.onSchedule(timeStamp);
-                                        } catch (Throwable e) {
-                                            LOGGER.log(Level.SEVERE, null, e);
-                                        }
-                                    }
-                                });
-                            } else {
-                                iter.remove();
-                            }
-                        }
-                        if (tasks.isEmpty()) {
-                            synchronized (pipeLock) {
-                                pipeFuture.cancel(false);
-                                pipeFuture = null;
-                            }
-                        }
-                    } finally {
-                        tasksLock.writeLock().unlock();
-                    }
-                }
-            }, interval.interval, interval.interval, interval.unit);
+            if (start) {
+                SchedulingTimer.sharedInstance().schedule(this, TimingWheel.now() + intervalMs);
+            }
         }
     }
 
     void removeTask(DefaultScheduledTask task) {
-        try {
-            tasksLock.writeLock().lock();
+        synchronized(pipeLock) {
+            List<WeakReference<DefaultScheduledTask>> removed = new ArrayList<WeakReference<DefaultScheduledTask>>();
             for(Iterator<WeakReference<DefaultScheduledTask>> iter = tasks.iterator();iter.hasNext();) {
                 WeakReference<DefaultScheduledTask> ref = iter.next();
                 DefaultScheduledTask t = ref.get();
                 if (t == null || t.equals(task)) {
-                    iter.remove();
+                    removed.add(ref);
                 }
             }
-        } finally {
-            tasksLock.writeLock().unlock();
+            tasks.removeAll(removed);
+            stopIfEmpty();
         }
-        if (tasks.isEmpty()) {
-            synchronized(pipeLock) {
-                pipeFuture.cancel(false);
-                pipeFuture = null;
+    }
+
+    /**
+     * Called by {@linkplain SchedulingTimer} when the pipe's interval has elapsed
+     * @param dueMs The time the pipe was supposed to expire at
+     */
+    void expired(long dueMs) {
+        final long timeStamp = System.currentTimeMillis();
+        List<WeakReference<DefaultScheduledTask>> collected = null;
+        for (WeakReference<DefaultScheduledTask> ref : tasks) {
+            DefaultScheduledTask t = ref.get();
+            if (t != null) {
+                dispatch(t, timeStamp, dueMs);
+            } else {
+                if (collected == null) collected = new ArrayList<WeakReference<DefaultScheduledTask>>();
+                collected.add(ref);
+            }
+        }
+        synchronized(pipeLock) {
+            if (collected != null) {
+                tasks.removeAll(collected);
             }
+            if (!stopIfEmpty()) {
+                long now = TimingWheel.now();
+                long next = dueMs + intervalMs;
+                if (next <= now) {
+                    // the timer fell behind; keep the fixed rate phase but skip the missed ticks
+                    next = now + intervalMs - ((now - dueMs) % intervalMs);
+                }
+                SchedulingTimer.sharedInstance().schedule(this, next);
+            }
+        }
+    }
+
+    private static void dispatch(final DefaultScheduledTask t, final long timeStamp, final long dueMs) {
+        if (!t.markPending()) {
+            t.tickDropped();
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE, "Dropping a tick for {0}, previous run still in progress", t); // NOI18N
+            }
+            return;
+        }
+        SchedulingTimer.sharedInstance().dispatch(new Runnable() {
+            public void run() {
+                t.execute(timeStamp, TimingWheel.now() - dueMs);
+            }
+        });
+    }
+
+    // @GuardedBy pipeLock
+    private boolean stopIfEmpty() {
+        if (tasks.isEmpty()) {
+            SchedulingTimer.sharedInstance().cancel(this);
+            return true;
         }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "SchedulingPipe[" + interval + "]"; // NOI18N
     }
 }
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.tools.visualvm.core.scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The single timer driving all the {@linkplain SchedulingPipe} instances
+ * <p>One daemon thread waits for the next non-empty bucket of the
+ * {@linkplain TimingWheel}, collects all the pipes expiring in that tick and
+ * lets them dispatch their tasks to the shared, bounded worker pool</p>
+ *
+ * @author Jaroslav Bachorik
+ */
+final class SchedulingTimer {
+    private static final Logger LOGGER = Logger.getLogger(SchedulingTimer.class.getName());
+
+    private static final long TICK_MS = 10;
+    private static final int WHEEL_SIZE = 64;
+    private static final int WORKERS = Integer.getInteger("com.sun.tools.visualvm.core.scheduler.workers", // NOI18N
+                                            Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+
+    private static final SchedulingTimer INSTANCE = new SchedulingTimer();
+
+    private final Object lock = new Object();
+    private final DelayQueue<TimingWheel.Bucket> queue = new DelayQueue<TimingWheel.Bucket>();
+    // @GuardedBy lock
+    private final TimingWheel wheel = new TimingWheel(TICK_MS, WHEEL_SIZE, TimingWheel.now(), queue);
+
+    private final ExecutorService workers;
+
+    private SchedulingTimer() {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(WORKERS, WORKERS, 60, TimeUnit.SECONDS,
+                                                         new LinkedBlockingQueue<Runnable>(),
+                                                         new NamedThreadFactory("VisualVM Scheduler Worker")); // NOI18N
+        pool.allowCoreThreadTimeOut(true);
+        workers = pool;
+
+        Thread timerThread = new NamedThreadFactory("VisualVM Scheduler").newThread(new Runnable() { // NOI18N
+            public void run() {
+                processBuckets();
+            }
+        });
+        timerThread.start();
+    }
+
+    static SchedulingTimer sharedInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Puts the pipe to the wheel; any previous expiration of the pipe is discarded
+     * @param pipe The pipe to schedule
+     * @param expirationMs The requested expiration time as provided by {@linkplain TimingWheel#now()}
+     */
+    void schedule(SchedulingPipe pipe, long expirationMs) {
+        synchronized(lock) {
+            if (pipe.bucket != null) {
+                pipe.bucket.remove(pipe);
+            }
+            pipe.expirationMs = Math.max(expirationMs, wheel.getEarliestExpiration());
+            wheel.add(pipe);
+        }
+    }
+
+    /**
+     * Removes the pipe from the wheel
+     * @param pipe The pipe to cancel
+     */
+    void cancel(SchedulingPipe pipe) {
+        synchronized(lock) {
+            if (pipe.bucket != null) {
+                pipe.bucket.remove(pipe);
+            }
+            pipe.expirationMs = -1;
+        }
+    }
+
+    void dispatch(Runnable task) {
+        workers.execute(task);
+    }
+
+    private void processBuckets() {
+        while (true) {
+            TimingWheel.Bucket bucket;
+            try {
+                bucket = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            List<SchedulingPipe> expired = new ArrayList<SchedulingPipe>();
+            List<Long> dueTimes = new ArrayList<Long>();
+            synchronized(lock) {
+                while (bucket != null) {
+                    wheel.advanceClock(bucket.getExpiration());
+                    for (SchedulingPipe pipe : bucket.flush()) {
+                        // pipes from the overflow wheels get re-inserted into the finer ones
+                        if (!wheel.add(pipe)) {
+                            expired.add(pipe);
+                            dueTimes.add(pipe.expirationMs);
+                        }
+                    }
+                    bucket = queue.poll();
+                }
+            }
+            for (int i = 0; i < expired.size(); i++) {
+                try {
+                    expired.get(i).expired(dueTimes.get(i));
+                } catch (Throwable e) {
+                    LOGGER.log(Level.SEVERE, null, e);
+                }
+            }
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        NamedThreadFactory(String name) {
+            this.name = name;
+        }
+
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, name + " " + counter.incrementAndGet()); // NOI18N
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.tools.visualvm.core.scheduler;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hierarchical timing wheel holding the {@linkplain SchedulingPipe} instances
+ * waiting for their next expiration
+ * <p>Each wheel consists of a fixed number of buckets spanning one tick each.
+ * Expirations which don't fit into the wheel are kept in an overflow wheel
+ * whose tick equals the whole span of this wheel; entries are moved down to
+ * the finer wheels as the clock advances.</p>
+ * <p>Only the non-empty buckets are kept in the shared {@linkplain DelayQueue}
+ * so the driving thread sleeps until there is something to expire</p>
+ * <p>The wheel itself is not thread safe; all access is guarded by
+ * {@linkplain SchedulingTimer}</p>
+ *
+ * @author Jaroslav Bachorik
+ */
+final class TimingWheel {
+    private final long tickMs;
+    private final int wheelSize;
+    private final long interval;
+    private final Bucket[] buckets;
+    private final DelayQueue<Bucket> queue;
+
+    private long currentTime;
+    private TimingWheel overflowWheel = null;
+
+    TimingWheel(long tickMs, int wheelSize, long startMs, DelayQueue<Bucket> queue) {
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.interval = tickMs * wheelSize;
+        this.queue = queue;
+        this.currentTime = startMs - (startMs % tickMs);
+        this.buckets = new Bucket[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    /**
+     * The monotonic clock used by the wheel
+     * @return Returns the current time in milliseconds
+     */
+    static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    /**
+     * The earliest expiration time an entry can be added with
+     * @return Returns the start of the next tick
+     */
+    long getEarliestExpiration() {
+        return currentTime + tickMs;
+    }
+
+    /**
+     * Adds the pipe to the appropriate bucket
+     * @param pipe The pipe to add
+     * @return Returns <b>false</b> if the pipe has already expired
+     */
+    boolean add(SchedulingPipe pipe) {
+        long expiration = pipe.expirationMs;
+        if (expiration < currentTime + tickMs) {
+            return false;
+        } else if (expiration < currentTime + interval) {
+            long virtualId = expiration / tickMs;
+            Bucket bucket = buckets[(int)(virtualId % wheelSize)];
+            bucket.add(pipe);
+            if (bucket.setExpiration(virtualId * tickMs)) {
+                queue.offer(bucket);
+            }
+            return true;
+        } else {
+            if (overflowWheel == null) {
+                overflowWheel = new TimingWheel(interval, wheelSize, currentTime, queue);
+            }
+            return overflowWheel.add(pipe);
+        }
+    }
+
+    /**
+     * Moves the wheel's clock forward
+     * @param timeMs The new time
+     */
+    void advanceClock(long timeMs) {
+        if (timeMs >= currentTime + tickMs) {
+            currentTime = timeMs - (timeMs % tickMs);
+            if (overflowWheel != null) {
+                overflowWheel.advanceClock(currentTime);
+            }
+        }
+    }
+
+    /**
+     * A wheel slot holding all pipes expiring within the same tick
+     */
+    static final class Bucket implements Delayed {
+        // @GuardedBy SchedulingTimer.lock
+        private final Set<SchedulingPipe> pipes = new LinkedHashSet<SchedulingPipe>();
+        private volatile long expiration = -1;
+
+        void add(SchedulingPipe pipe) {
+            if (pipe.bucket != null) {
+                pipe.bucket.remove(pipe);
+            }
+            pipes.add(pipe);
+            pipe.bucket = this;
+        }
+
+        void remove(SchedulingPipe pipe) {
+            if (pipes.remove(pipe)) {
+                pipe.bucket = null;
+            }
+        }
+
+        /**
+         * Removes all the pipes from the bucket and resets its expiration
+         * @return Returns the list of removed pipes
+         */
+        List<SchedulingPipe> flush() {
+            List<SchedulingPipe> flushed = new ArrayList<SchedulingPipe>(pipes);
+            for (SchedulingPipe pipe : flushed) {
+                pipe.bucket = null;
+            }
+            pipes.clear();
+            expiration = -1;
+            return flushed;
+        }
+
+        boolean setExpiration(long expirationMs) {
+            if (expiration != expirationMs) {
+                expiration = expirationMs;
+                return true;
+            }
+            return false;
+        }
+
+        long getExpiration() {
+            return expiration;
+        }
+
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(Math.max(expiration - now(), 0), TimeUnit.MILLISECONDS);
+        }
+
+        public int compareTo(Delayed o) {
+            Bucket other = (Bucket)o;
+            if (expiration < other.expiration) return -1;
+            if (expiration > other.expiration) return 1;
+            return 0;
+        }
+    }
+}
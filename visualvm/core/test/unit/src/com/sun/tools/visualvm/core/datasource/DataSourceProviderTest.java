@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * 
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ * 
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ * 
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tools.visualvm.core.datasource;
+
+import com.sun.tools.visualvm.core.datasupport.DataChangeEvent;
+import com.sun.tools.visualvm.core.datasupport.DataChangeListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jiri Sedlacek
+ */
+public class DataSourceProviderTest {
+    private DataSourceProvider provider;
+    private List<DataChangeEvent<DataSource>> events;
+    private DataChangeListener<DataSource> listener;
+
+    public DataSourceProviderTest() {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        provider = new DataSourceProvider();
+        events = Collections.synchronizedList(new ArrayList<DataChangeEvent<DataSource>>());
+        listener = new DataChangeListener<DataSource>() {
+            public void dataChanged(DataChangeEvent<DataSource> event) {
+                events.add(event);
+            }
+        };
+        provider.addDataChangeListener(listener, DataSource.class);
+        waitForEvents();
+        assertEquals(1, events.size()); // initial state
+        events.clear();
+    }
+
+    /**
+     * Separate registrations are delivered as one event.
+     */
+    @Test
+    public void coalescedRegistrations() throws Exception {
+        Set<DataSource> added = new HashSet<DataSource>();
+        for (int i = 0; i < 200; i++) {
+            DataSource dataSource = new DataSource() {};
+            added.add(dataSource);
+            provider.registerDataSource(dataSource);
+        }
+        waitForEvents();
+
+        assertEquals(1, events.size());
+        assertEquals(added, events.get(0).getAdded());
+        assertEquals(added, events.get(0).getCurrent());
+        assertTrue(events.get(0).getRemoved().isEmpty());
+    }
+
+    /**
+     * Removing a DataSource added within the same window delivers both changes.
+     */
+    @Test
+    public void addedAndRemoved() throws Exception {
+        DataSource dataSource = new DataSource() {};
+        provider.registerDataSource(dataSource);
+        provider.unregisterDataSource(dataSource);
+        waitForEvents();
+
+        assertEquals(2, events.size());
+        assertEquals(Collections.singleton(dataSource), events.get(0).getAdded());
+        assertEquals(Collections.singleton(dataSource), events.get(1).getRemoved());
+        assertTrue(events.get(1).getCurrent().isEmpty());
+    }
+
+    /**
+     * Pending changes are delivered before the listener is removed.
+     */
+    @Test
+    public void removedListener() throws Exception {
+        DataSource dataSource = new DataSource() {};
+        provider.registerDataSource(dataSource);
+        provider.removeDataChangeListener(listener);
+        provider.unregisterDataSource(dataSource);
+        waitForEvents();
+
+        assertEquals(1, events.size());
+        assertEquals(Collections.singleton(dataSource), events.get(0).getAdded());
+    }
+
+    private static void waitForEvents() throws InterruptedException {
+        Thread.sleep(300);
+        DataSource.EVENT_QUEUE.post(new Runnable() { public void run() {} }).waitFinished();
+    }
+}
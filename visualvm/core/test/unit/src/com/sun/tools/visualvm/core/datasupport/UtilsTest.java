@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * 
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ * 
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ * 
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tools.visualvm.core.datasupport;
+
+import com.sun.tools.visualvm.core.datasource.Storage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jiri Sedlacek
+ */
+public class UtilsTest {
+    private File root;
+    private File source;
+
+    public UtilsTest() {
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        root = File.createTempFile("archivetest", null); // NOI18N
+        root.delete();
+        root.mkdirs();
+        source = new File(root, "snapshot"); // NOI18N
+        source.mkdirs();
+        write(new File(source, "application.properties"), "prop=value".getBytes()); // NOI18N
+        byte[] dump = new byte[1500000];
+        for (int i = 0; i < dump.length; i++) dump[i] = (byte)(i * 31);
+        write(new File(source, "heapdump.hprof"), dump); // NOI18N
+        write(new File(source, "empty.tdump"), new byte[0]); // NOI18N
+        new File(source, "subdir").mkdirs(); // NOI18N
+    }
+
+    @After
+    public void tearDown() {
+        Utils.delete(root, true);
+    }
+
+    /**
+     * Test of createArchive and extractArchive methods, of class Utils.
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        File archive = new File(root, "snapshot.apps"); // NOI18N
+        Utils.createArchive(source, archive);
+
+        ZipFile zipFile = new ZipFile(archive);
+        try {
+            assertEquals(3, zipFile.size());
+            assertEquals(ZipEntry.STORED, zipFile.getEntry("heapdump.hprof").getMethod()); // NOI18N
+            assertEquals(ZipEntry.DEFLATED, zipFile.getEntry("application.properties").getMethod()); // NOI18N
+            assertNull(zipFile.getEntry("subdir")); // NOI18N
+        } finally {
+            zipFile.close();
+        }
+
+        // local headers are patched with the CRC and sizes of the members
+        ZipInputStream zis = new ZipInputStream(new FileInputStream(archive));
+        try {
+            ZipEntry entry;
+            int count = 0;
+            while ((entry = zis.getNextEntry()) != null) {
+                assertArrayEquals(read(new File(source, entry.getName())), read(zis));
+                count++;
+            }
+            assertEquals(3, count);
+        } finally {
+            zis.close();
+        }
+
+        File extracted = Utils.extractArchive(archive, new File(root, "extracted")); // NOI18N
+        assertNotNull(extracted);
+        assertContentsEqual(source, extracted);
+    }
+
+    /**
+     * Test of extractArchiveLazily and waitForExtraction methods, of class Utils.
+     */
+    @Test
+    public void testLazyExtraction() throws IOException {
+        File archive = new File(root, "snapshot.apps"); // NOI18N
+        Utils.createArchive(source, archive);
+
+        File extracted = Utils.extractArchiveLazily(archive, new File(root, "extracted")); // NOI18N
+        assertNotNull(extracted);
+        File heapDump = new File(extracted, "heapdump.hprof"); // NOI18N
+        assertTrue(heapDump.isFile());
+        assertTrue(Utils.waitForExtraction(heapDump));
+        assertContentsEqual(source, extracted);
+
+        File missing = new File(extracted, "missing.hprof"); // NOI18N
+        assertFalse(Utils.waitForExtraction(missing));
+    }
+
+    /**
+     * Test that the extracted directory is deleted when extracting fails.
+     */
+    @Test
+    public void testCorruptedArchive() throws IOException {
+        File archive = new File(root, "snapshot.apps"); // NOI18N
+        Utils.createArchive(source, archive);
+
+        // break the CRC of the last member in the central directory
+        byte[] bytes = read(archive);
+        int header = -1;
+        for (int i = 0; i < bytes.length - 4; i++)
+            if (bytes[i] == 'P' && bytes[i + 1] == 'K' && bytes[i + 2] == 1 && bytes[i + 3] == 2) header = i;
+        assertTrue(header != -1);
+        bytes[header + 16] ^= 0xFF;
+        write(archive, bytes);
+
+        File destination = new File(root, "extracted"); // NOI18N
+        assertNull(Utils.extractArchive(archive, destination));
+        assertEquals(0, destination.list().length);
+    }
+
+    /**
+     * Test that custom properties set just before archiving are archived
+     * in the XML format.
+     */
+    @Test
+    public void testArchiveCustomProperties() throws IOException {
+        Storage storage = new Storage(source, "snapshot.properties"); // NOI18N
+        storage.setCustomProperties(new String[] { "key", "other" }, new String[] { "value", "data" }); // NOI18N
+        File archive = new File(root, "snapshot.apps"); // NOI18N
+        Utils.createArchive(source, archive);
+
+        // previous versions only read the XML format
+        ZipFile zipFile = new ZipFile(archive);
+        try {
+            Properties properties = new Properties();
+            properties.loadFromXML(zipFile.getInputStream(zipFile.getEntry("snapshot.properties"))); // NOI18N
+            assertEquals("value", properties.getProperty("key")); // NOI18N
+            assertEquals("data", properties.getProperty("other")); // NOI18N
+        } finally {
+            zipFile.close();
+        }
+
+        File extracted = Utils.extractArchive(archive, new File(root, "extracted")); // NOI18N
+        assertNotNull(extracted);
+        Storage extractedStorage = new Storage(extracted, "snapshot.properties"); // NOI18N
+        assertEquals("value", extractedStorage.getCustomProperty("key")); // NOI18N
+        assertEquals("data", extractedStorage.getCustomProperty("other")); // NOI18N
+    }
+
+    /**
+     * Test that zip archives created by previous versions are still extracted.
+     */
+    @Test
+    public void testZipArchive() throws IOException {
+        File archive = new File(root, "old.apps"); // NOI18N
+        ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(archive));
+        try {
+            for (File file : source.listFiles()) {
+                if (!file.isFile()) continue;
+                zos.putNextEntry(new ZipEntry(file.getName()));
+                zos.write(read(file));
+                zos.closeEntry();
+            }
+        } finally {
+            zos.close();
+        }
+
+        File extracted = Utils.extractArchive(archive, new File(root, "extracted")); // NOI18N
+        assertNotNull(extracted);
+        assertContentsEqual(source, extracted);
+    }
+
+    /**
+     * Test that archives with entries outside of the extracted directory are rejected.
+     */
+    @Test
+    public void testUnsafeEntries() throws IOException {
+        File destination = new File(root, "extracted"); // NOI18N
+        String[] names = new String[] { "../escaped", "..", "sub/../../escaped", // NOI18N
+                                        new File(root, "escaped").getAbsolutePath() }; // NOI18N
+        for (int i = 0; i < names.length; i++) {
+            File archive = new File(root, "unsafe" + i + ".apps"); // NOI18N
+            ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(archive));
+            try {
+                zos.putNextEntry(new ZipEntry(names[i]));
+                zos.write("data".getBytes()); // NOI18N
+                zos.closeEntry();
+            } finally {
+                zos.close();
+            }
+            assertNull(names[i], Utils.extractArchive(archive, destination));
+            assertFalse(new File(root, "escaped").exists()); // NOI18N
+            assertTrue(!destination.exists() || destination.list().length == 0);
+        }
+    }
+
+    private static void assertContentsEqual(File expected, File actual) throws IOException {
+        for (File file : expected.listFiles()) {
+            File extracted = new File(actual, file.getName());
+            if (!file.isFile()) {
+                assertFalse(extracted.exists());
+                continue;
+            }
+            assertTrue(extracted.isFile());
+            assertArrayEquals(read(file), read(extracted));
+        }
+    }
+
+    private static void write(File file, byte[] bytes) throws IOException {
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            fos.write(bytes);
+        } finally {
+            fos.close();
+        }
+    }
+
+    private static byte[] read(InputStream is) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] packet = new byte[8192];
+        int bytes;
+        while ((bytes = is.read(packet)) != -1) bos.write(packet, 0, bytes);
+        return bos.toByteArray();
+    }
+
+    private static byte[] read(File file) throws IOException {
+        byte[] bytes = new byte[(int)file.length()];
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < bytes.length) {
+                int read = fis.read(bytes, offset, bytes.length - offset);
+                if (read == -1) break;
+                offset += read;
+            }
+        } finally {
+            fis.close();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * 
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ * 
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ * 
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.tools.visualvm.core.scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jaroslav Bachorik
+ */
+public class TimingWheelTest {
+    private static final long TICK = 10;
+    private static final int SIZE = 8;
+
+    private DelayQueue<TimingWheel.Bucket> queue;
+    private TimingWheel wheel;
+    // the wheel starts far enough in the past for all its buckets to be expired already
+    private long base;
+
+    private final List<SchedulingPipe> expired = new ArrayList<SchedulingPipe>();
+    private final List<Long> expiredAt = new ArrayList<Long>();
+
+    public TimingWheelTest() {
+    }
+
+    @Before
+    public void setUp() {
+        queue = new DelayQueue<TimingWheel.Bucket>();
+        base = TimingWheel.now() - 1000000;
+        base -= base % TICK;
+        wheel = new TimingWheel(TICK, SIZE, base, queue);
+        expired.clear();
+        expiredAt.clear();
+    }
+
+    /**
+     * Test of expirations wrapping past a full rotation of the wheel, of class TimingWheel.
+     */
+    @Test
+    public void wrapAround() {
+        System.out.println("wrapAround");
+        // 30 and 110 share the same bucket index of the finest wheel
+        SchedulingPipe first = schedule(30);
+        SchedulingPipe wrapped = schedule(110);
+        SchedulingPipe twice = schedule(255);
+        SchedulingPipe third = schedule(1005);
+
+        drain();
+
+        assertEquals(4, expired.size());
+        assertExpired(0, first, 30);
+        assertExpired(1, wrapped, 110);
+        assertExpired(2, twice, 250);
+        assertExpired(3, third, 1000);
+    }
+
+    /**
+     * Test of cancelling a scheduled pipe, of class TimingWheel.
+     */
+    @Test
+    public void cancel() {
+        System.out.println("cancel");
+        SchedulingPipe cancelled = schedule(30);
+        SchedulingPipe kept = schedule(30);
+        SchedulingPipe cancelledOverflow = schedule(200);
+
+        cancelled.bucket.remove(cancelled);
+        cancelledOverflow.bucket.remove(cancelledOverflow);
+        assertNull(cancelled.bucket);
+        assertNull(cancelledOverflow.bucket);
+
+        drain();
+
+        assertEquals(1, expired.size());
+        assertExpired(0, kept, 30);
+    }
+
+    /**
+     * Test of moving a scheduled pipe to a new expiration, of class TimingWheel.
+     */
+    @Test
+    public void reschedule() {
+        System.out.println("reschedule");
+        SchedulingPipe pipe = schedule(500);
+        pipe.expirationMs = base + 40;
+        assertTrue(wheel.add(pipe));
+
+        drain();
+
+        assertEquals(1, expired.size());
+        assertExpired(0, pipe, 40);
+    }
+
+    /**
+     * Test of adding an already expired pipe, of class TimingWheel.
+     */
+    @Test
+    public void addExpired() {
+        System.out.println("addExpired");
+        SchedulingPipe pipe = new SchedulingPipe(Quantum.seconds(1));
+        pipe.expirationMs = base + TICK - 1;
+        assertFalse(wheel.add(pipe));
+        assertNull(pipe.bucket);
+        assertEquals(base + TICK, wheel.getEarliestExpiration());
+    }
+
+    /**
+     * Test of rescheduling a task with a new quantum, of class DefaultScheduledTask.
+     */
+    @Test
+    public void rescheduleQuantum() throws InterruptedException {
+        System.out.println("rescheduleQuantum");
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(3);
+        SchedulerTask task = new SchedulerTask() {
+
+            public void onSchedule(long timeStamp) {
+                runs.incrementAndGet();
+                latch.countDown();
+            }
+        };
+        DefaultScheduledTask scheduled = new DefaultScheduledTask(Quantum.seconds(3600), task);
+        try {
+            scheduled.setInterval(new Quantum(TimeUnit.MILLISECONDS, 20));
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+            scheduled.setInterval(Quantum.seconds(3600));
+            Thread.sleep(100); // let an already dispatched run finish
+            int count = runs.get();
+            Thread.sleep(300);
+            assertEquals(count, runs.get());
+        } finally {
+            scheduled.suspend();
+        }
+    }
+
+    private SchedulingPipe schedule(long offset) {
+        SchedulingPipe pipe = new SchedulingPipe(Quantum.seconds(1));
+        pipe.expirationMs = base + offset;
+        assertTrue(wheel.add(pipe));
+        return pipe;
+    }
+
+    /**
+     * Expires the buckets in the same way as {@linkplain SchedulingTimer} does
+     */
+    private void drain() {
+        TimingWheel.Bucket bucket;
+        while ((bucket = queue.poll()) != null) {
+            long expiration = bucket.getExpiration();
+            wheel.advanceClock(expiration);
+            for (SchedulingPipe pipe : bucket.flush()) {
+                if (!wheel.add(pipe)) {
+                    expired.add(pipe);
+                    expiredAt.add(expiration);
+                }
+            }
+        }
+    }
+
+    private void assertExpired(int index, SchedulingPipe pipe, long offset) {
+        assertSame(pipe, expired.get(index));
+        assertEquals(base + offset, expiredAt.get(index).longValue());
+        assertNull(pipe.bucket);
+    }
+}
@@ -29,6 +29,7 @@ import com.sun.tools.visualvm.application.snapshot.ApplicationSnapshot;
 import com.sun.tools.visualvm.core.datasource.DataSource;
 import com.sun.tools.visualvm.core.datasource.descriptor.DataSourceDescriptor;
 import com.sun.tools.visualvm.core.datasource.descriptor.DataSourceDescriptorFactory;
+import com.sun.tools.visualvm.core.datasupport.Utils;
 import com.sun.tools.visualvm.heapdump.HeapDump;
 import com.sun.tools.visualvm.core.ui.DataSourceView;
 import com.sun.tools.visualvm.core.ui.components.DataViewComponent;
@@ -133,6 +134,7 @@ class HeapDumpView extends DataSourceView {
           RequestProcessor.getDefault().post(new Runnable() {
             public void run() {
               try {
+                Utils.waitForExtraction(file); // Snapshot archive may still be extracted
                 final HeapWalker hw = new HeapWalker(file);
                 SwingUtilities.invokeLater(new Runnable() { public void run() {
                     contentsPanel.remove(progressLabel);
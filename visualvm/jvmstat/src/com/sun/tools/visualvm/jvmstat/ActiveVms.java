@@ -0,0 +1,93 @@
+/*
+ *  Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *  This code is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License version 2 only, as
+ *  published by the Free Software Foundation.  Oracle designates this
+ *  particular file as subject to the "Classpath" exception as provided
+ *  by Oracle in the LICENSE file that accompanied this code.
+ *
+ *  This code is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ *  version 2 for more details (a copy is included in the LICENSE file that
+ *  accompanied this code).
+ *
+ *  You should have received a copy of the GNU General Public License version
+ *  2 along with this work; if not, write to the Free Software Foundation,
+ *  Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *  Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ *  or visit www.oracle.com if you need additional information or have any
+ *  questions.
+ */
+
+package com.sun.tools.visualvm.jvmstat;
+
+import com.sun.tools.visualvm.core.datasupport.DataRemovedListener;
+import com.sun.tools.visualvm.host.Host;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import sun.jvmstat.monitor.HostIdentifier;
+import sun.jvmstat.monitor.MonitorException;
+import sun.jvmstat.monitor.MonitoredHost;
+
+/**
+ * Shares the set of active VMs of a host between all monitored applications
+ * of that host. The host is scanned at most once per polling interval no
+ * matter how many applications check their liveness. The shared instance is
+ * dropped when the host is removed.
+ *
+ * @author Tomas Hurka
+ */
+class ActiveVms implements DataRemovedListener<Host> {
+    
+    private static final Map<HostIdentifier,ActiveVms> hosts = new HashMap<HostIdentifier,ActiveVms>();
+    
+    private final HostIdentifier hostId;
+    private final MonitoredHost monitoredHost;
+    private Set<Integer> activeVms = Collections.emptySet();
+    private long timestamp = Long.MIN_VALUE;
+    
+    private ActiveVms(MonitoredHost host) {
+        hostId = host.getHostIdentifier();
+        monitoredHost = host;
+    }
+    
+    static synchronized ActiveVms forHost(Host host, MonitoredHost monitoredHost) {
+        HostIdentifier hostId = monitoredHost.getHostIdentifier();
+        ActiveVms vms = hosts.get(hostId);
+        if (vms == null || vms.monitoredHost != monitoredHost) {
+            vms = new ActiveVms(monitoredHost);
+            hosts.put(hostId, vms);
+            // the listener is weakly referenced, the map keeps it alive
+            host.notifyWhenRemoved(vms);
+        }
+        return vms;
+    }
+    
+    public void dataRemoved(Host host) {
+        synchronized (ActiveVms.class) {
+            if (hosts.get(hostId) == this) hosts.remove(hostId);
+        }
+    }
+    
+    /**
+     * Checks whether the VM is still running on the host.
+     *
+     * @param pid process id of the VM
+     * @param maxAge maximum age in milliseconds of the cached list of active VMs
+     */
+    synchronized boolean isActive(Integer pid, long maxAge) throws MonitorException {
+        long time = System.currentTimeMillis();
+        // the VM may also have been started after the last scan
+        if (time - timestamp > maxAge || !activeVms.contains(pid)) {
+            activeVms = monitoredHost.activeVms();
+            timestamp = time;
+        }
+        return activeVms.contains(pid);
+    }
+}
@@ -56,15 +56,23 @@ public class JvmstatModelImpl extends JvmstatModel implements VmListener, DataRe
     MonitoredVm monitoredVm;
     Set<JvmstatListener> listeners;
     private Map<String,String> valueCache;
+    // Monitor handles are resolved once and read directly afterwards
+    private final Map<String,Monitor> monitorCache;
+    private final Map<String,List<Monitor>> patternCache;
+    // direct access to the hsperfdata file of a local application
+    private volatile LocalPerfData perfData;
     private Integer pid;
-    private MonitoredHost monitoredHost;
+    private ActiveVms activeVms;
 
     JvmstatModelImpl(Application app,MonitoredVm vm) {
         application = app;
         pid = Integer.valueOf(vm.getVmIdentifier().getLocalVmId());
         monitoredVm = vm;
         valueCache = new HashMap();
+        monitorCache = new HashMap<String,Monitor>();
+        patternCache = new HashMap<String,List<Monitor>>();
         listeners = new HashSet();
+        perfData = app.isLocalApplication() ? LocalPerfData.open(pid.intValue()) : null;
     }
                
     public void addJvmstatListener(JvmstatListener l) {
@@ -91,8 +99,19 @@ public class JvmstatModelImpl extends JvmstatModel implements VmListener, DataRe
         String value = valueCache.get(name);
         if (value != null) return value;
         
+        LocalPerfData perfData = this.perfData;
+        if (perfData != null) {
+            MonitoredValue val = perfData.findByName(name);
+            if (val != null) {
+                value = val.getValue().toString();
+                if (LocalPerfData.isConstant(val)) {
+                    valueCache.put(name,value);
+                }
+                return value;
+            }
+        }
         try {
-            Monitor mon = monitoredVm.findByName(name);
+            Monitor mon = getMonitor(name);
             if (mon != null) {
                 value = mon.getValue().toString();
                 if (Utils.getVariability(mon).toString().equals(Variability_CONSTANT)) {
@@ -107,8 +126,13 @@ public class JvmstatModelImpl extends JvmstatModel implements VmListener, DataRe
     }
     
     public MonitoredValue findMonitoredValueByName(String name) {
+        LocalPerfData perfData = this.perfData;
+        if (perfData != null) {
+            MonitoredValue val = perfData.findByName(name);
+            if (val != null) return val;
+        }
         try {
-            Monitor mon = monitoredVm.findByName(name);
+            Monitor mon = getMonitor(name);
             if (mon != null) {
                 return new MonitoredValueImpl(mon);
             }
@@ -120,8 +144,19 @@ public class JvmstatModelImpl extends JvmstatModel implements VmListener, DataRe
 
     
     public List<String> findByPattern(String pattern) {
+        LocalPerfData perfData = this.perfData;
+        if (perfData != null) {
+            List<MonitoredValue> values = perfData.findByPattern(pattern);
+            if (!values.isEmpty()) {
+                List<String> valueStrList = new ArrayList<String>(values.size());
+                for (MonitoredValue value : values) {
+                    valueStrList.add(value.getValue().toString());
+                }
+                return valueStrList;
+            }
+        }
         try {
-            List<Monitor> monitorList = monitoredVm.findByPattern(pattern);
+            List<Monitor> monitorList = getMonitors(pattern);
             List<String> monitorStrList = new ArrayList<String>(monitorList.size());
             for (Monitor monitor : monitorList) {
                 monitorStrList.add(monitor.getValue().toString());
@@ -134,8 +169,13 @@ public class JvmstatModelImpl extends JvmstatModel implements VmListener, DataRe
     }
     
     public List<MonitoredValue> findMonitoredValueByPattern(String pattern) {
+        LocalPerfData perfData = this.perfData;
+        if (perfData != null) {
+            List<MonitoredValue> values = perfData.findByPattern(pattern);
+            if (!values.isEmpty()) return values;
+        }
         try {
-            List<Monitor> monitorList = monitoredVm.findByPattern(pattern);
+            List<Monitor> monitorList = getMonitors(pattern);
             List<MonitoredValue> monitoredValueList = new ArrayList(monitorList.size());
             for (Monitor monitor : monitorList) {
                 monitoredValueList.add(new MonitoredValueImpl(monitor));
@@ -147,9 +187,32 @@ public class JvmstatModelImpl extends JvmstatModel implements VmListener, DataRe
         return null;  
     }
     
+    private Monitor getMonitor(String name) throws MonitorException {
+        synchronized (monitorCache) {
+            Monitor mon = monitorCache.get(name);
+            if (mon == null) {
+                mon = monitoredVm.findByName(name);
+                if (mon != null) monitorCache.put(name, mon);
+            }
+            return mon;
+        }
+    }
+    
+    private List<Monitor> getMonitors(String pattern) throws MonitorException {
+        synchronized (monitorCache) {
+            List<Monitor> monitors = patternCache.get(pattern);
+            if (monitors == null) {
+                monitors = monitoredVm.findByPattern(pattern);
+                if (!monitors.isEmpty()) patternCache.put(pattern, monitors);
+            }
+            return monitors;
+        }
+    }
+    
     void initListeners() {
         try {
-            monitoredHost = MonitoredHost.getMonitoredHost(monitoredVm.getVmIdentifier());
+            MonitoredHost monitoredHost = MonitoredHost.getMonitoredHost(monitoredVm.getVmIdentifier());
+            activeVms = ActiveVms.forHost(application.getHost(), monitoredHost);
             monitoredVm.addVmListener(this);
         } catch (MonitorException ex) {
             ErrorManager.getDefault().notify(ErrorManager.WARNING,ex);
@@ -162,7 +225,7 @@ public class JvmstatModelImpl extends JvmstatModel implements VmListener, DataRe
         } catch (MonitorException ex) {
              ErrorManager.getDefault().notify(ErrorManager.WARNING,ex);
         }
-        monitoredHost = null;
+        activeVms = null;
     }
         
     /**
@@ -172,7 +235,10 @@ public class JvmstatModelImpl extends JvmstatModel implements VmListener, DataRe
      * @param event the object describing the event.
      */
     public void monitorStatusChanged(MonitorStatusChangeEvent event) {
-        
+        synchronized (monitorCache) {
+            if (!event.getRemoved().isEmpty()) monitorCache.clear();
+            patternCache.clear();
+        }
     }
     
     /**
@@ -185,8 +251,14 @@ public class JvmstatModelImpl extends JvmstatModel implements VmListener, DataRe
     public void monitorsUpdated(VmEvent event) {
         assert event.getMonitoredVm().equals(monitoredVm);
         try {
-            // check that the application is still alive
-            if (monitoredHost.activeVms().contains(pid)) {
+            // check that the application is still alive, the active VMs
+            // are scanned once per polling interval for all applications of the host
+            ActiveVms vms = activeVms;
+            if (vms == null) return;
+            LocalPerfData perfData = this.perfData;
+            boolean alive = perfData != null ? perfData.isAlive() :
+                            vms.isActive(pid, monitoredVm.getInterval());
+            if (alive) {
                 List<JvmstatListener> listenersCopy;
                 synchronized  (listeners) {
                     listenersCopy = new ArrayList(listeners);
@@ -195,13 +267,11 @@ public class JvmstatModelImpl extends JvmstatModel implements VmListener, DataRe
                     listener.dataChanged(this);
                 }
             } else { // application is not alive
-                disableListeners();
-                monitoredVm.detach();
+                dispose();
             }
         } catch (MonitorException ex) {
              ErrorManager.getDefault().notify(ErrorManager.WARNING,ex);
-             disableListeners();
-             monitoredVm.detach();
+             dispose();
         }
     }
     
@@ -213,19 +283,34 @@ public class JvmstatModelImpl extends JvmstatModel implements VmListener, DataRe
      */
     public void disconnected(VmEvent event) {
         ErrorManager.getDefault().log("Disconnect "+event.getMonitoredVm().getVmIdentifier());  // NOI18N
-        disableListeners();
-        monitoredVm.detach();
+        dispose();
     }
     
     public void dataRemoved(Application dataSource) {
         RequestProcessor.getDefault().post(new Runnable() {
             public void run() {
-                disableListeners();
-                monitoredVm.detach();
+                dispose();
             }
         });
     }
 
+    /**
+     * Stops polling the MonitoredVm and releases the hsperfdata mapping.
+     */
+    private void dispose() {
+        disableListeners();
+        monitoredVm.detach();
+        LocalPerfData perfData = this.perfData;
+        if (perfData != null) {
+            this.perfData = null;
+            perfData.close();
+        }
+        synchronized (monitorCache) {
+            monitorCache.clear();
+            patternCache.clear();
+        }
+    }
+
     public String getConnectionId() {
         return monitoredVm.getVmIdentifier().getURI().toString();
     }
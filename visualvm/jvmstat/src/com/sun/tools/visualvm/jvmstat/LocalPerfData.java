@@ -0,0 +1,275 @@
+/*
+ *  Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *  This code is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License version 2 only, as
+ *  published by the Free Software Foundation.  Oracle designates this
+ *  particular file as subject to the "Classpath" exception as provided
+ *  by Oracle in the LICENSE file that accompanied this code.
+ *
+ *  This code is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ *  version 2 for more details (a copy is included in the LICENSE file that
+ *  accompanied this code).
+ *
+ *  You should have received a copy of the GNU General Public License version
+ *  2 along with this work; if not, write to the Free Software Foundation,
+ *  Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *  Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ *  or visit www.oracle.com if you need additional information or have any
+ *  questions.
+ */
+
+package com.sun.tools.visualvm.jvmstat;
+
+import com.sun.tools.visualvm.tools.jvmstat.MonitoredValue;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import sun.jvmstat.perfdata.monitor.protocol.local.PerfDataFile;
+
+/**
+ * Reads the hsperfdata file of a local JVM directly from a memory-mapped
+ * buffer. The entry table is parsed once, entries added later by the JVM are
+ * parsed on demand. Counter values are read from their fixed offsets.
+ * The file is closed right after it is mapped; the mapping itself is released
+ * once the buffer dropped by {@link #close()} is garbage collected.
+ *
+ * @author Tomas Hurka
+ */
+class LocalPerfData {
+    private final static Logger LOGGER = Logger.getLogger(LocalPerfData.class.getName());
+
+    private static final int PERFDATA_MAGIC = 0xcafec0c0;
+    private static final int PERFDATA_BIG_ENDIAN = 0;
+    private static final int PERFDATA_MAJOR_VERSION = 2;
+
+    // prologue offsets
+    private static final int BYTE_ORDER_OFFSET = 4;
+    private static final int MAJOR_VERSION_OFFSET = 5;
+    private static final int ACCESSIBLE_OFFSET = 7;
+    private static final int USED_OFFSET = 8;
+    private static final int ENTRY_OFFSET_OFFSET = 24;
+    private static final int NUM_ENTRIES_OFFSET = 28;
+
+    // entry header offsets
+    private static final int ENTRY_LENGTH_OFFSET = 0;
+    private static final int NAME_OFFSET_OFFSET = 4;
+    private static final int VECTOR_LENGTH_OFFSET = 8;
+    private static final int DATA_TYPE_OFFSET = 12;
+    private static final int DATA_VARIABILITY_OFFSET = 15;
+    private static final int DATA_OFFSET_OFFSET = 16;
+
+    private static final byte TYPE_LONG = 'J';     // NOI18N
+    private static final byte TYPE_BYTE = 'B';     // NOI18N
+    private static final byte VARIABILITY_CONSTANT = 1;
+
+    private final File file;
+    private volatile ByteBuffer buffer;
+    private final Map<String,Value> values = new HashMap<String,Value>();
+    private final List<Value> valuesList = new ArrayList<Value>();
+    private int nextEntry;
+    private int parsedEntries;
+
+
+    private LocalPerfData(File f, ByteBuffer buf) {
+        file = f;
+        buffer = buf;
+        nextEntry = buffer.getInt(ENTRY_OFFSET_OFFSET);
+    }
+
+    /**
+     * Maps the hsperfdata file of the local JVM.
+     *
+     * @return the perfdata or <code>null</code> if the file cannot be mapped
+     *         or has an unsupported format
+     */
+    static LocalPerfData open(int pid) {
+        File f = null;
+        try {
+            f = PerfDataFile.getFile(pid);
+            if (f == null || !f.canRead()) return null;
+            RandomAccessFile raf = new RandomAccessFile(f, "r");   // NOI18N
+            MappedByteBuffer buf;
+            try {
+                FileChannel channel = raf.getChannel();
+                buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } finally {
+                // the mapping stays valid after the file is closed
+                raf.close();
+            }
+            if (buf.capacity() <= NUM_ENTRIES_OFFSET + 4) return null;
+            buf.order(ByteOrder.BIG_ENDIAN);
+            if (buf.getInt(0) != PERFDATA_MAGIC) return null;
+            if (buf.get(MAJOR_VERSION_OFFSET) != PERFDATA_MAJOR_VERSION) return null;
+            if (buf.get(ACCESSIBLE_OFFSET) == 0) return null;
+            buf.order(buf.get(BYTE_ORDER_OFFSET) == PERFDATA_BIG_ENDIAN ?
+                      ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+            LocalPerfData perfData = new LocalPerfData(f, buf);
+            perfData.parseEntries();
+            return perfData;
+        } catch (IOException ex) {
+            LOGGER.log(Level.FINE, "Cannot map " + f, ex);    // NOI18N
+        } catch (RuntimeException ex) {
+            // malformed or truncated file
+            LOGGER.log(Level.FINE, "Cannot parse " + f, ex);  // NOI18N
+        }
+        return null;
+    }
+
+    /**
+     * Returns <code>true</code> while the hsperfdata file of the JVM exists.
+     */
+    boolean isAlive() {
+        return file.exists();
+    }
+
+    /**
+     * Drops the mapped buffer, the values found so far read zeros afterwards.
+     */
+    synchronized void close() {
+        buffer = null;
+        values.clear();
+        valuesList.clear();
+    }
+
+    synchronized MonitoredValue findByName(String name) {
+        Value value = values.get(name);
+        if (value == null && parseEntries()) {
+            value = values.get(name);
+        }
+        return value;
+    }
+
+    /**
+     * Finds values whose names start with a match of the pattern, the same
+     * way as MonitoredVm.findByPattern does.
+     */
+    synchronized List<MonitoredValue> findByPattern(String patternString) {
+        parseEntries();
+        Matcher matcher = Pattern.compile(patternString).matcher(""); // NOI18N
+        List<MonitoredValue> result = new ArrayList<MonitoredValue>();
+        for (Value value : valuesList) {
+            matcher.reset(value.name);
+            if (matcher.lookingAt()) result.add(value);
+        }
+        return result;
+    }
+
+    static boolean isConstant(MonitoredValue value) {
+        return value instanceof Value && ((Value)value).constant;
+    }
+
+    /**
+     * Parses the entries added since the last call.
+     *
+     * @return <code>true</code> if new entries were found
+     */
+    private boolean parseEntries() {
+        ByteBuffer buffer = this.buffer;
+        if (buffer == null) return false;
+        int numEntries = buffer.getInt(NUM_ENTRIES_OFFSET);
+        int used = Math.min(buffer.getInt(USED_OFFSET), buffer.capacity());
+        boolean added = false;
+
+        while (parsedEntries < numEntries && nextEntry + DATA_OFFSET_OFFSET + 4 <= used) {
+            int entryLength = buffer.getInt(nextEntry + ENTRY_LENGTH_OFFSET);
+            if (entryLength <= 0 || nextEntry + entryLength > used) break;
+
+            String name = readString(buffer, nextEntry + buffer.getInt(nextEntry + NAME_OFFSET_OFFSET), entryLength);
+            int vectorLength = buffer.getInt(nextEntry + VECTOR_LENGTH_OFFSET);
+            byte type = buffer.get(nextEntry + DATA_TYPE_OFFSET);
+            boolean constant = buffer.get(nextEntry + DATA_VARIABILITY_OFFSET) == VARIABILITY_CONSTANT;
+            int dataOffset = nextEntry + buffer.getInt(nextEntry + DATA_OFFSET_OFFSET);
+
+            Value value = null;
+            if (type == TYPE_LONG && vectorLength == 0) {
+                value = new LongValue(name, dataOffset, constant);
+            } else if (type == TYPE_BYTE && vectorLength > 0) {
+                value = new StringValue(name, dataOffset, vectorLength, constant);
+            }
+            // other types are not exported by HotSpot
+            if (value != null) {
+                values.put(name, value);
+                valuesList.add(value);
+                added = true;
+            }
+            nextEntry += entryLength;
+            parsedEntries++;
+        }
+        return added;
+    }
+
+    private static String readString(ByteBuffer buffer, int offset, int maxLength) {
+        int limit = Math.min(offset + maxLength, buffer.capacity());
+        int end = offset;
+        while (end < limit && buffer.get(end) != 0) end++;
+        byte[] bytes = new byte[end - offset];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = buffer.get(offset + i);
+        // the JVM stores strings in the platform encoding
+        return new String(bytes, Charset.defaultCharset());
+    }
+
+
+    private abstract class Value extends MonitoredValue {
+        final String name;
+        final int offset;
+        final boolean constant;
+
+        Value(String n, int off, boolean c) {
+            name = n;
+            offset = off;
+            constant = c;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    private class LongValue extends Value {
+
+        LongValue(String n, int off, boolean c) {
+            super(n, off, c);
+        }
+
+        public Object getValue() {
+            return Long.valueOf(longValue());
+        }
+
+        public long longValue() {
+            ByteBuffer buf = buffer;
+            return buf == null ? 0 : buf.getLong(offset);
+        }
+    }
+
+    private class StringValue extends Value {
+        private final int length;
+
+        StringValue(String n, int off, int len, boolean c) {
+            super(n, off, c);
+            length = len;
+        }
+
+        public Object getValue() {
+            ByteBuffer buf = buffer;
+            return buf == null ? "" : readString(buf, offset, length); // NOI18N
+        }
+    }
+}
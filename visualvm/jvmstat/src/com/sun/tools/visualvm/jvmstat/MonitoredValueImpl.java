@@ -26,6 +26,7 @@
 package com.sun.tools.visualvm.jvmstat;
 
 import com.sun.tools.visualvm.tools.jvmstat.MonitoredValue;
+import sun.jvmstat.monitor.LongMonitor;
 import sun.jvmstat.monitor.Monitor;
 
 /**
@@ -34,10 +35,12 @@ import sun.jvmstat.monitor.Monitor;
  */
 public class MonitoredValueImpl extends MonitoredValue {
     
-    private Monitor monitor;
+    private final Monitor monitor;
+    private final LongMonitor longMonitor;
     
     MonitoredValueImpl(Monitor mon) {
         monitor = mon;
+        longMonitor = mon instanceof LongMonitor ? (LongMonitor)mon : null;
     }
     
     public String getName() {
@@ -47,4 +50,10 @@ public class MonitoredValueImpl extends MonitoredValue {
     public Object getValue() {
         return monitor.getValue();
     }
+    
+    public long longValue() {
+        // reads the value directly from the perfdata buffer
+        if (longMonitor != null) return longMonitor.longValue();
+        return super.longValue();
+    }
 }
\ No newline at end of file
@@ -41,6 +41,7 @@ public final class ProfilerPreset {
     private static final String PROP_SAMPLING_RATE_S = "prof_preset_samplingRate_s"; // NOI18N
     private static final String PROP_REFRESH_RATE_S = "prof_preset_refreshRate_s"; // NOI18N
     private static final String PROP_SAMPLING_REFRESH_RATE_S = "prof_preset_samplingRefreshRate_s"; // NOI18N
+    private static final String PROP_STACK_DEPTH_S = "prof_preset_stackDepth_s"; // NOI18N
     private static final String PROP_ROOTS_P = "prof_preset_roots_p"; // NOI18N
     private static final String PROP_RUNNABLES_P = "prof_preset_runnables_p"; // NOI18N
     private static final String PROP_FILTER_MODE_P = "prof_preset_filterMode_p"; // NOI18N
@@ -57,6 +58,7 @@ public final class ProfilerPreset {
     private int samplingRateS;
     private int refreshRateS;
     private int samplingRefreshRateS;
+    private int stackDepthS;
     private String rootsP;
     private boolean runnablesP;
     private boolean filterModeP;
@@ -75,6 +77,7 @@ public final class ProfilerPreset {
         this.samplingRateS = 100;
         this.refreshRateS = 1000;
         this.samplingRefreshRateS = 1000;
+        this.stackDepthS = Integer.MAX_VALUE;
         this.rootsP = ""; // NOI18N
         this.runnablesP = true;
         this.filterModeP = true;
@@ -93,6 +96,7 @@ public final class ProfilerPreset {
         this.samplingRateS = preset.samplingRateS;
         this.refreshRateS = preset.refreshRateS;
         this.samplingRefreshRateS = preset.samplingRefreshRateS;
+        this.stackDepthS = preset.stackDepthS;
         this.rootsP = preset.rootsP;
         this.runnablesP = preset.runnablesP;
         this.filterModeP = preset.filterModeP;
@@ -111,6 +115,7 @@ public final class ProfilerPreset {
         samplingRateS = prefs.getInt(prefix + PROP_SAMPLING_RATE_S, 100);
         refreshRateS = prefs.getInt(prefix + PROP_REFRESH_RATE_S, 1000);
         samplingRefreshRateS = prefs.getInt(prefix + PROP_SAMPLING_REFRESH_RATE_S, 1000);
+        stackDepthS = prefs.getInt(prefix + PROP_STACK_DEPTH_S, Integer.MAX_VALUE);
         rootsP = prefs.get(prefix + PROP_ROOTS_P, ""); // NOI18N
         runnablesP = prefs.getBoolean(prefix + PROP_RUNNABLES_P, true);
         filterModeP = prefs.getBoolean(prefix + PROP_FILTER_MODE_P, true);
@@ -129,6 +134,7 @@ public final class ProfilerPreset {
         prefs.putInt(prefix + PROP_SAMPLING_RATE_S, samplingRateS);
         prefs.putInt(prefix + PROP_REFRESH_RATE_S, refreshRateS);
         prefs.putInt(prefix + PROP_SAMPLING_REFRESH_RATE_S, samplingRefreshRateS);
+        prefs.putInt(prefix + PROP_STACK_DEPTH_S, stackDepthS);
         prefs.put(prefix + PROP_ROOTS_P, rootsP);
         prefs.putBoolean(prefix + PROP_RUNNABLES_P, runnablesP);
         prefs.putBoolean(prefix + PROP_FILTER_MODE_P, filterModeP);
@@ -204,6 +210,14 @@ public final class ProfilerPreset {
         return samplingRefreshRateS;
     }
 
+    public void setStackDepthS(int stackDepth) {
+        this.stackDepthS = stackDepth;
+    }
+
+    public int getStackDepthS() {
+        return stackDepthS;
+    }
+
     public void setRootsP(String roots) {
         this.rootsP = roots;
     }
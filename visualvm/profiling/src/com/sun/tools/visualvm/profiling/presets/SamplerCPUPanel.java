@@ -73,6 +73,8 @@ public abstract class SamplerCPUPanel extends JPanel {
     private JLabel refreshRateLabel;
     private JLabel refreshUnitsLabel;
     private JComboBox refreshRateCombo;
+    private JLabel stackDepthLabel;
+    private JComboBox stackDepthCombo;
     
     private final Runnable validator;
     private boolean filtersValid = true;
@@ -112,6 +114,10 @@ public abstract class SamplerCPUPanel extends JPanel {
         return (Integer)refreshRateCombo.getSelectedItem();
     }
     
+    public int getStackDepth() {
+        return (Integer)stackDepthCombo.getSelectedItem();
+    }
+    
     
     public boolean settingsValid() { return filtersValid; }
     
@@ -124,6 +130,7 @@ public abstract class SamplerCPUPanel extends JPanel {
         filtersArea.getTextArea().setText(preset.getFilterS());
         sampleRateCombo.setSelectedItem(preset.getSamplingRateS());
         refreshRateCombo.setSelectedItem(preset.getRefreshRateS());
+        stackDepthCombo.setSelectedItem(preset.getStackDepthS());
         internalChange = false;
     }
     
@@ -134,6 +141,7 @@ public abstract class SamplerCPUPanel extends JPanel {
         preset.setFilterS(filtersArea.getTextArea().getText());
         preset.setSamplingRateS((Integer)sampleRateCombo.getSelectedItem());
         preset.setRefreshRateS((Integer)refreshRateCombo.getSelectedItem());
+        preset.setStackDepthS((Integer)stackDepthCombo.getSelectedItem());
     }
     
     public abstract void settingsChanged();
@@ -303,7 +311,7 @@ public abstract class SamplerCPUPanel extends JPanel {
         add(sampleRateLabel, constraints);
 
         Integer[] samplingRates =
-            new Integer[] { 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000 };
+            new Integer[] { 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000 };
         sampleRateCombo = new JComboBox(samplingRates) {
             public Dimension getMinimumSize() { return getPreferredSize(); }
             public Dimension getMaximumSize() { return getPreferredSize(); }
@@ -358,7 +366,7 @@ public abstract class SamplerCPUPanel extends JPanel {
         constraints.gridwidth = 1;
         constraints.anchor = GridBagConstraints.WEST;
         constraints.fill = GridBagConstraints.NONE;
-        constraints.insets = new Insets(1, 10, 10, 5);
+        constraints.insets = new Insets(1, 10, 5, 5);
         add(refreshRateLabel, constraints);
 
         Integer[] refreshRates = new Integer[] { 100, 200, 500, 1000, 2000, 5000, 10000 };
@@ -380,7 +388,7 @@ public abstract class SamplerCPUPanel extends JPanel {
         constraints.gridwidth = 1;
         constraints.anchor = GridBagConstraints.WEST;
         constraints.fill = GridBagConstraints.NONE;
-        constraints.insets = new Insets(1, 0, 10, 5);
+        constraints.insets = new Insets(1, 0, 5, 5);
         add(refreshRateCombo, constraints);
 
         refreshUnitsLabel = new JLabel(NbBundle.getMessage(
@@ -393,7 +401,7 @@ public abstract class SamplerCPUPanel extends JPanel {
         constraints.gridwidth = 1;
         constraints.anchor = GridBagConstraints.WEST;
         constraints.fill = GridBagConstraints.NONE;
-        constraints.insets = new Insets(1, 0, 10, 5);
+        constraints.insets = new Insets(1, 0, 5, 5);
         add(refreshUnitsLabel, constraints);
 
         constraints = new GridBagConstraints();
@@ -402,6 +410,52 @@ public abstract class SamplerCPUPanel extends JPanel {
         constraints.gridwidth = GridBagConstraints.REMAINDER;
         constraints.anchor = GridBagConstraints.WEST;
         constraints.fill = GridBagConstraints.HORIZONTAL;
+        constraints.insets = new Insets(1, 0, 5, 0);
+        add(Spacer.create(), constraints);
+
+        stackDepthLabel = new JLabel();
+        setText(stackDepthLabel, NbBundle.getMessage(SamplerCPUPanel.class,
+                "LBL_Stack_depth"), mnemonics); // NOI18N
+        stackDepthLabel.setToolTipText(NbBundle.getMessage(
+                SamplerCPUPanel.class, "TOOLTIP_Stack_depth")); // NOI18N
+        constraints = new GridBagConstraints();
+        constraints.gridx = 0;
+        constraints.gridy = 8;
+        constraints.gridwidth = 1;
+        constraints.anchor = GridBagConstraints.WEST;
+        constraints.fill = GridBagConstraints.NONE;
+        constraints.insets = new Insets(1, 10, 10, 5);
+        add(stackDepthLabel, constraints);
+
+        Integer[] stackDepths =
+            new Integer[] { 16, 32, 64, 128, 256, 512, 1024, Integer.MAX_VALUE };
+        stackDepthCombo = new JComboBox(stackDepths) {
+            public Dimension getMinimumSize() { return getPreferredSize(); }
+            public Dimension getMaximumSize() { return getPreferredSize(); }
+        };
+        stackDepthLabel.setLabelFor(stackDepthCombo);
+        stackDepthCombo.setToolTipText(NbBundle.getMessage(
+                SamplerCPUPanel.class, "TOOLTIP_Stack_depth")); // NOI18N
+        stackDepthCombo.setEditable(false);
+        stackDepthCombo.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) { syncUI(); }
+        });
+        stackDepthCombo.setRenderer(new ComboRenderer(stackDepthCombo));
+        constraints = new GridBagConstraints();
+        constraints.gridx = 1;
+        constraints.gridy = 8;
+        constraints.gridwidth = 1;
+        constraints.anchor = GridBagConstraints.WEST;
+        constraints.fill = GridBagConstraints.NONE;
+        constraints.insets = new Insets(1, 0, 10, 5);
+        add(stackDepthCombo, constraints);
+
+        constraints = new GridBagConstraints();
+        constraints.gridx = 2;
+        constraints.gridy = 8;
+        constraints.gridwidth = GridBagConstraints.REMAINDER;
+        constraints.anchor = GridBagConstraints.WEST;
+        constraints.fill = GridBagConstraints.HORIZONTAL;
         constraints.insets = new Insets(1, 0, 10, 0);
         add(Spacer.create(), constraints);
     }
@@ -466,8 +520,11 @@ public abstract class SamplerCPUPanel extends JPanel {
         public Component getListCellRendererComponent(JList list, Object value,
                 int index, boolean isSelected, boolean cellHasFocus) {
             
-            return renderer.getListCellRendererComponent(list, NumberFormat.
-                    getInstance().format(value), index, isSelected, cellHasFocus);
+            String text = Integer.valueOf(Integer.MAX_VALUE).equals(value) ?
+                    NbBundle.getMessage(SamplerCPUPanel.class, "LBL_Unlimited") : // NOI18N
+                    NumberFormat.getInstance().format(value);
+            return renderer.getListCellRendererComponent(list, text, index,
+                    isSelected, cellHasFocus);
         }
 
     }
@@ -26,6 +26,7 @@
 package com.sun.tools.visualvm.profiling.snapshot;
 
 import com.sun.tools.visualvm.core.datasource.DataSource;
+import com.sun.tools.visualvm.core.datasupport.Utils;
 import com.sun.tools.visualvm.core.snapshot.Snapshot;
 import com.sun.tools.visualvm.core.snapshot.SnapshotsSupport;
 import java.awt.Image;
@@ -51,6 +52,7 @@ public abstract class ProfilerSnapshot extends Snapshot {
             "com/sun/tools/visualvm/core/ui/resources/snapshotBadge.png", true);    // NOI18N
    
     public static ProfilerSnapshot createSnapshot(File file, DataSource master) {
+        Utils.waitForExtraction(file); // Snapshot archive may still be extracted
         if (file.getName().endsWith(ResultsManager.STACKTRACES_SNAPSHOT_EXTENSION)) {
             return new ProfilerSnapshotNPSS(file,master);
         }
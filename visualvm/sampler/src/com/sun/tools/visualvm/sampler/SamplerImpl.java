@@ -73,10 +73,12 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
 import java.net.URL;
 import java.util.Timer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.management.MBeanServerConnection;
 import javax.swing.BorderFactory;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
@@ -114,7 +116,7 @@ final class SamplerImpl {
     private String memoryStatus = NbBundle.getMessage(SamplerImpl.class, "MSG_Checking_Availability"); // NOI18N
 
     private boolean cpuProfilingSupported;
-    private AbstractSamplerSupport cpuSampler;
+    private CPUSamplerSupport cpuSampler;
     private CPUSettingsSupport cpuSettings;
 
     private boolean memoryProfilingSupported;
@@ -122,6 +124,8 @@ final class SamplerImpl {
     private MemorySettingsSupport memorySettings;
     
     private PresetSelector refSelector;
+    
+    private ThreadsDataCollector threadsCollector;
 
     private DataViewComponent dvc;
     private String currentName;
@@ -393,7 +397,8 @@ final class SamplerImpl {
                                 setState(cpuSampler.startSampling(
                                          cpuSettings.getSettings(),
                                          cpuSettings.getSamplingRate(),
-                                         cpuSettings.getRefreshRate()) ?
+                                         cpuSettings.getRefreshRate(),
+                                         cpuSettings.getStackDepth()) ?
                                          State.CPU : State.INACTIVE);
                             }
                         });
@@ -522,7 +527,7 @@ final class SamplerImpl {
                         });
                     }
                 };
-                tcpu = new ThreadsCPU(ti.getThreadMXBean(), JmxModelFactory.getJmxModelFor(application).getMBeanServerConnection());
+                tcpu = new ThreadsCPU(getThreadsCollector(ti.getThreadMXBean(), JmxModelFactory.getJmxModelFor(application).getMBeanServerConnection()));
                 try {
                     tcpu.getThreadsCPUInfo();
                 } catch (Exception ex) {
@@ -658,7 +663,7 @@ final class SamplerImpl {
                     if (mxbeans != null) {
                         memoryBean = mxbeans.getMemoryMXBean();
                         try {
-                            threadsMemory = new ThreadsMemory(mxbeans.getThreadMXBean(),jmxModel.getMBeanServerConnection());
+                            threadsMemory = new ThreadsMemory(getThreadsCollector(mxbeans.getThreadMXBean(),jmxModel.getMBeanServerConnection()));
                             threadsMemory.getThreadsMemoryInfo();
                         } catch (Exception ex) {
                             threadsMemory = null;
@@ -779,6 +784,13 @@ final class SamplerImpl {
         return timer;
     }
 
+    private synchronized ThreadsDataCollector getThreadsCollector(ThreadMXBean threadBean,
+                                                                  MBeanServerConnection connection) {
+        if (threadsCollector == null)
+            threadsCollector = new ThreadsDataCollector(threadBean, connection);
+        return threadsCollector;
+    }
+
     private DataViewComponent.DetailsView[] createSummaryView() {
         summaryArea = new HTMLTextArea();
         summaryArea.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
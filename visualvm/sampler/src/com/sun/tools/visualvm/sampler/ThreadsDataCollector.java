@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.tools.visualvm.sampler;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanException;
+import javax.management.MBeanServerConnection;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * Collects per-thread CPU time and allocated bytes of all threads.
+ * <p>
+ * Thread names are cached by thread id, ThreadInfo is only requested for
+ * threads which haven't been seen before and periodically for all threads
+ * to pick up renamed threads. Names of finished threads are dropped. Each
+ * collection fetches the thread ids and then only the primitive arrays of the
+ * requested values. The data kinds requested recently are collected in the
+ * same pass, the data is then handed to each requesting kind once.
+ * </p>
+ *
+ * @author Tomas Hurka
+ */
+public final class ThreadsDataCollector {
+
+    public static final int THREAD_CPU_TIME = 1;
+    public static final int THREAD_ALLOCATED_BYTES = 2;
+
+    // data kinds requested during this period are collected together
+    private static final long ACTIVE_KIND_TIME = 5000;
+    // maximum age of the data collected for another kind that can be reused
+    private static final long MAX_SHARED_AGE = 1000;
+    // period of resolving the names of all threads again
+    private static final long NAMES_REFRESH = 10000;
+
+    private static final ObjectName THREAD_NAME = getThreadName();
+    private static final String[] IDS_SIGNATURE = new String[] {"[J"};  // NOI18N
+
+    private final ThreadMXBean threadBean;
+    private final MBeanServerConnection connection;
+
+    private long[] lastIds = new long[0];
+    private String[] lastNames = new String[0];
+    private final Map<Long,String> names = new HashMap<Long,String>();
+    private long lastNamesRefresh;
+
+    private Data lastData;
+    private int lastDataConsumed;
+    private long lastCpuRequest = Long.MIN_VALUE;
+    private long lastAllocRequest = Long.MIN_VALUE;
+
+
+    public ThreadsDataCollector(ThreadMXBean bean, MBeanServerConnection conn) {
+        threadBean = bean;
+        connection = conn;
+    }
+
+
+    /**
+     * Returns data containing the requested kind.
+     *
+     * @param kind THREAD_CPU_TIME or THREAD_ALLOCATED_BYTES
+     */
+    public synchronized Data getData(int kind) throws MBeanException, ReflectionException, IOException, InstanceNotFoundException {
+        long now = System.currentTimeMillis();
+        if (kind == THREAD_CPU_TIME) lastCpuRequest = now;
+        else lastAllocRequest = now;
+
+        // Data collected for the other kind in the same pass
+        if (lastData != null && (lastData.kinds & kind) != 0 && (lastDataConsumed & kind) == 0 &&
+            now - lastData.timestamp <= MAX_SHARED_AGE) {
+            lastDataConsumed |= kind;
+            return lastData;
+        }
+
+        int kinds = kind;
+        if (now - lastCpuRequest <= ACTIVE_KIND_TIME) kinds |= THREAD_CPU_TIME;
+        if (now - lastAllocRequest <= ACTIVE_KIND_TIME) kinds |= THREAD_ALLOCATED_BYTES;
+
+        lastData = collect(kinds);
+        lastDataConsumed = kind;
+        return lastData;
+    }
+
+
+    private Data collect(int kinds) throws MBeanException, ReflectionException, IOException, InstanceNotFoundException {
+        long[] ids = threadBean.getAllThreadIds();
+        Object[] args = new Object[] {ids};
+        long[] cpuTimes = (kinds & THREAD_CPU_TIME) == 0 ? null :
+            (long[])connection.invoke(THREAD_NAME, "getThreadCpuTime", args, IDS_SIGNATURE);   // NOI18N
+        long[] allocatedBytes = (kinds & THREAD_ALLOCATED_BYTES) == 0 ? null :
+            (long[])connection.invoke(THREAD_NAME, "getThreadAllocatedBytes", args, IDS_SIGNATURE);   // NOI18N
+        long time = System.currentTimeMillis();
+
+        String[] threadNames = resolveNames(ids);
+
+        // drop threads which finished before their name could be resolved
+        int count = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (threadNames[i] == null) continue;
+            ids[count] = ids[i];
+            threadNames[count] = threadNames[i];
+            if (cpuTimes != null) cpuTimes[count] = cpuTimes[i];
+            if (allocatedBytes != null) allocatedBytes[count] = allocatedBytes[i];
+            count++;
+        }
+
+        return new Data(kinds, time, count, ids, threadNames, cpuTimes, allocatedBytes);
+    }
+
+    private String[] resolveNames(long[] ids) {
+        String[] threadNames = new String[ids.length];
+        int unknownCount = ids.length;
+        long now = System.currentTimeMillis();
+        if (now - lastNamesRefresh >= NAMES_REFRESH) {
+            // all names resolved again, the threads may have been renamed
+            lastNamesRefresh = now;
+        } else {
+            unknownCount = 0;
+            for (int i = 0; i < ids.length; i++) {
+                // threads are usually reported in the same order
+                if (i < lastIds.length && lastIds[i] == ids[i]) threadNames[i] = lastNames[i];
+                else threadNames[i] = names.get(ids[i]);
+                if (threadNames[i] == null) unknownCount++;
+            }
+        }
+
+        if (unknownCount > 0) {
+            long[] unknownIds = new long[unknownCount];
+            int[] unknownIndexes = new int[unknownCount];
+            int index = 0;
+            for (int i = 0; i < ids.length; i++) {
+                if (threadNames[i] == null) {
+                    unknownIds[index] = ids[i];
+                    unknownIndexes[index++] = i;
+                }
+            }
+            ThreadInfo[] infos = threadBean.getThreadInfo(unknownIds);
+            for (int i = 0; i < infos.length; i++) {
+                if (infos[i] != null) threadNames[unknownIndexes[i]] = infos[i].getThreadName();
+            }
+        }
+
+        // keep only the names of live threads
+        if (unknownCount > 0 || !Arrays.equals(ids, lastIds)) {
+            names.clear();
+            for (int i = 0; i < ids.length; i++)
+                if (threadNames[i] != null) names.put(ids[i], threadNames[i]);
+        }
+
+        lastIds = ids.clone();
+        lastNames = threadNames.clone();
+        return threadNames;
+    }
+
+    private static ObjectName getThreadName() {
+        try {
+            return new ObjectName(ManagementFactory.THREAD_MXBEAN_NAME);
+        } catch (MalformedObjectNameException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+
+    /**
+     * Snapshot of the per-thread data stored in parallel arrays.
+     */
+    public static final class Data {
+
+        private final int kinds;
+        private final long timestamp;
+        private final int count;
+        private final long[] ids;
+        private final String[] names;
+        private final long[] cpuTimes;
+        private final long[] allocatedBytes;
+
+        private Data(int kinds, long timestamp, int count, long[] ids, String[] names,
+                     long[] cpuTimes, long[] allocatedBytes) {
+            this.kinds = kinds;
+            this.timestamp = timestamp;
+            this.count = count;
+            this.ids = ids;
+            this.names = names;
+            this.cpuTimes = cpuTimes;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public int getThreadsCount() {
+            return count;
+        }
+
+        public long getThreadId(int index) {
+            return ids[index];
+        }
+
+        public String getThreadName(int index) {
+            return names[index];
+        }
+
+        /**
+         * Returns CPU times, only the first getThreadsCount() items are valid.
+         */
+        public long[] getCpuTimes() {
+            return cpuTimes;
+        }
+
+        /**
+         * Returns allocated bytes, only the first getThreadsCount() items are valid.
+         */
+        public long[] getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        public long[] getThreadIds() {
+            return ids;
+        }
+
+        public String[] getThreadNames() {
+            return names;
+        }
+
+    }
+
+}
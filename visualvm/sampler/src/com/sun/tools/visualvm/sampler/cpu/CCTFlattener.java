@@ -24,9 +24,7 @@
  */
 package com.sun.tools.visualvm.sampler.cpu;
 
-import java.util.HashSet;
-import java.util.Set;
-import java.util.Stack;
+import java.util.Arrays;
 import org.netbeans.lib.profiler.global.InstrumentationFilter;
 import org.netbeans.lib.profiler.results.RuntimeCCTNodeProcessor;
 import org.netbeans.lib.profiler.results.cpu.FlatProfileContainer;
@@ -35,37 +33,57 @@ import org.netbeans.lib.profiler.results.cpu.cct.nodes.MethodCPUCCTNode;
 import org.netbeans.lib.profiler.results.cpu.cct.nodes.TimedCPUCCTNode;
 
 /**
+ * Flattens the sampled CCT into per-method accumulators.
+ * <p>
+ * The flattener is reused for all the live refreshes of a session. The
+ * per-method accumulators are kept in two alternating sets of arrays which
+ * only grow when new methods appear, and the result of the instrumentation
+ * filter is remembered per method id so that a refresh does no per-node
+ * string processing. The remembered filter results are discarded only when
+ * the {@link InstrumentationFilter} changes. The CCT walk itself uses
+ * primitive stacks instead of allocating an object per node.
+ * </p>
  *
  * @author Tomas Hurka
  */
 final class CCTFlattener extends RuntimeCCTNodeProcessor.PluginAdapter {
 
+    private static final byte FILTER_UNKNOWN = 0;
+    private static final byte FILTER_PASSES = 1;
+    private static final byte FILTER_REJECTS = 2;
+
     //~ Instance fields ----------------------------------------------------------------------------------------------------------
 
     private final Object containerGuard = new Object();
 
     // @GuardedBy containerGuard
     private FlatProfileContainer container;
-    private Stack<TotalTime> parentStack;
-    private Set methodsOnStack;
-    private int[] invDiff;
-    private int[] invPM;
-    private int[] nCalleeInvocations;
-    private long[] timePM0;
-    private long[] timePM1;
-    private long[] totalTimePM0;
-    private long[] totalTimePM1;
+
+    // two sets of accumulators; the container created by the last refresh may still be displayed
+    private final Accumulators[] accumulators = new Accumulators[] { new Accumulators(), new Accumulators() };
+    private Accumulators current;
     private int nMethods;
-    private InstrumentationFilter instrFilter;
-    private boolean twoTimestamps;
-    private MethodInfoMapper methodInfoMapper;
+
+    // per-method filter status and recursion counters
+    private byte[] filterStatus = new byte[0];
+    private int[] onStack = new int[0];
+    private String[] lastFilterStrings;
+    private int lastFilterType;
+
+    // primitive stack of the nodes being processed
+    private MethodCPUCCTNode[] stackParent = new MethodCPUCCTNode[64];
+    private boolean[] stackRecursive = new boolean[64];
+    private long[] stackTotal0 = new long[64];
+    private long[] stackTotal1 = new long[64];
+    private int depth;
+
+    private final InstrumentationFilter instrFilter;
+    private final boolean twoTimestamps;
+    private final MethodInfoMapper methodInfoMapper;
 
     //~ Constructors -------------------------------------------------------------------------------------------------------------
 
     CCTFlattener(boolean twoStamps, MethodInfoMapper mapper, InstrumentationFilter f) {
-        parentStack = new Stack();
-        methodsOnStack = new HashSet();
-        nMethods = mapper.getMaxMethodId();
         methodInfoMapper = mapper;
         twoTimestamps = twoStamps;
         instrFilter = f;
@@ -80,12 +98,15 @@ final class CCTFlattener extends RuntimeCCTNodeProcessor.PluginAdapter {
     }
 
     public void onStop() {
+        long[] timePM0 = current.timePM0;
+        long[] timePM1 = current.timePM1;
+        int[] invPM = current.invPM;
+
         // Now convert the data into microseconds
         long wholeGraphTime0 = 0;
 
         // Now convert the data into microseconds
         long wholeGraphTime1 = 0;
-        long totalNInv = 0;
 
         for (int i = 0; i < nMethods; i++) {
             // convert to microseconds
@@ -115,32 +136,29 @@ final class CCTFlattener extends RuntimeCCTNodeProcessor.PluginAdapter {
                     wholeGraphTime1 += time;
                 }
             }
-
-            totalNInv += invPM[i];
         }
 
         synchronized (containerGuard) {
-            container = new FlatProfilerContainer(methodInfoMapper, twoTimestamps, timePM0, timePM1, totalTimePM0, totalTimePM1,
-                    invPM, new char[0], wholeGraphTime0, wholeGraphTime1, invPM.length);
+            container = new FlatProfilerContainer(methodInfoMapper, twoTimestamps, timePM0, twoTimestamps ? timePM1 : new long[0],
+                    current.totalTimePM0, twoTimestamps ? current.totalTimePM1 : new long[0],
+                    invPM, new char[0], wholeGraphTime0, wholeGraphTime1, nMethods);
         }
 
-        timePM0 = timePM1 = null;
-        invPM = invDiff = nCalleeInvocations = null;
-        parentStack.clear();
-        methodsOnStack.clear();
-        instrFilter = null;
+        depth = 0;
+        Arrays.fill(stackParent, null);
     }
 
     public void onStart() {
-        timePM0 = new long[nMethods];
-        timePM1 = new long[twoTimestamps ? nMethods : 0];
-        totalTimePM0 = new long[nMethods];
-        totalTimePM1 = new long[twoTimestamps ? nMethods : 0];
-        invPM = new int[nMethods];
-        invDiff = new int[nMethods];
-        nCalleeInvocations = new int[nMethods];
-        parentStack.clear();
-        methodsOnStack.clear();
+        nMethods = methodInfoMapper.getMaxMethodId();
+        checkFilter();
+        if (filterStatus.length < nMethods) {
+            filterStatus = grow(filterStatus, nMethods);
+            onStack = grow(onStack, nMethods);
+        }
+        Arrays.fill(onStack, 0);
+        current = current == accumulators[0] ? accumulators[1] : accumulators[0];
+        current.reset(nMethods, twoTimestamps);
+        depth = 0;
 
         synchronized (containerGuard) {
             container = null;
@@ -150,90 +168,159 @@ final class CCTFlattener extends RuntimeCCTNodeProcessor.PluginAdapter {
     public void onNode(MethodCPUCCTNode node) {
         final int nodeMethodId = node.getMethodId();
         final int nodeFilerStatus = node.getFilteredStatus();
-        final MethodCPUCCTNode currentParent = parentStack.isEmpty() ? null : (MethodCPUCCTNode) parentStack.peek().parent;
+        final MethodCPUCCTNode currentParent = depth == 0 ? null : stackParent[depth - 1];
         boolean filteredOut = (nodeFilerStatus == TimedCPUCCTNode.FILTERED_YES); // filtered out by rootmethod/markermethod rules
 
         if (!filteredOut) {
-            String jvmClassName = methodInfoMapper.getInstrMethodClass(nodeMethodId).replace('.', '/'); // NOI18N
-            filteredOut = !instrFilter.passesFilter(jvmClassName);
+            filteredOut = !passesFilter(nodeMethodId);
         }
 
         final int parentMethodId = currentParent != null ? currentParent.getMethodId() : -1;
+        final long netTime0 = node.getNetTime0();
+        final long netTime1 = twoTimestamps ? node.getNetTime1() : 0;
 
         if (filteredOut) {
             if ((currentParent != null) && !currentParent.isRoot()) {
-                invDiff[parentMethodId] += node.getNCalls();
-
-                timePM0[parentMethodId] += node.getNetTime0();
+                current.timePM0[parentMethodId] += netTime0;
 
                 if (twoTimestamps) {
-                    timePM1[parentMethodId] += node.getNetTime1();
+                    current.timePM1[parentMethodId] += netTime1;
                 }
             }
         } else {
-            timePM0[nodeMethodId] += node.getNetTime0();
+            current.timePM0[nodeMethodId] += netTime0;
 
             if (twoTimestamps) {
-                timePM1[nodeMethodId] += node.getNetTime1();
+                current.timePM1[nodeMethodId] += netTime1;
             }
 
-            invPM[nodeMethodId] += node.getNCalls();
-
-            if ((currentParent != null) && !currentParent.isRoot()) {
-                nCalleeInvocations[parentMethodId] += node.getNCalls();
-            }
+            current.invPM[nodeMethodId] += node.getNCalls();
         }
-        final MethodCPUCCTNode nextParent = filteredOut ? currentParent : node;
-        final TotalTime timeNode = new TotalTime(nextParent,methodsOnStack.contains(nodeMethodId));
-        timeNode.totalTimePM0+=node.getNetTime0();
-        if (twoTimestamps) timeNode.totalTimePM1+=node.getNetTime1();
-        if (!timeNode.recursive) {
-            methodsOnStack.add(nodeMethodId);
+        final boolean recursive = onStack[nodeMethodId] > 0;
+        if (!recursive) {
+            onStack[nodeMethodId]++;
         }
-        parentStack.push(timeNode);
+        push(filteredOut ? currentParent : node, recursive, netTime0, netTime1);
     }
 
     public void onBackout(MethodCPUCCTNode node) {
-        TotalTime current = parentStack.pop();
-        if (!current.recursive) {
+        depth--;
+        final boolean recursive = stackRecursive[depth];
+        final long total0 = stackTotal0[depth];
+        final long total1 = stackTotal1[depth];
+        stackParent[depth] = null;
+        if (!recursive) {
             int nodeMethodId = node.getMethodId();
-            methodsOnStack.remove(nodeMethodId);
+            onStack[nodeMethodId]--;
             // convert to microseconds
-            double time = current.totalTimePM0 / 1000.0;
+            double time = total0 / 1000.0;
             if (time>0) {
-                totalTimePM0[nodeMethodId]+=time;
+                current.totalTimePM0[nodeMethodId]+=time;
             }
             if (twoTimestamps) {
-                time = current.totalTimePM1 / 1000.0;
+                time = total1 / 1000.0;
                 if (time>0) {
-                    totalTimePM1[nodeMethodId]+=time;
+                    current.totalTimePM1[nodeMethodId]+=time;
                 }
             }
         }
         // add self data to parent
-        if (!parentStack.isEmpty()) {
-            TotalTime parent = parentStack.peek();
-            parent.add(current);
-            parent.outCalls+=node.getNCalls();
+        if (depth > 0) {
+            stackTotal0[depth - 1] += total0;
+            stackTotal1[depth - 1] += total1;
         }
     }
 
-    private static class TotalTime {
-        private final MethodCPUCCTNode parent;
-        private final boolean recursive;
-        private int outCalls;
-        private long totalTimePM0;
-        private long totalTimePM1;
+    private void push(MethodCPUCCTNode parent, boolean recursive, long total0, long total1) {
+        if (depth == stackParent.length) {
+            int size = depth * 2;
+            MethodCPUCCTNode[] newParents = new MethodCPUCCTNode[size];
+            System.arraycopy(stackParent, 0, newParents, 0, depth);
+            stackParent = newParents;
+            boolean[] newRecursive = new boolean[size];
+            System.arraycopy(stackRecursive, 0, newRecursive, 0, depth);
+            stackRecursive = newRecursive;
+            stackTotal0 = grow(stackTotal0, size);
+            stackTotal1 = grow(stackTotal1, size);
+        }
+        stackParent[depth] = parent;
+        stackRecursive[depth] = recursive;
+        stackTotal0[depth] = total0;
+        stackTotal1[depth] = total1;
+        depth++;
+    }
 
-        TotalTime(MethodCPUCCTNode n, boolean r) {
-            parent = n;
-            recursive = r;
+    private boolean passesFilter(int methodId) {
+        byte status = filterStatus[methodId];
+        if (status == FILTER_UNKNOWN) {
+            String jvmClassName = methodInfoMapper.getInstrMethodClass(methodId).replace('.', '/'); // NOI18N
+            status = instrFilter.passesFilter(jvmClassName) ? FILTER_PASSES : FILTER_REJECTS;
+            filterStatus[methodId] = status;
         }
+        return status == FILTER_PASSES;
+    }
 
-        private void add(TotalTime current) {
-            outCalls += current.outCalls;
-            totalTimePM0 += current.totalTimePM0;
-            totalTimePM1 += current.totalTimePM1;
+    /**
+     * Forgets the remembered filter results if the filter has been modified.
+     */
+    private void checkFilter() {
+        String[] filterStrings = instrFilter.getFilterStrings();
+        int filterType = instrFilter.getFilterType();
+        if (filterType != lastFilterType || !Arrays.equals(filterStrings, lastFilterStrings)) {
+            Arrays.fill(filterStatus, FILTER_UNKNOWN);
+            lastFilterType = filterType;
+            lastFilterStrings = filterStrings == null ? null : filterStrings.clone();
+        }
+    }
+
+    private static byte[] grow(byte[] array, int size) {
+        byte[] newArray = new byte[size];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+    private static int[] grow(int[] array, int size) {
+        int[] newArray = new int[size];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+    private static long[] grow(long[] array, int size) {
+        long[] newArray = new long[size];
+        System.arraycopy(array, 0, newArray, 0, Math.min(array.length, size));
+        return newArray;
+    }
+
+    /**
+     * One set of the per-method accumulators.
+     */
+    private static final class Accumulators {
+        long[] timePM0 = new long[0];
+        long[] timePM1 = new long[0];
+        long[] totalTimePM0 = new long[0];
+        long[] totalTimePM1 = new long[0];
+        int[] invPM = new int[0];
+
+        void reset(int nMethods, boolean twoTimestamps) {
+            if (timePM0.length != nMethods) {
+                // the mapper only grows, the arrays are reused once the set of sampled methods settles
+                int size = nMethods;
+                timePM0 = new long[size];
+                totalTimePM0 = new long[size];
+                invPM = new int[size];
+                if (twoTimestamps) {
+                    timePM1 = new long[size];
+                    totalTimePM1 = new long[size];
+                }
+            } else {
+                Arrays.fill(timePM0, 0);
+                Arrays.fill(totalTimePM0, 0);
+                Arrays.fill(invPM, 0);
+                if (twoTimestamps) {
+                    Arrays.fill(timePM1, 0);
+                    Arrays.fill(totalTimePM1, 0);
+                }
+            }
         }
     }
 }
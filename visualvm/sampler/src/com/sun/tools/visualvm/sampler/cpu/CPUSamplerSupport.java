@@ -150,6 +150,13 @@ public abstract class CPUSamplerSupport extends AbstractSamplerSupport {
     }
 
     public boolean startSampling(ProfilingSettings settings, int samplingRate, int refreshRate) {
+        return startSampling(settings, samplingRate, refreshRate, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Starts a sampling session fetching at most {@code maxStackDepth} top frames of each thread.
+     */
+    public boolean startSampling(ProfilingSettings settings, int samplingRate, int refreshRate, int maxStackDepth) {
         InstrumentationFilter filter = new InstrumentationFilter();
         SimpleFilter sf = (SimpleFilter)settings.getSelectedInstrumentationFilter();
         filter.setFilterStrings(sf.getFilterValue());
@@ -165,7 +172,7 @@ public abstract class CPUSamplerSupport extends AbstractSamplerSupport {
         });
 
         if (timer == null) timer = getTimer();
-        samplerTask = new SamplerTask(builder);
+        samplerTask = new SamplerTask(builder, maxStackDepth);
 
         timer.scheduleAtFixedRate(samplerTask, 0, samplingRate);
         
@@ -262,9 +269,12 @@ public abstract class CPUSamplerSupport extends AbstractSamplerSupport {
 
         private final StackTraceSnapshotBuilder builder;
         private final Set samplingThreads = new HashSet();
+        private final StackTraceIngestor ingestor = new StackTraceIngestor();
+        private final int maxDepth;
 
-        public SamplerTask(StackTraceSnapshotBuilder builder) {
+        public SamplerTask(StackTraceSnapshotBuilder builder, int maxDepth) {
             this.builder = builder;
+            this.maxDepth = maxDepth;
         }
 
         public void run() {
@@ -272,7 +282,7 @@ public abstract class CPUSamplerSupport extends AbstractSamplerSupport {
             sampleRunning = true;
             synchronized (updateLock) {
                 try {
-                    ThreadInfo[] infos = threadInfoProvider.dumpAllThreads();
+                    ThreadInfo[] infos = ingestor.ingest(threadInfoProvider.dumpAllThreads(maxDepth));
                     long timestamp = System.nanoTime();
                     String samplingThreadName = findSamplingThread(infos);
                     if (samplingThreadName != null) {
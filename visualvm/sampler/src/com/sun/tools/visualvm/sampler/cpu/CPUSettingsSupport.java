@@ -60,6 +60,8 @@ public abstract class CPUSettingsSupport {
     
     public int getRefreshRate() { return panel.getRefreshRate(); }
     
+    public int getStackDepth() { return panel.getStackDepth(); }
+    
     public void saveSettings() {
         // NOTE: might save custom configuration here
     }
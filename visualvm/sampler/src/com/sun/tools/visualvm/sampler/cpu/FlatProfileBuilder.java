@@ -55,12 +55,15 @@ final class FlatProfileBuilder implements FlatProfileProvider {
 //        client.getStatus().beginTrans(false);
 
         try {
-            RuntimeCCTNodeProcessor.process(
-                appNode, 
-                cctFlattener
-            );
+            // the flattener is shared by the builders of one live panel
+            synchronized (cctFlattener) {
+                RuntimeCCTNodeProcessor.process(
+                    appNode, 
+                    cctFlattener
+                );
 
-            lastFlatProfile = cctFlattener.getFlatProfile();
+                lastFlatProfile = cctFlattener.getFlatProfile();
+            }
 
         } finally {
 //            client.getStatus().endTrans();
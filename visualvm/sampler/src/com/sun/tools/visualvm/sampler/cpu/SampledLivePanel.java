@@ -42,6 +42,9 @@ import org.netbeans.lib.profiler.ui.cpu.LiveFlatProfileCollectorPanel;
 final class SampledLivePanel extends LiveFlatProfileCollectorPanel {
     private MethodInfoMapper methodInfoMapper;
     private StackTraceSnapshotBuilder snapshotBuilder;
+    private CCTFlattener flattener;
+    private InstrumentationFilter flattenerFilter;
+    private boolean flattenerTwoTimeStamps;
     
     public SampledLivePanel(StackTraceSnapshotBuilder builder) {
         super(null,new DummyHandler(),null,true);
@@ -52,9 +55,18 @@ final class SampledLivePanel extends LiveFlatProfileCollectorPanel {
     public FlatProfileProvider getFlatProfileProvider() {
         InstrumentationFilter filter = snapshotBuilder.getFilter();
         boolean twoTimeStamps = snapshotBuilder.collectionTwoTimeStamps();
-        CCTFlattener flattener = new CCTFlattener(twoTimeStamps,methodInfoMapper,filter);
         RuntimeCPUCCTNode rootNode = (RuntimeCPUCCTNode) snapshotBuilder.getAppRootNode();
-        return new FlatProfileBuilder(rootNode, flattener);
+        return new FlatProfileBuilder(rootNode, getFlattener(filter, twoTimeStamps));
+    }
+
+    private synchronized CCTFlattener getFlattener(InstrumentationFilter filter, boolean twoTimeStamps) {
+        // the flattener keeps its buffers and filter results between refreshes
+        if (flattener == null || flattenerFilter != filter || flattenerTwoTimeStamps != twoTimeStamps) {
+            flattener = new CCTFlattener(twoTimeStamps,methodInfoMapper,filter);
+            flattenerFilter = filter;
+            flattenerTwoTimeStamps = twoTimeStamps;
+        }
+        return flattener;
     }
 
     protected String[] getMethodClassNameAndSig(int methodId, int currentView) {
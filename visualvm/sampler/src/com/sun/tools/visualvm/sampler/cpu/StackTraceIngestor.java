@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.tools.visualvm.sampler.cpu;
+
+import java.lang.management.ThreadInfo;
+
+/**
+ * Prepares the sampled thread dumps for {@code StackTraceSnapshotBuilder}.
+ * <p>
+ * Every frame is interned into a primitive frame id table and the stack of
+ * each thread is kept as an {@code int[]} of frame ids ordered from the
+ * bottom of the stack. A new sample is merged into that array in place: the
+ * frames shared with the previous sample stay where they are and only the
+ * changed suffix is interned and overwritten, so a thread moving within the
+ * same call tree costs neither an allocation nor a lookup of its unchanged
+ * frames. If a thread did not move since the last sample its previous
+ * {@code ThreadInfo} is handed to the builder again: the builder's own diff
+ * then compares identical frame instances and the freshly deserialized copy
+ * becomes short-lived garbage instead of being retained as the thread's last
+ * stack.
+ * </p>
+ * <p>
+ * The frame table lives for one sampling session; it is reset once it holds
+ * {@code MAX_FRAMES} distinct frames so that a long session of an application
+ * generating many distinct frames doesn't grow it without bounds.
+ * </p>
+ *
+ * @author Tomas Hurka
+ */
+final class StackTraceIngestor {
+
+    private static final int MAX_FRAMES = 64 * 1024;
+
+    private FrameTable frames = new FrameTable();
+    private ThreadTable threads = new ThreadTable();
+
+    /**
+     * Diffs the sample against the previous one, replacing the infos of
+     * the threads whose stacks did not change with their previous instances.
+     * @param infos the sampled threads; the array is modified in place
+     * @return the same array
+     */
+    ThreadInfo[] ingest(ThreadInfo[] infos) {
+        if (frames.size() > MAX_FRAMES) {
+            // the stacks of all threads are interned again from this sample on
+            frames = new FrameTable();
+            threads = new ThreadTable();
+        }
+        long sampleId = threads.nextSample();
+
+        for (int i = 0; i < infos.length; i++) {
+            ThreadInfo info = infos[i];
+            if (info == null) continue;
+
+            ThreadStack previous = threads.get(info.getThreadId());
+            if (previous == null) {
+                previous = new ThreadStack();
+                threads.put(info.getThreadId(), previous);
+            }
+            boolean moved = previous.merge(info.getStackTrace(), frames);
+            if (!moved && previous.info != null &&
+                previous.info.getThreadState() == info.getThreadState() &&
+                previous.info.getThreadName().equals(info.getThreadName())) {
+                infos[i] = previous.info;
+            } else {
+                previous.info = info;
+            }
+            previous.sampleId = sampleId;
+        }
+        threads.removeStale(sampleId);
+        return infos;
+    }
+
+    /**
+     * @return the frame ids of the thread's last stack from the bottom, or null for an unknown thread
+     */
+    int[] getFrameIds(long threadId) {
+        ThreadStack stack = threads.get(threadId);
+        if (stack == null) return null;
+        int[] ids = new int[stack.depth];
+        System.arraycopy(stack.frameIds, 0, ids, 0, stack.depth);
+        return ids;
+    }
+
+    /**
+     * @return the number of distinct frames interned so far
+     */
+    int getFramesCount() {
+        return frames.size();
+    }
+
+    private static final class ThreadStack {
+        ThreadInfo info;
+        int[] frameIds = new int[32]; // from the bottom of the stack
+        int depth;
+        long sampleId;
+
+        /**
+         * Merges the new stack into the frame ids of the previous sample.
+         * @return <b>true</b> if the stack differs from the previous sample
+         */
+        boolean merge(StackTraceElement[] stack, FrameTable frames) {
+            int newDepth = stack.length;
+            if (newDepth > frameIds.length) {
+                int[] newIds = new int[Math.max(newDepth, frameIds.length * 2)];
+                System.arraycopy(frameIds, 0, newIds, 0, depth);
+                frameIds = newIds;
+            }
+            int common = 0;
+            int limit = Math.min(depth, newDepth);
+            while (common < limit &&
+                   sameFrame(frames.get(frameIds[common]), stack[newDepth - common - 1])) {
+                common++;
+            }
+            for (int j = common; j < newDepth; j++) {
+                frameIds[j] = frames.intern(stack[newDepth - j - 1]);
+            }
+            boolean moved = common != depth || common != newDepth;
+            depth = newDepth;
+            return moved;
+        }
+
+        private static boolean sameFrame(StackTraceElement f1, StackTraceElement f2) {
+            // the line number tells the frames apart without comparing any strings in most cases
+            return f1.getLineNumber() == f2.getLineNumber() &&
+                   f1.getMethodName().equals(f2.getMethodName()) &&
+                   f1.getClassName().equals(f2.getClassName());
+        }
+    }
+
+    /**
+     * Open addressing table assigning dense int ids to distinct frames.
+     */
+    private static final class FrameTable {
+        private StackTraceElement[] byId = new StackTraceElement[1024];
+        private int[] slots = new int[2048]; // frame id + 1, 0 means empty
+        private int size;
+
+        int intern(StackTraceElement frame) {
+            int mask = slots.length - 1;
+            int slot = hash(frame) & mask;
+            while (true) {
+                int id = slots[slot] - 1;
+                if (id < 0) break;
+                if (byId[id].equals(frame)) return id;
+                slot = (slot + 1) & mask;
+            }
+            int id = size++;
+            if (id == byId.length) {
+                StackTraceElement[] newById = new StackTraceElement[byId.length * 2];
+                System.arraycopy(byId, 0, newById, 0, byId.length);
+                byId = newById;
+            }
+            byId[id] = frame;
+            slots[slot] = id + 1;
+            if (size * 2 > slots.length) rehash();
+            return id;
+        }
+
+        StackTraceElement get(int id) {
+            return byId[id];
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void rehash() {
+            int[] newSlots = new int[slots.length * 2];
+            int mask = newSlots.length - 1;
+            for (int id = 0; id < size; id++) {
+                int slot = hash(byId[id]) & mask;
+                while (newSlots[slot] != 0) slot = (slot + 1) & mask;
+                newSlots[slot] = id + 1;
+            }
+            slots = newSlots;
+        }
+
+        private static int hash(StackTraceElement frame) {
+            int h = frame.hashCode();
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /**
+     * Open addressing map from thread id to its last stack.
+     */
+    private static final class ThreadTable {
+        private long[] keys = new long[256];
+        private ThreadStack[] values = new ThreadStack[256];
+        private int size;
+        private long sample;
+
+        long nextSample() {
+            return ++sample;
+        }
+
+        ThreadStack get(long threadId) {
+            int mask = keys.length - 1;
+            int slot = hash(threadId) & mask;
+            while (values[slot] != null) {
+                if (keys[slot] == threadId) return values[slot];
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        void put(long threadId, ThreadStack stack) {
+            if ((size + 1) * 2 > keys.length) resize(keys.length * 2);
+            insert(keys, values, threadId, stack);
+            size++;
+        }
+
+        /**
+         * Drops the threads not present in the given sample.
+         */
+        void removeStale(long sampleId) {
+            int live = 0;
+            for (ThreadStack stack : values) {
+                if (stack != null && stack.sampleId == sampleId) live++;
+            }
+            if (live == size) return;
+            long[] oldKeys = keys;
+            ThreadStack[] oldValues = values;
+            keys = new long[oldKeys.length];
+            values = new ThreadStack[oldValues.length];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null && oldValues[i].sampleId == sampleId) {
+                    insert(keys, values, oldKeys[i], oldValues[i]);
+                }
+            }
+            size = live;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            ThreadStack[] oldValues = values;
+            keys = new long[capacity];
+            values = new ThreadStack[capacity];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) insert(keys, values, oldKeys[i], oldValues[i]);
+            }
+        }
+
+        private static void insert(long[] keys, ThreadStack[] values, long threadId, ThreadStack stack) {
+            int mask = keys.length - 1;
+            int slot = hash(threadId) & mask;
+            while (values[slot] != null && keys[slot] != threadId) slot = (slot + 1) & mask;
+            keys[slot] = threadId;
+            values[slot] = stack;
+        }
+
+        private static int hash(long threadId) {
+            int h = (int)(threadId ^ (threadId >>> 32));
+            return (h * 0x9E3779B9) ^ (h >>> 16);
+        }
+    }
+}
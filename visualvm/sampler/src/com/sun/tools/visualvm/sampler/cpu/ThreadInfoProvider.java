@@ -54,6 +54,11 @@ public final class ThreadInfoProvider {
         status = initialize(app);
     }
 
+    ThreadInfoProvider(ThreadMXBean threadBean) {
+        this.threadBean = threadBean;
+        status = null;
+    }
+
     public String getStatus() {
         return status;
     }
@@ -97,8 +102,12 @@ public final class ThreadInfoProvider {
     }
 
     ThreadInfo[] dumpAllThreads() {
-        if (useGetThreadInfo) {
-            return threadBean.getThreadInfo(threadBean.getAllThreadIds(), Integer.MAX_VALUE);
+        return dumpAllThreads(Integer.MAX_VALUE);
+    }
+
+    ThreadInfo[] dumpAllThreads(int maxDepth) {
+        if (useGetThreadInfo || maxDepth != Integer.MAX_VALUE) {
+            return threadBean.getThreadInfo(threadBean.getAllThreadIds(), maxDepth);
         }
         return threadBean.dumpAllThreads(false,false);
     }
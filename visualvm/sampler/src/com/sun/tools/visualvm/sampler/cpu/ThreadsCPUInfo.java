@@ -25,10 +25,7 @@
 
 package com.sun.tools.visualvm.sampler.cpu;
 
-import java.lang.management.ThreadInfo;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -37,33 +34,40 @@ import java.util.Map;
  */
 class ThreadsCPUInfo {
     
-    private List<ThreadInfo> threads = new ArrayList();
-    private List<Long> cputime = new ArrayList();
-    private Map<Long,Long> cputimeMap;
+    private final int threadsCount;
+    private final long[] threadIds;
+    private final String[] threadNames;
+    private final long[] cputime;
+    private Map<Long,Integer> indexesMap;
     private long totalCPUTime;
     private long timestamp;
     private long totalDiffCPUTime;
     
-    ThreadsCPUInfo(long time, ThreadInfo[] tinfo, long[] cpuinfo) {
-        cputimeMap = new HashMap(threads.size()*4/3);
+    ThreadsCPUInfo(long time, int count, long[] ids, String[] names, long[] values) {
+        threadsCount = count;
+        threadIds = ids;
+        threadNames = names;
+        cputime = values;
         totalCPUTime = 0;
-        for (int i = 0; i <tinfo.length; i++) {
-            ThreadInfo ti = tinfo[i];
-            if (ti != null) {
-                threads.add(ti);
-                cputime.add(cpuinfo[i]);
-                cputimeMap.put(ti.getThreadId(),cpuinfo[i]);
-                totalCPUTime+=cpuinfo[i];
-            }
+        for (int i = 0; i < count; i++) {
+            totalCPUTime+=values[i];
         }
         timestamp = time;
     }
     
-    List<ThreadInfo> getThreads() {
-        return threads;
+    int getThreadsCount() {
+        return threadsCount;
     }
     
-    List<Long> getThreadCPUTime() {
+    long[] getThreadIds() {
+        return threadIds;
+    }
+    
+    String[] getThreadNames() {
+        return threadNames;
+    }
+    
+    long[] getThreadCPUTime() {
         return cputime;
     }
     
@@ -71,40 +75,45 @@ class ThreadsCPUInfo {
         return totalCPUTime;
     }
     
-    List<Long> getThreadCPUTimeDiff(ThreadsCPUInfo info) {
-        List<Long> cpuTimeDiff = new ArrayList(threads.size());
-        List<ThreadInfo> newThreads = info.getThreads();
-        List<Long> newCPUTime = info.getThreadCPUTime();
+    long[] getThreadCPUTimeDiff(ThreadsCPUInfo info) {
+        int newCount = info.getThreadsCount();
+        long[] newIds = info.getThreadIds();
+        long[] newValues = info.getThreadCPUTime();
+        long[] diff = new long[newCount];
         
         totalDiffCPUTime = 0;
-        for (int i=0; i<newThreads.size(); i++) {
-            ThreadInfo ti = newThreads.get(i);
-            Long oldAlloc = cputimeMap.get(ti.getThreadId());
-            long diff;
-            
-            if (oldAlloc == null) {
-                oldAlloc = Long.valueOf(0);
-            }
-            diff = newCPUTime.get(i)-oldAlloc;
-            cpuTimeDiff.add(diff);
-            totalDiffCPUTime += diff;
+        for (int i=0; i<newCount; i++) {
+            int index = indexOf(newIds[i], i);
+            long old = index == -1 ? 0 : cputime[index];
+            diff[i] = newValues[i]-old;
+            totalDiffCPUTime += diff[i];
         }
-        return cpuTimeDiff;
+        return diff;
     }
     
     long getTotalDiffCPUTime() {
         return totalDiffCPUTime;
     }
     
-    List<Long> getCPUTimePerSecond(ThreadsCPUInfo newInfo) {
+    long[] getCPUTimePerSecond(ThreadsCPUInfo newInfo) {
         assert newInfo.timestamp >= timestamp;
-        List<Long> diff = getThreadCPUTimeDiff(newInfo);
+        long[] diff = getThreadCPUTimeDiff(newInfo);
         double secs = (newInfo.timestamp - timestamp) / 1000.0;
-        List<Long> diffPerSec = new ArrayList(diff.size());
         
-        for (Long d : diff) {
-            diffPerSec.add(new Long((long)(d/secs)));
+        for (int i = 0; i < diff.length; i++) {
+            diff[i] = (long)(diff[i]/secs);
+        }
+        return diff;
+    }
+    
+    private int indexOf(long threadId, int hint) {
+        // threads are usually reported in the same order
+        if (hint < threadsCount && threadIds[hint] == threadId) return hint;
+        if (indexesMap == null) {
+            indexesMap = new HashMap(threadsCount*4/3);
+            for (int i = 0; i < threadsCount; i++) indexesMap.put(threadIds[i], i);
         }
-        return diffPerSec;
+        Integer index = indexesMap.get(threadId);
+        return index == null ? -1 : index.intValue();
     }
 }
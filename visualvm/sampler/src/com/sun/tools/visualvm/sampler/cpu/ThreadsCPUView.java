@@ -39,7 +39,6 @@ import java.awt.event.HierarchyEvent;
 import java.awt.event.HierarchyListener;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
-import java.lang.management.ThreadInfo;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -101,9 +100,11 @@ final class ThreadsCPUView extends JPanel {
     private String filterString = ""; // NOI18N
     private int filterType = CommonConstants.FILTER_CONTAINS;
     
-    private List<ThreadInfo> threads;
-    private List<Long> threadCPUInfo;
-    private List<Long> threadCPUInfoPerSec;
+    private int threadsCount;
+    private long[] threadIds;
+    private String[] threadNames;
+    private long[] threadCPUInfo;
+    private long[] threadCPUInfoPerSec;
     private ThreadsCPUInfo currentThreadsInfo;
     private ThreadsCPUInfo baseThreadsInfo;
     private List<Integer> filteredSortedIndexes = new ArrayList();
@@ -147,7 +148,9 @@ final class ThreadsCPUView extends JPanel {
     void refresh(ThreadsCPUInfo info) {
         if (!isShowing() || (pauseButton.isSelected() && !forceRefresh)) return;
         forceRefresh = false;
-        threads = info.getThreads();
+        threadsCount = info.getThreadsCount();
+        threadIds = info.getThreadIds();
+        threadNames = info.getThreadNames();
         threadCPUInfo = info.getThreadCPUTime();
         totalCPUTime = info.getTotalCPUTime();
         if (currentThreadsInfo != null) {
@@ -162,7 +165,7 @@ final class ThreadsCPUView extends JPanel {
                 columnRenderers[2] = labelTableCellRenderer;
                 updateColumnRenderers();
             }
-            totalThreads = threads.size() - baseThreadsInfo.getThreads().size();
+            totalThreads = threadsCount - baseThreadsInfo.getThreadsCount();
             threadCPUInfo = baseThreadsInfo.getThreadCPUTimeDiff(info);
             totalCPUTime = baseThreadsInfo.getTotalDiffCPUTime();
         } else {
@@ -175,7 +178,7 @@ final class ThreadsCPUView extends JPanel {
             }
             threadCPUInfo = info.getThreadCPUTime();
             totalCPUTime = info.getTotalCPUTime();
-            totalThreads = threads.size();
+            totalThreads = threadsCount;
             
         }
         customBarCellRenderer.setMaximum(totalCPUTime);
@@ -212,10 +215,10 @@ final class ThreadsCPUView extends JPanel {
         String[] filterStrings = FilterComponent.getFilterValues(filterString);
         if (filterType == CommonConstants.FILTER_NONE ||
                 filterStrings == null || filterStrings[0].equals("")) { // NOI18N
-            for (int i = 0; i < threads.size(); i++) filteredSortedIndexes.add(i);
+            for (int i = 0; i < threadsCount; i++) filteredSortedIndexes.add(i);
         } else {
-            for (int i = 0; i < threads.size(); i++)
-                if (passedFilters(threads.get(i).getThreadName(), filterStrings, filterType))
+            for (int i = 0; i < threadsCount; i++)
+                if (passedFilters(threadNames[i], filterStrings, filterType))
                     filteredSortedIndexes.add(i);
         }
     }
@@ -255,24 +258,23 @@ final class ThreadsCPUView extends JPanel {
                 
                 switch (sortingColumn) {
                     case 0:
-                        ThreadInfo ti1 = threads.get(index1);
-                        ThreadInfo ti2 = threads.get(index2);
-                        return sortOrder ? Long.valueOf(ti1.getThreadId()).compareTo(ti2.getThreadId()) :
-                            Long.valueOf(ti2.getThreadId()).compareTo(ti1.getThreadId());
+                        return compareValues(threadIds[index1], threadIds[index2]);
                     case 1:
                     case 2:
-                        Long alloc1 = threadCPUInfo.get(index1);
-                        Long alloc2 = threadCPUInfo.get(index2);
-                        return sortOrder ? alloc1.compareTo(alloc2) : alloc2.compareTo(alloc1);
+                        return compareValues(threadCPUInfo[index1], threadCPUInfo[index2]);
                     case 3:
-                        Long allocSec1 = threadCPUInfoPerSec.get(index1);
-                        Long allocSec2 = threadCPUInfoPerSec.get(index2);
-                        return sortOrder ? allocSec1.compareTo(allocSec2) : allocSec2.compareTo(allocSec1);
+                        if (threadCPUInfoPerSec == null) return 0;
+                        return compareValues(threadCPUInfoPerSec[index1], threadCPUInfoPerSec[index2]);
                     default:
                         return 0;
                 }
             }
             
+            private int compareValues(long value1, long value2) {
+                int result = value1 < value2 ? -1 : (value1 == value2 ? 0 : 1);
+                return sortOrder ? result : -result;
+            }
+            
         });
     }
     
@@ -297,7 +299,7 @@ final class ThreadsCPUView extends JPanel {
             
             public Object getValueAt(int row, int col) {
                 int index = filteredSortedIndexes.get(row);
-                long threadCPUtime = threadCPUInfo.get(index).longValue();
+                long threadCPUtime = threadCPUInfo[index];
                 double threadCPUtimeInMs = threadCPUtime/NANOS_MILIS;
                 boolean deltas = baseThreadsInfo != null;
                 NumberFormat formatter = NumberFormat.getInstance();
@@ -305,8 +307,7 @@ final class ThreadsCPUView extends JPanel {
                 
                 switch (col) {
                     case 0:
-                        ThreadInfo threadInfo = threads.get(index);
-                        return threadInfo.getThreadName() ;
+                        return threadNames[index];
                     case 1:
                         return threadCPUtime;
                     case 2:
@@ -317,7 +318,7 @@ final class ThreadsCPUView extends JPanel {
                         }
                     case 3:
                         if (threadCPUInfoPerSec != null) {
-                            return formatter.format(threadCPUInfoPerSec.get(index).longValue()/NANOS_MILIS);
+                            return formatter.format(threadCPUInfoPerSec[index]/NANOS_MILIS);
                         }
                         return "0";
                     default:
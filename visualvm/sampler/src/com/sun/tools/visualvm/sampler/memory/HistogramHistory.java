@@ -0,0 +1,432 @@
+/*
+ * Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * 
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ * 
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ * 
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.tools.visualvm.sampler.memory;
+
+import com.sun.tools.visualvm.application.jvm.HeapHistogram.ClassInfo;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * History of all heap histograms taken during a sampling session.
+ * <p>
+ * Classes are identified by ids assigned in order of their first appearance.
+ * For each class only the changes are stored, as a byte stream of records
+ * consisting of the number of samples since the previous change followed by
+ * zigzag-encoded deltas of the bytes and instances count, all written as
+ * variable length integers. Classes which don't change don't consume any
+ * memory per sample.
+ * </p>
+ * <p>
+ * Only the last {@code MAX_SAMPLES} samples are kept, once the limit is reached
+ * the older half of the history is dropped and the remaining samples are
+ * re-encoded starting from the values of the oldest kept sample.
+ * </p>
+ * All methods must be invoked from the same thread (EDT).
+ *
+ * @author Tomas Hurka
+ */
+final class HistogramHistory {
+
+    private static final int INITIAL_CLASSES = 1024;
+    private static final int INITIAL_SAMPLES = 64;
+    private static final int INITIAL_SERIES = 16;
+    static final int MAX_SAMPLES = 3600;
+
+    private final Map<String, Integer> classIds = new HashMap<String, Integer>(INITIAL_CLASSES);
+    private String[] classNames = new String[INITIAL_CLASSES];
+    private int classesCount;
+
+    // encoded changes of each class
+    private byte[][] series = new byte[INITIAL_CLASSES][];
+    private int[] seriesLength = new int[INITIAL_CLASSES];
+    // state after the last sample
+    private long[] lastBytes = new long[INITIAL_CLASSES];
+    private long[] lastInstances = new long[INITIAL_CLASSES];
+    private int[] lastChange = new int[INITIAL_CLASSES];
+    private int[] lastSeen = new int[INITIAL_CLASSES];
+
+    private long[] times = new long[INITIAL_SAMPLES];
+    private int samplesCount;
+
+
+    /**
+     * Adds the histogram taken at the given time.
+     */
+    void record(long time, Collection<ClassInfo> histogram) {
+        if (samplesCount == MAX_SAMPLES) dropSamples(MAX_SAMPLES / 2);
+        if (samplesCount == times.length) times = extend(times, samplesCount * 2);
+        int sample = samplesCount++;
+        times[sample] = time;
+
+        for (ClassInfo info : histogram) {
+            int id = getOrCreateClassId(info.getName());
+            lastSeen[id] = sample;
+            update(id, sample, info.getBytes(), info.getInstancesCount());
+        }
+
+        // classes missing in the histogram have no instances
+        for (int id = 0; id < classesCount; id++)
+            if (lastSeen[id] != sample) update(id, sample, 0, 0);
+    }
+
+    void reset() {
+        classIds.clear();
+        for (int i = 0; i < classesCount; i++) {
+            classNames[i] = null;
+            series[i] = null;
+        }
+        classesCount = 0;
+        samplesCount = 0;
+    }
+
+
+    int getSamplesCount() {
+        return samplesCount;
+    }
+
+    long getTime(int sample) {
+        return times[sample];
+    }
+
+    /**
+     * Returns index of the first sample taken at or after the given time.
+     */
+    int getSampleAt(long time) {
+        int low = 0;
+        int high = samplesCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] < time) low = mid + 1;
+            else high = mid - 1;
+        }
+        return low;
+    }
+
+    int getClassesCount() {
+        return classesCount;
+    }
+
+    String getClassName(int classId) {
+        return classNames[classId];
+    }
+
+    /**
+     * Returns id of the class or -1 if it never appeared in the histograms.
+     */
+    int getClassId(String className) {
+        Integer id = classIds.get(className);
+        return id == null ? -1 : id.intValue();
+    }
+
+    /**
+     * Returns true if the class was present in the last histogram.
+     */
+    boolean isPresent(int classId) {
+        return samplesCount > 0 && lastSeen[classId] == samplesCount - 1;
+    }
+
+    long getLastBytes(int classId) {
+        return lastBytes[classId];
+    }
+
+    long getLastInstances(int classId) {
+        return lastInstances[classId];
+    }
+
+    /**
+     * Captures the last sample as a baseline for computing deltas.
+     */
+    Baseline createBaseline() {
+        Baseline baseline = new Baseline(classesCount);
+        System.arraycopy(lastBytes, 0, baseline.bytes, 0, classesCount);
+        System.arraycopy(lastInstances, 0, baseline.instances, 0, classesCount);
+        for (int id = 0; id < classesCount; id++) baseline.present[id] = isPresent(id);
+        return baseline;
+    }
+
+    /**
+     * Returns bytes of the class in the given sample.
+     */
+    long getBytes(int classId, int sample) {
+        if (sample == samplesCount - 1) return lastBytes[classId];
+        long[] value = new long[1];
+        decode(classId, sample, sample + 1, value, null);
+        return value[0];
+    }
+
+    /**
+     * Returns the bytes of the class for samples [fromSample, toSample), useful
+     * for rendering sparklines.
+     */
+    long[] getBytes(int classId, int fromSample, int toSample) {
+        long[] values = new long[Math.max(0, toSample - fromSample)];
+        decode(classId, fromSample, toSample, values, null);
+        return values;
+    }
+
+    /**
+     * Returns the instances count of the class for samples [fromSample, toSample).
+     */
+    long[] getInstances(int classId, int fromSample, int toSample) {
+        long[] values = new long[Math.max(0, toSample - fromSample)];
+        decode(classId, fromSample, toSample, null, values);
+        return values;
+    }
+
+    /**
+     * Returns growth rate of the class in bytes per second since the given
+     * time up to the last sample.
+     */
+    double getGrowthRate(int classId, long since) {
+        int sample = getSampleAt(since);
+        int last = samplesCount - 1;
+        if (sample >= last) return 0;
+        long bytes = getBytes(classId, sample);
+        double seconds = (times[last] - times[sample]) / 1000d;
+        return seconds <= 0 ? 0 : (lastBytes[classId] - bytes) / seconds;
+    }
+
+    /**
+     * Returns ids of up to count classes with the biggest growth in bytes
+     * since the given time, the fastest growing class first.
+     */
+    int[] getTopGrowing(int count, long since) {
+        int sample = getSampleAt(since);
+        if (count <= 0 || sample >= samplesCount - 1) return new int[0];
+
+        // bounded selection of the biggest growths
+        int[] top = new int[Math.min(count, classesCount)];
+        long[] topGrowth = new long[top.length];
+        int topCount = 0;
+        long[] value = new long[1];
+        for (int id = 0; id < classesCount; id++) {
+            decode(id, sample, sample + 1, value, null);
+            long growth = lastBytes[id] - value[0];
+            if (growth <= 0) continue;
+            if (topCount == top.length && growth <= topGrowth[topCount - 1]) continue;
+            int pos = topCount == top.length ? topCount - 1 : topCount++;
+            while (pos > 0 && topGrowth[pos - 1] < growth) {
+                top[pos] = top[pos - 1];
+                topGrowth[pos] = topGrowth[pos - 1];
+                pos--;
+            }
+            top[pos] = id;
+            topGrowth[pos] = growth;
+        }
+
+        if (topCount == top.length) return top;
+        int[] result = new int[topCount];
+        System.arraycopy(top, 0, result, 0, topCount);
+        return result;
+    }
+
+
+    private int getOrCreateClassId(String className) {
+        Integer id = classIds.get(className);
+        if (id != null) return id.intValue();
+
+        if (classesCount == classNames.length) {
+            int length = classesCount * 2;
+            String[] newNames = new String[length];
+            System.arraycopy(classNames, 0, newNames, 0, classesCount);
+            classNames = newNames;
+            byte[][] newSeries = new byte[length][];
+            System.arraycopy(series, 0, newSeries, 0, classesCount);
+            series = newSeries;
+            seriesLength = extend(seriesLength, length);
+            lastBytes = extend(lastBytes, length);
+            lastInstances = extend(lastInstances, length);
+            lastChange = extend(lastChange, length);
+            lastSeen = extend(lastSeen, length);
+        }
+        int newId = classesCount++;
+        classNames[newId] = className;
+        series[newId] = new byte[INITIAL_SERIES];
+        seriesLength[newId] = 0;
+        lastBytes[newId] = 0;
+        lastInstances[newId] = 0;
+        // implicit zero values up to the current sample
+        lastChange[newId] = 0;
+        lastSeen[newId] = -1;
+        classIds.put(className, Integer.valueOf(newId));
+        return newId;
+    }
+
+    private void update(int id, int sample, long bytes, long instances) {
+        long deltaBytes = bytes - lastBytes[id];
+        long deltaInstances = instances - lastInstances[id];
+        if (deltaBytes == 0 && deltaInstances == 0) return;
+
+        int gap = sample - lastChange[id];
+        writeVarLong(id, gap);
+        writeVarLong(id, zigzag(deltaBytes));
+        writeVarLong(id, zigzag(deltaInstances));
+
+        lastBytes[id] = bytes;
+        lastInstances[id] = instances;
+        lastChange[id] = sample;
+    }
+
+    // Replays the changes of the class and fills values for samples [from, to)
+    private void decode(int id, int from, int to, long[] bytesValues, long[] instancesValues) {
+        byte[] data = series[id];
+        int length = seriesLength[id];
+        int[] position = new int[1];
+
+        long bytes = 0;
+        long instances = 0;
+        int sample = 0;
+        int current = from;
+
+        while (current < to) {
+            int nextChange = Integer.MAX_VALUE;
+            long nextBytes = bytes;
+            long nextInstances = instances;
+            if (position[0] < length) {
+                nextChange = sample + (int)readVarLong(data, position);
+                nextBytes = bytes + unzigzag(readVarLong(data, position));
+                nextInstances = instances + unzigzag(readVarLong(data, position));
+            }
+            // samples before the next change have the current values
+            int end = Math.min(nextChange, to);
+            for (; current < end; current++) {
+                if (bytesValues != null) bytesValues[current - from] = bytes;
+                if (instancesValues != null) instancesValues[current - from] = instances;
+            }
+            sample = nextChange;
+            bytes = nextBytes;
+            instances = nextInstances;
+        }
+    }
+
+    // Drops the given number of the oldest samples
+    private void dropSamples(int count) {
+        for (int id = 0; id < classesCount; id++) {
+            byte[] data = series[id];
+            int length = seriesLength[id];
+            int[] position = new int[1];
+
+            // re-encoded by update() from zero values at sample 0
+            series[id] = new byte[INITIAL_SERIES];
+            seriesLength[id] = 0;
+            lastBytes[id] = 0;
+            lastInstances[id] = 0;
+            lastChange[id] = 0;
+
+            long bytes = 0;
+            long instances = 0;
+            int sample = 0;
+            boolean based = false;
+            while (position[0] < length) {
+                int nextSample = sample + (int)readVarLong(data, position);
+                long deltaBytes = unzigzag(readVarLong(data, position));
+                long deltaInstances = unzigzag(readVarLong(data, position));
+                if (nextSample > count && !based) {
+                    // values of the oldest kept sample
+                    update(id, 0, bytes, instances);
+                    based = true;
+                }
+                sample = nextSample;
+                bytes += deltaBytes;
+                instances += deltaInstances;
+                if (based) update(id, sample - count, bytes, instances);
+            }
+            if (!based) update(id, 0, bytes, instances);
+            lastSeen[id] -= count;
+        }
+        System.arraycopy(times, count, times, 0, samplesCount - count);
+        samplesCount -= count;
+    }
+
+    private void writeVarLong(int id, long value) {
+        byte[] data = series[id];
+        int length = seriesLength[id];
+        if (data.length - length < 10) {
+            byte[] newData = new byte[data.length * 2 + 10];
+            System.arraycopy(data, 0, newData, 0, length);
+            data = series[id] = newData;
+        }
+        while ((value & ~0x7FL) != 0) {
+            data[length++] = (byte)((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[length++] = (byte)value;
+        seriesLength[id] = length;
+    }
+
+    private static long readVarLong(byte[] data, int[] position) {
+        long value = 0;
+        int shift = 0;
+        int pos = position[0];
+        byte b;
+        do {
+            b = data[pos++];
+            value |= (long)(b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        position[0] = pos;
+        return value;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long[] extend(long[] array, int length) {
+        long[] newArray = new long[length];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+    private static int[] extend(int[] array, int length) {
+        int[] newArray = new int[length];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+
+    static final class Baseline {
+
+        final int classesCount;
+        final long[] bytes;
+        final long[] instances;
+        final boolean[] present;
+
+        private Baseline(int classesCount) {
+            this.classesCount = classesCount;
+            bytes = new long[classesCount];
+            instances = new long[classesCount];
+            present = new boolean[classesCount];
+        }
+
+    }
+
+}
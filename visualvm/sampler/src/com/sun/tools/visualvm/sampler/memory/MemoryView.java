@@ -42,16 +42,15 @@ import java.awt.event.HierarchyEvent;
 import java.awt.event.HierarchyListener;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
 import java.lang.management.MemoryMXBean;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import javax.swing.AbstractButton;
 import javax.swing.BorderFactory;
@@ -130,6 +129,8 @@ final class MemoryView extends JPanel {
 
     void initSession() {
         if (snapshotButton != null) snapshotButton.setEnabled(false);
+        history.reset();
+        lastHistogramTime = -1;
     }
 
     boolean isPaused() {
@@ -147,6 +148,7 @@ final class MemoryView extends JPanel {
         if (deltaButton.isSelected()) {
             if (baseClasses == null) {
                 baseClasses = new ArrayList(classes);
+                baseline = history.createBaseline();
                 baseTotalBytes = totalBytes;
                 baseTotalInstances = totalInstances;
 
@@ -157,7 +159,8 @@ final class MemoryView extends JPanel {
             }
 
             Collection<ClassInfo> newClasses = getHistogram(histogram);
-            classes = computeDeltaClasses(baseClasses, newClasses);
+            recordHistogram(histogram, newClasses);
+            classes = computeDeltaClasses(history, baseline);
 
             totalClasses = baseClasses.size() - newClasses.size();
             totalBytes = getTotalBytes(histogram) - baseTotalBytes;
@@ -173,6 +176,7 @@ final class MemoryView extends JPanel {
         } else {
             if (baseClasses != null) {
                 baseClasses = null;
+                baseline = null;
                 baseTotalBytes = -1;
                 baseTotalInstances = -1;
 
@@ -181,8 +185,10 @@ final class MemoryView extends JPanel {
                 columnRenderers[3] = labelBracketTableCellRenderer;
                 updateColumnRenderers();
             }
+            Collection<ClassInfo> newClasses = getHistogram(histogram);
+            recordHistogram(histogram, newClasses);
             classes.clear();
-            classes.addAll(getHistogram(histogram));
+            classes.addAll(newClasses);
 
             totalClasses = classes.size();
             totalBytes = getTotalBytes(histogram);
@@ -225,20 +231,34 @@ final class MemoryView extends JPanel {
         return -1;
     }
 
-    private static List<ClassInfo> computeDeltaClasses(Collection<ClassInfo> basis, Collection<ClassInfo> changed) {
-
-        Map<String, DeltaClassInfo> deltaMap = new HashMap((int)(basis.size() * 1.3));
-
-        for (ClassInfo cInfo : basis)
-            deltaMap.put(cInfo.getName(), new DeltaClassInfo(cInfo, true));
+    private void recordHistogram(HeapHistogram histogram, Collection<ClassInfo> histogramClasses) {
+        // The same histogram is passed again on explicit refresh
+        long time = histogram.getTime().getTime();
+        if (time == lastHistogramTime) return;
+        lastHistogramTime = time;
+        history.record(time, histogramClasses);
+    }
 
-        for (ClassInfo cInfo : changed) {
-            DeltaClassInfo bInfo = deltaMap.get(cInfo.getName());
-            if (bInfo != null) bInfo.add(cInfo);
-            else deltaMap.put(cInfo.getName(), new DeltaClassInfo(cInfo, false));
+    private static List<ClassInfo> computeDeltaClasses(HistogramHistory history,
+                                                       HistogramHistory.Baseline baseline) {
+        int classesCount = history.getClassesCount();
+        List<ClassInfo> deltaClasses = new ArrayList(classesCount);
+
+        for (int id = 0; id < classesCount; id++) {
+            boolean inBaseline = id < baseline.classesCount && baseline.present[id];
+            boolean present = history.isPresent(id);
+            if (!inBaseline && !present) continue;
+
+            long bytes = present ? history.getLastBytes(id) : 0;
+            long instances = present ? history.getLastInstances(id) : 0;
+            if (inBaseline) {
+                bytes -= baseline.bytes[id];
+                instances -= baseline.instances[id];
+            }
+            deltaClasses.add(new DeltaClassInfo(history.getClassName(id), instances, bytes));
         }
 
-        return new ArrayList(deltaMap.values());
+        return deltaClasses;
     }
 
 
@@ -342,6 +362,28 @@ final class MemoryView extends JPanel {
     }
 
 
+    // Growth rate of the class over the recorded history, shown for the bytes columns
+    private String getGrowthToolTip(int row, int column) {
+        if (row == -1 || column == -1) return null;
+        int realColumn = resTableModel.getRealColumn(column);
+        if (realColumn != 1 && realColumn != 2) return null;
+        int samplesCount = history.getSamplesCount();
+        if (samplesCount < 2) return null;
+
+        ClassInfo classs = classes.get(filteredSortedIndexes.get(row));
+        int classId = history.getClassId(classs.getName());
+        if (classId == -1) return null;
+
+        long since = history.getTime(0);
+        long seconds = (history.getTime(samplesCount - 1) - since) / 1000;
+        double rate = history.getGrowthRate(classId, since);
+        NumberFormat formatter = NumberFormat.getInstance();
+        formatter.setMaximumFractionDigits(1);
+        String rateString = rate > 0 ? "+" + formatter.format(rate) : formatter.format(rate); // NOI18N
+        return NbBundle.getMessage(MemoryView.class, "TOOLTIP_Growth_rate", // NOI18N
+                                   rateString, seconds);
+    }
+
     private JExtendedTable initTable() {
         resTableModel = new ExtendedTableModel(new SortableTableModel() {
             public String getColumnName(int col) {
@@ -445,6 +487,11 @@ final class MemoryView extends JPanel {
 
                 super.doLayout();
             }
+            public String getToolTipText(MouseEvent e) {
+                String toolTip = getGrowthToolTip(rowAtPoint(e.getPoint()),
+                                                  columnAtPoint(e.getPoint()));
+                return toolTip != null ? toolTip : super.getToolTipText(e);
+            }
             ;
         };
 
@@ -844,6 +891,9 @@ final class MemoryView extends JPanel {
 
     private List<ClassInfo> classes = new ArrayList();
     private List<ClassInfo> baseClasses = new ArrayList(); // Needed to correctly setup table renderers
+    private final HistogramHistory history = new HistogramHistory();
+    private HistogramHistory.Baseline baseline;
+    private long lastHistogramTime = -1;
     private List<Integer> filteredSortedIndexes = new ArrayList();
     private int totalClasses = -1;
     private long totalBytes, baseTotalBytes = -1;
@@ -881,15 +931,10 @@ final class MemoryView extends JPanel {
         long instancesCount;
         long bytes;
 
-        DeltaClassInfo(ClassInfo cInfo, boolean negative) {
-            name = cInfo.getName();
-            instancesCount = negative ? -cInfo.getInstancesCount() : cInfo.getInstancesCount();
-            bytes = negative ? -cInfo.getBytes() : cInfo.getBytes();
-        }
-
-        void add(ClassInfo cInfo) {
-            instancesCount += cInfo.getInstancesCount();
-            bytes += cInfo.getBytes();
+        DeltaClassInfo(String name, long instancesCount, long bytes) {
+            this.name = name;
+            this.instancesCount = instancesCount;
+            this.bytes = bytes;
         }
 
         public String getName() { return name; }
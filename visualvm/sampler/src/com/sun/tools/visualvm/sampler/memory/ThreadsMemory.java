@@ -25,15 +25,12 @@
 
 package com.sun.tools.visualvm.sampler.memory;
 
+import com.sun.tools.visualvm.sampler.ThreadsDataCollector;
 import java.io.IOException;
-import java.lang.management.ManagementFactory;
-import java.lang.management.ThreadInfo;
 import java.lang.management.ThreadMXBean;
 import javax.management.InstanceNotFoundException;
 import javax.management.MBeanException;
 import javax.management.MBeanServerConnection;
-import javax.management.MalformedObjectNameException;
-import javax.management.ObjectName;
 import javax.management.ReflectionException;
 
 /**
@@ -41,32 +38,21 @@ import javax.management.ReflectionException;
  * @author Tomas Hurka
  */
 public class ThreadsMemory {
-    private static final ObjectName THREAD_NAME = getThreadName();
     
-    private final ThreadMXBean threadBean;
-    private final MBeanServerConnection connection;
+    private final ThreadsDataCollector collector;
 
     public ThreadsMemory(ThreadMXBean bean, MBeanServerConnection conn) {
-        threadBean = bean;
-        connection = conn;
+        this(new ThreadsDataCollector(bean, conn));
+    }
+    
+    public ThreadsMemory(ThreadsDataCollector dataCollector) {
+        collector = dataCollector;
     }
     
     public ThreadsMemoryInfo getThreadsMemoryInfo() throws MBeanException, ReflectionException, IOException, InstanceNotFoundException {
-        long[] ids = threadBean.getAllThreadIds();
-        ThreadInfo[] tids = threadBean.getThreadInfo(ids);
-        Object[] args = new Object[] {ids};
-        String[] sigs = new String[] {"[J"};  // NOI18N
-        long[] memInfo = (long[])connection.invoke(THREAD_NAME, "getThreadAllocatedBytes", args, sigs);   // NOI18N
-        long time = System.currentTimeMillis();
+        ThreadsDataCollector.Data data = collector.getData(ThreadsDataCollector.THREAD_ALLOCATED_BYTES);
         
-        return new ThreadsMemoryInfo(time,tids,memInfo);
-    }   
-
-    private static ObjectName getThreadName() {
-        try {
-            return new ObjectName(ManagementFactory.THREAD_MXBEAN_NAME);
-        } catch (MalformedObjectNameException ex) {
-            throw new RuntimeException(ex);
-        }
+        return new ThreadsMemoryInfo(data.getTimestamp(), data.getThreadsCount(),
+                data.getThreadIds(), data.getThreadNames(), data.getAllocatedBytes());
     }
 }
@@ -25,10 +25,7 @@
 
 package com.sun.tools.visualvm.sampler.memory;
 
-import java.lang.management.ThreadInfo;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -37,33 +34,40 @@ import java.util.Map;
  */
 class ThreadsMemoryInfo {
     
-    private List<ThreadInfo> threads = new ArrayList();
-    private List<Long> allocatedBytes = new ArrayList();
-    private Map<Long,Long> allocatedBytesMap;
+    private final int threadsCount;
+    private final long[] threadIds;
+    private final String[] threadNames;
+    private final long[] allocatedBytes;
+    private Map<Long,Integer> indexesMap;
     private long totalBytes;
     private long timestamp;
     private long totalDiffBytes;
     
-    ThreadsMemoryInfo(long time, ThreadInfo[] tinfo, long[] minfo) {
-        allocatedBytesMap = new HashMap(threads.size()*4/3);
+    ThreadsMemoryInfo(long time, int count, long[] ids, String[] names, long[] values) {
+        threadsCount = count;
+        threadIds = ids;
+        threadNames = names;
+        allocatedBytes = values;
         totalBytes = 0;
-        for (int i = 0; i <tinfo.length; i++) {
-            ThreadInfo ti = tinfo[i];
-            if (ti != null) {
-                threads.add(ti);
-                allocatedBytes.add(minfo[i]);
-                allocatedBytesMap.put(ti.getThreadId(),minfo[i]);
-                totalBytes+=minfo[i];
-            }
+        for (int i = 0; i < count; i++) {
+            totalBytes+=values[i];
         }
         timestamp = time;
     }
     
-    List<ThreadInfo> getThreads() {
-        return threads;
+    int getThreadsCount() {
+        return threadsCount;
     }
     
-    List<Long> getAllocatedBytes() {
+    long[] getThreadIds() {
+        return threadIds;
+    }
+    
+    String[] getThreadNames() {
+        return threadNames;
+    }
+    
+    long[] getAllocatedBytes() {
         return allocatedBytes;
     }
     
@@ -71,40 +75,45 @@ class ThreadsMemoryInfo {
         return totalBytes;
     }
     
-    List<Long> getAllocatedDiffBytes(ThreadsMemoryInfo info) {
-        List<Long> allocDiff = new ArrayList(threads.size());
-        List<ThreadInfo> newThreads = info.getThreads();
-        List<Long> newAllocatedBytes = info.getAllocatedBytes();
+    long[] getAllocatedDiffBytes(ThreadsMemoryInfo info) {
+        int newCount = info.getThreadsCount();
+        long[] newIds = info.getThreadIds();
+        long[] newValues = info.getAllocatedBytes();
+        long[] diff = new long[newCount];
         
         totalDiffBytes = 0;
-        for (int i=0; i<newThreads.size(); i++) {
-            ThreadInfo ti = newThreads.get(i);
-            Long oldAlloc = allocatedBytesMap.get(ti.getThreadId());
-            long diff;
-            
-            if (oldAlloc == null) {
-                oldAlloc = Long.valueOf(0);
-            }
-            diff = newAllocatedBytes.get(i)-oldAlloc;
-            allocDiff.add(diff);
-            totalDiffBytes += diff;
+        for (int i=0; i<newCount; i++) {
+            int index = indexOf(newIds[i], i);
+            long old = index == -1 ? 0 : allocatedBytes[index];
+            diff[i] = newValues[i]-old;
+            totalDiffBytes += diff[i];
         }
-        return allocDiff;
+        return diff;
     }
     
     long getTotalDiffBytes() {
         return totalDiffBytes;
     }
     
-    List<Long> getAllocatedBytesPerSecond(ThreadsMemoryInfo newInfo) {
+    long[] getAllocatedBytesPerSecond(ThreadsMemoryInfo newInfo) {
         assert newInfo.timestamp >= timestamp;
-        List<Long> diff = getAllocatedDiffBytes(newInfo);
+        long[] diff = getAllocatedDiffBytes(newInfo);
         double secs = (newInfo.timestamp - timestamp) / 1000.0;
-        List<Long> diffPerSec = new ArrayList(diff.size());
         
-        for (Long d : diff) {
-            diffPerSec.add(new Long((long)(d/secs)));
+        for (int i = 0; i < diff.length; i++) {
+            diff[i] = (long)(diff[i]/secs);
+        }
+        return diff;
+    }
+    
+    private int indexOf(long threadId, int hint) {
+        // threads are usually reported in the same order
+        if (hint < threadsCount && threadIds[hint] == threadId) return hint;
+        if (indexesMap == null) {
+            indexesMap = new HashMap(threadsCount*4/3);
+            for (int i = 0; i < threadsCount; i++) indexesMap.put(threadIds[i], i);
         }
-        return diffPerSec;
+        Integer index = indexesMap.get(threadId);
+        return index == null ? -1 : index.intValue();
     }
 }
@@ -41,7 +41,6 @@ import java.awt.event.HierarchyListener;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.lang.management.MemoryMXBean;
-import java.lang.management.ThreadInfo;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -109,9 +108,11 @@ final class ThreadsMemoryView extends JPanel {
     private String filterString = ""; // NOI18N
     private int filterType = CommonConstants.FILTER_CONTAINS;
     
-    private List<ThreadInfo> threads;
-    private List<Long> allocatedBytes;
-    private List<Long> allocatedBytesPerSec;
+    private int threadsCount;
+    private long[] threadIds;
+    private String[] threadNames;
+    private long[] allocatedBytes;
+    private long[] allocatedBytesPerSec;
     private ThreadsMemoryInfo currentThreadsInfo;
     private ThreadsMemoryInfo baseThreadsInfo;
     private List<Integer> filteredSortedIndexes = new ArrayList();
@@ -157,7 +158,9 @@ final class ThreadsMemoryView extends JPanel {
     void refresh(ThreadsMemoryInfo info) {
         if (isPaused()) return;
         forceRefresh = false;
-        threads = info.getThreads();
+        threadsCount = info.getThreadsCount();
+        threadIds = info.getThreadIds();
+        threadNames = info.getThreadNames();
         allocatedBytes = info.getAllocatedBytes();
         totalBytes = info.getTotalBytes();
         if (currentThreadsInfo != null) {
@@ -172,7 +175,7 @@ final class ThreadsMemoryView extends JPanel {
                 columnRenderers[2] = labelTableCellRenderer;
                 updateColumnRenderers();
             }
-            totalThreads = threads.size() - baseThreadsInfo.getThreads().size();
+            totalThreads = threadsCount - baseThreadsInfo.getThreadsCount();
             allocatedBytes = baseThreadsInfo.getAllocatedDiffBytes(info);
             totalBytes = baseThreadsInfo.getTotalDiffBytes();
         } else {
@@ -185,7 +188,7 @@ final class ThreadsMemoryView extends JPanel {
             }
             allocatedBytes = info.getAllocatedBytes();
             totalBytes = info.getTotalBytes();
-            totalThreads = threads.size();
+            totalThreads = threadsCount;
             
         }
         customBarCellRenderer.setMaximum(totalBytes);
@@ -224,10 +227,10 @@ final class ThreadsMemoryView extends JPanel {
         String[] filterStrings = FilterComponent.getFilterValues(filterString);
         if (filterType == CommonConstants.FILTER_NONE ||
                 filterStrings == null || filterStrings[0].equals("")) { // NOI18N
-            for (int i = 0; i < threads.size(); i++) filteredSortedIndexes.add(i);
+            for (int i = 0; i < threadsCount; i++) filteredSortedIndexes.add(i);
         } else {
-            for (int i = 0; i < threads.size(); i++)
-                if (passedFilters(threads.get(i).getThreadName(), filterStrings, filterType))
+            for (int i = 0; i < threadsCount; i++)
+                if (passedFilters(threadNames[i], filterStrings, filterType))
                     filteredSortedIndexes.add(i);
         }
     }
@@ -267,24 +270,23 @@ final class ThreadsMemoryView extends JPanel {
                 
                 switch (sortingColumn) {
                     case 0:
-                        ThreadInfo ti1 = threads.get(index1);
-                        ThreadInfo ti2 = threads.get(index2);
-                        return sortOrder ? Long.valueOf(ti1.getThreadId()).compareTo(ti2.getThreadId()) :
-                            Long.valueOf(ti2.getThreadId()).compareTo(ti1.getThreadId());
+                        return compareValues(threadIds[index1], threadIds[index2]);
                     case 1:
                     case 2:
-                        Long alloc1 = allocatedBytes.get(index1);
-                        Long alloc2 = allocatedBytes.get(index2);
-                        return sortOrder ? alloc1.compareTo(alloc2) : alloc2.compareTo(alloc1);
+                        return compareValues(allocatedBytes[index1], allocatedBytes[index2]);
                     case 3:
-                        Long allocSec1 = allocatedBytesPerSec.get(index1);
-                        Long allocSec2 = allocatedBytesPerSec.get(index2);
-                        return sortOrder ? allocSec1.compareTo(allocSec2) : allocSec2.compareTo(allocSec1);
+                        if (allocatedBytesPerSec == null) return 0;
+                        return compareValues(allocatedBytesPerSec[index1], allocatedBytesPerSec[index2]);
                     default:
                         return 0;
                 }
             }
             
+            private int compareValues(long value1, long value2) {
+                int result = value1 < value2 ? -1 : (value1 == value2 ? 0 : 1);
+                return sortOrder ? result : -result;
+            }
+            
         });
     }
     
@@ -309,14 +311,13 @@ final class ThreadsMemoryView extends JPanel {
             
             public Object getValueAt(int row, int col) {
                 int index = filteredSortedIndexes.get(row);
-                long alloc = allocatedBytes.get(index).longValue();
+                long alloc = allocatedBytes[index];
                 boolean deltas = baseThreadsInfo != null;
                 NumberFormat formatter = NumberFormat.getInstance();
                 
                 switch (col) {
                     case 0:
-                        ThreadInfo threadInfo = threads.get(index);
-                        return threadInfo.getThreadName() ;
+                        return threadNames[index];
                     case 1:
                         return alloc;
                     case 2:
@@ -327,7 +328,7 @@ final class ThreadsMemoryView extends JPanel {
                         }
                     case 3:
                         if (allocatedBytesPerSec != null) {
-                            return formatter.format(allocatedBytesPerSec.get(index).longValue());
+                            return formatter.format(allocatedBytesPerSec[index]);
                         }
                         return "0";
                     default:
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * 
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ * 
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ * 
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tools.visualvm.sampler.cpu;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Tomas Hurka
+ */
+public class StackTraceIngestorTest {
+    private ThreadMXBean threadBean;
+    private Worker worker;
+    private StackTraceIngestor instance;
+
+    public StackTraceIngestorTest() {
+    }
+
+    @Before
+    public void setUp() throws InterruptedException {
+        threadBean = ManagementFactory.getThreadMXBean();
+        worker = new Worker();
+        worker.start();
+        worker.moveTo(Worker.FIRST);
+        instance = new StackTraceIngestor();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        worker.moveTo(Worker.DONE);
+        worker.join();
+    }
+
+    /**
+     * Test of ingest method for a thread which did not move, of class StackTraceIngestor.
+     */
+    @Test
+    public void testUnchangedStack() {
+        System.out.println("ingest unchanged");
+        ThreadInfo first = sample();
+        int[] firstIds = instance.getFrameIds(worker.getId());
+        int framesCount = instance.getFramesCount();
+
+        ThreadInfo[] infos = new ThreadInfo[] { threadBean.getThreadInfo(worker.getId(), Integer.MAX_VALUE) };
+        assertNotSame(first, infos[0]);
+        instance.ingest(infos);
+
+        assertSame(first, infos[0]);
+        assertArrayEquals(firstIds, instance.getFrameIds(worker.getId()));
+        assertEquals(framesCount, instance.getFramesCount());
+    }
+
+    /**
+     * Test of ingest method for a thread whose stack changed at the top, of class StackTraceIngestor.
+     */
+    @Test
+    public void testChangedSuffix() throws InterruptedException {
+        System.out.println("ingest changed suffix");
+        ThreadInfo first = sample();
+        int[] firstIds = instance.getFrameIds(worker.getId());
+        int framesCount = instance.getFramesCount();
+
+        worker.moveTo(Worker.SECOND);
+        ThreadInfo second = sample();
+        int[] secondIds = instance.getFrameIds(worker.getId());
+
+        assertNotSame(first, second);
+        assertEquals(firstIds.length, secondIds.length);
+        // run() and loop() stay shared, the stack changes from step() up
+        int common = commonBottom(firstIds, secondIds);
+        assertEquals(2, common);
+        assertEquals("step", second.getStackTrace()[secondIds.length - common - 1].getMethodName()); // NOI18N
+        // only step() at another line and second() are new frames
+        assertEquals(framesCount + 2, instance.getFramesCount());
+
+        worker.moveTo(Worker.FIRST);
+        sample();
+        assertArrayEquals(firstIds, instance.getFrameIds(worker.getId()));
+        assertEquals(framesCount + 2, instance.getFramesCount());
+    }
+
+    /**
+     * Test of ingest method for a finished thread, of class StackTraceIngestor.
+     */
+    @Test
+    public void testFinishedThread() {
+        System.out.println("ingest finished thread");
+        sample();
+        assertNotNull(instance.getFrameIds(worker.getId()));
+        instance.ingest(new ThreadInfo[0]);
+        assertNull(instance.getFrameIds(worker.getId()));
+    }
+
+    private ThreadInfo sample() {
+        ThreadInfo[] infos = new ThreadInfo[] { threadBean.getThreadInfo(worker.getId(), Integer.MAX_VALUE) };
+        instance.ingest(infos);
+        return infos[0];
+    }
+
+    private static int commonBottom(int[] ids1, int[] ids2) {
+        int common = 0;
+        while (common < ids1.length && common < ids2.length && ids1[common] == ids2[common]) {
+            common++;
+        }
+        return common;
+    }
+
+    /**
+     * Waits in {@code first()} or {@code second()}, both called from {@code step()}.
+     */
+    static final class Worker extends Thread {
+        static final int FIRST = 1;
+        static final int SECOND = 2;
+        static final int DONE = 3;
+
+        private final Object lock = new Object();
+        private int target;
+        private int position;
+
+        Worker() {
+            setDaemon(true);
+        }
+
+        public void run() {
+            loop();
+        }
+
+        /**
+         * Moves the worker to the given position and waits until it is parked there.
+         */
+        void moveTo(int newTarget) throws InterruptedException {
+            synchronized (lock) {
+                target = newTarget;
+                lock.notifyAll();
+                while (position != newTarget) lock.wait();
+            }
+        }
+
+        private void loop() {
+            while (true) {
+                int next;
+                synchronized (lock) {
+                    next = target;
+                }
+                if (next == DONE) {
+                    park(DONE);
+                    return;
+                }
+                step(next);
+            }
+        }
+
+        private void step(int next) {
+            if (next == FIRST) first();
+            else if (next == SECOND) second();
+            else park(0);
+        }
+
+        private void first() {
+            park(FIRST);
+        }
+
+        private void second() {
+            park(SECOND);
+        }
+
+        private void park(int at) {
+            synchronized (lock) {
+                position = at;
+                lock.notifyAll();
+                if (at == DONE) return;
+                while (target == at || target == 0) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * 
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ * 
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ * 
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tools.visualvm.sampler.cpu;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Tomas Hurka
+ */
+public class ThreadInfoProviderTest {
+    private StackTraceIngestorTest.Worker worker;
+    private ThreadInfoProvider instance;
+
+    public ThreadInfoProviderTest() {
+    }
+
+    @Before
+    public void setUp() throws InterruptedException {
+        worker = new StackTraceIngestorTest.Worker();
+        worker.start();
+        worker.moveTo(StackTraceIngestorTest.Worker.FIRST);
+        instance = new ThreadInfoProvider(ManagementFactory.getThreadMXBean());
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        worker.moveTo(StackTraceIngestorTest.Worker.DONE);
+        worker.join();
+    }
+
+    /**
+     * Test of dumpAllThreads method with a limited stack depth, of class ThreadInfoProvider.
+     */
+    @Test
+    public void testMaxDepth() {
+        System.out.println("dumpAllThreads maxDepth");
+        StackTraceElement[] full = find(instance.dumpAllThreads(), worker.getId()).getStackTrace();
+        assertTrue(full.length > 3);
+
+        for (ThreadInfo info : instance.dumpAllThreads(3)) {
+            if (info != null) assertTrue(info.getStackTrace().length <= 3);
+        }
+        StackTraceElement[] limited = find(instance.dumpAllThreads(3), worker.getId()).getStackTrace();
+        assertEquals(3, limited.length);
+        // the top frames are kept
+        for (int i = 0; i < limited.length; i++) {
+            assertEquals(full[i], limited[i]);
+        }
+    }
+
+    private static ThreadInfo find(ThreadInfo[] infos, long threadId) {
+        for (ThreadInfo info : infos) {
+            if (info != null && info.getThreadId() == threadId) return info;
+        }
+        fail("Thread " + threadId + " not found"); // NOI18N
+        return null;
+    }
+}
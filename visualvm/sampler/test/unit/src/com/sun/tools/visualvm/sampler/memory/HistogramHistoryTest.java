@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * 
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ * 
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ * 
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tools.visualvm.sampler.memory;
+
+import com.sun.tools.visualvm.application.jvm.HeapHistogram.ClassInfo;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Tomas Hurka
+ */
+public class HistogramHistoryTest {
+    private HistogramHistory instance;
+
+    public HistogramHistoryTest() {
+    }
+
+    @Before
+    public void setUp() {
+        instance = new HistogramHistory();
+    }
+
+    /**
+     * Test of record method, of class HistogramHistory.
+     */
+    @Test
+    public void testRecord() {
+        System.out.println("record");
+        instance.record(1000, histogram("A", 100, 1, "B", 200, 2)); // NOI18N
+        instance.record(2000, histogram("A", 100, 1, "C", 300, 3)); // NOI18N
+        instance.record(3000, histogram("A", 400, 4, "C", 300, 3)); // NOI18N
+
+        assertEquals(3, instance.getSamplesCount());
+        assertEquals(3, instance.getClassesCount());
+        int a = instance.getClassId("A"); // NOI18N
+        int b = instance.getClassId("B"); // NOI18N
+        int c = instance.getClassId("C"); // NOI18N
+        assertEquals(-1, instance.getClassId("D")); // NOI18N
+
+        assertEquals(100, instance.getBytes(a, 0));
+        assertEquals(100, instance.getBytes(a, 1));
+        assertEquals(400, instance.getBytes(a, 2));
+        assertEquals(4, instance.getLastInstances(a));
+        assertEquals(200, instance.getBytes(b, 0));
+        assertEquals(0, instance.getBytes(b, 1));
+        assertFalse(instance.isPresent(b));
+        assertEquals(0, instance.getBytes(c, 0));
+        assertEquals(300, instance.getBytes(c, 1));
+        assertTrue(instance.isPresent(c));
+    }
+
+    /**
+     * Test of getGrowthRate method, of class HistogramHistory.
+     */
+    @Test
+    public void testGetGrowthRate() {
+        System.out.println("getGrowthRate");
+        for (int i = 0; i < 11; i++) {
+            instance.record(i * 1000, histogram("A", 1000 + i * 500, i, "B", 5000 - i * 100, 1)); // NOI18N
+        }
+        assertEquals(500d, instance.getGrowthRate(instance.getClassId("A"), 0), 0.001); // NOI18N
+        assertEquals(-100d, instance.getGrowthRate(instance.getClassId("B"), 0), 0.001); // NOI18N
+        assertEquals(500d, instance.getGrowthRate(instance.getClassId("A"), 5000), 0.001); // NOI18N
+        assertEquals(0d, instance.getGrowthRate(instance.getClassId("A"), 20000), 0.001); // NOI18N
+    }
+
+    /**
+     * Test of getBytes and getInstances ranges used for sparklines
+     */
+    @Test
+    public void testGetRanges() {
+        System.out.println("getRanges");
+        instance.record(0, histogram("A", 10, 1)); // NOI18N
+        instance.record(1000, histogram("A", 10, 1, "B", 40, 4)); // NOI18N
+        instance.record(2000, histogram("A", 30, 3, "B", 40, 4)); // NOI18N
+        instance.record(3000, histogram("B", 50, 5)); // NOI18N
+        int a = instance.getClassId("A"); // NOI18N
+        int b = instance.getClassId("B"); // NOI18N
+        assertArrayEquals(new long[] { 10, 10, 30, 0 }, instance.getBytes(a, 0, 4));
+        assertArrayEquals(new long[] { 1, 1, 3, 0 }, instance.getInstances(a, 0, 4));
+        assertArrayEquals(new long[] { 40, 40 }, instance.getBytes(b, 1, 3));
+        assertArrayEquals(new long[] { 0, 4, 4, 5 }, instance.getInstances(b, 0, 4));
+        assertEquals(0, instance.getBytes(a, 2, 2).length);
+    }
+
+    /**
+     * Test of getTopGrowing method
+     */
+    @Test
+    public void testGetTopGrowing() {
+        System.out.println("getTopGrowing");
+        instance.record(0, histogram("A", 100, 1, "B", 100, 1, "C", 100, 1, "D", 100, 1)); // NOI18N
+        instance.record(1000, histogram("A", 150, 1, "B", 400, 1, "C", 50, 1, "D", 300, 1)); // NOI18N
+        instance.record(2000, histogram("A", 200, 1, "B", 500, 1, "C", 10, 1, "D", 900, 1, "E", 20, 1)); // NOI18N
+        int a = instance.getClassId("A"); // NOI18N
+        int b = instance.getClassId("B"); // NOI18N
+        int d = instance.getClassId("D"); // NOI18N
+        int e = instance.getClassId("E"); // NOI18N
+
+        assertArrayEquals(new int[] { d, b }, instance.getTopGrowing(2, 0));
+        // shrinking classes are never reported
+        assertArrayEquals(new int[] { d, b, a, e }, instance.getTopGrowing(10, 0));
+        assertArrayEquals(new int[] { d, b, a, e }, instance.getTopGrowing(10, 1000));
+        assertArrayEquals(new int[] { d }, instance.getTopGrowing(1, 1000));
+        assertEquals(0, instance.getTopGrowing(0, 0).length);
+        assertEquals(0, instance.getTopGrowing(3, 2000).length);
+    }
+
+    /**
+     * The history must keep only the most recent samples
+     */
+    @Test
+    public void testRetention() {
+        System.out.println("retention");
+        int samples = HistogramHistory.MAX_SAMPLES * 2 + 10;
+        for (int i = 0; i < samples; i++) {
+            // A changes every sample, B only every 100 samples, C disappears early
+            instance.record(i * 1000L, i < 50 ? histogram("A", i, i, "B", (i / 100) * 10, 1, "C", 7, 1) : // NOI18N
+                                                histogram("A", i, i, "B", (i / 100) * 10, 1)); // NOI18N
+        }
+        int count = instance.getSamplesCount();
+        assertTrue(count <= HistogramHistory.MAX_SAMPLES);
+        int first = samples - count;
+        assertEquals(first * 1000L, instance.getTime(0));
+        assertEquals((samples - 1) * 1000L, instance.getTime(count - 1));
+
+        int a = instance.getClassId("A"); // NOI18N
+        int b = instance.getClassId("B"); // NOI18N
+        int c = instance.getClassId("C"); // NOI18N
+        for (int i = 0; i < count; i++) {
+            assertEquals(first + i, instance.getBytes(a, i));
+            assertEquals(((first + i) / 100) * 10, instance.getBytes(b, i));
+            assertEquals(0, instance.getBytes(c, i));
+        }
+        assertEquals(samples - 1, instance.getLastBytes(a));
+        assertTrue(instance.isPresent(a));
+        assertFalse(instance.isPresent(c));
+
+        // recording continues correctly after dropping the old samples
+        instance.record(samples * 1000L, histogram("A", 5, 5, "C", 9, 1)); // NOI18N
+        assertEquals(5, instance.getBytes(a, instance.getSamplesCount() - 1));
+        assertEquals(samples - 1, instance.getBytes(a, instance.getSamplesCount() - 2));
+        assertEquals(9, instance.getLastBytes(c));
+        assertTrue(instance.isPresent(c));
+        assertFalse(instance.isPresent(b));
+    }
+
+    private static List<ClassInfo> histogram(Object... data) {
+        List<ClassInfo> histogram = new ArrayList<ClassInfo>();
+        for (int i = 0; i < data.length; i += 3) {
+            histogram.add(new TestClassInfo((String)data[i], ((Number)data[i + 1]).longValue(),
+                                            ((Number)data[i + 2]).longValue()));
+        }
+        return histogram;
+    }
+
+    private static final class TestClassInfo extends ClassInfo {
+        private final String name;
+        private final long bytes;
+        private final long instances;
+
+        TestClassInfo(String name, long bytes, long instances) {
+            this.name = name;
+            this.bytes = bytes;
+            this.instances = instances;
+        }
+
+        public String getName() { return name; }
+        public long getInstancesCount() { return instances; }
+        public long getBytes() { return bytes; }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ *  Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *  This code is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License version 2 only, as
+ *  published by the Free Software Foundation.  Oracle designates this
+ *  particular file as subject to the "Classpath" exception as provided
+ *  by Oracle in the LICENSE file that accompanied this code.
+ *
+ *  This code is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ *  version 2 for more details (a copy is included in the LICENSE file that
+ *  accompanied this code).
+ *
+ *  You should have received a copy of the GNU General Public License version
+ *  2 along with this work; if not, write to the Free Software Foundation,
+ *  Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *  Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ *  or visit www.oracle.com if you need additional information or have any
+ *  questions.
+ */
+
+package com.sun.tools.visualvm.threaddump.impl;
+
+import com.sun.tools.visualvm.core.datasource.descriptor.DataSourceDescriptorFactory;
+import com.sun.tools.visualvm.core.ui.actions.MultiDataSourceAction;
+import com.sun.tools.visualvm.threaddump.ThreadDump;
+import com.sun.tools.visualvm.threaddump.impl.ThreadDumpComparison.HotSpot;
+import com.sun.tools.visualvm.threaddump.impl.ThreadDumpComparison.LockChain;
+import com.sun.tools.visualvm.threaddump.impl.ThreadDumpComparison.StuckThread;
+import com.sun.tools.visualvm.uisupport.HTMLTextArea;
+import java.awt.Dialog;
+import java.awt.Dimension;
+import java.awt.event.ActionEvent;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.BorderFactory;
+import javax.swing.JScrollPane;
+import javax.swing.SwingUtilities;
+import org.openide.DialogDescriptor;
+import org.openide.DialogDisplayer;
+import org.openide.NotifyDescriptor;
+import org.openide.util.NbBundle;
+import org.openide.util.RequestProcessor;
+
+/**
+ *
+ * @author Tomas Hurka
+ */
+class CompareThreadDumpsAction extends MultiDataSourceAction<ThreadDump> {
+    private static final Logger LOGGER = Logger.getLogger(CompareThreadDumpsAction.class.getName());
+    
+    private static CompareThreadDumpsAction instance;
+    
+    public static synchronized CompareThreadDumpsAction instance() {
+        if (instance == null) 
+            instance = new CompareThreadDumpsAction();
+        return instance;
+    }
+    
+    
+    protected void actionPerformed(Set<ThreadDump> threadDumps, ActionEvent actionEvent) {
+        // the comparison orders the dumps by the time they were taken
+        final Map<File,ThreadDump> dumps = new HashMap<File,ThreadDump>();
+        for (ThreadDump dump : threadDumps) dumps.put(dump.getFile(), dump);
+        RequestProcessor.getDefault().post(new Runnable() {
+            public void run() {
+                List<File> files = new ArrayList<File>(dumps.keySet());
+                try {
+                    final String report = createReport(ThreadDumpComparison.compare(files), dumps);
+                    SwingUtilities.invokeLater(new Runnable() {
+                        public void run() { showReport(report); }
+                    });
+                } catch (IOException ex) {
+                    LOGGER.log(Level.INFO, "Failed to compare thread dumps", ex);  // NOI18N
+                    DialogDisplayer.getDefault().notifyLater(new NotifyDescriptor.Message(
+                            NbBundle.getMessage(CompareThreadDumpsAction.class, "MSG_Cannot_compare_thread_dumps"), // NOI18N
+                            NotifyDescriptor.ERROR_MESSAGE));
+                }
+            }
+        });
+    }
+    
+    protected boolean isEnabled(Set<ThreadDump> threadDumps) {
+        return threadDumps.size() > 1;
+    }
+    
+    
+    private static String createReport(ThreadDumpComparison comparison, Map<File,ThreadDump> dumps) {
+        StringBuilder sb = new StringBuilder();
+        int dumpsCount = comparison.getDumpsCount();
+        
+        sb.append("<b>").append(getMessage("LBL_Compared_Thread_Dumps")).append("</b><br>"); // NOI18N
+        for (int i = 0; i < dumpsCount; i++) {
+            sb.append(getMessage("LBL_Dump", i + 1)).append(": "); // NOI18N
+            sb.append(htmlize(DataSourceDescriptorFactory.getDescriptor(dumps.get(comparison.getDumpFile(i))).getName()));
+            sb.append("<br>"); // NOI18N
+        }
+        
+        sb.append("<br><b>").append(getMessage("LBL_Stuck_Threads")).append("</b><br>"); // NOI18N
+        List<StuckThread> stuckThreads = comparison.getStuckThreads();
+        if (stuckThreads.isEmpty()) sb.append(getMessage("MSG_No_Stuck_Threads")).append("<br>"); // NOI18N
+        for (StuckThread thread : stuckThreads) {
+            sb.append(getMessage("LBL_Stuck_Thread", htmlize(thread.getName()), // NOI18N
+                    thread.getState() == null ? "" : thread.getState(), // NOI18N
+                    thread.getDumpsCount(), dumpsCount));
+            sb.append("<br>&nbsp;&nbsp;&nbsp;&nbsp;<code>at ").append(htmlize(thread.getFrame())).append("</code><br>"); // NOI18N
+        }
+        
+        sb.append("<br><b>").append(getMessage("LBL_Lock_Chains")).append("</b><br>"); // NOI18N
+        boolean chains = false;
+        for (int i = 0; i < dumpsCount; i++) {
+            for (LockChain chain : comparison.getLockChains(i)) {
+                chains = true;
+                sb.append(getMessage("LBL_Dump", i + 1)).append(": "); // NOI18N
+                if (chain.isDeadlock()) sb.append("<b>").append(getMessage("LBL_Deadlock")).append("</b> "); // NOI18N
+                List<String> names = chain.getThreadNames();
+                List<String> locks = chain.getLockIds();
+                for (int j = 0; j < names.size(); j++) {
+                    sb.append(htmlize(names.get(j)));
+                    if (j < locks.size()) sb.append(" &rarr; &lt;").append(locks.get(j)).append("&gt; &rarr; "); // NOI18N
+                }
+                sb.append("<br>"); // NOI18N
+            }
+        }
+        if (!chains) sb.append(getMessage("MSG_No_Lock_Chains")).append("<br>"); // NOI18N
+        
+        sb.append("<br><b>").append(getMessage("LBL_Hot_Spots")).append("</b><br>"); // NOI18N
+        for (HotSpot hotSpot : comparison.getHotSpots()) {
+            sb.append(getMessage("LBL_Hot_Spot", hotSpot.getTopCount(), hotSpot.getCount())); // NOI18N
+            sb.append(" <code>").append(htmlize(hotSpot.getFrame())).append("</code><br>"); // NOI18N
+        }
+        
+        return sb.toString();
+    }
+    
+    private static void showReport(String report) {
+        HTMLTextArea area = new HTMLTextArea("<nobr>" + report + "</nobr>"); // NOI18N
+        area.setCaretPosition(0);
+        area.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+        JScrollPane scrollPane = new JScrollPane(area);
+        scrollPane.setPreferredSize(new Dimension(700, 500));
+        
+        DialogDescriptor dd = new DialogDescriptor(scrollPane,
+                getMessage("CAPTION_Thread_Dumps_Comparison"), false, // NOI18N
+                new Object[] { DialogDescriptor.CLOSED_OPTION }, DialogDescriptor.CLOSED_OPTION,
+                DialogDescriptor.DEFAULT_ALIGN, null, null);
+        Dialog d = DialogDisplayer.getDefault().createDialog(dd);
+        d.pack();
+        d.setVisible(true);
+    }
+    
+    private static String htmlize(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;");     // NOI18N
+    }
+    
+    private static String getMessage(String key, Object... params) {
+        return NbBundle.getMessage(CompareThreadDumpsAction.class, key, params);
+    }
+    
+    
+    private CompareThreadDumpsAction() {
+        super(ThreadDump.class);
+        putValue(NAME, NbBundle.getMessage(CompareThreadDumpsAction.class, "MSG_Compare_Thread_Dumps"));  // NOI18N
+        putValue(SHORT_DESCRIPTION, NbBundle.getMessage(CompareThreadDumpsAction.class, "LBL_Compare_Thread_Dumps"));     // NOI18N
+    }
+}
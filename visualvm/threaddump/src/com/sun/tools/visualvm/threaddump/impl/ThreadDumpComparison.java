@@ -0,0 +1,362 @@
+/*
+ *  Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *  This code is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License version 2 only, as
+ *  published by the Free Software Foundation.  Oracle designates this
+ *  particular file as subject to the "Classpath" exception as provided
+ *  by Oracle in the LICENSE file that accompanied this code.
+ *
+ *  This code is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ *  version 2 for more details (a copy is included in the LICENSE file that
+ *  accompanied this code).
+ *
+ *  You should have received a copy of the GNU General Public License version
+ *  2 along with this work; if not, write to the Free Software Foundation,
+ *  Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *  Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ *  or visit www.oracle.com if you need additional information or have any
+ *  questions.
+ */
+
+package com.sun.tools.visualvm.threaddump.impl;
+
+import com.sun.tools.visualvm.threaddump.impl.ThreadDumpModel.DumpedThread;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compares a sequence of thread dumps of the same application. The dumps
+ * share one table of interned lines and one index of stack frames, threads
+ * are matched across the dumps by their names.
+ *
+ * @author Tomas Hurka
+ */
+class ThreadDumpComparison {
+
+    private static final int MAX_HOT_SPOTS = 50;
+
+    private final List<File> files;
+    private final List<ThreadDumpModel> dumps;
+    private final Map<String,Integer> frameIds = new HashMap<String,Integer>();
+    private final List<String> frames = new ArrayList<String>();
+    // per dump and thread the frame ids of its stack
+    private final List<int[][]> stacks = new ArrayList<int[][]>();
+
+
+    private ThreadDumpComparison(List<File> dumpFiles, List<ThreadDumpModel> models) {
+        files = dumpFiles;
+        dumps = models;
+        for (ThreadDumpModel dump : dumps) {
+            List<DumpedThread> threads = dump.getThreads();
+            int[][] dumpStacks = new int[threads.size()][];
+            for (int i = 0; i < dumpStacks.length; i++) {
+                String[] threadFrames = threads.get(i).getFrames();
+                int[] ids = new int[threadFrames.length];
+                for (int j = 0; j < ids.length; j++) ids[j] = frameId(threadFrames[j]);
+                dumpStacks[i] = ids;
+            }
+            stacks.add(dumpStacks);
+        }
+    }
+
+    /**
+     * Loads and compares the thread dumps ordered by the time they were
+     * taken. The time printed in the dump header is used, the last modified
+     * time of the file if the header doesn't contain it.
+     */
+    static ThreadDumpComparison compare(List<File> files) throws IOException {
+        Map<String,String> strings = new HashMap<String,String>();
+        final Map<File,Long> timestamps = new HashMap<File,Long>();
+        final Map<File,ThreadDumpModel> models = new HashMap<File,ThreadDumpModel>();
+        for (File file : files) {
+            ThreadDumpModel model = ThreadDumpModel.load(file, strings);
+            long timestamp = model.getTimestamp();
+            timestamps.put(file, timestamp == -1 ? file.lastModified() : timestamp);
+            models.put(file, model);
+        }
+
+        List<File> sorted = new ArrayList<File>(files);
+        Collections.sort(sorted, new Comparator<File>() {
+            public int compare(File f1, File f2) {
+                return timestamps.get(f1).compareTo(timestamps.get(f2));
+            }
+        });
+        List<ThreadDumpModel> sortedModels = new ArrayList<ThreadDumpModel>(sorted.size());
+        for (File file : sorted) sortedModels.add(models.get(file));
+        return new ThreadDumpComparison(sorted, sortedModels);
+    }
+
+
+    int getDumpsCount() {
+        return dumps.size();
+    }
+
+    /**
+     * File of the thread dump at the given index, dumps are ordered by time.
+     */
+    File getDumpFile(int dumpIndex) {
+        return files.get(dumpIndex);
+    }
+
+    /**
+     * Threads present in at least two dumps whose top frame is the same in
+     * all the dumps they appear in. Threads without a stack are ignored.
+     */
+    List<StuckThread> getStuckThreads() {
+        Map<String,StuckThread> candidates = new HashMap<String,StuckThread>();
+        Set<String> moving = new HashSet<String>();
+
+        for (int d = 0; d < dumps.size(); d++) {
+            List<DumpedThread> threads = dumps.get(d).getThreads();
+            int[][] dumpStacks = stacks.get(d);
+            Map<String,Integer> occurrences = new HashMap<String,Integer>();
+            for (int i = 0; i < dumpStacks.length; i++) {
+                DumpedThread thread = threads.get(i);
+                String key = threadKey(thread, occurrences);
+                if (moving.contains(key)) continue;
+                int[] stack = dumpStacks[i];
+                if (stack.length == 0) {
+                    moving.add(key);
+                    continue;
+                }
+                StuckThread stuck = candidates.get(key);
+                if (stuck == null) {
+                    candidates.put(key, new StuckThread(thread.getName(), thread.getState(),
+                                                        frames.get(stack[0]), stack[0]));
+                } else if (stuck.frameId != stack[0]) {
+                    candidates.remove(key);
+                    moving.add(key);
+                } else {
+                    stuck.dumpsCount++;
+                    stuck.state = thread.getState();
+                }
+            }
+        }
+
+        List<StuckThread> result = new ArrayList<StuckThread>();
+        for (StuckThread stuck : candidates.values())
+            if (stuck.dumpsCount > 1) result.add(stuck);
+        Collections.sort(result, new Comparator<StuckThread>() {
+            public int compare(StuckThread t1, StuckThread t2) {
+                if (t1.dumpsCount != t2.dumpsCount) return t2.dumpsCount - t1.dumpsCount;
+                return t1.name.compareTo(t2.name);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Chains of threads waiting for a lock held by another thread in the
+     * given dump. Holders of j.u.c locks are known from the ownable
+     * synchronizers listed by <code>jstack -l</code>. Each chain starts with
+     * a waiter nobody waits for and ends with a thread not waiting for a held
+     * lock, or closes a deadlock.
+     */
+    List<LockChain> getLockChains(int dumpIndex) {
+        List<DumpedThread> threads = dumps.get(dumpIndex).getThreads();
+        Map<String,DumpedThread> holders = new HashMap<String,DumpedThread>();
+        for (DumpedThread thread : threads) {
+            for (String id : thread.getLockedIds()) {
+                // a thread in Object.wait() released the monitor it waits on
+                if (!id.equals(thread.getWaitingId())) holders.put(id, thread);
+            }
+        }
+
+        Map<DumpedThread,DumpedThread> blockedBy = new HashMap<DumpedThread,DumpedThread>();
+        Set<DumpedThread> blocking = new HashSet<DumpedThread>();
+        for (DumpedThread thread : threads) {
+            String waitingId = thread.getWaitingId();
+            DumpedThread holder = waitingId == null ? null : holders.get(waitingId);
+            if (holder != null && holder != thread) {
+                blockedBy.put(thread, holder);
+                blocking.add(holder);
+            }
+        }
+
+        List<LockChain> chains = new ArrayList<LockChain>();
+        Set<DumpedThread> visited = new HashSet<DumpedThread>();
+        // chains from the outermost waiters first, then the remaining cycles
+        for (int pass = 0; pass < 2; pass++) {
+            for (DumpedThread thread : threads) {
+                if (!blockedBy.containsKey(thread) || visited.contains(thread)) continue;
+                if (pass == 0 && blocking.contains(thread)) continue;
+                chains.add(createChain(dumpIndex, thread, blockedBy, visited));
+            }
+        }
+        return chains;
+    }
+
+    /**
+     * Frames found in the most stacks over all dumps. A frame is counted once
+     * per stack even for recursive calls.
+     */
+    List<HotSpot> getHotSpots() {
+        int framesCount = frames.size();
+        int[] counts = new int[framesCount];
+        int[] topCounts = new int[framesCount];
+        int[] stamps = new int[framesCount];
+        int stamp = 0;
+
+        for (int[][] dumpStacks : stacks) {
+            for (int[] stack : dumpStacks) {
+                if (stack.length == 0) continue;
+                stamp++;
+                topCounts[stack[0]]++;
+                for (int id : stack) {
+                    if (stamps[id] == stamp) continue;
+                    stamps[id] = stamp;
+                    counts[id]++;
+                }
+            }
+        }
+
+        List<HotSpot> result = new ArrayList<HotSpot>();
+        for (int id = 0; id < framesCount; id++)
+            if (counts[id] > 1) result.add(new HotSpot(frames.get(id), counts[id], topCounts[id]));
+        Collections.sort(result, new Comparator<HotSpot>() {
+            public int compare(HotSpot h1, HotSpot h2) {
+                if (h1.topCount != h2.topCount) return h2.topCount - h1.topCount;
+                return h2.count - h1.count;
+            }
+        });
+        return result.size() > MAX_HOT_SPOTS ? result.subList(0, MAX_HOT_SPOTS) : result;
+    }
+
+
+    private LockChain createChain(int dumpIndex, DumpedThread first,
+                                  Map<DumpedThread,DumpedThread> blockedBy,
+                                  Set<DumpedThread> visited) {
+        List<String> names = new ArrayList<String>();
+        List<String> locks = new ArrayList<String>();
+        Set<DumpedThread> chain = new HashSet<DumpedThread>();
+        DumpedThread thread = first;
+        boolean deadlock = false;
+        while (thread != null) {
+            if (!chain.add(thread)) {
+                deadlock = true;
+                names.add(thread.getName());
+                break;
+            }
+            visited.add(thread);
+            names.add(thread.getName());
+            DumpedThread holder = blockedBy.get(thread);
+            if (holder != null) locks.add(thread.getWaitingId());
+            thread = holder;
+        }
+        return new LockChain(dumpIndex, names, locks, deadlock);
+    }
+
+    private int frameId(String frame) {
+        Integer id = frameIds.get(frame);
+        if (id == null) {
+            id = Integer.valueOf(frames.size());
+            frameIds.put(frame, id);
+            frames.add(frame);
+        }
+        return id.intValue();
+    }
+
+    // thread names aren't unique, equal names are matched in order of appearance
+    private static String threadKey(DumpedThread thread, Map<String,Integer> occurrences) {
+        String name = thread.getName();
+        Integer count = occurrences.get(name);
+        occurrences.put(name, count == null ? 1 : count + 1);
+        return count == null ? name : name + "#" + count; // NOI18N
+    }
+
+
+    static final class StuckThread {
+        private final String name;
+        private final String frame;
+        private final int frameId;
+        private String state;
+        private int dumpsCount = 1;
+
+        private StuckThread(String name, String state, String frame, int frameId) {
+            this.name = name;
+            this.state = state;
+            this.frame = frame;
+            this.frameId = frameId;
+        }
+
+        String getName() { return name; }
+
+        /**
+         * State of the thread in the last dump it appears in.
+         */
+        String getState() { return state; }
+
+        String getFrame() { return frame; }
+
+        int getDumpsCount() { return dumpsCount; }
+    }
+
+    static final class LockChain {
+        private final int dumpIndex;
+        private final List<String> threadNames;
+        private final List<String> lockIds;
+        private final boolean deadlock;
+
+        private LockChain(int dumpIndex, List<String> threadNames,
+                          List<String> lockIds, boolean deadlock) {
+            this.dumpIndex = dumpIndex;
+            this.threadNames = threadNames;
+            this.lockIds = lockIds;
+            this.deadlock = deadlock;
+        }
+
+        int getDumpIndex() { return dumpIndex; }
+
+        /**
+         * Waiting thread first, each thread waits for the next one.
+         */
+        List<String> getThreadNames() { return threadNames; }
+
+        /**
+         * Lock awaited by the thread at the same index.
+         */
+        List<String> getLockIds() { return lockIds; }
+
+        /**
+         * <code>true</code> if the last thread waits for a thread already in the chain.
+         */
+        boolean isDeadlock() { return deadlock; }
+    }
+
+    static final class HotSpot {
+        private final String frame;
+        private final int count;
+        private final int topCount;
+
+        private HotSpot(String frame, int count, int topCount) {
+            this.frame = frame;
+            this.count = count;
+            this.topCount = topCount;
+        }
+
+        String getFrame() { return frame; }
+
+        /**
+         * Number of stacks containing the frame over all dumps.
+         */
+        int getCount() { return count; }
+
+        /**
+         * Number of stacks with the frame on top over all dumps.
+         */
+        int getTopCount() { return topCount; }
+    }
+}
@@ -0,0 +1,373 @@
+/*
+ *  Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *  This code is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License version 2 only, as
+ *  published by the Free Software Foundation.  Oracle designates this
+ *  particular file as subject to the "Classpath" exception as provided
+ *  by Oracle in the LICENSE file that accompanied this code.
+ *
+ *  This code is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ *  version 2 for more details (a copy is included in the LICENSE file that
+ *  accompanied this code).
+ *
+ *  You should have received a copy of the GNU General Public License version
+ *  2 along with this work; if not, write to the Free Software Foundation,
+ *  Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *  Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ *  or visit www.oracle.com if you need additional information or have any
+ *  questions.
+ */
+
+package com.sun.tools.visualvm.threaddump.impl;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Structured thread dump parsed in a single streaming pass. Supports the
+ * format produced by jstack, the attach API and the JMX based thread dump.
+ * Stack frames and other repeated lines are shared between threads.
+ *
+ * @author Tomas Hurka
+ */
+class ThreadDumpModel {
+
+    private static final String STATE_PREFIX = "java.lang.Thread.State: ";   // NOI18N
+    private static final String FRAME_PREFIX = "at ";                       // NOI18N
+    private static final String LOCKED_PREFIX = "- locked ";                // NOI18N
+    private static final String SYNCHRONIZERS_HEADER = "Locked ownable synchronizers:"; // NOI18N
+    private static final String SYNCHRONIZER_PREFIX = "- <";                // NOI18N
+    private static final String[] WAITING_PREFIXES = new String[] {
+        "- waiting to lock ", "- waiting on ", "- parking to wait for "      // NOI18N
+    };
+    private static final String TIMESTAMP_FORMAT = "yyyy-MM-dd HH:mm:ss";   // NOI18N
+    private static final String[] NO_STRINGS = new String[0];
+    private static final int TAB_SIZE = 8;
+
+    private final List<String> headerLines;
+    private final List<DumpedThread> threads;
+    private final List<String> trailerLines;
+    private final Set<String> states;
+    private final int maxLineLength;
+
+
+    private ThreadDumpModel(List<String> header, List<DumpedThread> threadList,
+                            List<String> trailer, Set<String> stateSet, int maxLength) {
+        headerLines = header;
+        threads = threadList;
+        trailerLines = trailer;
+        states = stateSet;
+        maxLineLength = maxLength;
+    }
+
+
+    static ThreadDumpModel load(File file) throws IOException {
+        return load(file, new HashMap<String,String>());
+    }
+
+    /**
+     * Loads the thread dump sharing the lines and frames with other thread
+     * dumps loaded using the same strings map.
+     */
+    static ThreadDumpModel load(File file, Map<String,String> strings) throws IOException {
+        InputStream is = new FileInputStream(file);
+        try {
+            return parse(is, strings);
+        } finally {
+            is.close();
+        }
+    }
+
+    static ThreadDumpModel parse(InputStream is, Map<String,String> strings) throws IOException {
+        return new Parser(strings).parse(new BufferedReader(new InputStreamReader(is, "UTF-8"))); // NOI18N
+    }
+
+
+    /**
+     * Lines preceding the first thread.
+     */
+    List<String> getHeaderLines() {
+        return headerLines;
+    }
+
+    List<DumpedThread> getThreads() {
+        return threads;
+    }
+
+    /**
+     * Lines following the last thread, like JNI global references.
+     */
+    List<String> getTrailerLines() {
+        return trailerLines;
+    }
+
+    /**
+     * Thread states present in this thread dump in order of appearance.
+     */
+    Set<String> getStates() {
+        return states;
+    }
+
+    /**
+     * Length of the longest line with tabs expanded.
+     */
+    int getMaxLineLength() {
+        return maxLineLength;
+    }
+
+    /**
+     * Time the thread dump was taken as printed in its header, -1 if the
+     * header doesn't contain it.
+     */
+    long getTimestamp() {
+        SimpleDateFormat format = new SimpleDateFormat(TIMESTAMP_FORMAT);
+        format.setLenient(false);
+        for (String line : headerLines) {
+            String trimmed = line.trim();
+            ParsePosition position = new ParsePosition(0);
+            Date date = format.parse(trimmed, position);
+            if (date != null && position.getIndex() == trimmed.length()) return date.getTime();
+        }
+        return -1;
+    }
+
+    static String expandTabs(String line) {
+        if (line.indexOf('\t') == -1) return line;
+        StringBuilder sb = new StringBuilder(line.length() + TAB_SIZE);
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\t') {
+                do { sb.append(' '); } while (sb.length() % TAB_SIZE != 0);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+
+    static final class DumpedThread {
+
+        private final String name;
+        private final String header;
+        private final String state;
+        private final String[] lines;
+        private final String[] frames;
+        private final String[] lockedIds;
+        private final String waitingId;
+
+        private DumpedThread(String header, String state, String[] lines,
+                             String[] frames, String[] lockedIds, String waitingId) {
+            this.header = header;
+            this.name = parseName(header);
+            this.state = state;
+            this.lines = lines;
+            this.frames = frames;
+            this.lockedIds = lockedIds;
+            this.waitingId = waitingId;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        /**
+         * The first line of the thread including its name.
+         */
+        String getHeader() {
+            return header;
+        }
+
+        /**
+         * Thread state or <code>null</code> if not available.
+         */
+        String getState() {
+            return state;
+        }
+
+        /**
+         * Lines following the header, including stack frames and locks.
+         */
+        String[] getLines() {
+            return lines;
+        }
+
+        /**
+         * Stack frames without the leading "at ", top frame first.
+         */
+        String[] getFrames() {
+            return frames;
+        }
+
+        /**
+         * Identity of monitors and synchronizers held by the thread,
+         * for example <code>0x00000000eb0b0c18</code>.
+         */
+        String[] getLockedIds() {
+            return lockedIds;
+        }
+
+        /**
+         * Identity of the lock the thread is blocked on or waiting for,
+         * <code>null</code> if none.
+         */
+        String getWaitingId() {
+            return waitingId;
+        }
+
+        int getLinesCount() {
+            return lines.length + 1;
+        }
+
+        boolean holdsOrWaits(String lockText) {
+            if (waitingId != null && waitingId.indexOf(lockText) != -1) return true;
+            for (String id : lockedIds)
+                if (id.indexOf(lockText) != -1) return true;
+            return false;
+        }
+
+        private static String parseName(String header) {
+            int end = header.lastIndexOf('"');
+            return end > 0 ? header.substring(1, end) : header;
+        }
+    }
+
+
+    private static final class Parser {
+
+        private final Map<String,String> strings;
+        private final List<String> header = new ArrayList<String>();
+        private final List<DumpedThread> threads = new ArrayList<DumpedThread>();
+        private final List<String> trailer = new ArrayList<String>();
+        private final Set<String> states = new LinkedHashSet<String>();
+        private int maxLength;
+
+        // current thread
+        private String threadHeader;
+        private String state;
+        private final List<String> lines = new ArrayList<String>();
+        private final List<String> frames = new ArrayList<String>();
+        private final List<String> locked = new ArrayList<String>();
+        private String waiting;
+        private boolean synchronizers;
+
+        Parser(Map<String,String> strings) {
+            this.strings = strings;
+        }
+
+        ThreadDumpModel parse(BufferedReader reader) throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                maxLength = Math.max(maxLength, expandedLength(line));
+                if (!trailer.isEmpty()) {
+                    // deadlock reports after the threads also contain quoted names
+                    trailer.add(line);
+                } else if (line.startsWith("\"")) {   // NOI18N
+                    finishThread();
+                    threadHeader = line;
+                } else if (threadHeader == null) {
+                    if (threads.isEmpty()) header.add(line);
+                    else trailer.add(line);
+                } else if (!line.isEmpty() && !Character.isWhitespace(line.charAt(0))) {
+                    // first non indented line after the threads
+                    finishThread();
+                    trailer.add(line);
+                } else {
+                    processThreadLine(line);
+                }
+            }
+            finishThread();
+            return new ThreadDumpModel(header, Collections.unmodifiableList(threads),
+                                       trailer, states, maxLength);
+        }
+
+        private void processThreadLine(String line) {
+            String trimmed = line.trim();
+            lines.add(intern(line));
+            if (trimmed.startsWith(FRAME_PREFIX)) {
+                frames.add(intern(trimmed.substring(FRAME_PREFIX.length())));
+            } else if (trimmed.startsWith(STATE_PREFIX)) {
+                int end = trimmed.indexOf(' ', STATE_PREFIX.length());
+                state = intern(end == -1 ? trimmed.substring(STATE_PREFIX.length()) :
+                                           trimmed.substring(STATE_PREFIX.length(), end));
+                states.add(state);
+            } else if (trimmed.startsWith(LOCKED_PREFIX) ||
+                       (synchronizers && trimmed.startsWith(SYNCHRONIZER_PREFIX))) {
+                // jstack lists the held j.u.c locks as "- <0x...> (a ...)"
+                String id = lockId(trimmed);
+                if (id != null) locked.add(id);
+            } else if (trimmed.equals(SYNCHRONIZERS_HEADER)) {
+                synchronizers = true;
+            } else {
+                for (String prefix : WAITING_PREFIXES) {
+                    if (trimmed.startsWith(prefix)) {
+                        waiting = lockId(trimmed);
+                        break;
+                    }
+                }
+            }
+        }
+
+        private void finishThread() {
+            if (threadHeader == null) return;
+            threads.add(new DumpedThread(threadHeader, state, toArray(lines),
+                        toArray(frames), toArray(locked), waiting));
+            threadHeader = null;
+            state = null;
+            waiting = null;
+            synchronizers = false;
+            lines.clear();
+            frames.clear();
+            locked.clear();
+        }
+
+        private String intern(String s) {
+            String i = strings.get(s);
+            if (i == null) {
+                strings.put(s, s);
+                return s;
+            }
+            return i;
+        }
+
+        private String lockId(String line) {
+            int start = line.indexOf('<');
+            int end = line.indexOf('>', start + 1);
+            if (start == -1 || end == -1) return null;
+            return intern(line.substring(start + 1, end));
+        }
+
+        private static String[] toArray(List<String> list) {
+            return list.isEmpty() ? NO_STRINGS : list.toArray(new String[list.size()]);
+        }
+
+        private static int expandedLength(String line) {
+            if (line.indexOf('\t') == -1) return line.length();
+            int length = 0;
+            for (int i = 0; i < line.length(); i++) {
+                if (line.charAt(i) == '\t') length += TAB_SIZE - length % TAB_SIZE;
+                else length++;
+            }
+            return length;
+        }
+    }
+}
@@ -29,23 +29,48 @@ import com.sun.tools.visualvm.application.snapshot.ApplicationSnapshot;
 import com.sun.tools.visualvm.core.datasource.DataSource;
 import com.sun.tools.visualvm.core.datasource.descriptor.DataSourceDescriptor;
 import com.sun.tools.visualvm.core.datasource.descriptor.DataSourceDescriptorFactory;
+import com.sun.tools.visualvm.core.datasupport.Utils;
 import com.sun.tools.visualvm.threaddump.ThreadDump;
 import com.sun.tools.visualvm.core.ui.DataSourceView;
 import com.sun.tools.visualvm.core.ui.components.DataViewComponent;
-import com.sun.tools.visualvm.core.ui.components.ScrollableContainer;
-import com.sun.tools.visualvm.uisupport.HTMLTextArea;
+import com.sun.tools.visualvm.threaddump.impl.ThreadDumpModel.DumpedThread;
+import com.sun.tools.visualvm.uisupport.TransparentToolBar;
 import java.awt.BorderLayout;
 import java.awt.Color;
+import java.awt.Component;
+import java.awt.Font;
+import java.awt.Toolkit;
+import java.awt.datatransfer.StringSelection;
+import java.awt.datatransfer.Transferable;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.KeyEvent;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.swing.AbstractAction;
+import javax.swing.AbstractListModel;
 import javax.swing.BorderFactory;
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.JComboBox;
+import javax.swing.JComponent;
 import javax.swing.JLabel;
+import javax.swing.JList;
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.KeyStroke;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.TransferHandler;
+import javax.swing.UIManager;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import org.openide.util.NbBundle;
 import org.openide.util.RequestProcessor;
 
@@ -102,6 +127,9 @@ class ThreadDumpView extends DataSourceView {
     
     private static class MasterViewSupport extends JPanel  {
         
+        private static final Color HEADER_COLOR = new Color(0x00, 0x33, 0xcc);
+        private static final Color TEXT_COLOR = new Color(0xcc, 0x33, 0);
+        
         private JLabel progressLabel;
         private JPanel contentsPanel;
         
@@ -112,7 +140,7 @@ class ThreadDumpView extends DataSourceView {
         
         
         public DataViewComponent.MasterView getMasterView() {
-            return new DataViewComponent.MasterView(NbBundle.getMessage(ThreadDumpView.class, "LBL_Thread_Dump"), null, new ScrollableContainer(this));  // NOI18N
+            return new DataViewComponent.MasterView(NbBundle.getMessage(ThreadDumpView.class, "LBL_Thread_Dump"), null, this);  // NOI18N
         }
         
         
@@ -128,67 +156,257 @@ class ThreadDumpView extends DataSourceView {
             add(contentsPanel, BorderLayout.CENTER);
             setOpaque(false);
         }
-
-        private static String htmlize(String value) {
-            return value.replace("&", "&amp;").replace("<", "&lt;");     // NOI18N
-        }
-
-        private static String transform(String value) {
-            StringBuilder sb = new StringBuilder();
-            String[] result = value.split("\\n"); // NOI18N
-            for (int i = 0; i < result.length; i++) {
-                String line = result[i];
-                if (!line.isEmpty() && !Character.isWhitespace(line.charAt(0))) {
-                    sb.append("<span style=\"color: #0033CC\">"); // NOI18N
-                    sb.append(line);
-                    sb.append("</span><br>"); // NOI18N
-                } else {
-                    sb.append(line);
-                    sb.append("<br>"); // NOI18N
+        
+        private void initComponents(ThreadDumpModel model) {
+            final LinesModel linesModel = new LinesModel(model);
+            
+            // Only the visible lines are rendered, all lines have the same size
+            final JList list = new JList(linesModel);
+            Font font = UIManager.getFont("Label.font"); // NOI18N
+            list.setFont(new Font(Font.MONOSPACED, Font.PLAIN, font == null ? 12 : font.getSize()));
+            list.setCellRenderer(new LineRenderer());
+            list.setFixedCellHeight(list.getFontMetrics(list.getFont()).getHeight());
+            list.setFixedCellWidth(list.getFontMetrics(list.getFont()).charWidth('m') * // NOI18N
+                                   (model.getMaxLineLength() + 1));
+            list.setBorder(BorderFactory.createEmptyBorder(14, 8, 14, 8));
+            list.setTransferHandler(new LinesTransferHandler());
+            JScrollPane scrollPane = new JScrollPane(list);
+            scrollPane.setBorder(BorderFactory.createEmptyBorder());
+            scrollPane.getVerticalScrollBar().setUnitIncrement(list.getFixedCellHeight());
+            
+            List<String> states = new ArrayList<String>();
+            states.add(NbBundle.getMessage(ThreadDumpView.class, "LBL_All_States")); // NOI18N
+            states.addAll(model.getStates());
+            final JComboBox stateCombo = new JComboBox(states.toArray());
+            stateCombo.setToolTipText(NbBundle.getMessage(ThreadDumpView.class, "TOOLTIP_State_Filter")); // NOI18N
+            final JTextField lockField = new JTextField(16);
+            lockField.setToolTipText(NbBundle.getMessage(ThreadDumpView.class, "TOOLTIP_Lock_Filter")); // NOI18N
+            lockField.setMaximumSize(lockField.getPreferredSize());
+            final JLabel countLabel = new JLabel();
+            
+            final Runnable filter = new Runnable() {
+                public void run() {
+                    int stateIndex = stateCombo.getSelectedIndex();
+                    String state = stateIndex <= 0 ? null : stateCombo.getSelectedItem().toString();
+                    linesModel.setFilter(state, lockField.getText().trim());
+                    countLabel.setText(NbBundle.getMessage(ThreadDumpView.class, "LBL_Threads_Count", // NOI18N
+                            linesModel.getThreadsCount(), linesModel.getTotalThreadsCount()));
+                    list.clearSelection();
                 }
-            }
-            return sb.toString();
+            };
+            stateCombo.addActionListener(new ActionListener() {
+                public void actionPerformed(ActionEvent e) { filter.run(); }
+            });
+            lockField.getDocument().addDocumentListener(new DocumentListener() {
+                public void insertUpdate(DocumentEvent e) { filter.run(); }
+                public void removeUpdate(DocumentEvent e) { filter.run(); }
+                public void changedUpdate(DocumentEvent e) { filter.run(); }
+            });
+            filter.run();
+            
+            final JTextField findField = new JTextField(16);
+            findField.setToolTipText(NbBundle.getMessage(ThreadDumpView.class, "TOOLTIP_Find")); // NOI18N
+            findField.setMaximumSize(findField.getPreferredSize());
+            final FindSupport find = new FindSupport(list, linesModel, findField);
+            findField.addActionListener(new ActionListener() {
+                public void actionPerformed(ActionEvent e) { find.findNext(); }
+            });
+            findField.getDocument().addDocumentListener(new DocumentListener() {
+                public void insertUpdate(DocumentEvent e) { find.findFromSelection(); }
+                public void removeUpdate(DocumentEvent e) { find.findFromSelection(); }
+                public void changedUpdate(DocumentEvent e) { find.findFromSelection(); }
+            });
+            list.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_F,
+                    Toolkit.getDefaultToolkit().getMenuShortcutKeyMask()), "find"); // NOI18N
+            list.getActionMap().put("find", new AbstractAction() { // NOI18N
+                public void actionPerformed(ActionEvent e) {
+                    findField.selectAll();
+                    findField.requestFocusInWindow();
+                }
+            });
+            list.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_F3, 0), "findNext"); // NOI18N
+            list.getActionMap().put("findNext", new AbstractAction() { // NOI18N
+                public void actionPerformed(ActionEvent e) { find.findNext(); }
+            });
+            
+            TransparentToolBar toolBar = new TransparentToolBar();
+            toolBar.addItem(new JLabel(NbBundle.getMessage(ThreadDumpView.class, "LBL_State_Filter"))); // NOI18N
+            toolBar.addSpace(3);
+            toolBar.addItem(stateCombo);
+            toolBar.addSpace(8);
+            toolBar.addItem(new JLabel(NbBundle.getMessage(ThreadDumpView.class, "LBL_Lock_Filter"))); // NOI18N
+            toolBar.addSpace(3);
+            toolBar.addItem(lockField);
+            toolBar.addSpace(8);
+            toolBar.addItem(countLabel);
+            toolBar.addSpace(8);
+            toolBar.addItem(new JLabel(NbBundle.getMessage(ThreadDumpView.class, "LBL_Find"))); // NOI18N
+            toolBar.addSpace(3);
+            toolBar.addItem(findField);
+            
+            contentsPanel.remove(progressLabel);
+            contentsPanel.add(TransparentToolBar.withSeparator(toolBar), BorderLayout.NORTH);
+            contentsPanel.add(scrollPane, BorderLayout.CENTER);
+            contentsPanel.revalidate();
+            contentsPanel.repaint();
         }
 
         private void loadThreadDump(final File file) {
             RequestProcessor.getDefault().post(new Runnable() {
-            public void run() {
-              InputStream is = null;
-              try {
-                is = new FileInputStream(file);
-                byte[] data = new byte[(int)file.length()];
-                try {
-                  is.read(data);
-                } catch (IOException ex) {
-                  LOGGER.throwing(ThreadDumpView.class.getName(), "loadThreadDump", ex);     // NOI18N
+                public void run() {
+                    try {
+                        Utils.waitForExtraction(file); // Snapshot archive may still be extracted
+                        final ThreadDumpModel model = ThreadDumpModel.load(file);
+                        SwingUtilities.invokeLater(new Runnable() {
+                            public void run() { initComponents(model); }
+                        });
+                    } catch (IOException ex) {
+                        LOGGER.log(Level.INFO, "Failed to load thread dump " + file, ex);   // NOI18N
+                    }
                 }
-                try {
-                  HTMLTextArea area = new HTMLTextArea();
-                  area.setForeground(new Color(0xcc, 0x33, 0));
-                  area.setText("<pre>" + transform(htmlize(new String(data, "UTF-8"))) + "</pre>"); // NOI18N
-                  area.setCaretPosition(0);
-                  area.setBorder(BorderFactory.createEmptyBorder(14, 8, 14, 8));
-                  contentsPanel.remove(progressLabel);
-                  contentsPanel.add(area, BorderLayout.CENTER);
-                  contentsPanel.revalidate();
-                  contentsPanel.repaint();
-//                  contentsPanel.doLayout();
-                } catch (Exception ex) {
-                  LOGGER.throwing(ThreadDumpView.class.getName(), "loadThreadDump", ex);     // NOI18N
+            });
+        }
+        
+    }
+    
+    
+    // --- Virtualized lines of the filtered threads ---------------------------
+    
+    private static class LinesModel extends AbstractListModel {
+        
+        private final ThreadDumpModel model;
+        private final List<String> header;
+        private final List<String> trailer;
+        private DumpedThread[] threads;
+        // first row of each thread, the last item is the first trailer row
+        private int[] threadRows;
+        private int size;
+        
+        LinesModel(ThreadDumpModel model) {
+            this.model = model;
+            header = model.getHeaderLines();
+            trailer = model.getTrailerLines();
+        }
+        
+        void setFilter(String state, String lockText) {
+            List<DumpedThread> filtered = new ArrayList<DumpedThread>();
+            for (DumpedThread thread : model.getThreads()) {
+                if (state != null && !state.equals(thread.getState())) continue;
+                if (lockText.length() > 0 && !thread.holdsOrWaits(lockText)) continue;
+                filtered.add(thread);
+            }
+            int oldSize = size;
+            threads = filtered.toArray(new DumpedThread[filtered.size()]);
+            threadRows = new int[threads.length + 1];
+            int row = header.size();
+            for (int i = 0; i < threads.length; i++) {
+                threadRows[i] = row;
+                row += threads[i].getLinesCount();
+            }
+            threadRows[threads.length] = row;
+            size = row + trailer.size();
+            
+            if (oldSize > 0) fireIntervalRemoved(this, 0, oldSize - 1);
+            if (size > 0) fireIntervalAdded(this, 0, size - 1);
+        }
+        
+        int getThreadsCount() {
+            return threads.length;
+        }
+        
+        int getTotalThreadsCount() {
+            return model.getThreads().size();
+        }
+        
+        public int getSize() {
+            return size;
+        }
+
+        public Object getElementAt(int row) {
+            if (row < header.size()) return header.get(row);
+            if (row >= threadRows[threads.length]) return trailer.get(row - threadRows[threads.length]);
+            
+            int index = Arrays.binarySearch(threadRows, 0, threads.length, row);
+            if (index < 0) index = -index - 2;
+            int line = row - threadRows[index];
+            return line == 0 ? threads[index].getHeader() : threads[index].getLines()[line - 1];
+        }
+        
+    }
+    
+    // --- Copy & find ---------------------------------------------------------
+    
+    private static class LinesTransferHandler extends TransferHandler {
+        
+        public int getSourceActions(JComponent c) {
+            return COPY;
+        }
+        
+        protected Transferable createTransferable(JComponent c) {
+            Object[] values = ((JList)c).getSelectedValues();
+            if (values.length == 0) return null;
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) sb.append('\n');
+                sb.append(values[i]);
+            }
+            return new StringSelection(sb.toString());
+        }
+        
+    }
+    
+    private static class FindSupport {
+        
+        private final JList list;
+        private final LinesModel model;
+        private final JTextField field;
+        
+        FindSupport(JList list, LinesModel model, JTextField field) {
+            this.list = list;
+            this.model = model;
+            this.field = field;
+        }
+        
+        void findNext() {
+            find(list.getMaxSelectionIndex() + 1);
+        }
+        
+        void findFromSelection() {
+            find(Math.max(list.getMinSelectionIndex(), 0));
+        }
+        
+        private void find(int from) {
+            String text = field.getText().toLowerCase(Locale.ENGLISH);
+            int size = model.getSize();
+            if (text.length() == 0 || size == 0) return;
+            for (int i = 0; i < size; i++) {
+                int row = (from + i) % size;
+                String line = model.getElementAt(row).toString();
+                if (line.toLowerCase(Locale.ENGLISH).indexOf(text) != -1) {
+                    list.setSelectedIndex(row);
+                    list.ensureIndexIsVisible(row);
+                    return;
                 }
-              } catch (FileNotFoundException ex) {
-                LOGGER.throwing(ThreadDumpView.class.getName(), "loadThreadDump", ex);   // NOI18N
-              } finally {
-                  if (is != null) {
-                      try {
-                          is.close();
-                      } catch (IOException e) {
-                          // ignore
-                      }
-                  }
-              }
-           }
-          });
+            }
+            Toolkit.getDefaultToolkit().beep();
+        }
+        
+    }
+    
+    private static class LineRenderer extends DefaultListCellRenderer {
+        
+        public Component getListCellRendererComponent(JList list, Object value,
+                int index, boolean isSelected, boolean cellHasFocus) {
+            String line = value.toString();
+            super.getListCellRendererComponent(list, line.isEmpty() ? " " : // NOI18N
+                    ThreadDumpModel.expandTabs(line), index, isSelected, false);
+            if (!isSelected) {
+                boolean header = !line.isEmpty() && !Character.isWhitespace(line.charAt(0));
+                setForeground(header ? MasterViewSupport.HEADER_COLOR : MasterViewSupport.TEXT_COLOR);
+                setBackground(list.getBackground());
+            }
+            setBorder(null);
+            return this;
         }
         
     }
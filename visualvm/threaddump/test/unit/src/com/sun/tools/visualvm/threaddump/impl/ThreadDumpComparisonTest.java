@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * 
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ * 
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ * 
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tools.visualvm.threaddump.impl;
+
+import com.sun.tools.visualvm.threaddump.impl.ThreadDumpComparison.LockChain;
+import com.sun.tools.visualvm.threaddump.impl.ThreadDumpComparison.StuckThread;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Tomas Hurka
+ */
+public class ThreadDumpComparisonTest {
+    private File first;
+    private File second;
+    private ThreadDumpComparison instance;
+
+    public ThreadDumpComparisonTest() {
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        // file names in the opposite order than the dumps were taken
+        second = copy("deadlock2.tdump", "dump-a"); // NOI18N
+        first = copy("deadlock1.tdump", "dump-b"); // NOI18N
+        instance = ThreadDumpComparison.compare(Arrays.asList(second, first));
+    }
+
+    @After
+    public void tearDown() {
+        first.delete();
+        second.delete();
+    }
+
+    /**
+     * Test of compare method, of class ThreadDumpComparison.
+     */
+    @Test
+    public void testCompare() {
+        System.out.println("compare");
+        assertEquals(2, instance.getDumpsCount());
+        assertEquals(first, instance.getDumpFile(0));
+        assertEquals(second, instance.getDumpFile(1));
+    }
+
+    /**
+     * Test of getLockChains method, of class ThreadDumpComparison.
+     */
+    @Test
+    public void testGetLockChains() {
+        System.out.println("getLockChains");
+        List<LockChain> chains = instance.getLockChains(0);
+        assertEquals(2, chains.size());
+
+        LockChain deadlock = chains.get(0);
+        assertTrue(deadlock.isDeadlock());
+        assertEquals(Arrays.asList("waiter", "worker-1", "worker-2", "worker-1"), // NOI18N
+                     deadlock.getThreadNames());
+        assertEquals(Arrays.asList("0x00000000a208d580", "0x00000000a208d5b0", "0x00000000a208d580"), // NOI18N
+                     deadlock.getLockIds());
+
+        LockChain monitor = chains.get(1);
+        assertFalse(monitor.isDeadlock());
+        assertEquals(Arrays.asList("blocked", "main"), monitor.getThreadNames()); // NOI18N
+        assertEquals(Arrays.asList("0x00000000a208d5d0"), monitor.getLockIds()); // NOI18N
+    }
+
+    /**
+     * Test of getStuckThreads method, of class ThreadDumpComparison.
+     */
+    @Test
+    public void testGetStuckThreads() {
+        System.out.println("getStuckThreads");
+        List<String> names = new ArrayList<String>();
+        for (StuckThread thread : instance.getStuckThreads()) {
+            assertEquals(2, thread.getDumpsCount());
+            names.add(thread.getName());
+        }
+        assertTrue(names.containsAll(Arrays.asList("worker-1", "worker-2", "waiter", "blocked"))); // NOI18N
+        StuckThread blocked = instance.getStuckThreads().get(names.indexOf("blocked")); // NOI18N
+        assertEquals("BLOCKED", blocked.getState()); // NOI18N
+        assertEquals("Deadlock$2.run(Deadlock.java:9)", blocked.getFrame()); // NOI18N
+    }
+
+    private static File copy(String resource, String prefix) throws IOException {
+        File file = File.createTempFile(prefix, ".tdump"); // NOI18N
+        InputStream is = ThreadDumpComparisonTest.class.getResourceAsStream(resource);
+        OutputStream os = new FileOutputStream(file);
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) != -1) os.write(buffer, 0, read);
+        } finally {
+            os.close();
+            is.close();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * 
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ * 
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ * 
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tools.visualvm.threaddump.impl;
+
+import com.sun.tools.visualvm.threaddump.impl.ThreadDumpModel.DumpedThread;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.HashMap;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Tomas Hurka
+ */
+public class ThreadDumpModelTest {
+    private ThreadDumpModel instance;
+
+    public ThreadDumpModelTest() {
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        instance = load("deadlock1.tdump"); // NOI18N
+    }
+
+    /**
+     * Test of getThreads method, of class ThreadDumpModel.
+     */
+    @Test
+    public void testGetThreads() {
+        System.out.println("getThreads");
+        assertEquals(18, instance.getThreads().size());
+        DumpedThread main = getThread(instance, "main"); // NOI18N
+        assertEquals("TIMED_WAITING", main.getState()); // NOI18N
+        assertEquals("java.lang.Thread.sleep(java.base@17.0.9/Native Method)", main.getFrames()[0]); // NOI18N
+        assertEquals(2, main.getFrames().length);
+        assertNull(main.getWaitingId());
+        assertTrue(instance.getStates().contains("BLOCKED")); // NOI18N
+        assertEquals("JNI global refs: 4, weak refs: 0", instance.getTrailerLines().get(0)); // NOI18N
+    }
+
+    /**
+     * Test of getLockedIds method, of class DumpedThread.
+     */
+    @Test
+    public void testLockedIds() {
+        System.out.println("getLockedIds");
+        // monitor locked in a frame
+        assertEquals(Arrays.asList("0x00000000a208d5d0"), // NOI18N
+                     Arrays.asList(getThread(instance, "main").getLockedIds())); // NOI18N
+        // ReentrantLock from the ownable synchronizers
+        assertEquals(Arrays.asList("0x00000000a208d580"), // NOI18N
+                     Arrays.asList(getThread(instance, "worker-1").getLockedIds())); // NOI18N
+        assertEquals(0, getThread(instance, "waiter").getLockedIds().length); // NOI18N
+        assertTrue(getThread(instance, "worker-2").holdsOrWaits("a208d5b0")); // NOI18N
+    }
+
+    /**
+     * Test of getWaitingId method, of class DumpedThread.
+     */
+    @Test
+    public void testWaitingId() {
+        System.out.println("getWaitingId");
+        assertEquals("0x00000000a208d5b0", getThread(instance, "worker-1").getWaitingId()); // NOI18N
+        assertEquals("0x00000000a208d580", getThread(instance, "waiter").getWaitingId()); // NOI18N
+        assertEquals("0x00000000a208d5d0", getThread(instance, "blocked").getWaitingId()); // NOI18N
+    }
+
+    /**
+     * Test of getTimestamp method, of class ThreadDumpModel.
+     */
+    @Test
+    public void testGetTimestamp() throws Exception {
+        System.out.println("getTimestamp");
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss"); // NOI18N
+        assertEquals(format.parse("2026-10-18 08:23:02").getTime(), instance.getTimestamp()); // NOI18N
+    }
+
+    static ThreadDumpModel load(String name) throws IOException {
+        InputStream is = ThreadDumpModelTest.class.getResourceAsStream(name);
+        try {
+            return ThreadDumpModel.parse(is, new HashMap<String,String>());
+        } finally {
+            is.close();
+        }
+    }
+
+    static DumpedThread getThread(ThreadDumpModel model, String name) {
+        for (DumpedThread thread : model.getThreads())
+            if (thread.getName().equals(name)) return thread;
+        fail("No thread " + name); // NOI18N
+        return null;
+    }
+}
@@ -26,6 +26,7 @@
 package com.sun.tools.visualvm.tools.jmx;
 
 import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
 
 /**
  * <p>Cached MBeanServerConnection:</p>
@@ -42,10 +43,25 @@ import javax.management.MBeanServerConnection;
  * retrieve all the values for the attributes that are known to the cache.</li>
  * <li>The attributes cache uses a learning approach and only the attributes
  * that are in the cache will be retrieved between two subsequent updates.</li>
+ * <li>If the connection has been created with a non-zero interval the known
+ * attributes of all the known MBeans are prefetched in one background pass
+ * at the end of every interval, before the {@link MBeanCacheListener}s are
+ * notified. The readers are then served the prefetched values without any
+ * remote call.</li>
  * </ul>
  *
  * @author Eamonn McManus
  * @author Luis-Miguel Alventosa
  */
 public interface CachedMBeanServerConnection extends MBeanServerConnection, MBeanCacheOperations {
+
+    /**
+     * Returns the time the cached attribute values of the given MBean were read.
+     *
+     * @param name the MBean object name.
+     *
+     * @return the time (in {@link System#currentTimeMillis()} form) the cached
+     * values were read or -1 if there are no cached values for the MBean.
+     */
+    public long getTimestamp(ObjectName name);
 }
@@ -42,7 +42,11 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.management.Attribute;
 import javax.management.AttributeList;
 import javax.management.AttributeNotFoundException;
@@ -185,17 +189,33 @@ public final class CachedMBeanServerConnectionFactory {
 
     static class SnapshotInvocationHandler implements InvocationHandler {
 
+        private static final Logger LOGGER = Logger.getLogger(SnapshotInvocationHandler.class.getName());
+
         private final MBeanServerConnection conn;
+        // one pass at a time per connection, a slow connection doesn't delay the others
+        private final RequestProcessor prefetchProcessor =
+                new RequestProcessor("CachedMBeanServerConnection Prefetch", 1); // NOI18N
         private final int interval;
         private Timer timer = null;
-        private Map<ObjectName, NameValueMap> cachedValues = newMap();
-        private Map<ObjectName, Set<String>> cachedNames = newMap();
+        private final ConcurrentMap<ObjectName, NameValueMap> cachedValues = newMap();
+        private final ConcurrentMap<ObjectName, Set<String>> cachedNames = newMap();
+        private final ConcurrentMap<ObjectName, Object> fetchLocks = newMap();
         private List<MBeanCacheListener> listenerList = new CopyOnWriteArrayList<MBeanCacheListener>();
         private volatile boolean flushRunning;
 
+        /**
+         * Attribute values of one MBean read in one remote call
+         */
         @SuppressWarnings("serial")
         private static final class NameValueMap
                 extends HashMap<String, Object> {
+            private final Set<String> requestedNames;
+            private final long timestamp;
+
+            NameValueMap(Set<String> requestedNames, long timestamp) {
+                this.requestedNames = requestedNames;
+                this.timestamp = timestamp;
+            }
         }
 
         SnapshotInvocationHandler(MBeanServerConnection conn, int interval) {
@@ -215,12 +235,16 @@ public final class CachedMBeanServerConnectionFactory {
         void intervalElapsed() {
             if (flushRunning) return;
             flushRunning = true;
-            RequestProcessor.getDefault().post(new Runnable() {
+            prefetchProcessor.post(new Runnable() {
                 public void run() {
-                    flush();
-                    connectionPinger();
-                    notifyListeners();
-                    flushRunning = false;
+                    try {
+                        if (!prefetch()) {
+                            connectionPinger();
+                        }
+                        notifyListeners();
+                    } finally {
+                        flushRunning = false;
+                    }
                 }
             });
         }
@@ -239,21 +263,64 @@ public final class CachedMBeanServerConnectionFactory {
                 listenerList.clear();
                 cachedValues.clear();
                 cachedNames.clear();
-                Collection<Map<MBeanServerConnection, WeakReference<CachedMBeanServerConnection>>> values = snapshots.values();
-                for (Map<MBeanServerConnection, WeakReference<CachedMBeanServerConnection>> value : values) {
-                    value.remove(conn);
+                fetchLocks.clear();
+                synchronized (CachedMBeanServerConnectionFactory.class) {
+                    Collection<Map<MBeanServerConnection, WeakReference<CachedMBeanServerConnection>>> values = snapshots.values();
+                    for (Map<MBeanServerConnection, WeakReference<CachedMBeanServerConnection>> value : values) {
+                        value.remove(conn);
+                    }
                 }
             }
         }
 
-        synchronized void flush() {
-            cachedValues = newMap();
+        /**
+         * Reads all the known attributes of all the known MBeans in one pass.
+         * The cached values are replaced per MBean as soon as they arrive and
+         * are never dropped, so the readers don't block on remote calls.
+         *
+         * @return {@code true} if all the MBeans have been read successfully
+         */
+        boolean prefetch() {
+            Set<Map.Entry<ObjectName, Set<String>>> names = cachedNames.entrySet();
+            if (names.isEmpty()) return false;
+
+            for (Map.Entry<ObjectName, Set<String>> entry : names) {
+                ObjectName objName = entry.getKey();
+                try {
+                    cachedValues.put(objName, fetch(objName, entry.getValue()));
+                } catch (InstanceNotFoundException e) {
+                    forget(objName);
+                } catch (IOException e) {
+                    return false; // connection failed, don't try the other MBeans
+                } catch (Exception e) {
+                    LOGGER.log(Level.FINE, "Failed to prefetch " + objName, e); // NOI18N
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Drops everything known about an unregistered MBean
+         */
+        private void forget(ObjectName objName) {
+            cachedNames.remove(objName);
+            cachedValues.remove(objName);
+            fetchLocks.remove(objName);
+        }
+
+        void flush() {
+            cachedValues.clear();
         }
 
         int getInterval() {
             return interval;
         }
 
+        long getTimestamp(ObjectName objName) {
+            NameValueMap values = cachedValues.get(objName);
+            return values != null ? values.timestamp : -1;
+        }
+
         void addMBeanCacheListener(MBeanCacheListener listener) {
             listenerList.add(listener);
         }
@@ -274,6 +341,8 @@ public final class CachedMBeanServerConnectionFactory {
                 return null;
             } else if (methodName.equals("getInterval")) { // NOI18N
                 return getInterval();
+            } else if (methodName.equals("getTimestamp")) { // NOI18N
+                return getTimestamp((ObjectName) args[0]);
             } else if (methodName.equals("addMBeanCacheListener")) { // NOI18N
                 addMBeanCacheListener((MBeanCacheListener) args[0]);
                 return null;
@@ -320,33 +389,64 @@ public final class CachedMBeanServerConnectionFactory {
             return list;
         }
 
-        private synchronized NameValueMap getCachedAttributes(
+        /**
+         * Returns the cached values if they cover the requested attributes;
+         * otherwise registers the attributes for prefetching and reads them.
+         * Only the readers of the same MBean wait for each other.
+         */
+        private NameValueMap getCachedAttributes(
                 ObjectName objName, Set<String> attrNames) throws
                 InstanceNotFoundException, ReflectionException, IOException {
             NameValueMap values = cachedValues.get(objName);
-            if (values != null && values.keySet().containsAll(attrNames)) {
+            if (values != null && values.requestedNames.containsAll(attrNames)) {
                 return values;
             }
-            attrNames = new TreeSet<String>(attrNames);
-            Set<String> oldNames = cachedNames.get(objName);
-            if (oldNames != null) {
-                attrNames.addAll(oldNames);
+            Object lock = fetchLocks.get(objName);
+            if (lock == null) {
+                Object newLock = new Object();
+                lock = fetchLocks.putIfAbsent(objName, newLock);
+                if (lock == null) lock = newLock;
+            }
+            synchronized (lock) {
+                // another reader of the same MBean may have fetched the values meanwhile
+                values = cachedValues.get(objName);
+                if (values != null && values.requestedNames.containsAll(attrNames)) {
+                    return values;
+                }
+                Set<String> names = new TreeSet<String>(attrNames);
+                Set<String> oldNames = cachedNames.get(objName);
+                if (oldNames != null) {
+                    names.addAll(oldNames);
+                }
+                names = Collections.unmodifiableSet(names);
+                cachedNames.put(objName, names);
+                try {
+                    values = fetch(objName, names);
+                } catch (InstanceNotFoundException e) {
+                    forget(objName);
+                    throw e;
+                }
+                cachedValues.put(objName, values);
+                return values;
             }
-            values = new NameValueMap();
+        }
+
+        private NameValueMap fetch(ObjectName objName, Set<String> attrNames) throws
+                InstanceNotFoundException, ReflectionException, IOException {
+            final long timestamp = System.currentTimeMillis();
             final AttributeList attrs = conn.getAttributes(
                     objName,
                     attrNames.toArray(new String[attrNames.size()]));
+            final NameValueMap values = new NameValueMap(attrNames, timestamp);
             for (Attribute attr : attrs.asList()) {
                 values.put(attr.getName(), attr.getValue());
             }
-            cachedValues.put(objName, values);
-            cachedNames.put(objName, attrNames);
             return values;
         }
 
         // See http://www.artima.com/weblogs/viewpost.jsp?thread=79394
-        private static <K, V> Map<K, V> newMap() {
-            return new HashMap<K, V>();
+        private static <K, V> ConcurrentMap<K, V> newMap() {
+            return new ConcurrentHashMap<K, V>();
         }
     }
 }
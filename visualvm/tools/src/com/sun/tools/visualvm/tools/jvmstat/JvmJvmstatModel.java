@@ -449,7 +449,7 @@ public abstract class JvmJvmstatModel extends Model {
 
     protected long getLongValue(MonitoredValue val) {
         if (val != null) {
-            return ((Long)val.getValue()).longValue();
+            return val.longValue();
         }
         return 0;
     }
@@ -460,7 +460,7 @@ public abstract class JvmJvmstatModel extends Model {
         
         for (MonitoredValue value : values) {
             if (value != null) {
-                long val = ((Long)value.getValue()).longValue();
+                long val = value.longValue();
                 if (value.getName().startsWith(prefix)) {
                     results[1]+= val;
                 } else {
@@ -44,4 +44,20 @@ public abstract class MonitoredValue  {
      * @return value of the counter, primitive types are wrapped into Integer, Long, Float objects,
      */
     public abstract Object getValue();
+    
+    /**
+     * Returns this counter's current data value as long. Implementations
+     * should override this method to read numeric counters without creating
+     * a wrapper object.
+     * @return value of the counter as long, 0 if the counter is not numeric
+     *
+     * @since VisualVM 1.3.8
+     */
+    public long longValue() {
+        Object value = getValue();
+        if (value instanceof Number) {
+            return ((Number)value).longValue();
+        }
+        return 0;
+    }
 }
\ No newline at end of file
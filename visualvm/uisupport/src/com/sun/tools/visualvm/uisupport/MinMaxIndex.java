@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * 
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ * 
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ * 
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.tools.visualvm.uisupport;
+
+/**
+ * Level of detail index of a values array. Each level stores minimum and
+ * maximum of BUCKET_SIZE entries of the level below, minimum and maximum
+ * of any range of values is computed in O(log n) time. Used by the charts
+ * and tracer timeline to paint dense data as a min/max envelope.
+ *
+ * @author Jiri Sedlacek
+ * @since VisualVM 1.3.8
+ */
+public abstract class MinMaxIndex {
+
+    private static final int BUCKET_SIZE = 8;
+
+    private long[][] mins = new long[0][];
+    private long[][] maxs = new long[0][];
+
+
+    protected MinMaxIndex() {}
+
+
+    /**
+     * Returns minimum of the raw value at the index.
+     */
+    protected abstract long getMin(int index);
+
+    /**
+     * Returns maximum of the raw value at the index.
+     */
+    protected abstract long getMax(int index);
+
+
+    /**
+     * Prepares the index for a values array of the given capacity.
+     *
+     * @param capacity capacity of the values array
+     * @param length number of valid values
+     */
+    public void ensureCapacity(int capacity, int length) {
+        int levels = 0;
+        for (int size = capacity; size > BUCKET_SIZE; size = bucketsCount(size)) levels++;
+
+        int oldLevels = mins.length;
+        long[][] newMins = new long[levels][];
+        long[][] newMaxs = new long[levels][];
+        int size = capacity;
+        for (int level = 0; level < levels; level++) {
+            size = bucketsCount(size);
+            newMins[level] = extend(level < oldLevels ? mins[level] : null, size);
+            newMaxs[level] = extend(level < oldLevels ? maxs[level] : null, size);
+        }
+        mins = newMins;
+        maxs = newMaxs;
+
+        // Existing levels are up to date, only the new levels are computed
+        for (int level = 0; level < levels; level++) {
+            int buckets = bucketsCount(length);
+            if (level >= oldLevels)
+                for (int bucket = 0; bucket < buckets; bucket++)
+                    updateBucket(level, bucket, length);
+            length = buckets;
+        }
+    }
+
+    /**
+     * Updates the index after the raw value at the index has changed.
+     *
+     * @param index index of the changed value
+     * @param length number of valid values
+     */
+    public void update(int index, int length) {
+        for (int level = 0; level < mins.length; level++) {
+            int bucket = index / BUCKET_SIZE;
+            updateBucket(level, bucket, length);
+            index = bucket;
+            length = bucketsCount(length);
+        }
+    }
+
+    /**
+     * Recomputes the whole index.
+     *
+     * @param length number of valid values
+     */
+    public void rebuild(int length) {
+        for (int level = 0; level < mins.length; level++) {
+            int buckets = bucketsCount(length);
+            for (int bucket = 0; bucket < buckets; bucket++)
+                updateBucket(level, bucket, length);
+            length = buckets;
+        }
+    }
+
+    /**
+     * Merges minimum and maximum of the values [from, to] into minMax[0]
+     * and minMax[1].
+     */
+    public void getMinMax(int from, int to, long[] minMax) {
+        long min = minMax[0];
+        long max = minMax[1];
+
+        int lo = from;
+        int hi = to + 1;
+        int level = -1;
+
+        while (lo < hi) {
+            while (lo < hi && (lo % BUCKET_SIZE != 0 || level + 1 == mins.length)) {
+                min = Math.min(min, getMin(level, lo));
+                max = Math.max(max, getMax(level, lo));
+                lo++;
+            }
+            while (lo < hi && hi % BUCKET_SIZE != 0) {
+                hi--;
+                min = Math.min(min, getMin(level, hi));
+                max = Math.max(max, getMax(level, hi));
+            }
+            lo /= BUCKET_SIZE;
+            hi /= BUCKET_SIZE;
+            level++;
+        }
+
+        minMax[0] = min;
+        minMax[1] = max;
+    }
+
+
+    private void updateBucket(int level, int bucket, int length) {
+        int from = bucket * BUCKET_SIZE;
+        int to = Math.min(from + BUCKET_SIZE, length);
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = from; i < to; i++) {
+            min = Math.min(min, getMin(level - 1, i));
+            max = Math.max(max, getMax(level - 1, i));
+        }
+        mins[level][bucket] = min;
+        maxs[level][bucket] = max;
+    }
+
+    private long getMin(int level, int index) {
+        return level == -1 ? getMin(index) : mins[level][index];
+    }
+
+    private long getMax(int level, int index) {
+        return level == -1 ? getMax(index) : maxs[level][index];
+    }
+
+    private static int bucketsCount(int size) {
+        return (size + BUCKET_SIZE - 1) / BUCKET_SIZE;
+    }
+
+    private static long[] extend(long[] array, int length) {
+        if (array != null && array.length == length) return array;
+        long[] newArray = new long[length];
+        if (array != null) System.arraycopy(array, 0, newArray, 0, Math.min(array.length, length));
+        return newArray;
+    }
+
+}